@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.compiler2;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a sequential write pass followed by a read pass through each
+ * Arrayish implementation's get and set handles.  The size parameter stands
+ * in for a storage's steady-state capacity.
+ * @since 10/18/2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayishBenchmark {
+	@Param({"array", "nio", "unsafe"})
+	public String impl;
+	@Param({"64", "1024", "65536"})
+	public int size;
+	private MethodHandle get, set;
+
+	@Setup
+	public void setup() {
+		Arrayish.Factory factory;
+		switch (impl) {
+			case "array":
+				factory = Arrayish.ArrayArrayish.factory();
+				break;
+			case "nio":
+				factory = Arrayish.NIOArrayish.factory();
+				break;
+			case "unsafe":
+				factory = Arrayish.UnsafeArrayish.factory();
+				break;
+			default:
+				throw new AssertionError(impl);
+		}
+		Arrayish arrayish = factory.make(int.class, size);
+		this.get = arrayish.get();
+		this.set = arrayish.set();
+	}
+
+	@Benchmark
+	public int writeThenRead() throws Throwable {
+		for (int i = 0; i < size; ++i)
+			set.invokeExact(i, i);
+		int sum = 0;
+		for (int i = 0; i < size; ++i)
+			sum += (int)get.invokeExact(i);
+		return sum;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.compiler2;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Table;
+import edu.mit.streamjit.api.Identity;
+import edu.mit.streamjit.api.Pipeline;
+import edu.mit.streamjit.api.Worker;
+import edu.mit.streamjit.impl.blob.Blob.Token;
+import edu.mit.streamjit.impl.common.ConnectWorkersVisitor;
+import edu.mit.streamjit.util.bytecode.Module;
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures one steady-state iteration (read the throughput's worth of items,
+ * write the same number, adjust) against CircularArrayConcreteStorage and
+ * DoubleArrayConcreteStorage on the same int storage.  The storage connects two
+ * Identity actors whose writes are offset by one throughput, the shape the
+ * compiler produces for an external storage after the init schedule.
+ * @since 10/18/2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcreteStorageBenchmark {
+	@Param({"circular", "double"})
+	public String impl;
+	@Param({"1", "16", "1024"})
+	public int throughput;
+	private int readOffset, writeOffset;
+	private MethodHandle read, write, adjust;
+
+	@Setup
+	public void setup() {
+		Storage storage = makeStorage(throughput);
+		ConcreteStorage cs;
+		switch (impl) {
+			case "circular":
+				cs = CircularArrayConcreteStorage.factory().make(storage);
+				break;
+			case "double":
+				cs = new DoubleArrayConcreteStorage(Arrayish.UnsafeArrayish.factory(), storage);
+				break;
+			default:
+				throw new AssertionError(impl);
+		}
+		this.readOffset = 0;
+		this.writeOffset = throughput;
+		this.read = cs.readHandle();
+		this.write = cs.writeHandle();
+		this.adjust = cs.adjustHandle();
+	}
+
+	private static Storage makeStorage(int throughput) {
+		Identity<Integer> first = new Identity<>(), second = new Identity<>();
+		Pipeline<Integer, Integer> pipeline = new Pipeline<>(first, second);
+		ConnectWorkersVisitor cwv = new ConnectWorkersVisitor();
+		pipeline.visit(cwv);
+
+		@SuppressWarnings("unchecked")
+		Class<? extends Worker<?, ?>> identityClass = (Class<? extends Worker<?, ?>>)first.getClass();
+		ActorArchetype archetype = new ActorArchetype(identityClass, new Module());
+		WorkerActor a = new WorkerActor(first, archetype), b = new WorkerActor(second, archetype);
+		ImmutableMap<Worker<?, ?>, WorkerActor> workers = ImmutableMap.<Worker<?, ?>, WorkerActor>of(first, a, second, b);
+		Map<Token, TokenActor> tokens = new HashMap<>();
+		Table<Actor, Actor, Storage> storageTable = HashBasedTable.create();
+		int[] inputTokenId = new int[]{Integer.MIN_VALUE}, outputTokenId = new int[]{Integer.MAX_VALUE};
+		a.connect(workers, tokens, storageTable, inputTokenId, outputTokenId);
+		b.connect(workers, tokens, storageTable, inputTokenId, outputTokenId);
+		Storage storage = storageTable.get(a, b);
+		storage.setType(int.class);
+
+		ActorGroup ag = ActorGroup.of(a), bg = ActorGroup.of(b);
+		ag.setSchedule(ImmutableMap.<Actor, Integer>of(a, throughput));
+		bg.setSchedule(ImmutableMap.<Actor, Integer>of(b, throughput));
+		//Items read this iteration were written last iteration.
+		a.outputIndexFunctions().set(0, a.outputIndexFunctions().get(0).andThen(i -> i + throughput));
+		storage.computeSteadyStateRequirements(ImmutableMap.of(ag, 1, bg, 1));
+		return storage;
+	}
+
+	@Benchmark
+	public int steadyStateIteration() throws Throwable {
+		int sum = 0;
+		for (int i = 0; i < throughput; ++i)
+			sum += (int)read.invokeExact(readOffset + i);
+		for (int i = 0; i < throughput; ++i)
+			write.invokeExact(writeOffset + i, i);
+		adjust.invokeExact();
+		return sum;
+	}
+}
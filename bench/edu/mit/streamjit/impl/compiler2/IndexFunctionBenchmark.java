@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.compiler2;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures IndexFunction.applyBulk for the function shapes the compiler
+ * builds: the identity, a constant offset (as added for the steady state), a
+ * roundrobin transfer function (as built by splitter and joiner removal), and
+ * the composition of the latter two.  The functions are lambdas, so this
+ * measures the default applyBulk loop rather than the compiler's private
+ * specializations.
+ * @since 10/18/2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexFunctionBenchmark {
+	@Param({"identity", "offset", "roundrobin", "compound"})
+	public String function;
+	@Param({"16", "1024", "65536"})
+	public int length;
+	private IndexFunction indexFunction;
+	private int[] indices;
+
+	@Setup
+	public void setup() {
+		IndexFunction offset = i -> i + 17;
+		//weight 3, prefix sum 5, total weight 8
+		IndexFunction roundrobin = i -> 8*(i/3) + 5 + (i % 3);
+		switch (function) {
+			case "identity":
+				indexFunction = IndexFunction.identity();
+				break;
+			case "offset":
+				indexFunction = offset;
+				break;
+			case "roundrobin":
+				indexFunction = roundrobin;
+				break;
+			case "compound":
+				indexFunction = roundrobin.andThen(offset);
+				break;
+			default:
+				throw new AssertionError(function);
+		}
+		indices = new int[length];
+	}
+
+	@Benchmark
+	public int[] applyBulk() {
+		for (int i = 0; i < indices.length; ++i)
+			indices[i] = i;
+		indexFunction.applyBulk(indices);
+		return indices;
+	}
+}
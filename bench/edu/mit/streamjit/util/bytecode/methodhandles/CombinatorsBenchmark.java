@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.util.bytecode.methodhandles;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares Combinators.tableswitch and Combinators.lookupswitch dispatching
+ * over every case in turn, as SwitchingStrategy does when multiplexing
+ * splitter outputs and joiner inputs through one handle.  The cases parameter
+ * stands in for the splitter or joiner width.
+ * @since 10/18/2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombinatorsBenchmark {
+	@Param({"tableswitch", "lookupswitch"})
+	public String kind;
+	@Param({"2", "8", "64"})
+	public int cases;
+	private MethodHandle dispatch;
+
+	@Setup
+	public void setup() {
+		MethodHandle[] handles = new MethodHandle[cases];
+		for (int i = 0; i < cases; ++i)
+			handles[i] = MethodHandles.dropArguments(MethodHandles.constant(int.class, i), 0, int.class);
+		switch (kind) {
+			case "tableswitch":
+				dispatch = Combinators.tableswitch(handles);
+				break;
+			case "lookupswitch":
+				dispatch = Combinators.lookupswitch(handles);
+				break;
+			default:
+				throw new AssertionError(kind);
+		}
+	}
+
+	@Benchmark
+	public int dispatchAll() throws Throwable {
+		int sum = 0;
+		for (int i = 0; i < cases; ++i)
+			sum += (int)dispatch.invokeExact(i, i);
+		return sum;
+	}
+}
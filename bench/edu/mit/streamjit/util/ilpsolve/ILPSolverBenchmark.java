@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.util.ilpsolve;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the native lp_solve backend against the pure-Java solver on
+ * systems shaped like Compiler2's init schedules: a pipeline of groups with
+ * random rates, each edge requiring some buffering, minimizing a mix of
+ * firings and excess buffering.
+ * @since 10/18/2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ILPSolverBenchmark {
+	@Param({"NATIVE", "JAVA"})
+	public ILPSolver.Backend backend;
+	@Param({"4", "8", "16"})
+	public int groups;
+	private int[] push, pop, buffer;
+
+	@Setup
+	public void setup() {
+		Random r = new Random(groups);
+		push = new int[groups - 1];
+		pop = new int[groups - 1];
+		buffer = new int[groups - 1];
+		for (int i = 0; i < groups - 1; ++i) {
+			push[i] = 1 + r.nextInt(3);
+			pop[i] = 1 + r.nextInt(3);
+			buffer[i] = r.nextInt(8);
+		}
+	}
+
+	@Benchmark
+	public int solveInitSchedule() {
+		ILPSolver solver = new ILPSolver(backend);
+		ILPSolver.Variable[] v = new ILPSolver.Variable[groups];
+		for (int i = 0; i < groups; ++i)
+			v[i] = solver.newVariable("g"+i);
+		Map<ILPSolver.Variable, Integer> cost = new HashMap<>();
+		for (int i = 0; i < groups; ++i)
+			cost.put(v[i], 1);
+		for (int i = 0; i < groups - 1; ++i) {
+			solver.constrainAtLeast(v[i].asLinearExpr(push[i]).minus(pop[i], v[i+1]), buffer[i]);
+			cost.put(v[i], cost.get(v[i]) + push[i]);
+			cost.put(v[i+1], cost.get(v[i+1]) - pop[i]);
+		}
+		cost.values().removeIf(c -> c == 0);
+		solver.constrainAtLeast(v[groups - 1].asLinearExpr(1), 1);
+		solver.minimize(solver.newLinearExpr(cost));
+		solver.solve();
+		return v[0].value();
+	}
+}
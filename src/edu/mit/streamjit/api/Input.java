@@ -31,6 +31,7 @@ import edu.mit.streamjit.impl.blob.Buffers;
 import edu.mit.streamjit.impl.blob.PeekableBuffer;
 import edu.mit.streamjit.impl.common.InputBufferFactory;
 import edu.mit.streamjit.impl.common.NIOBuffers;
+import edu.mit.streamjit.impl.common.WindowedFileBuffer;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.nio.ByteOrder;
@@ -151,6 +152,56 @@ public class Input<I> {
 		return new Input<>(new BinaryFileRealInput(path, type, byteOrder));
 	}
 
+	/**
+	 * Creates an Input reading elements from the file at the given path in the
+	 * given byte order, holding only a few windows of the file in memory at
+	 * once.  Unlike {@link #fromBinaryFile(Path, Class, ByteOrder)}, which maps
+	 * the whole file, this works for files larger than 2GB and keeps resident
+	 * memory bounded, so it's suited to large inputs streamed once.  The type
+	 * must be a primitive wrapper type (e.g., Integer.class for a file of ints).
+	 * <p/>
+	 * A background thread reads up to readAhead windows of windowBytes bytes
+	 * each ahead of the stream.
+	 * @param <I> the type of Input to create
+	 * @param path the path of the file to read
+	 * @param type the type of elements in the file
+	 * @param byteOrder the byte order of the file
+	 * @param windowBytes the size of each window in bytes
+	 * @param readAhead the number of windows to read ahead
+	 * @return an Input reading the given file
+	 */
+	public static <I> Input<I> fromBinaryFile(Path path, Class<I> type, ByteOrder byteOrder, int windowBytes, int readAhead) {
+		checkArgument(Primitives.isWrapperType(type) && !type.equals(Void.class), "not a wrapper type: %s", type);
+		checkArgument(windowBytes > 0, "windowBytes %s must be positive", windowBytes);
+		checkArgument(readAhead > 0, "readAhead %s must be positive", readAhead);
+		class WindowedBinaryFileRealInput extends InputBufferFactory {
+			private final Path path;
+			private final Class<?> type;
+			private final ByteOrder byteOrder;
+			private final int windowBytes, readAhead;
+			private WindowedBinaryFileRealInput(Path path, Class<?> type, ByteOrder byteOrder, int windowBytes, int readAhead) {
+				this.path = path;
+				this.type = type;
+				this.byteOrder = byteOrder;
+				this.windowBytes = windowBytes;
+				this.readAhead = readAhead;
+			}
+			@Override
+			public Buffer createReadableBuffer(int readerMinSize) {
+				try {
+					return new WindowedFileBuffer(path, type, byteOrder, windowBytes, readAhead);
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+			@Override
+			public String toString(){
+				return "Input.fromBinaryFile("+path+", "+type.getSimpleName()+".class, "+byteOrder+", "+windowBytes+", "+readAhead+")";
+			}
+		}
+		return new Input<>(new WindowedBinaryFileRealInput(path, type, byteOrder, windowBytes, readAhead));
+	}
+
 	/**
 	 * Creates an Input containing the elements in the given Iterable.
 	 * <p/>
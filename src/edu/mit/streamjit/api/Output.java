@@ -21,12 +21,21 @@
  */
 package edu.mit.streamjit.api;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import com.google.common.primitives.Primitives;
 import edu.mit.streamjit.impl.blob.AbstractWriteOnlyBuffer;
 import edu.mit.streamjit.impl.blob.Buffer;
 import edu.mit.streamjit.impl.blob.Buffers;
+import edu.mit.streamjit.impl.common.NIOBuffers;
 import edu.mit.streamjit.impl.common.OutputBufferFactory;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.concurrent.ArrayBlockingQueue;
 
@@ -101,10 +110,50 @@ public class Output<O> {
 		});
 	}
 
-	//TODO: we need flush() for good performance, and close() to avoid leaks.
-//	public static <O> Output<O> toBinaryFile(Path path, Class<I> type) {
-//
-//	}
+	/**
+	 * Creates an Output that writes elements to the file at the given path in
+	 * the given byte order, replacing the file if it exists.  The type must be
+	 * a primitive wrapper type (e.g., Integer.class to write a file of ints).
+	 * <p/>
+	 * Elements are collected in a large direct buffer and written to the file
+	 * in bulk.  If the compiler stores the stream's output unboxed, elements
+	 * are passed to this Output in primitive arrays without boxing.  The file
+	 * is flushed and closed when the stream is drained.
+	 * @param <O> the type of Output to create
+	 * @param path the path of the file to write
+	 * @param type the type of elements to write
+	 * @param byteOrder the byte order to write elements in
+	 * @return an Output writing to the given file
+	 */
+	public static <O> Output<O> toBinaryFile(Path path, Class<O> type, ByteOrder byteOrder) {
+		checkArgument(Primitives.isWrapperType(type) && !type.equals(Void.class), "not a wrapper type: %s", type);
+		class BinaryFileRealOutput extends OutputBufferFactory {
+			private static final int STAGING_BYTES = 1 << 22;
+			private final Path path;
+			private final Class<?> type;
+			private final ByteOrder byteOrder;
+			private BinaryFileRealOutput(Path path, Class<?> type, ByteOrder byteOrder) {
+				this.path = path;
+				this.type = type;
+				this.byteOrder = byteOrder;
+			}
+			@Override
+			public Buffer createWritableBuffer(int writerMinSize) {
+				FileChannel fc;
+				try {
+					fc = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+				return NIOBuffers.wrapChannel(fc, ByteBuffer.allocateDirect(STAGING_BYTES).order(byteOrder), type);
+			}
+			@Override
+			public String toString() {
+				return "Output.toBinaryFile("+path+", "+type.getSimpleName()+".class, "+byteOrder+")";
+			}
+		}
+		return new Output<>(new BinaryFileRealOutput(path, type, byteOrder));
+	}
 
 	public static <O> Output<O> toCollection(final Collection<? super O> coll) {
 		return new Output<>(new OutputBufferFactory() {
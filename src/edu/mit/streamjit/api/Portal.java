@@ -21,9 +21,13 @@
  */
 package edu.mit.streamjit.api;
 
+import com.google.common.collect.ImmutableMap;
 import edu.mit.streamjit.impl.common.MessageConstraint;
 import edu.mit.streamjit.impl.interp.Message;
 import edu.mit.streamjit.impl.common.Workers;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
@@ -39,18 +43,30 @@ import java.util.Map;
  * @since 11/8/2012
  */
 public final class Portal<I> {
+	private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, Object.class, Object[].class);
 	private final Class<I> klass;
+	/**
+	 * Interface method -> handle invoking it on a recipient, taking the
+	 * recipient and the arguments as an Object[].
+	 */
+	private final ImmutableMap<Method, MethodHandle> handlers;
 	private final List<Worker<?, ?>> recipients = new ArrayList<>();
 	/**
 	 * sender -> (recipient -> constraint).
 	 */
 	private final Map<Worker<?, ?>, Map<Worker<?, ?>, MessageConstraint>> constraints = new IdentityHashMap<>();
+	/**
+	 * sender -> handle, built when the constraints are set so getHandle()
+	 * doesn't create a proxy each time it's called.
+	 */
+	private final Map<Worker<?, ?>, I> handles = new IdentityHashMap<>();
 	public Portal(Class<I> klass) {
 		if (!klass.isInterface())
 			throw new IllegalArgumentException(klass+" is not an interface type");
 		//TODO: are these checks too strict?  The interpreter can check these
 		//dynamically and the compiler can tell exactly which methods are called,
 		//so we could be more lenient here.
+		ImmutableMap.Builder<Method, MethodHandle> handlersBuilder = ImmutableMap.builder();
 		for (Method m : klass.getMethods()) {
 			if (m.getDeclaringClass().equals(Object.class))
 				continue;
@@ -59,8 +75,22 @@ public final class Portal<I> {
 			//TODO: do we need m.getGenericExceptionTypes() to handle "throws E"?
 			if (m.getExceptionTypes().length > 0)
 				throw new IllegalArgumentException("Method "+m.toGenericString()+" in "+klass+" may throw");
+
+			//We probably don't have access to the message interface, but we
+			//need to call its methods anyway.  This might fail under a security
+			//manager, or if the interface is somehow security sensitive to the
+			//Java platform(?).
+			m.setAccessible(true);
+			try {
+				handlersBuilder.put(m, MethodHandles.publicLookup().unreflect(m)
+						.asSpreader(Object[].class, m.getParameterCount())
+						.asType(HANDLER_TYPE));
+			} catch (IllegalAccessException ex) {
+				throw new AssertionError(ex);
+			}
 		}
 		this.klass = klass;
+		this.handlers = handlersBuilder.build();
 	}
 
 	/**
@@ -121,12 +151,36 @@ public final class Portal<I> {
 	public I getHandle(Worker<?, ?> sender, int latency) {
 		if (sender == null)
 			throw new NullPointerException();
-		Handle handler = new Handle(sender, recipients, constraints.get(sender));
+		I handle = handles.get(sender);
+		return handle != null ? handle : makeHandle(sender);
+	}
+
+	private I makeHandle(Worker<?, ?> sender) {
+		Handle handler = new Handle(sender, recipients, constraints.get(sender), handlers);
 		@SuppressWarnings("unchecked")
 		I handle = (I)Proxy.newProxyInstance(klass.getClassLoader(), new Class<?>[]{klass}, handler);
 		return handle;
 	}
 
+	/**
+	 * Gets the interface messages through this portal are sent with.
+	 * Compilers need this to make their own handles.
+	 * @return this portal's interface
+	 */
+	/* package-private */ Class<I> getInterface() {
+		return klass;
+	}
+
+	/**
+	 * Gets handles invoking this portal's interface methods, taking the
+	 * recipient and the arguments as an Object[].  Compilers use these to
+	 * deliver messages without reflection.
+	 * @return a map of interface methods to handles invoking them
+	 */
+	/* package-private */ ImmutableMap<Method, MethodHandle> getHandlers() {
+		return handlers;
+	}
+
 	/**
 	 * Gets the list of registered recipients.  MessageConstraint needs this.
 	 * @return the list of registered recipients
@@ -152,6 +206,8 @@ public final class Portal<I> {
 			}
 			senderMap.put(c.getRecipient(), c);
 		}
+		for (Worker<?, ?> sender : constraints.keySet())
+			handles.put(sender, makeHandle(sender));
 	}
 
 	/**
@@ -166,30 +222,29 @@ public final class Portal<I> {
 		 * Maps recipients to constraints for this sender.
 		 */
 		private final Map<Worker<?, ?>, MessageConstraint> constraints;
-		private Handle(Worker<?, ?> sender, List<Worker<?, ?>> recipients, Map<Worker<?, ?>, MessageConstraint> constraints) {
+		private final ImmutableMap<Method, MethodHandle> handlers;
+		private Handle(Worker<?, ?> sender, List<Worker<?, ?>> recipients, Map<Worker<?, ?>, MessageConstraint> constraints, ImmutableMap<Method, MethodHandle> handlers) {
 			this.sender = sender;
 			this.recipients = recipients;
 			this.constraints = constraints;
+			this.handlers = handlers;
 		}
 		@Override
 		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 			//We check in the Portal constructor that all non-Object methods are
-			//valid to call through, so check we aren't calling an Object method.
-			if (method.getDeclaringClass().equals(Object.class))
+			//valid to call through, so only Object methods lack a handler.
+			MethodHandle handler = handlers.get(method);
+			if (handler == null)
 				throw new IllegalStreamGraphException("Call to Object method "+method+" through portal", sender);
 
-			//We probably don't have access to the message interface, but we
-			//need to call its methods anyway.  This might fail under a security
-			//manager, or if the interface is somehow security sensitive to the
-			//Java platform(?).
-			method.setAccessible(true);
-
-			for (Worker<?, ?> recipient : recipients) {
+			long executions = Workers.getExecutions(sender);
+			for (int i = 0; i < recipients.size(); ++i) {
+				Worker<?, ?> recipient = recipients.get(i);
 				MessageConstraint constraint = constraints.get(recipient);
 				assert constraint != null;
 
 				//Queue up the message at the recipient.
-				Message message = new Message(method, args, constraint.getDeliveryTime(Workers.getExecutions(sender)));
+				Message message = new Message(method, handler, args, constraint.getDeliveryTime(executions));
 				Workers.sendMessage(recipient, message);
 			}
 
@@ -205,6 +260,14 @@ public final class Portal<I> {
 			return portal.getRecipients();
 		}
 		@Override
+		protected Class<?> getInterface_impl(Portal<?> portal) {
+			return portal.getInterface();
+		}
+		@Override
+		protected ImmutableMap<Method, MethodHandle> getHandlers_impl(Portal<?> portal) {
+			return portal.getHandlers();
+		}
+		@Override
 		protected void setConstraints_impl(Portal<?> portal, List<MessageConstraint> constraints) {
 			portal.setConstraints(constraints);
 		}
@@ -23,7 +23,6 @@ package edu.mit.streamjit.api;
 
 import edu.mit.streamjit.impl.interp.Message;
 import edu.mit.streamjit.impl.interp.Channel;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -126,8 +125,8 @@ public abstract class Worker<I, O> implements StreamElement<I, O> {
 		while (!messages.isEmpty() && messages.get(0).timeToReceive == executions+1) {
 			Message m = messages.remove(0);
 			try {
-				m.method.invoke(this, m.args);
-			} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
+				m.handler.invokeExact((Object)this, m.args);
+			} catch (Throwable ex) {
 				throw new IllegalStreamGraphException("Bad stuff happened while processing message", ex);
 			}
 		}
@@ -146,6 +145,16 @@ public abstract class Worker<I, O> implements StreamElement<I, O> {
 		return executions;
 	}
 
+	/**
+	 * Sets the number of completed executions of this worker.  Compilers that
+	 * run work() without calling doWork() use this to hand the worker back to
+	 * an interpreter with a count consistent with its pending messages.
+	 * @param executions the number of completed executions
+	 */
+	void setExecutions(long executions) {
+		this.executions = executions;
+	}
+
 	void sendMessage(Message message) {
 		if (message.timeToReceive <= executions)
 			throw new AssertionError("Message delivery missed: "+executions+", "+message);
@@ -156,6 +165,18 @@ public abstract class Worker<I, O> implements StreamElement<I, O> {
 		messages.add(insertionPoint, message);
 	}
 
+	/**
+	 * Removes and returns this worker's pending messages, in delivery order.
+	 * Compilers that deliver messages themselves use this to take over
+	 * messages sent while the worker was interpreted.
+	 * @return this worker's pending messages
+	 */
+	List<Message> takeMessages() {
+		List<Message> retval = new ArrayList<>(messages);
+		messages.clear();
+		return retval;
+	}
+
 	int getIdentifier() {
 		return identifier;
 	}
@@ -200,6 +221,10 @@ public abstract class Worker<I, O> implements StreamElement<I, O> {
 			return worker.getExecutions();
 		}
 		@Override
+		protected void setExecutions_impl(Worker<?, ?> worker, long executions) {
+			worker.setExecutions(executions);
+		}
+		@Override
 		protected void doWork_impl(Worker<?, ?> worker) {
 			worker.doWork();
 		}
@@ -208,6 +233,10 @@ public abstract class Worker<I, O> implements StreamElement<I, O> {
 			worker.sendMessage(message);
 		}
 		@Override
+		protected List<Message> takeMessages_impl(Worker<?, ?> worker) {
+			return worker.takeMessages();
+		}
+		@Override
 		protected int getIdentifier_impl(Worker<?, ?> worker) {
 			return worker.getIdentifier();
 		}
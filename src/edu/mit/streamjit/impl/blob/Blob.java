@@ -74,6 +74,38 @@ public interface Blob {
 	 */
 	public int getMinimumBufferCapacity(Token token);
 
+	/**
+	 * Returns the number of items this Blob reads or writes on the edge
+	 * represented by the given token during one steady-state iteration, for
+	 * sizing buffers to the Blob's throughput. The default implementation
+	 * returns the minimum buffer capacity.
+	 * @param token the edge to get the steady-state rate for
+	 * @return the number of items per steady-state iteration on the given
+	 * edge
+	 * @throws IllegalArgumentException if the given token is not an input or
+	 * output edge of this Blob
+	 */
+	public default int getItemsPerIteration(Token token) {
+		return getMinimumBufferCapacity(token);
+	}
+
+	/**
+	 * Returns the type of elements this Blob reads or writes on the edge
+	 * represented by the given token.  If this returns a primitive type,
+	 * installing a {@link PrimitiveBuffer} of that type on the edge lets this
+	 * Blob move items without boxing them; any Buffer is still acceptable.
+	 * The default implementation returns Object.class.
+	 * @param token the edge to get the element type for
+	 * @return the element type for the given edge
+	 * @throws IllegalArgumentException if the given token is not an input or
+	 * output edge of this Blob
+	 */
+	public default Class<?> getBufferType(Token token) {
+		checkArgument(getInputs().contains(token) || getOutputs().contains(token),
+				"%s not an input or output of this blob", token);
+		return Object.class;
+	}
+
 	/**
 	 * Installs buffers for this Blob's input and output edges.
 	 * @param buffers an immutable map of tokens to the buffer on the corresponding
@@ -134,6 +166,18 @@ public interface Blob {
 	 */
 	public void drain(Runnable callback);
 
+	/**
+	 * Signals this Blob to drain as with {@link #drain(Runnable)}, except that
+	 * the caller is going to resume the stream graph from this Blob's
+	 * DrainData (e.g., to reconfigure it), so this Blob need not produce as
+	 * much output as possible; it may stop as soon as its state is in its
+	 * DrainData.  The default implementation calls drain().
+	 * @param callback the callback to call after draining is finished
+	 */
+	public default void drainForReconfiguration(Runnable callback) {
+		drain(callback);
+	}
+
 	/**
 	 * Gets a DrainData representing the state of this Blob after draining. This
 	 * method may only be called after the callback passed to drain() has been
@@ -25,6 +25,8 @@ import static com.google.common.base.Preconditions.*;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
@@ -201,6 +203,37 @@ public final class Buffers {
 		}
 	}
 
+	/**
+	 * Moves as many items as possible from one buffer to another through the
+	 * given scratch array, which bounds the number of items moved.  If the
+	 * scratch array is an array of primitives, both buffers must be
+	 * PrimitiveBuffers of that type, and items move without boxing.
+	 * <p/>
+	 * The caller must be the only reader of the source buffer and the only
+	 * writer of the destination buffer, so all the items read can be written.
+	 * @param from the buffer to read from
+	 * @param to the buffer to write to
+	 * @param scratch an Object[] or primitive array
+	 * @return the number of items moved
+	 */
+	public static int transfer(Buffer from, Buffer to, Object scratch) {
+		int count = Math.min(Math.min(from.size(), to.capacity() - to.size()), Array.getLength(scratch));
+		if (count <= 0)
+			return 0;
+		if (scratch instanceof Object[]) {
+			Object[] data = (Object[])scratch;
+			int read = from.read(data, 0, count);
+			for (int written = 0; written < read;)
+				written += to.write(data, written, read - written);
+			Arrays.fill(data, 0, read, null);
+			return read;
+		}
+		int read = ((PrimitiveBuffer)from).readArray(scratch, 0, count);
+		for (int written = 0; written < read;)
+			written += ((PrimitiveBuffer)to).writeArray(scratch, written, read - written);
+		return read;
+	}
+
 	/**
 	 * Returns a read-only view of the given buffer.  (Note that reads still
 	 * modify the buffer as usual; this wrapper merely prohibits the write
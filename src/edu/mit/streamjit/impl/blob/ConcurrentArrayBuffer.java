@@ -22,15 +22,21 @@
 package edu.mit.streamjit.impl.blob;
 
 import edu.mit.streamjit.util.ConcurrentPeekableQueue;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * A Buffer implementation based on a lock-free queue.  This implementation
- * does not block.
+ * does not block, but signals registered waiters (see
+ * {@link SignallingBuffer}).
  * @author Jeffrey Bosboom <jbosboom@csail.mit.edu>
  * @since 7/18/2013
  */
-public class ConcurrentArrayBuffer extends AbstractBuffer {
+public class ConcurrentArrayBuffer extends AbstractBuffer implements SignallingBuffer {
+	private static final AtomicReferenceFieldUpdater<ConcurrentArrayBuffer, Thread> READ_WAITER = AtomicReferenceFieldUpdater.newUpdater(ConcurrentArrayBuffer.class, Thread.class, "readWaiter");
+	private static final AtomicReferenceFieldUpdater<ConcurrentArrayBuffer, Thread> WRITE_WAITER = AtomicReferenceFieldUpdater.newUpdater(ConcurrentArrayBuffer.class, Thread.class, "writeWaiter");
 	private final ConcurrentPeekableQueue<Object> queue;
+	private volatile Thread readWaiter, writeWaiter;
 	public ConcurrentArrayBuffer(int capacity) {
 		//ConcurrentPeekableQueue must be at least 2 capacity.
 		if (capacity == 1)
@@ -40,12 +46,42 @@ public class ConcurrentArrayBuffer extends AbstractBuffer {
 
 	@Override
 	public Object read() {
-		return queue.poll();
+		Object o = queue.poll();
+		if (o != null && writeWaiter != null)
+			signalWriter();
+		return o;
 	}
 
 	@Override
 	public boolean write(Object t) {
-		return queue.offer(t);
+		boolean written = queue.offer(t);
+		if (written && readWaiter != null)
+			signalReader();
+		return written;
+	}
+
+	@Override
+	public void setReadWaiter(Thread waiter) {
+		this.readWaiter = waiter;
+	}
+
+	@Override
+	public void setWriteWaiter(Thread waiter) {
+		this.writeWaiter = waiter;
+	}
+
+	private void signalReader() {
+		//Take the waiter atomically: clearing it after reading could erase a
+		//registration made in between, losing that waiter's wakeup.
+		Thread t = READ_WAITER.getAndSet(this, null);
+		if (t != null)
+			LockSupport.unpark(t);
+	}
+
+	private void signalWriter() {
+		Thread t = WRITE_WAITER.getAndSet(this, null);
+		if (t != null)
+			LockSupport.unpark(t);
 	}
 
 	@Override
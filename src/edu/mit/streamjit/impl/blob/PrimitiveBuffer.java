@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.blob;
+
+/**
+ * A Buffer that stores primitives of a particular type, supporting bulk reads
+ * and writes of primitive arrays in addition to the boxed operations defined
+ * in Buffer.  Blobs that store unboxed data can negotiate with a
+ * PrimitiveBuffer (by checking {@link #primitiveType()}) to move data across
+ * blob boundaries without allocating.
+ * <p/>
+ * The boxed operations remain available (boxing or unboxing as necessary), so
+ * a PrimitiveBuffer may be used wherever a Buffer is expected.  Writing null
+ * through the boxed operations throws NullPointerException.
+ * <p/>
+ * The nested interfaces specialize this interface for int, long, float and
+ * double; the readArray/readAllArray/writeArray methods accept an array of the
+ * buffer's primitive type as an Object, for clients that don't want to
+ * dispatch on the type themselves.
+ * @since 10/18/2026
+ */
+public interface PrimitiveBuffer extends Buffer {
+	/**
+	 * Returns the primitive type stored in this buffer (e.g., int.class).
+	 * @return the primitive type stored in this buffer
+	 */
+	public Class<?> primitiveType();
+
+	/**
+	 * Reads up to length items into the given array, which must be an array
+	 * of this buffer's primitive type.
+	 * @see Buffer#read(Object[], int, int)
+	 */
+	public int readArray(Object array, int offset, int length);
+
+	/**
+	 * Atomically reads enough items to fill the given array (which must be
+	 * an array of this buffer's primitive type) starting from offset, or does
+	 * nothing.
+	 * @see Buffer#readAll(Object[], int)
+	 */
+	public boolean readAllArray(Object array, int offset);
+
+	/**
+	 * Writes up to length items from the given array, which must be an array
+	 * of this buffer's primitive type.
+	 * @see Buffer#write(Object[], int, int)
+	 */
+	public int writeArray(Object array, int offset, int length);
+
+	public interface OfInt extends PrimitiveBuffer {
+		public int read(int[] data, int offset, int length);
+		public boolean readAll(int[] data, int offset);
+		public int write(int[] data, int offset, int length);
+		@Override
+		public default Class<?> primitiveType() {
+			return int.class;
+		}
+		@Override
+		public default int readArray(Object array, int offset, int length) {
+			return read((int[])array, offset, length);
+		}
+		@Override
+		public default boolean readAllArray(Object array, int offset) {
+			return readAll((int[])array, offset);
+		}
+		@Override
+		public default int writeArray(Object array, int offset, int length) {
+			return write((int[])array, offset, length);
+		}
+	}
+
+	public interface OfLong extends PrimitiveBuffer {
+		public int read(long[] data, int offset, int length);
+		public boolean readAll(long[] data, int offset);
+		public int write(long[] data, int offset, int length);
+		@Override
+		public default Class<?> primitiveType() {
+			return long.class;
+		}
+		@Override
+		public default int readArray(Object array, int offset, int length) {
+			return read((long[])array, offset, length);
+		}
+		@Override
+		public default boolean readAllArray(Object array, int offset) {
+			return readAll((long[])array, offset);
+		}
+		@Override
+		public default int writeArray(Object array, int offset, int length) {
+			return write((long[])array, offset, length);
+		}
+	}
+
+	public interface OfFloat extends PrimitiveBuffer {
+		public int read(float[] data, int offset, int length);
+		public boolean readAll(float[] data, int offset);
+		public int write(float[] data, int offset, int length);
+		@Override
+		public default Class<?> primitiveType() {
+			return float.class;
+		}
+		@Override
+		public default int readArray(Object array, int offset, int length) {
+			return read((float[])array, offset, length);
+		}
+		@Override
+		public default boolean readAllArray(Object array, int offset) {
+			return readAll((float[])array, offset);
+		}
+		@Override
+		public default int writeArray(Object array, int offset, int length) {
+			return write((float[])array, offset, length);
+		}
+	}
+
+	public interface OfDouble extends PrimitiveBuffer {
+		public int read(double[] data, int offset, int length);
+		public boolean readAll(double[] data, int offset);
+		public int write(double[] data, int offset, int length);
+		@Override
+		public default Class<?> primitiveType() {
+			return double.class;
+		}
+		@Override
+		public default int readArray(Object array, int offset, int length) {
+			return read((double[])array, offset, length);
+		}
+		@Override
+		public default boolean readAllArray(Object array, int offset) {
+			return readAll((double[])array, offset);
+		}
+		@Override
+		public default int writeArray(Object array, int offset, int length) {
+			return write((double[])array, offset, length);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.blob;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import java.util.Arrays;
+
+/**
+ * A bounded Buffer for exactly one reader thread and one writer thread, based
+ * on a circular array.
+ * <p/>
+ * Unlike ConcurrentArrayBuffer, no operation needs a compare-and-swap.  The
+ * reader and writer each own one index, published with an ordered (lazy)
+ * store, and keep a cached copy of the other's index so they only read the
+ * other's (contended) cache line when the cached value says the buffer is
+ * empty or full.  The indices are padded onto separate cache lines to avoid
+ * false sharing.  Bulk reads and writes move a whole chunk with one index
+ * update.
+ * <p/>
+ * Because index updates are ordered rather than volatile stores, a signal to a
+ * waiter registering concurrently with an update may be missed; as required
+ * by {@link SignallingBuffer}, waiters park with a timeout.
+ * <p/>
+ * Using this buffer with more than one concurrent reader or more than one
+ * concurrent writer will corrupt it.
+ * @since 10/18/2026
+ */
+public final class SPSCArrayBuffer extends SPSCArrayBufferBase {
+	private final Object[] elements;
+	public SPSCArrayBuffer(int capacity) {
+		super(capacity);
+		this.elements = new Object[mask + 1];
+	}
+
+	@Override
+	public Object read() {
+		long h = head;
+		if (readable(h, 1) == 0)
+			return null;
+		int i = (int)h & mask;
+		Object e = elements[i];
+		elements[i] = null;
+		consumed(h + 1);
+		return e;
+	}
+
+	@Override
+	public int read(Object[] data, int offset, int length) {
+		checkPositionIndexes(offset, offset + length, data.length);
+		long h = head;
+		int count = readable(h, length);
+		if (count == 0)
+			return 0;
+		copyOut(h, data, offset, count);
+		consumed(h + count);
+		return count;
+	}
+
+	@Override
+	public boolean readAll(Object[] data) {
+		return readAll(data, 0);
+	}
+
+	@Override
+	public boolean readAll(Object[] data, int offset) {
+		int required = checkReadAll(data.length - offset);
+		long h = head;
+		if (readable(h, required) < required)
+			return false;
+		copyOut(h, data, offset, required);
+		consumed(h + required);
+		return true;
+	}
+
+	private void copyOut(long h, Object[] data, int offset, int count) {
+		int begin = (int)h & mask;
+		int firstChunk = Math.min(count, elements.length - begin);
+		System.arraycopy(elements, begin, data, offset, firstChunk);
+		System.arraycopy(elements, 0, data, offset + firstChunk, count - firstChunk);
+		//Null out the slots so consumed items can be collected.
+		Arrays.fill(elements, begin, begin + firstChunk, null);
+		Arrays.fill(elements, 0, count - firstChunk, null);
+	}
+
+	@Override
+	public boolean write(Object t) {
+		if (t == null)
+			throw new NullPointerException();
+		long tl = tail;
+		if (writable(tl, 1) == 0)
+			return false;
+		elements[(int)tl & mask] = t;
+		produced(tl + 1);
+		return true;
+	}
+
+	@Override
+	public int write(Object[] data, int offset, int length) {
+		checkPositionIndexes(offset, offset + length, data.length);
+		long tl = tail;
+		int count = writable(tl, length);
+		if (count == 0)
+			return 0;
+		int begin = (int)tl & mask;
+		int firstChunk = Math.min(count, elements.length - begin);
+		System.arraycopy(data, offset, elements, begin, firstChunk);
+		System.arraycopy(data, offset + firstChunk, elements, 0, count - firstChunk);
+		produced(tl + count);
+		return count;
+	}
+}
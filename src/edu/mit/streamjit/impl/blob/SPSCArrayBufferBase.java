@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.blob;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+//Field layout: the JVM lays out superclass fields before subclass fields, so
+//splitting the fields across a class hierarchy keeps padding between the
+//reader's and writer's indices.  (@Contended requires a JVM flag.)
+
+abstract class SPSCArrayBufferPad0 {
+	long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+/**
+ * The reader's fields: head is written by the reader only; cachedTail is the
+ * reader's private copy of tail.
+ */
+abstract class SPSCArrayBufferHead extends SPSCArrayBufferPad0 {
+	volatile long head;
+	long cachedTail;
+}
+
+abstract class SPSCArrayBufferPad1 extends SPSCArrayBufferHead {
+	long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * The writer's fields: tail is written by the writer only; cachedHead is the
+ * writer's private copy of head.
+ */
+abstract class SPSCArrayBufferTail extends SPSCArrayBufferPad1 {
+	volatile long tail;
+	long cachedHead;
+}
+
+abstract class SPSCArrayBufferPad2 extends SPSCArrayBufferTail {
+	long p20, p21, p22, p23, p24, p25, p26, p27;
+}
+
+/**
+ * The parts of an SPSC ring buffer that don't depend on the element type:
+ * capacity, index publication, size and waiter signalling.  Subclasses own
+ * the element array (of length mask + 1).
+ * @since 10/18/2026
+ */
+abstract class SPSCArrayBufferBase extends SPSCArrayBufferPad2 implements SignallingBuffer {
+	static final AtomicLongFieldUpdater<SPSCArrayBufferHead> HEAD = AtomicLongFieldUpdater.newUpdater(SPSCArrayBufferHead.class, "head");
+	static final AtomicLongFieldUpdater<SPSCArrayBufferTail> TAIL = AtomicLongFieldUpdater.newUpdater(SPSCArrayBufferTail.class, "tail");
+	private static final AtomicReferenceFieldUpdater<SPSCArrayBufferBase, Thread> READ_WAITER = AtomicReferenceFieldUpdater.newUpdater(SPSCArrayBufferBase.class, Thread.class, "readWaiter");
+	private static final AtomicReferenceFieldUpdater<SPSCArrayBufferBase, Thread> WRITE_WAITER = AtomicReferenceFieldUpdater.newUpdater(SPSCArrayBufferBase.class, Thread.class, "writeWaiter");
+	final int capacity, mask;
+	volatile Thread readWaiter, writeWaiter;
+	SPSCArrayBufferBase(int capacity) {
+		checkArgument(capacity > 0, "capacity %s must be positive", capacity);
+		checkArgument(capacity <= 1 << 30, "capacity %s too large", capacity);
+		this.capacity = capacity;
+		//Round up to a power of two so we can mask instead of dividing.
+		int length = Integer.highestOneBit(capacity);
+		if (length < capacity)
+			length <<= 1;
+		this.mask = length - 1;
+	}
+
+	@Override
+	public final int size() {
+		//Read head first: it only increases, so if tail is read second, the
+		//difference is a lower bound for the reader and an upper bound for
+		//the writer, as required by Buffer.size().
+		long h = head;
+		return (int)(tail - h);
+	}
+
+	@Override
+	public final int capacity() {
+		return capacity;
+	}
+
+	@Override
+	public final void setReadWaiter(Thread waiter) {
+		this.readWaiter = waiter;
+	}
+
+	@Override
+	public final void setWriteWaiter(Thread waiter) {
+		this.writeWaiter = waiter;
+	}
+
+	/**
+	 * Returns how many of the wanted items the reader can read, rereading
+	 * tail only if the cached copy says there aren't enough.
+	 */
+	final int readable(long h, int wanted) {
+		long available = cachedTail - h;
+		if (available < wanted)
+			available = (cachedTail = tail) - h;
+		return (int)Math.min(available, wanted);
+	}
+
+	/**
+	 * Returns how many of the wanted items the writer can write, rereading
+	 * head only if the cached copy says there isn't enough space.
+	 */
+	final int writable(long t, int wanted) {
+		long free = capacity - (t - cachedHead);
+		if (free < wanted)
+			free = capacity - (t - (cachedHead = head));
+		return (int)Math.min(free, wanted);
+	}
+
+	/**
+	 * Checks an atomic read of the given size could ever succeed.
+	 */
+	final int checkReadAll(int required) {
+		if (required > capacity)
+			throw new IllegalArgumentException(String.format("%d items requested, but capacity is %d", required, capacity));
+		return required;
+	}
+
+	/**
+	 * Publishes the reader's new head and wakes a waiting writer.
+	 */
+	final void consumed(long newHead) {
+		HEAD.lazySet(this, newHead);
+		if (writeWaiter != null)
+			signalWriter();
+	}
+
+	/**
+	 * Publishes the writer's new tail and wakes a waiting reader.
+	 */
+	final void produced(long newTail) {
+		TAIL.lazySet(this, newTail);
+		if (readWaiter != null)
+			signalReader();
+	}
+
+	private void signalReader() {
+		//Take the waiter atomically: clearing it after reading could erase a
+		//registration made in between, losing that waiter's wakeup.
+		Thread t = READ_WAITER.getAndSet(this, null);
+		if (t != null)
+			LockSupport.unpark(t);
+	}
+
+	private void signalWriter() {
+		Thread t = WRITE_WAITER.getAndSet(this, null);
+		if (t != null)
+			LockSupport.unpark(t);
+	}
+}
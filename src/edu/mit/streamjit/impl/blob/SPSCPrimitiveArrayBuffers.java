@@ -0,0 +1,623 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.blob;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import com.google.common.collect.ImmutableList;
+import edu.mit.streamjit.util.Template;
+
+/**
+ * Creates single-producer/single-consumer ring buffers storing unboxed
+ * primitives.  They behave like {@link SPSCArrayBuffer} but also implement the
+ * appropriate {@link PrimitiveBuffer} specialization, so a blob storing
+ * unboxed data can move items across the edge without boxing them.
+ * <p/>
+ * Like NIOBuffers, this class uses code generation to stamp out one class per
+ * primitive type.
+ * @since 10/18/2026
+ */
+public final class SPSCPrimitiveArrayBuffers {
+	private SPSCPrimitiveArrayBuffers() {}
+
+	/**
+	 * Returns true if this class can create a buffer for the given type.
+	 * @param type a type
+	 * @return true iff {@link #create(Class, int)} supports the given type
+	 */
+	public static boolean supports(Class<?> type) {
+		for (CodeGenRecord r : RECORDS)
+			if (r.prim.equals(type.getName()))
+				return true;
+		return false;
+	}
+
+	//<editor-fold defaultstate="collapsed" desc="Code generator">
+	private static final class CodeGenRecord {
+		private final String prim, Prim, wrapper;
+		private CodeGenRecord(Class<?> primitive, Class<?> wrapper) {
+			this.prim = primitive.getName();
+			this.Prim = Character.toUpperCase(prim.charAt(0)) + prim.substring(1);
+			this.wrapper = wrapper.getSimpleName();
+		}
+	}
+
+	private static final ImmutableList<CodeGenRecord> RECORDS = ImmutableList.of(
+			new CodeGenRecord(int.class, Integer.class),
+			new CodeGenRecord(long.class, Long.class),
+			new CodeGenRecord(float.class, Float.class),
+			new CodeGenRecord(double.class, Double.class)
+			);
+
+	private static final String BUFFER_TEMPLATE =
+			"	private static final class SPSC${Prim}ArrayBuffer extends SPSCArrayBufferBase implements PrimitiveBuffer.Of${Prim} {\n"+
+			"		private final ${prim}[] elements;\n"+
+			"		private SPSC${Prim}ArrayBuffer(int capacity) {\n"+
+			"			super(capacity);\n"+
+			"			this.elements = new ${prim}[mask + 1];\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public Object read() {\n"+
+			"			long h = head;\n"+
+			"			if (readable(h, 1) == 0)\n"+
+			"				return null;\n"+
+			"			${prim} e = elements[(int)h & mask];\n"+
+			"			consumed(h + 1);\n"+
+			"			return e;\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public int read(Object[] data, int offset, int length) {\n"+
+			"			checkPositionIndexes(offset, offset + length, data.length);\n"+
+			"			long h = head;\n"+
+			"			int count = readable(h, length);\n"+
+			"			for (int i = 0; i < count; ++i)\n"+
+			"				data[offset + i] = elements[(int)(h + i) & mask];\n"+
+			"			if (count > 0)\n"+
+			"				consumed(h + count);\n"+
+			"			return count;\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public boolean readAll(Object[] data) {\n"+
+			"			return readAll(data, 0);\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public boolean readAll(Object[] data, int offset) {\n"+
+			"			int required = checkReadAll(data.length - offset);\n"+
+			"			long h = head;\n"+
+			"			if (readable(h, required) < required)\n"+
+			"				return false;\n"+
+			"			for (int i = 0; i < required; ++i)\n"+
+			"				data[offset + i] = elements[(int)(h + i) & mask];\n"+
+			"			consumed(h + required);\n"+
+			"			return true;\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public int read(${prim}[] data, int offset, int length) {\n"+
+			"			checkPositionIndexes(offset, offset + length, data.length);\n"+
+			"			long h = head;\n"+
+			"			int count = readable(h, length);\n"+
+			"			if (count == 0)\n"+
+			"				return 0;\n"+
+			"			copyOut(h, data, offset, count);\n"+
+			"			consumed(h + count);\n"+
+			"			return count;\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public boolean readAll(${prim}[] data, int offset) {\n"+
+			"			int required = checkReadAll(data.length - offset);\n"+
+			"			long h = head;\n"+
+			"			if (readable(h, required) < required)\n"+
+			"				return false;\n"+
+			"			copyOut(h, data, offset, required);\n"+
+			"			consumed(h + required);\n"+
+			"			return true;\n"+
+			"		}\n"+
+			"		private void copyOut(long h, ${prim}[] data, int offset, int count) {\n"+
+			"			int begin = (int)h & mask;\n"+
+			"			int firstChunk = Math.min(count, elements.length - begin);\n"+
+			"			System.arraycopy(elements, begin, data, offset, firstChunk);\n"+
+			"			System.arraycopy(elements, 0, data, offset + firstChunk, count - firstChunk);\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public boolean write(Object t) {\n"+
+			"			${prim} v = (${wrapper})t;\n"+
+			"			long tl = tail;\n"+
+			"			if (writable(tl, 1) == 0)\n"+
+			"				return false;\n"+
+			"			elements[(int)tl & mask] = v;\n"+
+			"			produced(tl + 1);\n"+
+			"			return true;\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public int write(Object[] data, int offset, int length) {\n"+
+			"			checkPositionIndexes(offset, offset + length, data.length);\n"+
+			"			long tl = tail;\n"+
+			"			int count = writable(tl, length);\n"+
+			"			for (int i = 0; i < count; ++i)\n"+
+			"				elements[(int)(tl + i) & mask] = (${wrapper})data[offset + i];\n"+
+			"			if (count > 0)\n"+
+			"				produced(tl + count);\n"+
+			"			return count;\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public int write(${prim}[] data, int offset, int length) {\n"+
+			"			checkPositionIndexes(offset, offset + length, data.length);\n"+
+			"			long tl = tail;\n"+
+			"			int count = writable(tl, length);\n"+
+			"			if (count == 0)\n"+
+			"				return 0;\n"+
+			"			int begin = (int)tl & mask;\n"+
+			"			int firstChunk = Math.min(count, elements.length - begin);\n"+
+			"			System.arraycopy(data, offset, elements, begin, firstChunk);\n"+
+			"			System.arraycopy(data, offset + firstChunk, elements, 0, count - firstChunk);\n"+
+			"			produced(tl + count);\n"+
+			"			return count;\n"+
+			"		}\n"+
+			"	}\n";
+	private static final String CREATE_HEADER =
+			"	public static PrimitiveBuffer create(Class<?> type, int capacity) {\n";
+	private static final String CREATE_PER_RECORD =
+			"		if (type == ${prim}.class) return new SPSC${Prim}ArrayBuffer(capacity);\n";
+	private static final String CREATE_FOOTER =
+			"		throw new IllegalArgumentException(\"unsupported type: \"+type);\n"+
+			"	}\n";
+
+	public static void main(String[] args) {
+		StringBuffer sb = new StringBuffer();
+		sb.append("	//<editor-fold defaultstate=\"collapsed\" desc=\"Generated code\">\n");
+		sb.append(CREATE_HEADER);
+		Template ifReturn = new Template(CREATE_PER_RECORD);
+		ifReturn.replaceReflect(RECORDS, sb);
+		sb.append(CREATE_FOOTER);
+		Template bufferClass = new Template(BUFFER_TEMPLATE);
+		bufferClass.replaceReflect(RECORDS, sb);
+		sb.append("	//</editor-fold>\n");
+		System.out.println(sb.toString());
+		System.out.flush();
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Generated code">
+	public static PrimitiveBuffer create(Class<?> type, int capacity) {
+		if (type == int.class) return new SPSCIntArrayBuffer(capacity);
+		if (type == long.class) return new SPSCLongArrayBuffer(capacity);
+		if (type == float.class) return new SPSCFloatArrayBuffer(capacity);
+		if (type == double.class) return new SPSCDoubleArrayBuffer(capacity);
+		throw new IllegalArgumentException("unsupported type: "+type);
+	}
+	private static final class SPSCIntArrayBuffer extends SPSCArrayBufferBase implements PrimitiveBuffer.OfInt {
+		private final int[] elements;
+		private SPSCIntArrayBuffer(int capacity) {
+			super(capacity);
+			this.elements = new int[mask + 1];
+		}
+		@Override
+		public Object read() {
+			long h = head;
+			if (readable(h, 1) == 0)
+				return null;
+			int e = elements[(int)h & mask];
+			consumed(h + 1);
+			return e;
+		}
+		@Override
+		public int read(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long h = head;
+			int count = readable(h, length);
+			for (int i = 0; i < count; ++i)
+				data[offset + i] = elements[(int)(h + i) & mask];
+			if (count > 0)
+				consumed(h + count);
+			return count;
+		}
+		@Override
+		public boolean readAll(Object[] data) {
+			return readAll(data, 0);
+		}
+		@Override
+		public boolean readAll(Object[] data, int offset) {
+			int required = checkReadAll(data.length - offset);
+			long h = head;
+			if (readable(h, required) < required)
+				return false;
+			for (int i = 0; i < required; ++i)
+				data[offset + i] = elements[(int)(h + i) & mask];
+			consumed(h + required);
+			return true;
+		}
+		@Override
+		public int read(int[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long h = head;
+			int count = readable(h, length);
+			if (count == 0)
+				return 0;
+			copyOut(h, data, offset, count);
+			consumed(h + count);
+			return count;
+		}
+		@Override
+		public boolean readAll(int[] data, int offset) {
+			int required = checkReadAll(data.length - offset);
+			long h = head;
+			if (readable(h, required) < required)
+				return false;
+			copyOut(h, data, offset, required);
+			consumed(h + required);
+			return true;
+		}
+		private void copyOut(long h, int[] data, int offset, int count) {
+			int begin = (int)h & mask;
+			int firstChunk = Math.min(count, elements.length - begin);
+			System.arraycopy(elements, begin, data, offset, firstChunk);
+			System.arraycopy(elements, 0, data, offset + firstChunk, count - firstChunk);
+		}
+		@Override
+		public boolean write(Object t) {
+			int v = (Integer)t;
+			long tl = tail;
+			if (writable(tl, 1) == 0)
+				return false;
+			elements[(int)tl & mask] = v;
+			produced(tl + 1);
+			return true;
+		}
+		@Override
+		public int write(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long tl = tail;
+			int count = writable(tl, length);
+			for (int i = 0; i < count; ++i)
+				elements[(int)(tl + i) & mask] = (Integer)data[offset + i];
+			if (count > 0)
+				produced(tl + count);
+			return count;
+		}
+		@Override
+		public int write(int[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long tl = tail;
+			int count = writable(tl, length);
+			if (count == 0)
+				return 0;
+			int begin = (int)tl & mask;
+			int firstChunk = Math.min(count, elements.length - begin);
+			System.arraycopy(data, offset, elements, begin, firstChunk);
+			System.arraycopy(data, offset + firstChunk, elements, 0, count - firstChunk);
+			produced(tl + count);
+			return count;
+		}
+	}
+	private static final class SPSCLongArrayBuffer extends SPSCArrayBufferBase implements PrimitiveBuffer.OfLong {
+		private final long[] elements;
+		private SPSCLongArrayBuffer(int capacity) {
+			super(capacity);
+			this.elements = new long[mask + 1];
+		}
+		@Override
+		public Object read() {
+			long h = head;
+			if (readable(h, 1) == 0)
+				return null;
+			long e = elements[(int)h & mask];
+			consumed(h + 1);
+			return e;
+		}
+		@Override
+		public int read(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long h = head;
+			int count = readable(h, length);
+			for (int i = 0; i < count; ++i)
+				data[offset + i] = elements[(int)(h + i) & mask];
+			if (count > 0)
+				consumed(h + count);
+			return count;
+		}
+		@Override
+		public boolean readAll(Object[] data) {
+			return readAll(data, 0);
+		}
+		@Override
+		public boolean readAll(Object[] data, int offset) {
+			int required = checkReadAll(data.length - offset);
+			long h = head;
+			if (readable(h, required) < required)
+				return false;
+			for (int i = 0; i < required; ++i)
+				data[offset + i] = elements[(int)(h + i) & mask];
+			consumed(h + required);
+			return true;
+		}
+		@Override
+		public int read(long[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long h = head;
+			int count = readable(h, length);
+			if (count == 0)
+				return 0;
+			copyOut(h, data, offset, count);
+			consumed(h + count);
+			return count;
+		}
+		@Override
+		public boolean readAll(long[] data, int offset) {
+			int required = checkReadAll(data.length - offset);
+			long h = head;
+			if (readable(h, required) < required)
+				return false;
+			copyOut(h, data, offset, required);
+			consumed(h + required);
+			return true;
+		}
+		private void copyOut(long h, long[] data, int offset, int count) {
+			int begin = (int)h & mask;
+			int firstChunk = Math.min(count, elements.length - begin);
+			System.arraycopy(elements, begin, data, offset, firstChunk);
+			System.arraycopy(elements, 0, data, offset + firstChunk, count - firstChunk);
+		}
+		@Override
+		public boolean write(Object t) {
+			long v = (Long)t;
+			long tl = tail;
+			if (writable(tl, 1) == 0)
+				return false;
+			elements[(int)tl & mask] = v;
+			produced(tl + 1);
+			return true;
+		}
+		@Override
+		public int write(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long tl = tail;
+			int count = writable(tl, length);
+			for (int i = 0; i < count; ++i)
+				elements[(int)(tl + i) & mask] = (Long)data[offset + i];
+			if (count > 0)
+				produced(tl + count);
+			return count;
+		}
+		@Override
+		public int write(long[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long tl = tail;
+			int count = writable(tl, length);
+			if (count == 0)
+				return 0;
+			int begin = (int)tl & mask;
+			int firstChunk = Math.min(count, elements.length - begin);
+			System.arraycopy(data, offset, elements, begin, firstChunk);
+			System.arraycopy(data, offset + firstChunk, elements, 0, count - firstChunk);
+			produced(tl + count);
+			return count;
+		}
+	}
+	private static final class SPSCFloatArrayBuffer extends SPSCArrayBufferBase implements PrimitiveBuffer.OfFloat {
+		private final float[] elements;
+		private SPSCFloatArrayBuffer(int capacity) {
+			super(capacity);
+			this.elements = new float[mask + 1];
+		}
+		@Override
+		public Object read() {
+			long h = head;
+			if (readable(h, 1) == 0)
+				return null;
+			float e = elements[(int)h & mask];
+			consumed(h + 1);
+			return e;
+		}
+		@Override
+		public int read(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long h = head;
+			int count = readable(h, length);
+			for (int i = 0; i < count; ++i)
+				data[offset + i] = elements[(int)(h + i) & mask];
+			if (count > 0)
+				consumed(h + count);
+			return count;
+		}
+		@Override
+		public boolean readAll(Object[] data) {
+			return readAll(data, 0);
+		}
+		@Override
+		public boolean readAll(Object[] data, int offset) {
+			int required = checkReadAll(data.length - offset);
+			long h = head;
+			if (readable(h, required) < required)
+				return false;
+			for (int i = 0; i < required; ++i)
+				data[offset + i] = elements[(int)(h + i) & mask];
+			consumed(h + required);
+			return true;
+		}
+		@Override
+		public int read(float[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long h = head;
+			int count = readable(h, length);
+			if (count == 0)
+				return 0;
+			copyOut(h, data, offset, count);
+			consumed(h + count);
+			return count;
+		}
+		@Override
+		public boolean readAll(float[] data, int offset) {
+			int required = checkReadAll(data.length - offset);
+			long h = head;
+			if (readable(h, required) < required)
+				return false;
+			copyOut(h, data, offset, required);
+			consumed(h + required);
+			return true;
+		}
+		private void copyOut(long h, float[] data, int offset, int count) {
+			int begin = (int)h & mask;
+			int firstChunk = Math.min(count, elements.length - begin);
+			System.arraycopy(elements, begin, data, offset, firstChunk);
+			System.arraycopy(elements, 0, data, offset + firstChunk, count - firstChunk);
+		}
+		@Override
+		public boolean write(Object t) {
+			float v = (Float)t;
+			long tl = tail;
+			if (writable(tl, 1) == 0)
+				return false;
+			elements[(int)tl & mask] = v;
+			produced(tl + 1);
+			return true;
+		}
+		@Override
+		public int write(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long tl = tail;
+			int count = writable(tl, length);
+			for (int i = 0; i < count; ++i)
+				elements[(int)(tl + i) & mask] = (Float)data[offset + i];
+			if (count > 0)
+				produced(tl + count);
+			return count;
+		}
+		@Override
+		public int write(float[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long tl = tail;
+			int count = writable(tl, length);
+			if (count == 0)
+				return 0;
+			int begin = (int)tl & mask;
+			int firstChunk = Math.min(count, elements.length - begin);
+			System.arraycopy(data, offset, elements, begin, firstChunk);
+			System.arraycopy(data, offset + firstChunk, elements, 0, count - firstChunk);
+			produced(tl + count);
+			return count;
+		}
+	}
+	private static final class SPSCDoubleArrayBuffer extends SPSCArrayBufferBase implements PrimitiveBuffer.OfDouble {
+		private final double[] elements;
+		private SPSCDoubleArrayBuffer(int capacity) {
+			super(capacity);
+			this.elements = new double[mask + 1];
+		}
+		@Override
+		public Object read() {
+			long h = head;
+			if (readable(h, 1) == 0)
+				return null;
+			double e = elements[(int)h & mask];
+			consumed(h + 1);
+			return e;
+		}
+		@Override
+		public int read(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long h = head;
+			int count = readable(h, length);
+			for (int i = 0; i < count; ++i)
+				data[offset + i] = elements[(int)(h + i) & mask];
+			if (count > 0)
+				consumed(h + count);
+			return count;
+		}
+		@Override
+		public boolean readAll(Object[] data) {
+			return readAll(data, 0);
+		}
+		@Override
+		public boolean readAll(Object[] data, int offset) {
+			int required = checkReadAll(data.length - offset);
+			long h = head;
+			if (readable(h, required) < required)
+				return false;
+			for (int i = 0; i < required; ++i)
+				data[offset + i] = elements[(int)(h + i) & mask];
+			consumed(h + required);
+			return true;
+		}
+		@Override
+		public int read(double[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long h = head;
+			int count = readable(h, length);
+			if (count == 0)
+				return 0;
+			copyOut(h, data, offset, count);
+			consumed(h + count);
+			return count;
+		}
+		@Override
+		public boolean readAll(double[] data, int offset) {
+			int required = checkReadAll(data.length - offset);
+			long h = head;
+			if (readable(h, required) < required)
+				return false;
+			copyOut(h, data, offset, required);
+			consumed(h + required);
+			return true;
+		}
+		private void copyOut(long h, double[] data, int offset, int count) {
+			int begin = (int)h & mask;
+			int firstChunk = Math.min(count, elements.length - begin);
+			System.arraycopy(elements, begin, data, offset, firstChunk);
+			System.arraycopy(elements, 0, data, offset + firstChunk, count - firstChunk);
+		}
+		@Override
+		public boolean write(Object t) {
+			double v = (Double)t;
+			long tl = tail;
+			if (writable(tl, 1) == 0)
+				return false;
+			elements[(int)tl & mask] = v;
+			produced(tl + 1);
+			return true;
+		}
+		@Override
+		public int write(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long tl = tail;
+			int count = writable(tl, length);
+			for (int i = 0; i < count; ++i)
+				elements[(int)(tl + i) & mask] = (Double)data[offset + i];
+			if (count > 0)
+				produced(tl + count);
+			return count;
+		}
+		@Override
+		public int write(double[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			long tl = tail;
+			int count = writable(tl, length);
+			if (count == 0)
+				return 0;
+			int begin = (int)tl & mask;
+			int firstChunk = Math.min(count, elements.length - begin);
+			System.arraycopy(data, offset, elements, begin, firstChunk);
+			System.arraycopy(data, offset + firstChunk, elements, 0, count - firstChunk);
+			produced(tl + count);
+			return count;
+		}
+	}
+	//</editor-fold>
+}
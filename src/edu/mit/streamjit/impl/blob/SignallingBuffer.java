@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.blob;
+
+/**
+ * A Buffer that can wake a parked reader or writer when it makes progress.
+ * <p/>
+ * A waiter registers itself, rechecks the buffer, and only then parks, so a
+ * wakeup cannot be lost between the failed check and the park.  Registrations
+ * are one-shot: the buffer clears the waiter when it unparks it, so producers
+ * and consumers pay only a volatile read per operation while nobody is
+ * waiting.  Waiters should still park with a timeout, as other parties (e.g.,
+ * a drain request) may need them to wake up.
+ * @since 10/18/2026
+ */
+public interface SignallingBuffer extends Buffer {
+	/**
+	 * Registers the given thread to be unparked the next time items are
+	 * written to this buffer.
+	 * @param waiter the thread to unpark
+	 */
+	public void setReadWaiter(Thread waiter);
+
+	/**
+	 * Registers the given thread to be unparked the next time items are read
+	 * from this buffer (thus freeing space).
+	 * @param waiter the thread to unpark
+	 */
+	public void setWriteWaiter(Thread waiter);
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.blob;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Controls how a thread waits for a Buffer to become readable or writable.
+ * Each strategy spins first (so data flowing at full speed sees no extra
+ * latency), then progressively backs off.
+ * <p/>
+ * Callers retry their operation in a loop, calling
+ * {@link #idle(int, List, boolean)} with the number of failed attempts so far
+ * after each failure.
+ * @since 10/18/2026
+ */
+public enum WaitStrategy {
+	/**
+	 * Busy-spin forever.  Lowest latency, but burns a core while idle.
+	 */
+	SPIN(Integer.MAX_VALUE, 0),
+	/**
+	 * Spin, then yield the processor between attempts.
+	 */
+	YIELD(WaitStrategy.SPIN_ATTEMPTS, Integer.MAX_VALUE),
+	/**
+	 * Spin, then yield, then park until a {@link SignallingBuffer} signals
+	 * progress (or a short timeout expires, for buffers that don't signal).
+	 */
+	PARK(WaitStrategy.SPIN_ATTEMPTS, WaitStrategy.YIELD_ATTEMPTS);
+
+	private static final int SPIN_ATTEMPTS = 1 << 10;
+	private static final int YIELD_ATTEMPTS = 1 << 6;
+	private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private final int spinAttempts, yieldAttempts;
+	private WaitStrategy(int spinAttempts, int yieldAttempts) {
+		this.spinAttempts = spinAttempts;
+		this.yieldAttempts = yieldAttempts;
+	}
+
+	/**
+	 * Waits after a failed read from or write to the given buffers.
+	 * <p/>
+	 * When parking, this method alternates between registering the current
+	 * thread with the buffers (returning immediately so the caller rechecks)
+	 * and actually parking, so wakeups are not lost.
+	 * @param attempt the number of failed attempts so far (starting from 0)
+	 * @param buffers the buffers being waited on
+	 * @param reading true if waiting to read, false if waiting to write
+	 */
+	public void idle(int attempt, List<Buffer> buffers, boolean reading) {
+		if (attempt < spinAttempts)
+			return;
+		attempt -= spinAttempts;
+		if (attempt < yieldAttempts) {
+			Thread.yield();
+			return;
+		}
+		attempt -= yieldAttempts;
+		if ((attempt & 1) == 0) {
+			Thread self = Thread.currentThread();
+			for (int i = 0; i < buffers.size(); ++i) {
+				Buffer b = buffers.get(i);
+				if (b instanceof SignallingBuffer)
+					if (reading)
+						((SignallingBuffer)b).setReadWaiter(self);
+					else
+						((SignallingBuffer)b).setWriteWaiter(self);
+			}
+		} else
+			LockSupport.parkNanos(this, PARK_NANOS);
+	}
+}
@@ -38,6 +38,8 @@ import edu.mit.streamjit.impl.blob.BlobFactory;
 import edu.mit.streamjit.impl.blob.Buffer;
 import edu.mit.streamjit.impl.blob.Buffers;
 import edu.mit.streamjit.util.affinity.Affinity;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CountDownLatch;
@@ -93,7 +95,7 @@ public class BlobHostStreamCompiler implements StreamCompiler {
 		}
 		ImmutableList<PollingCoreThread> threads = threadsBuilder.build();
 
-		final BlobHostCompiledStream cs = new BlobHostCompiledStream(blob, threads);
+		final BlobHostCompiledStream cs = new BlobHostCompiledStream(blob, threads, inputBuffer, outputBuffer);
 		if (input instanceof ManualInput)
 			InputBufferFactory.setManualInputDelegate((ManualInput<I>)input, new InputBufferFactory.AbstractManualInputDelegate<I>(inputBuffer) {
 				@Override
@@ -158,17 +160,37 @@ public class BlobHostStreamCompiler implements StreamCompiler {
 	private static final class BlobHostCompiledStream implements CompiledStream {
 		private final Blob blob;
 		private final ImmutableList<PollingCoreThread> threads;
+		/**
+		 * The overall input and output buffers we created, or null.  Closed
+		 * (if Closeable) once the blob has drained.
+		 */
+		private final Buffer inputBuffer, outputBuffer;
 		private final CountDownLatch latch;
-		private BlobHostCompiledStream(Blob blob, ImmutableList<PollingCoreThread> threads) {
+		private BlobHostCompiledStream(Blob blob, ImmutableList<PollingCoreThread> threads, Buffer inputBuffer, Buffer outputBuffer) {
 			this.blob = blob;
 			this.threads = threads;
+			this.inputBuffer = inputBuffer;
+			this.outputBuffer = outputBuffer;
 			this.latch = new CountDownLatch(this.threads.size());
 			for (PollingCoreThread t : this.threads)
 				t.latch = this.latch;
 		}
 
 		private void drain() {
-			blob.drain(() -> threads.forEach(PollingCoreThread::requestStop));
+			blob.drain(() -> {
+				close(inputBuffer);
+				close(outputBuffer);
+				threads.forEach(PollingCoreThread::requestStop);
+			});
+		}
+
+		private static void close(Buffer buffer) {
+			if (buffer instanceof Closeable)
+				try {
+					((Closeable)buffer).close();
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
 		}
 
 		@Override
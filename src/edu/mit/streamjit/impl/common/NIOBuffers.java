@@ -21,11 +21,19 @@
  */
 package edu.mit.streamjit.impl.common;
 
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
 import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Primitives;
 import edu.mit.streamjit.impl.blob.AbstractReadOnlyBuffer;
+import edu.mit.streamjit.impl.blob.AbstractWriteOnlyBuffer;
 import edu.mit.streamjit.impl.blob.Buffer;
 import edu.mit.streamjit.impl.blob.PeekableBuffer;
+import edu.mit.streamjit.impl.blob.PrimitiveBuffer;
 import edu.mit.streamjit.util.Template;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
@@ -34,9 +42,13 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.ShortBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Creates Buffer instances wrapping java.nio.Buffers of a particular type.
+ * Readable buffers wrap a ByteBuffer holding all the data; writable buffers
+ * accumulate data in a staging ByteBuffer and write it to a channel whenever
+ * the staging buffer fills and when flushed or closed.
  * <p/>
  * This class uses code generation to work around the fact that NIO provides
  * ByteBuffer, IntBuffer etc. rather than Buffer<Byte>, Buffer<Integer> etc.
@@ -50,10 +62,17 @@ public final class NIOBuffers {
 	private static final class CodeGenRecord {
 		private final String buffer, wrapper;
 		private final String toTypeBuffer;
+		private final String prim, primitiveInterface;
 		private CodeGenRecord(Class<?> buffer, Class<?> wrapper) {
 			this.buffer = buffer.getSimpleName();
 			this.wrapper = wrapper.getSimpleName();
 			this.toTypeBuffer = buffer == ByteBuffer.class ? "" : ".as"+buffer.getSimpleName()+"()";
+			this.prim = Primitives.unwrap(wrapper).getName();
+			String prim = Character.toUpperCase(this.prim.charAt(0)) + this.prim.substring(1);
+			this.primitiveInterface = hasPrimitiveBuffer() ? ", PrimitiveBuffer.Of"+prim : "";
+		}
+		private boolean hasPrimitiveBuffer() {
+			return prim.equals("int") || prim.equals("long") || prim.equals("float") || prim.equals("double");
 		}
 	}
 
@@ -68,7 +87,7 @@ public final class NIOBuffers {
 			);
 
 	private static final String BUFFER_TEMPLATE =
-			"	private static final class ${buffer}Buffer extends AbstractReadOnlyBuffer implements PeekableBuffer{\n"+
+			"	private static final class ${buffer}Buffer extends AbstractReadOnlyBuffer implements PeekableBuffer${primitiveInterface}{\n"+
 			"		private final ${buffer} buffer;\n"+
 			"		private ${buffer}Buffer(${buffer} buffer) {\n"+
 			"			this.buffer = buffer;\n"+
@@ -92,8 +111,103 @@ public final class NIOBuffers {
 			"		@Override\n"+
 			"		public void consume(int items) {\n"+
 			"			buffer.position(buffer.position() + items);\n"+
+			"		}\n";
+	private static final String PRIMITIVE_BUFFER_TEMPLATE =
+			"		@Override\n"+
+			"		public int read(${prim}[] data, int offset, int length) {\n"+
+			"			checkPositionIndexes(offset, offset + length, data.length);\n"+
+			"			int count = Math.min(length, buffer.remaining());\n"+
+			"			buffer.get(data, offset, count);\n"+
+			"			return count;\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public boolean readAll(${prim}[] data, int offset) {\n"+
+			"			checkPositionIndex(offset, data.length);\n"+
+			"			if (buffer.remaining() < data.length - offset)\n"+
+			"				return false;\n"+
+			"			buffer.get(data, offset, data.length - offset);\n"+
+			"			return true;\n"+
 			"		}\n"+
+			"		@Override\n"+
+			"		public int write(${prim}[] data, int offset, int length) {\n"+
+			"			throw new UnsupportedOperationException(\"read-only buffer\");\n"+
+			"		}\n";
+	private static final String BUFFER_FOOTER =
 			"	}\n";
+	private static final String WRAP_CHANNEL_HEADER =
+			"	public static Buffer wrapChannel(WritableByteChannel channel, ByteBuffer staging, Class<?> type) {\n";
+	private static final String WRAP_CHANNEL_PER_RECORD =
+			"		if (type == ${wrapper}.class) return new ${buffer}ChannelBuffer(channel, staging);\n";
+	private static final String CHANNEL_BUFFER_TEMPLATE =
+			"	private static final class ${buffer}ChannelBuffer extends AbstractWriteOnlyBuffer implements Closeable, Flushable${primitiveInterface}{\n"+
+			"		private final WritableByteChannel channel;\n"+
+			"		private final ByteBuffer staging;\n"+
+			"		private final ${buffer} buffer;\n"+
+			"		private ${buffer}ChannelBuffer(WritableByteChannel channel, ByteBuffer staging) {\n"+
+			"			this.channel = channel;\n"+
+			"			this.staging = staging;\n"+
+			"			this.buffer = staging${toTypeBuffer};\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public boolean write(Object t) {\n"+
+			"			if (!buffer.hasRemaining())\n"+
+			"				drainStaging();\n"+
+			"			buffer.put((${wrapper})t);\n"+
+			"			return true;\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public int write(Object[] data, int offset, int length) {\n"+
+			"			checkPositionIndexes(offset, offset + length, data.length);\n"+
+			"			for (int i = offset; i < offset + length; ++i) {\n"+
+			"				if (!buffer.hasRemaining())\n"+
+			"					drainStaging();\n"+
+			"				buffer.put((${wrapper})data[i]);\n"+
+			"			}\n"+
+			"			return length;\n"+
+			"		}\n"+
+			"		private void drainStaging() {\n"+
+			"			int bytes = buffer.position() * ${wrapper}.BYTES;\n"+
+			"			staging.position(0).limit(bytes);\n"+
+			"			try {\n"+
+			"				while (staging.hasRemaining())\n"+
+			"					channel.write(staging);\n"+
+			"			} catch (IOException ex) {\n"+
+			"				throw new RuntimeException(ex);\n"+
+			"			}\n"+
+			"			staging.clear();\n"+
+			"			buffer.clear();\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public void flush() {\n"+
+			"			drainStaging();\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public void close() throws IOException {\n"+
+			"			if (!channel.isOpen()) return;\n"+
+			"			drainStaging();\n"+
+			"			channel.close();\n"+
+			"		}\n";
+	private static final String CHANNEL_PRIMITIVE_BUFFER_TEMPLATE =
+			"		@Override\n"+
+			"		public int read(${prim}[] data, int offset, int length) {\n"+
+			"			throw new UnsupportedOperationException(\"write-only buffer\");\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public boolean readAll(${prim}[] data, int offset) {\n"+
+			"			throw new UnsupportedOperationException(\"write-only buffer\");\n"+
+			"		}\n"+
+			"		@Override\n"+
+			"		public int write(${prim}[] data, int offset, int length) {\n"+
+			"			checkPositionIndexes(offset, offset + length, data.length);\n"+
+			"			for (int written = 0; written < length;) {\n"+
+			"				if (!buffer.hasRemaining())\n"+
+			"					drainStaging();\n"+
+			"				int count = Math.min(length - written, buffer.remaining());\n"+
+			"				buffer.put(data, offset + written, count);\n"+
+			"				written += count;\n"+
+			"			}\n"+
+			"			return length;\n"+
+			"		}\n";
 	private static final String WRAP_HEADER =
 			"	public static Buffer wrap(ByteBuffer buffer, Class<?> type) {\n";
 	private static final String WRAP_PER_RECORD =
@@ -110,7 +224,25 @@ public final class NIOBuffers {
 		ifReturn.replaceReflect(RECORDS, sb);
 		sb.append(WRAP_FOOTER);
 		Template bufferClass = new Template(BUFFER_TEMPLATE);
-		bufferClass.replaceReflect(RECORDS, sb);
+		Template primitiveMethods = new Template(PRIMITIVE_BUFFER_TEMPLATE);
+		for (CodeGenRecord r : RECORDS) {
+			bufferClass.replaceReflect(r, sb);
+			if (r.hasPrimitiveBuffer())
+				primitiveMethods.replaceReflect(r, sb);
+			sb.append(BUFFER_FOOTER);
+		}
+		sb.append(WRAP_CHANNEL_HEADER);
+		Template channelIfReturn = new Template(WRAP_CHANNEL_PER_RECORD);
+		channelIfReturn.replaceReflect(RECORDS, sb);
+		sb.append(WRAP_FOOTER);
+		Template channelBufferClass = new Template(CHANNEL_BUFFER_TEMPLATE);
+		Template channelPrimitiveMethods = new Template(CHANNEL_PRIMITIVE_BUFFER_TEMPLATE);
+		for (CodeGenRecord r : RECORDS) {
+			channelBufferClass.replaceReflect(r, sb);
+			if (r.hasPrimitiveBuffer())
+				channelPrimitiveMethods.replaceReflect(r, sb);
+			sb.append(BUFFER_FOOTER);
+		}
 		sb.append("	//</editor-fold>\n");
 		System.out.println(sb.toString());
 		System.out.flush();
@@ -206,7 +338,7 @@ public final class NIOBuffers {
 			buffer.position(buffer.position() + items);
 		}
 	}
-	private static final class IntBufferBuffer extends AbstractReadOnlyBuffer implements PeekableBuffer{
+	private static final class IntBufferBuffer extends AbstractReadOnlyBuffer implements PeekableBuffer, PrimitiveBuffer.OfInt{
 		private final IntBuffer buffer;
 		private IntBufferBuffer(IntBuffer buffer) {
 			this.buffer = buffer;
@@ -231,8 +363,27 @@ public final class NIOBuffers {
 		public void consume(int items) {
 			buffer.position(buffer.position() + items);
 		}
+		@Override
+		public int read(int[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(data, offset, count);
+			return count;
+		}
+		@Override
+		public boolean readAll(int[] data, int offset) {
+			checkPositionIndex(offset, data.length);
+			if (buffer.remaining() < data.length - offset)
+				return false;
+			buffer.get(data, offset, data.length - offset);
+			return true;
+		}
+		@Override
+		public int write(int[] data, int offset, int length) {
+			throw new UnsupportedOperationException("read-only buffer");
+		}
 	}
-	private static final class LongBufferBuffer extends AbstractReadOnlyBuffer implements PeekableBuffer{
+	private static final class LongBufferBuffer extends AbstractReadOnlyBuffer implements PeekableBuffer, PrimitiveBuffer.OfLong{
 		private final LongBuffer buffer;
 		private LongBufferBuffer(LongBuffer buffer) {
 			this.buffer = buffer;
@@ -257,8 +408,27 @@ public final class NIOBuffers {
 		public void consume(int items) {
 			buffer.position(buffer.position() + items);
 		}
+		@Override
+		public int read(long[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(data, offset, count);
+			return count;
+		}
+		@Override
+		public boolean readAll(long[] data, int offset) {
+			checkPositionIndex(offset, data.length);
+			if (buffer.remaining() < data.length - offset)
+				return false;
+			buffer.get(data, offset, data.length - offset);
+			return true;
+		}
+		@Override
+		public int write(long[] data, int offset, int length) {
+			throw new UnsupportedOperationException("read-only buffer");
+		}
 	}
-	private static final class FloatBufferBuffer extends AbstractReadOnlyBuffer implements PeekableBuffer{
+	private static final class FloatBufferBuffer extends AbstractReadOnlyBuffer implements PeekableBuffer, PrimitiveBuffer.OfFloat{
 		private final FloatBuffer buffer;
 		private FloatBufferBuffer(FloatBuffer buffer) {
 			this.buffer = buffer;
@@ -283,8 +453,27 @@ public final class NIOBuffers {
 		public void consume(int items) {
 			buffer.position(buffer.position() + items);
 		}
+		@Override
+		public int read(float[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(data, offset, count);
+			return count;
+		}
+		@Override
+		public boolean readAll(float[] data, int offset) {
+			checkPositionIndex(offset, data.length);
+			if (buffer.remaining() < data.length - offset)
+				return false;
+			buffer.get(data, offset, data.length - offset);
+			return true;
+		}
+		@Override
+		public int write(float[] data, int offset, int length) {
+			throw new UnsupportedOperationException("read-only buffer");
+		}
 	}
-	private static final class DoubleBufferBuffer extends AbstractReadOnlyBuffer implements PeekableBuffer{
+	private static final class DoubleBufferBuffer extends AbstractReadOnlyBuffer implements PeekableBuffer, PrimitiveBuffer.OfDouble{
 		private final DoubleBuffer buffer;
 		private DoubleBufferBuffer(DoubleBuffer buffer) {
 			this.buffer = buffer;
@@ -309,6 +498,458 @@ public final class NIOBuffers {
 		public void consume(int items) {
 			buffer.position(buffer.position() + items);
 		}
+		@Override
+		public int read(double[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(data, offset, count);
+			return count;
+		}
+		@Override
+		public boolean readAll(double[] data, int offset) {
+			checkPositionIndex(offset, data.length);
+			if (buffer.remaining() < data.length - offset)
+				return false;
+			buffer.get(data, offset, data.length - offset);
+			return true;
+		}
+		@Override
+		public int write(double[] data, int offset, int length) {
+			throw new UnsupportedOperationException("read-only buffer");
+		}
+	}
+	public static Buffer wrapChannel(WritableByteChannel channel, ByteBuffer staging, Class<?> type) {
+		if (type == Byte.class) return new ByteBufferChannelBuffer(channel, staging);
+		if (type == Short.class) return new ShortBufferChannelBuffer(channel, staging);
+		if (type == Character.class) return new CharBufferChannelBuffer(channel, staging);
+		if (type == Integer.class) return new IntBufferChannelBuffer(channel, staging);
+		if (type == Long.class) return new LongBufferChannelBuffer(channel, staging);
+		if (type == Float.class) return new FloatBufferChannelBuffer(channel, staging);
+		if (type == Double.class) return new DoubleBufferChannelBuffer(channel, staging);
+		throw new AssertionError("not a wrapper type: "+type);
+	}
+	private static final class ByteBufferChannelBuffer extends AbstractWriteOnlyBuffer implements Closeable, Flushable{
+		private final WritableByteChannel channel;
+		private final ByteBuffer staging;
+		private final ByteBuffer buffer;
+		private ByteBufferChannelBuffer(WritableByteChannel channel, ByteBuffer staging) {
+			this.channel = channel;
+			this.staging = staging;
+			this.buffer = staging;
+		}
+		@Override
+		public boolean write(Object t) {
+			if (!buffer.hasRemaining())
+				drainStaging();
+			buffer.put((Byte)t);
+			return true;
+		}
+		@Override
+		public int write(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			for (int i = offset; i < offset + length; ++i) {
+				if (!buffer.hasRemaining())
+					drainStaging();
+				buffer.put((Byte)data[i]);
+			}
+			return length;
+		}
+		private void drainStaging() {
+			int bytes = buffer.position() * Byte.BYTES;
+			staging.position(0).limit(bytes);
+			try {
+				while (staging.hasRemaining())
+					channel.write(staging);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			staging.clear();
+			buffer.clear();
+		}
+		@Override
+		public void flush() {
+			drainStaging();
+		}
+		@Override
+		public void close() throws IOException {
+			if (!channel.isOpen()) return;
+			drainStaging();
+			channel.close();
+		}
+	}
+	private static final class ShortBufferChannelBuffer extends AbstractWriteOnlyBuffer implements Closeable, Flushable{
+		private final WritableByteChannel channel;
+		private final ByteBuffer staging;
+		private final ShortBuffer buffer;
+		private ShortBufferChannelBuffer(WritableByteChannel channel, ByteBuffer staging) {
+			this.channel = channel;
+			this.staging = staging;
+			this.buffer = staging.asShortBuffer();
+		}
+		@Override
+		public boolean write(Object t) {
+			if (!buffer.hasRemaining())
+				drainStaging();
+			buffer.put((Short)t);
+			return true;
+		}
+		@Override
+		public int write(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			for (int i = offset; i < offset + length; ++i) {
+				if (!buffer.hasRemaining())
+					drainStaging();
+				buffer.put((Short)data[i]);
+			}
+			return length;
+		}
+		private void drainStaging() {
+			int bytes = buffer.position() * Short.BYTES;
+			staging.position(0).limit(bytes);
+			try {
+				while (staging.hasRemaining())
+					channel.write(staging);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			staging.clear();
+			buffer.clear();
+		}
+		@Override
+		public void flush() {
+			drainStaging();
+		}
+		@Override
+		public void close() throws IOException {
+			if (!channel.isOpen()) return;
+			drainStaging();
+			channel.close();
+		}
+	}
+	private static final class CharBufferChannelBuffer extends AbstractWriteOnlyBuffer implements Closeable, Flushable{
+		private final WritableByteChannel channel;
+		private final ByteBuffer staging;
+		private final CharBuffer buffer;
+		private CharBufferChannelBuffer(WritableByteChannel channel, ByteBuffer staging) {
+			this.channel = channel;
+			this.staging = staging;
+			this.buffer = staging.asCharBuffer();
+		}
+		@Override
+		public boolean write(Object t) {
+			if (!buffer.hasRemaining())
+				drainStaging();
+			buffer.put((Character)t);
+			return true;
+		}
+		@Override
+		public int write(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			for (int i = offset; i < offset + length; ++i) {
+				if (!buffer.hasRemaining())
+					drainStaging();
+				buffer.put((Character)data[i]);
+			}
+			return length;
+		}
+		private void drainStaging() {
+			int bytes = buffer.position() * Character.BYTES;
+			staging.position(0).limit(bytes);
+			try {
+				while (staging.hasRemaining())
+					channel.write(staging);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			staging.clear();
+			buffer.clear();
+		}
+		@Override
+		public void flush() {
+			drainStaging();
+		}
+		@Override
+		public void close() throws IOException {
+			if (!channel.isOpen()) return;
+			drainStaging();
+			channel.close();
+		}
+	}
+	private static final class IntBufferChannelBuffer extends AbstractWriteOnlyBuffer implements Closeable, Flushable, PrimitiveBuffer.OfInt{
+		private final WritableByteChannel channel;
+		private final ByteBuffer staging;
+		private final IntBuffer buffer;
+		private IntBufferChannelBuffer(WritableByteChannel channel, ByteBuffer staging) {
+			this.channel = channel;
+			this.staging = staging;
+			this.buffer = staging.asIntBuffer();
+		}
+		@Override
+		public boolean write(Object t) {
+			if (!buffer.hasRemaining())
+				drainStaging();
+			buffer.put((Integer)t);
+			return true;
+		}
+		@Override
+		public int write(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			for (int i = offset; i < offset + length; ++i) {
+				if (!buffer.hasRemaining())
+					drainStaging();
+				buffer.put((Integer)data[i]);
+			}
+			return length;
+		}
+		private void drainStaging() {
+			int bytes = buffer.position() * Integer.BYTES;
+			staging.position(0).limit(bytes);
+			try {
+				while (staging.hasRemaining())
+					channel.write(staging);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			staging.clear();
+			buffer.clear();
+		}
+		@Override
+		public void flush() {
+			drainStaging();
+		}
+		@Override
+		public void close() throws IOException {
+			if (!channel.isOpen()) return;
+			drainStaging();
+			channel.close();
+		}
+		@Override
+		public int read(int[] data, int offset, int length) {
+			throw new UnsupportedOperationException("write-only buffer");
+		}
+		@Override
+		public boolean readAll(int[] data, int offset) {
+			throw new UnsupportedOperationException("write-only buffer");
+		}
+		@Override
+		public int write(int[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			for (int written = 0; written < length;) {
+				if (!buffer.hasRemaining())
+					drainStaging();
+				int count = Math.min(length - written, buffer.remaining());
+				buffer.put(data, offset + written, count);
+				written += count;
+			}
+			return length;
+		}
+	}
+	private static final class LongBufferChannelBuffer extends AbstractWriteOnlyBuffer implements Closeable, Flushable, PrimitiveBuffer.OfLong{
+		private final WritableByteChannel channel;
+		private final ByteBuffer staging;
+		private final LongBuffer buffer;
+		private LongBufferChannelBuffer(WritableByteChannel channel, ByteBuffer staging) {
+			this.channel = channel;
+			this.staging = staging;
+			this.buffer = staging.asLongBuffer();
+		}
+		@Override
+		public boolean write(Object t) {
+			if (!buffer.hasRemaining())
+				drainStaging();
+			buffer.put((Long)t);
+			return true;
+		}
+		@Override
+		public int write(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			for (int i = offset; i < offset + length; ++i) {
+				if (!buffer.hasRemaining())
+					drainStaging();
+				buffer.put((Long)data[i]);
+			}
+			return length;
+		}
+		private void drainStaging() {
+			int bytes = buffer.position() * Long.BYTES;
+			staging.position(0).limit(bytes);
+			try {
+				while (staging.hasRemaining())
+					channel.write(staging);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			staging.clear();
+			buffer.clear();
+		}
+		@Override
+		public void flush() {
+			drainStaging();
+		}
+		@Override
+		public void close() throws IOException {
+			if (!channel.isOpen()) return;
+			drainStaging();
+			channel.close();
+		}
+		@Override
+		public int read(long[] data, int offset, int length) {
+			throw new UnsupportedOperationException("write-only buffer");
+		}
+		@Override
+		public boolean readAll(long[] data, int offset) {
+			throw new UnsupportedOperationException("write-only buffer");
+		}
+		@Override
+		public int write(long[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			for (int written = 0; written < length;) {
+				if (!buffer.hasRemaining())
+					drainStaging();
+				int count = Math.min(length - written, buffer.remaining());
+				buffer.put(data, offset + written, count);
+				written += count;
+			}
+			return length;
+		}
+	}
+	private static final class FloatBufferChannelBuffer extends AbstractWriteOnlyBuffer implements Closeable, Flushable, PrimitiveBuffer.OfFloat{
+		private final WritableByteChannel channel;
+		private final ByteBuffer staging;
+		private final FloatBuffer buffer;
+		private FloatBufferChannelBuffer(WritableByteChannel channel, ByteBuffer staging) {
+			this.channel = channel;
+			this.staging = staging;
+			this.buffer = staging.asFloatBuffer();
+		}
+		@Override
+		public boolean write(Object t) {
+			if (!buffer.hasRemaining())
+				drainStaging();
+			buffer.put((Float)t);
+			return true;
+		}
+		@Override
+		public int write(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			for (int i = offset; i < offset + length; ++i) {
+				if (!buffer.hasRemaining())
+					drainStaging();
+				buffer.put((Float)data[i]);
+			}
+			return length;
+		}
+		private void drainStaging() {
+			int bytes = buffer.position() * Float.BYTES;
+			staging.position(0).limit(bytes);
+			try {
+				while (staging.hasRemaining())
+					channel.write(staging);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			staging.clear();
+			buffer.clear();
+		}
+		@Override
+		public void flush() {
+			drainStaging();
+		}
+		@Override
+		public void close() throws IOException {
+			if (!channel.isOpen()) return;
+			drainStaging();
+			channel.close();
+		}
+		@Override
+		public int read(float[] data, int offset, int length) {
+			throw new UnsupportedOperationException("write-only buffer");
+		}
+		@Override
+		public boolean readAll(float[] data, int offset) {
+			throw new UnsupportedOperationException("write-only buffer");
+		}
+		@Override
+		public int write(float[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			for (int written = 0; written < length;) {
+				if (!buffer.hasRemaining())
+					drainStaging();
+				int count = Math.min(length - written, buffer.remaining());
+				buffer.put(data, offset + written, count);
+				written += count;
+			}
+			return length;
+		}
+	}
+	private static final class DoubleBufferChannelBuffer extends AbstractWriteOnlyBuffer implements Closeable, Flushable, PrimitiveBuffer.OfDouble{
+		private final WritableByteChannel channel;
+		private final ByteBuffer staging;
+		private final DoubleBuffer buffer;
+		private DoubleBufferChannelBuffer(WritableByteChannel channel, ByteBuffer staging) {
+			this.channel = channel;
+			this.staging = staging;
+			this.buffer = staging.asDoubleBuffer();
+		}
+		@Override
+		public boolean write(Object t) {
+			if (!buffer.hasRemaining())
+				drainStaging();
+			buffer.put((Double)t);
+			return true;
+		}
+		@Override
+		public int write(Object[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			for (int i = offset; i < offset + length; ++i) {
+				if (!buffer.hasRemaining())
+					drainStaging();
+				buffer.put((Double)data[i]);
+			}
+			return length;
+		}
+		private void drainStaging() {
+			int bytes = buffer.position() * Double.BYTES;
+			staging.position(0).limit(bytes);
+			try {
+				while (staging.hasRemaining())
+					channel.write(staging);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			staging.clear();
+			buffer.clear();
+		}
+		@Override
+		public void flush() {
+			drainStaging();
+		}
+		@Override
+		public void close() throws IOException {
+			if (!channel.isOpen()) return;
+			drainStaging();
+			channel.close();
+		}
+		@Override
+		public int read(double[] data, int offset, int length) {
+			throw new UnsupportedOperationException("write-only buffer");
+		}
+		@Override
+		public boolean readAll(double[] data, int offset) {
+			throw new UnsupportedOperationException("write-only buffer");
+		}
+		@Override
+		public int write(double[] data, int offset, int length) {
+			checkPositionIndexes(offset, offset + length, data.length);
+			for (int written = 0; written < length;) {
+				if (!buffer.hasRemaining())
+					drainStaging();
+				int count = Math.min(length - written, buffer.remaining());
+				buffer.put(data, offset + written, count);
+				written += count;
+			}
+			return length;
+		}
 	}
 	//</editor-fold>
 }
@@ -21,8 +21,11 @@
  */
 package edu.mit.streamjit.impl.common;
 
+import com.google.common.collect.ImmutableMap;
 import edu.mit.streamjit.api.Portal;
 import edu.mit.streamjit.api.Worker;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
 import java.util.List;
 
 /**
@@ -34,6 +37,12 @@ public abstract class Portals {
 	public static List<Worker<?, ?>> getRecipients(Portal<?> portal) {
 		return FRIEND.getRecipients_impl(portal);
 	}
+	public static Class<?> getInterface(Portal<?> portal) {
+		return FRIEND.getInterface_impl(portal);
+	}
+	public static ImmutableMap<Method, MethodHandle> getHandlers(Portal<?> portal) {
+		return FRIEND.getHandlers_impl(portal);
+	}
 	public static void setConstraints(Portal<?> portal, List<MessageConstraint> constraints) {
 		FRIEND.setConstraints_impl(portal, constraints);
 	}
@@ -55,6 +64,8 @@ public abstract class Portals {
 		}
 	}
 	protected abstract List<Worker<?, ?>> getRecipients_impl(Portal<?> portal);
+	protected abstract Class<?> getInterface_impl(Portal<?> portal);
+	protected abstract ImmutableMap<Method, MethodHandle> getHandlers_impl(Portal<?> portal);
 	protected abstract void setConstraints_impl(Portal<?> portal, List<MessageConstraint> constraints);
 	//</editor-fold>
 }
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.common;
+
+import static com.google.common.base.Preconditions.*;
+import com.google.common.collect.ImmutableMap;
+import edu.mit.streamjit.impl.blob.AbstractReadOnlyBuffer;
+import edu.mit.streamjit.impl.blob.PeekableBuffer;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A PeekableBuffer over a binary file of primitives that holds only a few
+ * windows of the file in memory at once.  A background thread reads windows
+ * ahead of the reader into direct ByteBuffers, which are recycled once their
+ * items are consumed, so resident memory is bounded by the window size times
+ * the read-ahead (plus the windows being peeked at) regardless of file size.
+ * <p/>
+ * size() is the number of items left in the file, not the number loaded, so
+ * a reader that gets ahead of the read-ahead thread doesn't mistake it for
+ * the end of the input; peek() and read() block until the window holding the
+ * requested item has been read.  Like the other PeekableBuffers used by
+ * Compiler2, peek() may be called from multiple threads concurrently, but
+ * not concurrently with consume() or read().
+ * @since 10/18/2026
+ */
+public final class WindowedFileBuffer extends AbstractReadOnlyBuffer implements PeekableBuffer, Closeable {
+	private static final ImmutableMap<Class<?>, Integer> ELEMENT_BYTES = ImmutableMap.<Class<?>, Integer>builder()
+			.put(Byte.class, Byte.BYTES)
+			.put(Short.class, Short.BYTES)
+			.put(Character.class, Character.BYTES)
+			.put(Integer.class, Integer.BYTES)
+			.put(Long.class, Long.BYTES)
+			.put(Float.class, Float.BYTES)
+			.put(Double.class, Double.BYTES)
+			.build();
+	/**
+	 * Put in the filled queue by the read-ahead thread when it fails.
+	 */
+	private static final ByteBuffer POISON = ByteBuffer.allocate(0);
+	private final Path path;
+	private final Class<?> type;
+	private final ByteOrder byteOrder;
+	private final int elementBytes, windowBytes;
+	private final long totalItems;
+	private final FileChannel channel;
+	private final BlockingQueue<ByteBuffer> filled;
+	private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+	private final Thread readAheadThread;
+	private volatile IOException failure;
+	private volatile boolean closed;
+	/**
+	 * The loaded windows, oldest first.  Replaced, never modified, so
+	 * concurrent peek()s can use it without locking.
+	 */
+	private volatile Window[] windows = new Window[0];
+	/**
+	 * The index in the file of the first item not yet loaded.
+	 */
+	private long loadedEnd;
+	/**
+	 * The index in the file of the next item to be read.
+	 */
+	private volatile long consumed;
+
+	private static final class Window {
+		private final ByteBuffer bytes;
+		private final PeekableBuffer items;
+		private final long begin, end;
+		private Window(ByteBuffer bytes, PeekableBuffer items, long begin, long end) {
+			this.bytes = bytes;
+			this.items = items;
+			this.begin = begin;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * Creates a new WindowedFileBuffer and starts its read-ahead thread.
+	 * @param path the file to read
+	 * @param type the type of elements in the file, a primitive wrapper type
+	 * @param byteOrder the byte order of the file
+	 * @param windowBytes the size of each window, rounded down to a multiple of
+	 * the element size
+	 * @param readAhead the maximum number of windows to read ahead
+	 * @throws IOException if the file can't be opened
+	 */
+	public WindowedFileBuffer(Path path, Class<?> type, ByteOrder byteOrder, int windowBytes, int readAhead) throws IOException {
+		checkArgument(ELEMENT_BYTES.containsKey(type), "not a wrapper type: %s", type);
+		this.elementBytes = ELEMENT_BYTES.get(type);
+		checkArgument(windowBytes >= elementBytes, "window %s smaller than an element", windowBytes);
+		checkArgument(readAhead > 0, "readAhead %s must be positive", readAhead);
+		this.path = path;
+		this.type = type;
+		this.byteOrder = byteOrder;
+		this.windowBytes = windowBytes - windowBytes % elementBytes;
+		this.filled = new ArrayBlockingQueue<>(readAhead);
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.totalItems = channel.size() / elementBytes;
+		this.readAheadThread = new Thread(this::readAhead, "read-ahead "+path);
+		readAheadThread.setDaemon(true);
+		readAheadThread.start();
+	}
+
+	private void readAhead() {
+		try (FileChannel fc = channel) {
+			long position = 0, end = totalItems * elementBytes;
+			while (position < end && !closed) {
+				ByteBuffer window = free.poll();
+				if (window == null)
+					window = ByteBuffer.allocateDirect(windowBytes);
+				window.clear().limit((int)Math.min(windowBytes, end - position));
+				while (window.hasRemaining())
+					if (fc.read(window, position + window.position()) < 0)
+						throw new EOFException(path+" shrank while being read");
+				window.flip();
+				filled.put(window);
+				position += window.limit();
+			}
+		} catch (IOException ex) {
+			if (!closed) {
+				failure = ex;
+				filled.offer(POISON);
+			}
+		} catch (InterruptedException ex) {
+			//close() interrupts us; nobody is waiting for more data.
+		}
+	}
+
+	@Override
+	public Object read() {
+		if (size() == 0)
+			return null;
+		Object item = peek(0);
+		consume(1);
+		return item;
+	}
+
+	@Override
+	public int size() {
+		return (int)Math.min(totalItems - consumed, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public Object peek(int index) {
+		checkElementIndex(index, size());
+		long item = consumed + index;
+		Window[] w = windows;
+		if (w.length == 0 || w[w.length-1].end <= item)
+			w = loadThrough(item);
+		for (Window x : w)
+			if (item < x.end)
+				return x.items.peek((int)(item - x.begin));
+		throw new AssertionError("loaded through "+item+" but not found");
+	}
+
+	@Override
+	public void consume(int items) {
+		checkPositionIndex(items, size());
+		if (items == 0)
+			return;
+		long newConsumed = consumed + items;
+		Window[] w = loadThrough(newConsumed - 1);
+		int firstLive = 0;
+		while (firstLive < w.length && w[firstLive].end <= newConsumed) {
+			free.add(w[firstLive].bytes);
+			++firstLive;
+		}
+		this.windows = Arrays.copyOfRange(w, firstLive, w.length);
+		this.consumed = newConsumed;
+	}
+
+	/**
+	 * Loads windows until the given item is loaded, waiting for the
+	 * read-ahead thread if necessary.
+	 * @param item the index in the file of the item to load
+	 * @return the loaded windows
+	 */
+	private synchronized Window[] loadThrough(long item) {
+		Window[] w = windows;
+		while (loadedEnd <= item) {
+			ByteBuffer bytes;
+			try {
+				bytes = filled.take();
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			}
+			if (bytes == POISON)
+				throw new RuntimeException(failure);
+			bytes.order(byteOrder);
+			long begin = loadedEnd;
+			loadedEnd += bytes.limit() / elementBytes;
+			w = Arrays.copyOf(w, w.length + 1);
+			w[w.length-1] = new Window(bytes, (PeekableBuffer)NIOBuffers.wrap(bytes, type), begin, loadedEnd);
+		}
+		return windows = w;
+	}
+
+	/**
+	 * Stops the read-ahead thread and releases buffered windows.  Further
+	 * reads will fail.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		readAheadThread.interrupt();
+		filled.clear();
+		free.clear();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("WindowedFileBuffer(%s, %s, %s, %d)", path, type.getSimpleName(), byteOrder, windowBytes);
+	}
+}
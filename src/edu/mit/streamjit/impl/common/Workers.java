@@ -23,11 +23,15 @@ package edu.mit.streamjit.impl.common;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableTable;
 import edu.mit.streamjit.api.Rate;
+import edu.mit.streamjit.api.StatefulFilter;
 import edu.mit.streamjit.impl.interp.Channel;
 import edu.mit.streamjit.api.Worker;
 import edu.mit.streamjit.impl.interp.Message;
 import edu.mit.streamjit.util.TopologicalSort;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.List;
@@ -68,12 +72,18 @@ public abstract class Workers {
 	public static long getExecutions(Worker<?, ?> worker) {
 		return FRIEND.getExecutions_impl(worker);
 	}
+	public static void setExecutions(Worker<?, ?> worker, long executions) {
+		FRIEND.setExecutions_impl(worker, executions);
+	}
 	public static void doWork(Worker<?, ?> worker) {
 		FRIEND.doWork_impl(worker);
 	}
 	public static void sendMessage(Worker<?, ?> worker, Message message) {
 		FRIEND.sendMessage_impl(worker, message);
 	}
+	public static List<Message> takeMessages(Worker<?, ?> worker) {
+		return FRIEND.takeMessages_impl(worker);
+	}
 	public static int getIdentifier(Worker<?, ?> worker) {
 		return FRIEND.getIdentifier_impl(worker);
 	}
@@ -250,6 +260,35 @@ public abstract class Workers {
 		return false;
 	}
 
+	/**
+	 * Returns the state of the given workers, as stored in a DrainData: for
+	 * each StatefulFilter, the values of its nonstatic, nonfinal fields,
+	 * keyed by worker identifier and field name.
+	 * @param workers the workers
+	 * @return the workers' state
+	 */
+	public static ImmutableTable<Integer, String, Object> getState(Iterable<? extends Worker<?, ?>> workers) {
+		ImmutableTable.Builder<Integer, String, Object> stateBuilder = ImmutableTable.builder();
+		for (Worker<?, ?> worker : workers) {
+			if (!(worker instanceof StatefulFilter))
+				continue;
+			int id = getIdentifier(worker);
+			for (Class<?> klass = worker.getClass(); !klass.equals(StatefulFilter.class); klass = klass.getSuperclass()) {
+				for (Field f : klass.getDeclaredFields()) {
+					if ((f.getModifiers() & (Modifier.STATIC | Modifier.FINAL)) != 0)
+						continue;
+					f.setAccessible(true);
+					try {
+						stateBuilder.put(id, f.getName(), f.get(worker));
+					} catch (IllegalArgumentException | IllegalAccessException ex) {
+						throw new AssertionError(ex);
+					}
+				}
+			}
+		}
+		return stateBuilder.build();
+	}
+
 	//<editor-fold defaultstate="collapsed" desc="Friend pattern support">
 	protected Workers() {}
 	private static Workers FRIEND;
@@ -273,8 +312,10 @@ public abstract class Workers {
 	protected abstract <I> List<Channel<? extends I>> getInputChannels_impl(Worker<I, ?> worker);
 	protected abstract <O> List<Channel<? super O>> getOutputChannels_impl(Worker<?, O> worker);
 	protected abstract long getExecutions_impl(Worker<?, ?> worker);
+	protected abstract void setExecutions_impl(Worker<?, ?> worker, long executions);
 	protected abstract void doWork_impl(Worker<?, ?> worker);
 	protected abstract void sendMessage_impl(Worker<?, ?> worker, Message message);
+	protected abstract List<Message> takeMessages_impl(Worker<?, ?> worker);
 	protected abstract int getIdentifier_impl(Worker<?, ?> worker);
 	protected abstract void setIdentifier_impl(Worker<?, ?> worker, int identifier);
 	//</editor-fold>
@@ -23,14 +23,26 @@ package edu.mit.streamjit.impl.compiler;
 
 import static com.google.common.base.Preconditions.*;
 import com.google.common.base.Predicates;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.math.LongMath;
+import com.google.common.primitives.Ints;
 import edu.mit.streamjit.util.ilpsolve.ILPSolver;
 import edu.mit.streamjit.util.ilpsolve.SolverException;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -48,17 +60,150 @@ public final class Schedule<T> {
 		this.constraints = constraints;
 		this.schedule = schedule;
 	}
+	/**
+	 * Solutions to previously-solved constraint systems, indexed by
+	 * SystemKey.  Solutions are before applying the multiplier.
+	 */
+	private static final Cache<SystemKey, int[]> SOLUTIONS = CacheBuilder.newBuilder()
+			.maximumSize(4096)
+			.build();
 	private static <T> Schedule<T> schedule(ImmutableSet<T> things,
 			ImmutableSet<ExecutionConstraint<T>> executionConstraints,
 			ImmutableSet<BufferingConstraint<T>> bufferingConstraints,
 			int multiplier, int fireCost, int excessBufferCost) {
+		ImmutableList<T> order = canonicalOrder(things);
+		SystemKey key = new SystemKey(order, executionConstraints, bufferingConstraints, fireCost, excessBufferCost);
+		int[] solution = SOLUTIONS.getIfPresent(key);
+		if (solution == null) {
+			solution = solveBalanced(order, executionConstraints, bufferingConstraints, fireCost);
+			if (solution == null)
+				solution = solveILP(order, executionConstraints, bufferingConstraints, fireCost, excessBufferCost);
+			SOLUTIONS.put(key, solution);
+		}
+
+		ImmutableMap.Builder<T, Integer> schedule = ImmutableMap.builder();
+		for (int i = 0; i < order.size(); ++i)
+			schedule.put(order.get(i), solution[i] * multiplier);
+		return new Schedule<>(things, bufferingConstraints, schedule.build());
+	}
+
+	/**
+	 * Orders the things by their natural order if they're mutually
+	 * comparable, so systems differing only in the order things were added
+	 * share a SystemKey.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T> ImmutableList<T> canonicalOrder(ImmutableSet<T> things) {
+		for (T t : things)
+			if (!(t instanceof Comparable))
+				return things.asList();
+		try {
+			return (ImmutableList<T>)ImmutableList.copyOf(Ordering.natural().sortedCopy((Iterable<Comparable>)things));
+		} catch (ClassCastException ex) {
+			return things.asList();
+		}
+	}
+
+	/**
+	 * Solves the common steady-state case without the ILP solver: a connected
+	 * system of exactly-balanced constraints (as for pipelines and splitjoins)
+	 * has solutions that are all multiples of its smallest solution, which we
+	 * find by propagating rational firing rates across the constraints.  The
+	 * smallest multiple satisfying the execution constraints is then the
+	 * minimum-firing solution.
+	 * @return the solution, indexed like order, or null if the system isn't of
+	 * this form
+	 */
+	private static <T> int[] solveBalanced(ImmutableList<T> order,
+			ImmutableSet<ExecutionConstraint<T>> executionConstraints,
+			ImmutableSet<BufferingConstraint<T>> bufferingConstraints,
+			int fireCost) {
+		//With no cost to firing, any solution is optimal; leave it to the ILP.
+		if (fireCost <= 0)
+			return null;
+		int n = order.size();
+		Map<T, Integer> index = new HashMap<>(n);
+		for (int i = 0; i < n; ++i)
+			index.put(order.get(i), i);
+		List<List<BufferingConstraint<T>>> adjacent = new ArrayList<>(n);
+		for (int i = 0; i < n; ++i)
+			adjacent.add(new ArrayList<>());
+		for (BufferingConstraint<T> c : bufferingConstraints) {
+			if (c.condition != BufferingConstraint.Condition.EQUAL || c.bufferDelta != 0 || c.pushRate <= 0 || c.popRate <= 0)
+				return null;
+			adjacent.get(index.get(c.upstream)).add(c);
+			adjacent.get(index.get(c.downstream)).add(c);
+		}
+
+		//Firing rates as fractions num/den, relative to the first thing.
+		long[] num = new long[n], den = new long[n];
+		num[0] = den[0] = 1;
+		Deque<Integer> worklist = new ArrayDeque<>();
+		worklist.add(0);
+		try {
+			while (!worklist.isEmpty()) {
+				int i = worklist.remove();
+				for (BufferingConstraint<T> c : adjacent.get(i)) {
+					int up = index.get(c.upstream), down = index.get(c.downstream);
+					//up * push == down * pop
+					int other = i == up ? down : up;
+					long otherNum, otherDen;
+					if (i == up) {
+						otherNum = LongMath.checkedMultiply(num[i], c.pushRate);
+						otherDen = LongMath.checkedMultiply(den[i], c.popRate);
+					} else {
+						otherNum = LongMath.checkedMultiply(num[i], c.popRate);
+						otherDen = LongMath.checkedMultiply(den[i], c.pushRate);
+					}
+					long g = LongMath.gcd(otherNum, otherDen);
+					otherNum /= g;
+					otherDen /= g;
+					if (den[other] == 0) {
+						num[other] = otherNum;
+						den[other] = otherDen;
+						worklist.add(other);
+					} else if (num[other] != otherNum || den[other] != otherDen)
+						return null; //inconsistent; let the ILP report it
+				}
+			}
+			for (int i = 0; i < n; ++i)
+				if (den[i] == 0)
+					return null; //not connected
+
+			long lcm = 1;
+			for (int i = 0; i < n; ++i)
+				lcm = LongMath.checkedMultiply(lcm / LongMath.gcd(lcm, den[i]), den[i]);
+			long[] firings = new long[n];
+			long gcd = 0;
+			for (int i = 0; i < n; ++i) {
+				firings[i] = LongMath.checkedMultiply(num[i], lcm / den[i]);
+				gcd = LongMath.gcd(gcd, firings[i]);
+			}
+			long scale = 1;
+			for (ExecutionConstraint<T> c : executionConstraints) {
+				long f = firings[index.get(c.thing)] / gcd;
+				scale = Math.max(scale, LongMath.divide(c.minExecutions, f, RoundingMode.CEILING));
+			}
+			int[] solution = new int[n];
+			for (int i = 0; i < n; ++i)
+				solution[i] = Ints.checkedCast(LongMath.checkedMultiply(firings[i] / gcd, scale));
+			return solution;
+		} catch (ArithmeticException | IllegalArgumentException ex) {
+			return null; //overflow; let the ILP try
+		}
+	}
+
+	private static <T> int[] solveILP(ImmutableList<T> order,
+			ImmutableSet<ExecutionConstraint<T>> executionConstraints,
+			ImmutableSet<BufferingConstraint<T>> bufferingConstraints,
+			int fireCost, int excessBufferCost) {
 		ILPSolver solver = new ILPSolver();
 		//There's one variable for each thing, which represents the number of
 		//times it fires.  This uses the default bounds.  (TODO: perhaps a bound
 		//at 1 if we're steady-state scheduling, maybe by marking things as
 		//must-fire and marking the bottommost thing?)
 		ImmutableMap.Builder<T, ILPSolver.Variable> variablesBuilder = ImmutableMap.builder();
-		for (T thing : things)
+		for (T thing : order)
 			variablesBuilder.put(thing, solver.newVariable(thing.toString()));
 		ImmutableMap<T, ILPSolver.Variable> variables = variablesBuilder.build();
 
@@ -110,10 +255,10 @@ public final class Schedule<T> {
 			throw new ScheduleException(ex);
 		}
 
-		ImmutableMap.Builder<T, Integer> schedule = ImmutableMap.builder();
-		for (Map.Entry<T, ILPSolver.Variable> e : variables.entrySet())
-			schedule.put(e.getKey(), e.getValue().value() * multiplier);
-		return new Schedule<>(things, bufferingConstraints, schedule.build());
+		int[] solution = new int[order.size()];
+		for (int i = 0; i < order.size(); ++i)
+			solution[i] = variables.get(order.get(i)).value();
+		return solution;
 	}
 
 	public static <T> Builder<T> builder() {
@@ -282,6 +427,59 @@ public final class Schedule<T> {
 		}
 	}
 
+	/**
+	 * A constraint system with its things replaced by their indices in a
+	 * canonical order, so structurally identical systems (e.g., the same
+	 * group's internal schedule in another compilation) compare equal.
+	 */
+	private static final class SystemKey {
+		private final int[] encoding;
+		private final int hashCode;
+		private <T> SystemKey(ImmutableList<T> order,
+				Set<ExecutionConstraint<T>> executionConstraints,
+				Set<BufferingConstraint<T>> bufferingConstraints,
+				int fireCost, int excessBufferCost) {
+			Map<T, Integer> index = new HashMap<>(order.size());
+			for (int i = 0; i < order.size(); ++i)
+				index.put(order.get(i), i);
+			//Constraint sets are unordered, so sort each constraint's encoding.
+			List<int[]> executions = new ArrayList<>(executionConstraints.size());
+			for (ExecutionConstraint<T> c : executionConstraints)
+				executions.add(new int[]{index.get(c.thing), c.minExecutions});
+			List<int[]> bufferings = new ArrayList<>(bufferingConstraints.size());
+			for (BufferingConstraint<T> c : bufferingConstraints)
+				bufferings.add(new int[]{index.get(c.upstream), index.get(c.downstream),
+					c.pushRate, c.popRate, c.excessPeeks, c.condition.ordinal(), c.bufferDelta});
+			Ordering<int[]> ordering = Ordering.from(Ints.lexicographicalComparator());
+			executions = ordering.sortedCopy(executions);
+			bufferings = ordering.sortedCopy(bufferings);
+
+			int[] e = new int[5 + 2*executions.size() + 7*bufferings.size()];
+			int i = 0;
+			e[i++] = order.size();
+			e[i++] = fireCost;
+			e[i++] = excessBufferCost;
+			e[i++] = executions.size();
+			e[i++] = bufferings.size();
+			for (int[] c : executions)
+				for (int x : c)
+					e[i++] = x;
+			for (int[] c : bufferings)
+				for (int x : c)
+					e[i++] = x;
+			this.encoding = e;
+			this.hashCode = Arrays.hashCode(e);
+		}
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof SystemKey && Arrays.equals(encoding, ((SystemKey)obj).encoding);
+		}
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
 	public ImmutableMap<T, Integer> getSchedule() {
 		return schedule;
 	}
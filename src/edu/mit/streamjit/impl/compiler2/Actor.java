@@ -22,12 +22,10 @@
 package edu.mit.streamjit.impl.compiler2;
 
 import static com.google.common.base.Preconditions.*;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.ContiguousSet;
 import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Range;
 import com.google.common.reflect.TypeToken;
 import edu.mit.streamjit.util.ReflectionUtils;
@@ -296,6 +294,12 @@ public abstract class Actor implements Comparable<Actor> {
 		return pushes(output, ContiguousSet.create(iterations, DiscreteDomain.integers()));
 	}
 
+	/**
+	 * The number of logical indices translate() passes to an index function
+	 * at once.
+	 */
+	private static final int TRANSLATE_CHUNK_SIZE = 4096;
+
 	public List<IndexFunction> inputIndexFunctions() {
 		return upstreamIndex;
 	}
@@ -310,11 +314,13 @@ public abstract class Actor implements Comparable<Actor> {
 		}
 	}
 
-	public ImmutableSortedSet<Integer> translateInputIndices(final int input, Set<Integer> logicalIndices) {
-		return ImmutableSortedSet.copyOf(Collections2.transform(logicalIndices, index -> translateInputIndex(input, index)));
+	public IndexSet translateInputIndices(final int input, Set<Integer> logicalIndices) {
+		IndexSet.Builder builder = IndexSet.builder();
+		translate(upstreamIndex.get(input), logicalIndices, builder);
+		return builder.build();
 	}
 
-	public ImmutableSortedSet<Integer> translateInputIndices(final int input, Range<Integer> logicalIndices) {
+	public IndexSet translateInputIndices(final int input, Range<Integer> logicalIndices) {
 		return translateInputIndices(input, ContiguousSet.create(logicalIndices, DiscreteDomain.integers()));
 	}
 
@@ -332,180 +338,211 @@ public abstract class Actor implements Comparable<Actor> {
 		}
 	}
 
-	public ImmutableSortedSet<Integer> translateOutputIndices(final int input, Set<Integer> logicalIndices) {
-		return ImmutableSortedSet.copyOf(Collections2.transform(logicalIndices, index -> translateOutputIndex(input, index)));
+	public IndexSet translateOutputIndices(final int input, Set<Integer> logicalIndices) {
+		IndexSet.Builder builder = IndexSet.builder();
+		translate(downstreamIndex.get(input), logicalIndices, builder);
+		return builder.build();
 	}
 
-	public ImmutableSortedSet<Integer> translateOutputIndices(final int input, Range<Integer> logicalIndices) {
+	public IndexSet translateOutputIndices(final int input, Range<Integer> logicalIndices) {
 		return translateOutputIndices(input, ContiguousSet.create(logicalIndices, DiscreteDomain.integers()));
 	}
 
-	public ImmutableSortedSet<Integer> reads(int input, int iteration) {
+	/**
+	 * Adds the physical indices the given index function maps the given
+	 * logical indices to to the given builder.  Contiguous logical indices are
+	 * translated in bulk, a chunk at a time, so large sets aren't boxed or
+	 * materialized.
+	 */
+	private static void translate(IndexFunction idxFxn, Set<Integer> logicalIndices, IndexSet.Builder builder) {
+		if (logicalIndices.isEmpty())
+			return;
+		if (logicalIndices instanceof ContiguousSet) {
+			ContiguousSet<Integer> set = (ContiguousSet<Integer>)logicalIndices;
+			int first = set.first(), last = set.last();
+			checkArgument(first >= 0);
+			int[] chunk = new int[Math.min(last - first + 1, TRANSLATE_CHUNK_SIZE)];
+			for (int start = first; start <= last; start += chunk.length) {
+				if (last - start + 1 < chunk.length)
+					chunk = new int[last - start + 1];
+				for (int i = 0; i < chunk.length; ++i)
+					chunk[i] = start + i;
+				idxFxn.applyBulk(chunk);
+				builder.addAll(chunk, 0, chunk.length);
+			}
+		} else
+			for (int logicalIndex : logicalIndices) {
+				checkArgument(logicalIndex >= 0);
+				builder.add(idxFxn.applyAsInt(logicalIndex));
+			}
+	}
+
+	public IndexSet reads(int input, int iteration) {
 		return translateInputIndices(input, peeks(input, iteration));
 	}
 
-	public ImmutableSortedSet<Integer> reads(int input, Set<Integer> iterations) {
+	public IndexSet reads(int input, Set<Integer> iterations) {
 		return translateInputIndices(input, peeks(input, iterations));
 	}
 
-	public ImmutableSortedSet<Integer> reads(int input, Range<Integer> iterations) {
+	public IndexSet reads(int input, Range<Integer> iterations) {
 		return translateInputIndices(input, peeks(input, iterations));
 	}
 
-	public ImmutableSortedSet<Integer> reads(Storage storage, int iteration) {
-		List<ImmutableSortedSet<Integer>> list = new ArrayList<>(inputs().size());
+	public IndexSet reads(Storage storage, int iteration) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (int input = 0; input < inputs().size(); ++input)
 			if (inputs().get(input).equals(storage))
-				list.add(translateInputIndices(input, peeks(input, iteration)));
-		return ImmutableSortedSet.copyOf(Iterables.concat(list));
+				translate(upstreamIndex.get(input), peeks(input, iteration), builder);
+		return builder.build();
 	}
 
-	public ImmutableSortedSet<Integer> reads(Storage storage, Set<Integer> iterations) {
-		List<ImmutableSortedSet<Integer>> list = new ArrayList<>(inputs().size());
+	public IndexSet reads(Storage storage, Set<Integer> iterations) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (int input = 0; input < inputs().size(); ++input)
 			if (inputs().get(input).equals(storage))
-				list.add(translateInputIndices(input, peeks(input, iterations)));
-		return ImmutableSortedSet.copyOf(Iterables.concat(list));
+				translate(upstreamIndex.get(input), peeks(input, iterations), builder);
+		return builder.build();
 	}
 
-	public ImmutableSortedSet<Integer> reads(Storage storage, Range<Integer> iterations) {
-		List<ImmutableSortedSet<Integer>> list = new ArrayList<>(inputs().size());
+	public IndexSet reads(Storage storage, Range<Integer> iterations) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (int input = 0; input < inputs().size(); ++input)
 			if (inputs().get(input).equals(storage))
-				list.add(translateInputIndices(input, peeks(input, iterations)));
-		return ImmutableSortedSet.copyOf(Iterables.concat(list));
+				translate(upstreamIndex.get(input), peeks(input, iterations), builder);
+		return builder.build();
 	}
 
-	public ImmutableMap<Storage, ImmutableSortedSet<Integer>> reads(int iteration) {
-		ImmutableMap.Builder<Storage, ImmutableSortedSet<Integer>> builder = ImmutableMap.builder();
+	public ImmutableMap<Storage, IndexSet> reads(int iteration) {
+		ImmutableMap.Builder<Storage, IndexSet> builder = ImmutableMap.builder();
 		for (Storage s : inputs())
 			builder.put(s, reads(s, iteration));
 		return builder.build();
 	}
 
-	public ImmutableMap<Storage, ImmutableSortedSet<Integer>> reads(Set<Integer> iterations) {
-		ImmutableMap.Builder<Storage, ImmutableSortedSet<Integer>> builder = ImmutableMap.builder();
+	public ImmutableMap<Storage, IndexSet> reads(Set<Integer> iterations) {
+		ImmutableMap.Builder<Storage, IndexSet> builder = ImmutableMap.builder();
 		for (Storage s : inputs())
 			builder.put(s, reads(s, iterations));
 		return builder.build();
 	}
 
-	public ImmutableMap<Storage, ImmutableSortedSet<Integer>> reads(Range<Integer> iterations) {
-		ImmutableMap.Builder<Storage, ImmutableSortedSet<Integer>> builder = ImmutableMap.builder();
+	public ImmutableMap<Storage, IndexSet> reads(Range<Integer> iterations) {
+		ImmutableMap.Builder<Storage, IndexSet> builder = ImmutableMap.builder();
 		for (Storage s : inputs())
 			builder.put(s, reads(s, iterations));
 		return builder.build();
 	}
 
-	public ImmutableSortedSet<Integer> consumes(int input, int iteration) {
+	public IndexSet consumes(int input, int iteration) {
 		return translateInputIndices(input, pops(input, iteration));
 	}
 
-	public ImmutableSortedSet<Integer> consumes(int input, Set<Integer> iterations) {
+	public IndexSet consumes(int input, Set<Integer> iterations) {
 		return translateInputIndices(input, pops(input, iterations));
 	}
 
-	public ImmutableSortedSet<Integer> consumes(int input, Range<Integer> iterations) {
+	public IndexSet consumes(int input, Range<Integer> iterations) {
 		return translateInputIndices(input, pops(input, iterations));
 	}
 
-	public ImmutableSortedSet<Integer> consumes(Storage storage, int iteration) {
-		List<ImmutableSortedSet<Integer>> list = new ArrayList<>(inputs().size());
+	public IndexSet consumes(Storage storage, int iteration) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (int input = 0; input < inputs().size(); ++input)
 			if (inputs().get(input).equals(storage))
-				list.add(translateInputIndices(input, pops(input, iteration)));
-		return ImmutableSortedSet.copyOf(Iterables.concat(list));
+				translate(upstreamIndex.get(input), pops(input, iteration), builder);
+		return builder.build();
 	}
 
-	public ImmutableSortedSet<Integer> consumes(Storage storage, Set<Integer> iterations) {
-		List<ImmutableSortedSet<Integer>> list = new ArrayList<>(inputs().size());
+	public IndexSet consumes(Storage storage, Set<Integer> iterations) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (int input = 0; input < inputs().size(); ++input)
 			if (inputs().get(input).equals(storage))
-				list.add(translateInputIndices(input, pops(input, iterations)));
-		return ImmutableSortedSet.copyOf(Iterables.concat(list));
+				translate(upstreamIndex.get(input), pops(input, iterations), builder);
+		return builder.build();
 	}
 
-	public ImmutableSortedSet<Integer> consumes(Storage storage, Range<Integer> iterations) {
-		List<ImmutableSortedSet<Integer>> list = new ArrayList<>(inputs().size());
+	public IndexSet consumes(Storage storage, Range<Integer> iterations) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (int input = 0; input < inputs().size(); ++input)
 			if (inputs().get(input).equals(storage))
-				list.add(translateInputIndices(input, pops(input, iterations)));
-		return ImmutableSortedSet.copyOf(Iterables.concat(list));
+				translate(upstreamIndex.get(input), pops(input, iterations), builder);
+		return builder.build();
 	}
 
-	public ImmutableMap<Storage, ImmutableSortedSet<Integer>> consumes(int iteration) {
-		ImmutableMap.Builder<Storage, ImmutableSortedSet<Integer>> builder = ImmutableMap.builder();
+	public ImmutableMap<Storage, IndexSet> consumes(int iteration) {
+		ImmutableMap.Builder<Storage, IndexSet> builder = ImmutableMap.builder();
 		for (Storage s : inputs())
 			builder.put(s, consumes(s, iteration));
 		return builder.build();
 	}
 
-	public ImmutableMap<Storage, ImmutableSortedSet<Integer>> consumes(Set<Integer> iterations) {
-		ImmutableMap.Builder<Storage, ImmutableSortedSet<Integer>> builder = ImmutableMap.builder();
+	public ImmutableMap<Storage, IndexSet> consumes(Set<Integer> iterations) {
+		ImmutableMap.Builder<Storage, IndexSet> builder = ImmutableMap.builder();
 		for (Storage s : inputs())
 			builder.put(s, consumes(s, iterations));
 		return builder.build();
 	}
 
-	public ImmutableMap<Storage, ImmutableSortedSet<Integer>> consumes(Range<Integer> iterations) {
-		ImmutableMap.Builder<Storage, ImmutableSortedSet<Integer>> builder = ImmutableMap.builder();
+	public ImmutableMap<Storage, IndexSet> consumes(Range<Integer> iterations) {
+		ImmutableMap.Builder<Storage, IndexSet> builder = ImmutableMap.builder();
 		for (Storage s : inputs())
 			builder.put(s, consumes(s, iterations));
 		return builder.build();
 	}
 
-	public ImmutableSortedSet<Integer> writes(int output, int iteration) {
+	public IndexSet writes(int output, int iteration) {
 		return translateOutputIndices(output, pushes(output, iteration));
 	}
 
-	public ImmutableSortedSet<Integer> writes(int output, Set<Integer> iterations) {
+	public IndexSet writes(int output, Set<Integer> iterations) {
 		return translateOutputIndices(output, pushes(output, iterations));
 	}
 
-	public ImmutableSortedSet<Integer> writes(int output, Range<Integer> iterations) {
+	public IndexSet writes(int output, Range<Integer> iterations) {
 		return translateOutputIndices(output, pushes(output, iterations));
 	}
 
-	public ImmutableSortedSet<Integer> writes(Storage storage, int iteration) {
-		List<ImmutableSortedSet<Integer>> list = new ArrayList<>(outputs().size());
+	public IndexSet writes(Storage storage, int iteration) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (int output = 0; output < outputs().size(); ++output)
 			if (outputs().get(output).equals(storage))
-				list.add(translateOutputIndices(output, pushes(output, iteration)));
-		return ImmutableSortedSet.copyOf(Iterables.concat(list));
+				translate(downstreamIndex.get(output), pushes(output, iteration), builder);
+		return builder.build();
 	}
 
-	public ImmutableSortedSet<Integer> writes(Storage storage, Set<Integer> iterations) {
-		List<ImmutableSortedSet<Integer>> list = new ArrayList<>(outputs().size());
+	public IndexSet writes(Storage storage, Set<Integer> iterations) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (int output = 0; output < outputs().size(); ++output)
 			if (outputs().get(output).equals(storage))
-				list.add(translateOutputIndices(output, pushes(output, iterations)));
-		return ImmutableSortedSet.copyOf(Iterables.concat(list));
+				translate(downstreamIndex.get(output), pushes(output, iterations), builder);
+		return builder.build();
 	}
 
-	public ImmutableSortedSet<Integer> writes(Storage storage, Range<Integer> iterations) {
-		List<ImmutableSortedSet<Integer>> list = new ArrayList<>(outputs().size());
+	public IndexSet writes(Storage storage, Range<Integer> iterations) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (int output = 0; output < outputs().size(); ++output)
 			if (outputs().get(output).equals(storage))
-				list.add(translateOutputIndices(output, pushes(output, iterations)));
-		return ImmutableSortedSet.copyOf(Iterables.concat(list));
+				translate(downstreamIndex.get(output), pushes(output, iterations), builder);
+		return builder.build();
 	}
 
-	public ImmutableMap<Storage, ImmutableSortedSet<Integer>> writes(int iteration) {
-		ImmutableMap.Builder<Storage, ImmutableSortedSet<Integer>> builder = ImmutableMap.builder();
+	public ImmutableMap<Storage, IndexSet> writes(int iteration) {
+		ImmutableMap.Builder<Storage, IndexSet> builder = ImmutableMap.builder();
 		for (Storage s : outputs())
 			builder.put(s, writes(s, iteration));
 		return builder.build();
 	}
 
-	public ImmutableMap<Storage, ImmutableSortedSet<Integer>> writes(Set<Integer> iterations) {
-		ImmutableMap.Builder<Storage, ImmutableSortedSet<Integer>> builder = ImmutableMap.builder();
+	public ImmutableMap<Storage, IndexSet> writes(Set<Integer> iterations) {
+		ImmutableMap.Builder<Storage, IndexSet> builder = ImmutableMap.builder();
 		for (Storage s : outputs())
 			builder.put(s, writes(s, iterations));
 		return builder.build();
 	}
 
-	public ImmutableMap<Storage, ImmutableSortedSet<Integer>> writes(Range<Integer> iterations) {
-		ImmutableMap.Builder<Storage, ImmutableSortedSet<Integer>> builder = ImmutableMap.builder();
+	public ImmutableMap<Storage, IndexSet> writes(Range<Integer> iterations) {
+		ImmutableMap.Builder<Storage, IndexSet> builder = ImmutableMap.builder();
 		for (Storage s : outputs())
 			builder.put(s, writes(s, iterations));
 		return builder.build();
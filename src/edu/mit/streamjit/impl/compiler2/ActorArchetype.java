@@ -33,6 +33,7 @@ import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
 import edu.mit.streamjit.api.Filter;
 import edu.mit.streamjit.api.Joiner;
+import edu.mit.streamjit.api.Portal;
 import edu.mit.streamjit.api.Splitter;
 import edu.mit.streamjit.api.StatefulFilter;
 import edu.mit.streamjit.api.StreamElement;
@@ -434,6 +435,8 @@ public class ActorArchetype {
 		Method outputs = splitterKlass.getMethod("outputs", module.types().getMethodType(int.class, Splitter.class));
 		assert outputs != null;
 		Method invokeExact = Iterables.getOnlyElement(module.getKlass(MethodHandle.class).getMethods("invokeExact"));
+		Method getHandle = module.getKlass(Portal.class).getMethod("getHandle", module.types().getMethodType(Object.class, Portal.class, Worker.class, int.class));
+		assert getHandle != null;
 
 		List<Instruction> insts = new ArrayList<>();
 		Value replacement;
@@ -468,6 +471,13 @@ public class ActorArchetype {
 			ArrayLengthInst length = new ArrayLengthInst(writeIndex);
 			insts.add(length);
 			replacement = length;
+		} else if (method.equals(getHandle)) {
+			//The sender is the receiver we're eliminating; the state holder
+			//knows the worker's Mailbox.
+			Method holderGetHandle = module.getKlass(StateHolder.class).getMethod("getHandle", module.types().getMethodType(Object.class, StateHolder.class, Portal.class, int.class));
+			CallInst call = new CallInst(holderGetHandle, rwork.getArgument("$stateHolder"), inst.getArgument(0), inst.getArgument(2));
+			insts.add(call);
+			replacement = call;
 		} else
 			throw new AssertionError(inst);
 		inst.replaceInstWithInsts(replacement, insts);
@@ -687,11 +697,14 @@ public class ActorArchetype {
 
 	public StateHolder makeStateHolder(WorkerActor a) {
 		checkArgument(a.archetype() == this);
+		StateHolder holder;
 		try {
-			return (StateHolder)constructStateHolder.invoke(a.worker());
+			holder = (StateHolder)constructStateHolder.invoke(a.worker());
 		} catch (Throwable ex) {
 			throw new AssertionError(ex);
 		}
+		holder.setMailbox(a.mailbox());
+		return holder;
 	}
 
 	/**
@@ -706,6 +719,7 @@ public class ActorArchetype {
 	public MethodHandle specialize(WorkerActor a) {
 		checkArgument(a.archetype() == this);
 		MethodHandle handle = workMethods.get(new Pair<>(a.inputType().getRawType(), a.outputType().getRawType()));
-		return handle.bindTo(a.stateHolder());
+		handle = handle.bindTo(a.stateHolder());
+		return a.mailbox() != null ? a.mailbox().wrap(handle) : handle;
 	}
 }
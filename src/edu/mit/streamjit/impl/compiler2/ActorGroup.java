@@ -101,9 +101,14 @@ public class ActorGroup implements Comparable<ActorGroup> {
 		return false;
 	}
 
+	/**
+	 * Returns true if this group contains a stateful worker or a worker that
+	 * sends or receives messages (which must also execute serially).
+	 * @return true if this group must execute serially
+	 */
 	public boolean isStateful() {
 		for (Actor a : actors())
-			if (a instanceof WorkerActor && ((WorkerActor)a).archetype().isStateful())
+			if (a instanceof WorkerActor && (((WorkerActor)a).archetype().isStateful() || ((WorkerActor)a).mailbox() != null))
 				return true;
 		return false;
 	}
@@ -178,8 +183,8 @@ public class ActorGroup implements Comparable<ActorGroup> {
 	 * @param iteration the group iteration number
 	 * @return the physical indices read
 	 */
-	public ImmutableSortedSet<Integer> reads(Storage s, int iteration) {
-		ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+	public IndexSet reads(Storage s, int iteration) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (Actor a : actors())
 			builder.addAll(a.reads(s, Range.closedOpen(iteration * schedule.get(a), (iteration+1) * schedule.get(a))));
 		return builder.build();
@@ -192,9 +197,9 @@ public class ActorGroup implements Comparable<ActorGroup> {
 	 * @param iterations the group iterations
 	 * @return the physical indices read
 	 */
-	public ImmutableSortedSet<Integer> reads(Storage s, Range<Integer> iterations) {
+	public IndexSet reads(Storage s, Range<Integer> iterations) {
 		iterations = iterations.canonical(DiscreteDomain.integers());
-		ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+		IndexSet.Builder builder = IndexSet.builder();
 		for (Actor a : actors())
 			builder.addAll(a.reads(s, Range.closedOpen(iterations.lowerEndpoint() * schedule.get(a), iterations.upperEndpoint() * schedule.get(a))));
 		return builder.build();
@@ -206,7 +211,7 @@ public class ActorGroup implements Comparable<ActorGroup> {
 	 * @param iteration the iteration to simulate
 	 * @return a map of read physical indices
 	 */
-	public ImmutableMap<Storage, ImmutableSortedSet<Integer>> reads(final int iteration) {
+	public ImmutableMap<Storage, IndexSet> reads(final int iteration) {
 		return Maps.toMap(inputs(), (Storage input) -> reads(input, iteration));
 	}
 
@@ -217,8 +222,8 @@ public class ActorGroup implements Comparable<ActorGroup> {
 	 * @param iteration the group iteration number
 	 * @return the physical indices written
 	 */
-	public ImmutableSortedSet<Integer> writes(Storage s, int iteration) {
-		ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+	public IndexSet writes(Storage s, int iteration) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (Actor a : actors())
 			builder.addAll(a.writes(s, Range.closedOpen(iteration * schedule.get(a), (iteration+1) * schedule.get(a))));
 		return builder.build();
@@ -231,8 +236,8 @@ public class ActorGroup implements Comparable<ActorGroup> {
 	 * @param iterations the group iterations
 	 * @return the physical indices written
 	 */
-	public ImmutableSortedSet<Integer> writes(Storage s, Range<Integer> iterations) {
-		ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+	public IndexSet writes(Storage s, Range<Integer> iterations) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (Actor a : actors())
 			builder.addAll(a.writes(s, Range.closedOpen(iterations.lowerEndpoint() * schedule.get(a), iterations.upperEndpoint() * schedule.get(a))));
 		return builder.build();
@@ -244,7 +249,7 @@ public class ActorGroup implements Comparable<ActorGroup> {
 	 * @param iteration the iteration to simulate
 	 * @return a map of written physical indices
 	 */
-	public ImmutableMap<Storage, ImmutableSortedSet<Integer>> writes(final int iteration) {
+	public ImmutableMap<Storage, IndexSet> writes(final int iteration) {
 		return Maps.toMap(outputs(), (Storage output) -> writes(output, iteration));
 	}
 
@@ -277,6 +282,34 @@ public class ActorGroup implements Comparable<ActorGroup> {
 		return overall;
 	}
 
+	/**
+	 * Returns a void->void MethodHandle that will run this ActorGroup for
+	 * chunks of the given iterations claimed from the given queue, until the
+	 * queue is empty.  Cores sharing the iterations each run such a handle
+	 * once per steady-state iteration.
+	 * @param iterations the range of iterations the queue hands out
+	 * @param queue the queue to claim chunks from
+	 * @param storage the storage being used
+	 * @return a void->void method handle
+	 */
+	public MethodHandle specializeShared(Range<Integer> iterations, ChunkQueue queue, Map<Storage, ConcreteStorage> storage,
+			BiFunction<MethodHandle[], WorkerActor, MethodHandle> switchFactory,
+			int unrollFactor,
+			ImmutableTable<Actor, Integer, IndexFunctionTransformer> inputTransformers,
+			ImmutableTable<Actor, Integer, IndexFunctionTransformer> outputTransformers) {
+		assert !isTokenGroup() : actors();
+		assert !isStateful() : actors();
+
+		//Bind for all the iterations, as we might run any of them.
+		Map<Actor, MethodHandle> withRWHandlesBound =
+				bindActorsToStorage(iterations, storage, switchFactory, inputTransformers, outputTransformers);
+		unrollFactor = Math.max(Math.min(unrollFactor, queue.chunkSize()), 1);
+		return MethodHandles.insertArguments(CLAIM_LOOP, 0,
+				makeSharedGroupLoop(unrollFactor, withRWHandlesBound),
+				makeSharedGroupLoop(1, withRWHandlesBound),
+				unrollFactor, queue, new long[1]);
+	}
+
 	/**
 	 * Compute the read and write method handles for each Actor. These don't
 	 * depend on the iteration, so we can bind and reuse them.
@@ -286,6 +319,9 @@ public class ActorGroup implements Comparable<ActorGroup> {
 		for (Actor a : actors()) {
 			WorkerActor wa = (WorkerActor)a;
 			MethodHandle specialized = wa.archetype().specialize(wa);
+			//The transformers' domains are in terms of this actor's executions,
+			//not group iterations.
+			Range<Integer> executions = Range.closedOpen(iterations.lowerEndpoint() * schedule.get(a), iterations.upperEndpoint() * schedule.get(a));
 
 			assert a.inputs().size() > 0 : a;
 			MethodType readHandleType = MethodType.methodType(wa.inputType().getRawType(), int.class);
@@ -294,12 +330,12 @@ public class ActorGroup implements Comparable<ActorGroup> {
 				MethodHandle[] table = new MethodHandle[a.inputs().size()];
 				IntStream.range(0, a.inputs().size()).forEachOrdered(i ->
 					table[i] = MethodHandles.filterArguments(storage.get(a.inputs().get(i)).readHandle(), 0,
-							inputTransformers.get(a, i).transform(a.inputIndexFunctions().get(i).asHandle(), () -> a.peeks(i, iterations)))
+							inputTransformers.get(a, i).transform(a.inputIndexFunctions().get(i).asHandle(), () -> a.peeks(i, executions)))
 							.asType(readHandleType));
 				read = switchFactory.apply(table, wa);
 			} else
 				read = MethodHandles.filterArguments(storage.get(a.inputs().get(0)).readHandle(), 0,
-						inputTransformers.get(a, 0).transform(a.inputIndexFunctions().get(0).asHandle(), () -> a.peeks(0, iterations)))
+						inputTransformers.get(a, 0).transform(a.inputIndexFunctions().get(0).asHandle(), () -> a.peeks(0, executions)))
 						.asType(readHandleType);
 
 			assert a.outputs().size() > 0 : a;
@@ -309,12 +345,12 @@ public class ActorGroup implements Comparable<ActorGroup> {
 				MethodHandle[] table = new MethodHandle[a.outputs().size()];
 				IntStream.range(0, a.outputs().size()).forEachOrdered(i ->
 					table[i] = MethodHandles.filterArguments(storage.get(a.outputs().get(i)).writeHandle(), 0,
-							outputTransformers.get(a, i).transform(a.outputIndexFunctions().get(i).asHandle(), () -> a.pushes(i, iterations)))
+							outputTransformers.get(a, i).transform(a.outputIndexFunctions().get(i).asHandle(), () -> a.pushes(i, executions)))
 							.asType(writeHandleType));
 				write = switchFactory.apply(table, wa);
 			} else
 				write = MethodHandles.filterArguments(storage.get(a.outputs().get(0)).writeHandle(), 0,
-						outputTransformers.get(a, 0).transform(a.outputIndexFunctions().get(0).asHandle(), () -> a.pushes(0, iterations)))
+						outputTransformers.get(a, 0).transform(a.outputIndexFunctions().get(0).asHandle(), () -> a.pushes(0, executions)))
 						.asType(writeHandleType);
 
 			withRWHandlesBound.put(wa, specialized.bindTo(read).bindTo(write));
@@ -351,6 +387,28 @@ public class ActorGroup implements Comparable<ActorGroup> {
 		return groupLoop;
 	}
 
+	/**
+	 * Like makeGroupLoop, but the iterations to execute are passed as two int
+	 * arguments (begin and end) at run time.  We make the worker loops as if
+	 * starting from iteration 1, so the initial index array contents are the
+	 * per-iteration strides, which we scale by the first iteration before
+	 * each loop.
+	 */
+	private MethodHandle makeSharedGroupLoop(int unrollFactor, Map<Actor, MethodHandle> withRWHandlesBound) {
+		List<MethodHandle> loopHandles = new ArrayList<>(actors().size());
+		Map<int[], int[]> requiredCopies = new LinkedHashMap<>();
+		for (Actor a : actors())
+			loopHandles.add(makeWorkerLoop((WorkerActor)a, withRWHandlesBound.get(a), unrollFactor, 1, requiredCopies));
+		int[][] strides = new int[requiredCopies.size()*2][];
+		int i = 0;
+		for (Map.Entry<int[], int[]> e : requiredCopies.entrySet()) {
+			strides[i++] = e.getKey();
+			strides[i++] = e.getValue();
+		}
+		return MethodHandles.insertArguments(SHARED_GROUP_LOOP, 0,
+				Combinators.semicolon(loopHandles), strides, unrollFactor);
+	}
+
 	/**
 	 * Makes the loop for the given actor, which implements group executions
 	 * based on the unroll factor.
@@ -405,6 +463,8 @@ public class ActorGroup implements Comparable<ActorGroup> {
 	private static final MethodHandle JOINER_LOOP = findStatic(LOOKUP, "_joinerLoop");
 	private static final MethodHandle REINITIALIZE_ARRAYS = findStatic(LOOKUP, "_reinitializeArrays");
 	private static final MethodHandle OVERALL_GROUP_LOOP = findStatic(LOOKUP, "_overallGroupLoop");
+	private static final MethodHandle SHARED_GROUP_LOOP = findStatic(LOOKUP, "_sharedGroupLoop");
+	private static final MethodHandle CLAIM_LOOP = findStatic(LOOKUP, "_claimLoop");
 	private static void _filterLoop(MethodHandle work, int iterations, int subiterations, int pop, int push, int firstIteration) throws Throwable {
 		for (int i = firstIteration*subiterations; i < (firstIteration+iterations)*subiterations; ++i)
 			work.invokeExact(i * pop, i * push);
@@ -425,6 +485,24 @@ public class ActorGroup implements Comparable<ActorGroup> {
 		for (int i = begin; i < end; i += increment)
 			loopBody.invokeExact(i);
 	}
+	private static void _sharedGroupLoop(MethodHandle loopBody, int[][] strides, int increment, int begin, int end) throws Throwable {
+		for (int i = 0; i < strides.length; i += 2)
+			for (int j = 0; j < strides[i].length; ++j)
+				strides[i+1][j] = begin * strides[i][j];
+		for (int i = begin; i < end; i += increment)
+			loopBody.invokeExact(i);
+	}
+	private static void _claimLoop(MethodHandle unrolledLoop, MethodHandle loop, int unrollFactor, ChunkQueue queue, long[] round) throws Throwable {
+		long r = round[0]++;
+		for (int chunk; (chunk = queue.claim(r)) >= 0;) {
+			int begin = queue.begin(chunk), end = queue.end(chunk);
+			int unrollEnd = begin + (end - begin)/unrollFactor*unrollFactor;
+			if (begin < unrollEnd)
+				unrolledLoop.invokeExact(begin, unrollEnd);
+			if (unrollEnd < end)
+				loop.invokeExact(unrollEnd, end);
+		}
+	}
 
 	/**
 	 * This is inconsistent with equals, but we should never have two distinct
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.compiler2;
+
+/**
+ * A ConcreteStorage backed by a Java array, so runs of consecutive physical
+ * indices can be moved to and from other arrays with
+ * {@link System#arraycopy(Object, int, Object, int, int)}.
+ * @since 10/18/2026
+ */
+public interface ArrayCopyConcreteStorage extends ConcreteStorage {
+	/**
+	 * Copies items from the given array into this storage.  The array must be
+	 * of this storage's type, or Object[] if this storage's type is a
+	 * reference type.
+	 * @param src the source array
+	 * @param srcPos the position of the first item to copy in the source
+	 * @param index the physical index of the first item in this storage
+	 * @param length the number of items to copy
+	 */
+	public void copyFrom(Object src, int srcPos, int index, int length);
+
+	/**
+	 * Copies items from this storage into the given array.  The array must be
+	 * of this storage's type, or Object[] if this storage's type is a
+	 * reference type.
+	 * @param index the physical index of the first item in this storage
+	 * @param dest the destination array
+	 * @param destPos the position of the first item in the destination
+	 * @param length the number of items to copy
+	 */
+	public void copyTo(int index, Object dest, int destPos, int length);
+}
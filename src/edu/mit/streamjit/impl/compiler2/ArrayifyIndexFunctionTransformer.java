@@ -47,6 +47,9 @@ public class ArrayifyIndexFunctionTransformer implements IndexFunctionTransforme
 	@Override
 	public MethodHandle transform(MethodHandle fxn, Supplier<? extends NavigableSet<Integer>> domainSupplier) {
 		NavigableSet<Integer> domain = domainSupplier.get();
+		//Nothing to precompute (e.g., a zero-rate output).
+		if (domain.isEmpty())
+			return fxn;
 		int[] array = new int[domain.last() - domain.first() + 1];
 		int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
 		for (int i : domain) {
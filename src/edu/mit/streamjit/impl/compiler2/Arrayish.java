@@ -77,6 +77,13 @@ public interface Arrayish {
 			this.get = MethodHandles.arrayElementGetter(array.getClass()).bindTo(array);
 			this.set = MethodHandles.arrayElementSetter(array.getClass()).bindTo(array);
 		}
+		/**
+		 * Returns the array backing this Arrayish.
+		 * @return the backing array
+		 */
+		public Object array() {
+			return array;
+		}
 		@Override
 		public Class<?> type() {
 			return array.getClass().getComponentType();
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.compiler2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import com.google.common.math.IntMath;
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out chunks of a group's iterations to the cores sharing it, so each
+ * core claims more work as it finishes its last chunk.  Cores call
+ * {@link #claim(long)} with the number of steady-state iterations they've
+ * completed; the queue never hands out a chunk of the next steady-state
+ * iteration, so it needs no reset between iterations.
+ * @since 10/18/2026
+ */
+public final class ChunkQueue {
+	private final int begin, end, chunkSize, chunks;
+	/**
+	 * The total number of chunks claimed, over all steady-state iterations.
+	 */
+	private final AtomicLong claimed = new AtomicLong();
+	public ChunkQueue(Range<Integer> iterations, int chunkSize) {
+		checkArgument(iterations.lowerBoundType() == BoundType.CLOSED && iterations.upperBoundType() == BoundType.OPEN, iterations);
+		checkArgument(!iterations.isEmpty(), iterations);
+		checkArgument(chunkSize >= 1, chunkSize);
+		this.begin = iterations.lowerEndpoint();
+		this.end = iterations.upperEndpoint();
+		this.chunkSize = chunkSize;
+		this.chunks = IntMath.divide(end - begin, chunkSize, RoundingMode.CEILING);
+	}
+
+	/**
+	 * Claims a chunk of the given steady-state iteration.
+	 * @param round the number of steady-state iterations the calling core has
+	 * completed
+	 * @return the claimed chunk, or -1 if all chunks have been claimed
+	 */
+	public int claim(long round) {
+		long limit = (round + 1) * chunks;
+		for (;;) {
+			long c = claimed.get();
+			assert c >= round * chunks : "claiming for round "+round+" but at "+c;
+			if (c >= limit)
+				return -1;
+			if (claimed.compareAndSet(c, c + 1))
+				return (int)(c - round * chunks);
+		}
+	}
+
+	/**
+	 * Returns the first iteration in the given chunk.
+	 * @param chunk a chunk
+	 * @return the first iteration in the chunk
+	 */
+	public int begin(int chunk) {
+		return begin + chunk * chunkSize;
+	}
+
+	/**
+	 * Returns one past the last iteration in the given chunk.
+	 * @param chunk a chunk
+	 * @return one past the last iteration in the chunk
+	 */
+	public int end(int chunk) {
+		return Math.min(begin(chunk) + chunkSize, end);
+	}
+
+	public int chunkSize() {
+		return chunkSize;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ChunkQueue[%d, %d) by %d", begin, end, chunkSize);
+	}
+}
@@ -92,6 +92,19 @@ public class CircularArrayConcreteStorage implements ConcreteStorage {
 		return (physicalIndex + head) % capacity;
 	}
 
+	/**
+	 * Creates a CircularArrayConcreteStorage, supporting bulk copies if the
+	 * given Arrayish is backed by a Java array.
+	 * @param array the array to store items in
+	 * @param s the storage being implemented
+	 * @return a CircularArrayConcreteStorage
+	 */
+	public static CircularArrayConcreteStorage create(Arrayish array, Storage s) {
+		return array instanceof Arrayish.ArrayArrayish ?
+				new JavaArrayStorage((Arrayish.ArrayArrayish)array, s) :
+				new CircularArrayConcreteStorage(array, s);
+	}
+
 	public static StorageFactory factory() {
 		return new StorageFactory() {
 			@Override
@@ -101,8 +114,37 @@ public class CircularArrayConcreteStorage implements ConcreteStorage {
 				Arrayish array = storage.type().isPrimitive() ?
 						new Arrayish.UnsafeArrayish(storage.type(), storage.steadyStateCapacity()) :
 						new Arrayish.ArrayArrayish(storage.type(), storage.steadyStateCapacity());
-				return new CircularArrayConcreteStorage(array, storage);
+				return create(array, storage);
 			}
 		};
 	}
+
+	private static final class JavaArrayStorage extends CircularArrayConcreteStorage implements ArrayCopyConcreteStorage {
+		private final Object array;
+		private JavaArrayStorage(Arrayish.ArrayArrayish array, Storage s) {
+			super(array, s);
+			this.array = array.array();
+		}
+		@Override
+		public void copyFrom(Object src, int srcPos, int index, int length) {
+			//Copy up to the end of the array, then wrap around.
+			while (length > 0) {
+				int start = index(super.capacity, super.head, index), n = Math.min(length, super.capacity - start);
+				System.arraycopy(src, srcPos, array, start, n);
+				srcPos += n;
+				index += n;
+				length -= n;
+			}
+		}
+		@Override
+		public void copyTo(int index, Object dest, int destPos, int length) {
+			while (length > 0) {
+				int start = index(super.capacity, super.head, index), n = Math.min(length, super.capacity - start);
+				System.arraycopy(array, start, dest, destPos, n);
+				destPos += n;
+				index += n;
+				length -= n;
+			}
+		}
+	}
 }
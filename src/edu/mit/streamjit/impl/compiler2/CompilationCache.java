@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.compiler2;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import edu.mit.streamjit.api.Rate;
+import edu.mit.streamjit.api.Worker;
+import edu.mit.streamjit.impl.blob.Blob.Token;
+import edu.mit.streamjit.impl.common.Configuration;
+import edu.mit.streamjit.impl.common.Workers;
+import edu.mit.streamjit.util.json.Jsonifiers;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An on-disk cache of the schedules Compiler2 computes, so recompiling the
+ * same stream graph with the same configuration (e.g., on restart or
+ * reconfiguration) skips the ILP solves.  Entries are keyed by a hash of the
+ * workers' classes, identifiers, connections and rates, the amount of
+ * initial data on each edge, and the configuration's parameters.  Fusion and
+ * removal are determined by those parameters, so the groups' ids identify
+ * the same groups in every compilation with the same key.
+ * <p/>
+ * Generated archetype classes aren't cached: they're spun into a fresh
+ * package per compilation and bound into MethodHandle trees that can't be
+ * persisted.
+ * <p/>
+ * The cache is enabled by putting the cache directory's path (a String) in
+ * the configuration's extra data under "compilationCache".  Unreadable or
+ * stale entries are treated as misses.
+ * @since 10/18/2026
+ */
+public final class CompilationCache {
+	private final Path directory;
+	public CompilationCache(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the cache named in the given configuration's extra data, or
+	 * null if the configuration doesn't name one.
+	 * @param config the configuration
+	 * @return a cache, or null
+	 */
+	public static CompilationCache fromConfiguration(Configuration config) {
+		String path = (String)config.getExtraData("compilationCache");
+		return path != null ? new CompilationCache(Paths.get(path)) : null;
+	}
+
+	/**
+	 * Computes the cache key for compiling the given workers.
+	 * @param workers the workers being compiled
+	 * @param initialData the initial data on each edge
+	 * @param config the configuration
+	 * @return the cache key
+	 */
+	public String key(Set<Worker<?, ?>> workers, Map<Token, ? extends List<?>> initialData, Configuration config) {
+		Hasher hasher = Hashing.sha256().newHasher();
+		Map<Integer, Worker<?, ?>> sortedWorkers = new TreeMap<>();
+		for (Worker<?, ?> w : workers)
+			sortedWorkers.put(Workers.getIdentifier(w), w);
+		for (Map.Entry<Integer, Worker<?, ?>> e : sortedWorkers.entrySet()) {
+			Worker<?, ?> w = e.getValue();
+			hasher.putInt(e.getKey()).putString(w.getClass().getName(), StandardCharsets.UTF_8);
+			putRates(hasher, w.getPeekRates());
+			putRates(hasher, w.getPopRates());
+			putRates(hasher, w.getPushRates());
+			for (Worker<?, ?> s : Workers.getSuccessors(w))
+				hasher.putInt(Workers.getIdentifier(s));
+			hasher.putChar(';');
+		}
+		for (Map.Entry<Token, ? extends List<?>> e : new TreeMap<>(initialData).entrySet())
+			hasher.putString(e.getKey().toString(), StandardCharsets.UTF_8).putInt(e.getValue().size());
+		for (Map.Entry<String, Configuration.Parameter> e : new TreeMap<>(config.getParametersMap()).entrySet())
+			hasher.putString(Jsonifiers.toJson(e.getValue()).toString(), StandardCharsets.UTF_8);
+		return hasher.hash().toString();
+	}
+
+	private static void putRates(Hasher hasher, List<Rate> rates) {
+		hasher.putInt(rates.size());
+		for (Rate r : rates)
+			hasher.putString(r.toString(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the schedules cached under the given key, or null if there are
+	 * none (or they can't be read).
+	 * @param key the cache key
+	 * @return the cached schedules, or null
+	 */
+	public Schedules get(String key) {
+		Path file = directory.resolve(key + ".schedules");
+		if (!Files.isRegularFile(file))
+			return null;
+		try (InputStream is = Files.newInputStream(file);
+				ObjectInputStream ois = new ObjectInputStream(is)) {
+			return (Schedules)ois.readObject();
+		} catch (IOException | ClassNotFoundException | ClassCastException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Caches the given schedules under the given key.  Failing to write the
+	 * cache isn't fatal; we'll just compute the schedules again next time.
+	 * @param key the cache key
+	 * @param schedules the schedules
+	 */
+	public void put(String key, Schedules schedules) {
+		try {
+			Files.createDirectories(directory);
+			//Write to a temporary file, then rename, so concurrent compilers
+			//never see a partially-written entry.
+			Path temp = Files.createTempFile(directory, key, ".tmp");
+			try (OutputStream os = Files.newOutputStream(temp);
+					ObjectOutputStream oos = new ObjectOutputStream(os)) {
+				oos.writeObject(schedules);
+			}
+			Files.move(temp, directory.resolve(key + ".schedules"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			//Not fatal; see above.
+		}
+	}
+
+	/**
+	 * The schedules for one compilation, with groups identified by their ids
+	 * and actors by theirs.
+	 */
+	public static final class Schedules implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final HashMap<Integer, HashMap<Integer, Integer>> internalSchedules;
+		private final HashMap<Integer, Integer> externalSchedule, initSchedule;
+		public Schedules(Set<ActorGroup> groups, Map<ActorGroup, Integer> externalSchedule, Map<ActorGroup, Integer> initSchedule) {
+			this.internalSchedules = new HashMap<>();
+			for (ActorGroup g : groups) {
+				HashMap<Integer, Integer> internal = new HashMap<>();
+				for (Map.Entry<Actor, Integer> e : g.schedule().entrySet())
+					internal.put(e.getKey().id(), e.getValue());
+				internalSchedules.put(g.id(), internal);
+			}
+			this.externalSchedule = byId(externalSchedule);
+			this.initSchedule = byId(initSchedule);
+		}
+
+		private static HashMap<Integer, Integer> byId(Map<ActorGroup, Integer> schedule) {
+			HashMap<Integer, Integer> byId = new HashMap<>();
+			for (Map.Entry<ActorGroup, Integer> e : schedule.entrySet())
+				byId.put(e.getKey().id(), e.getValue());
+			return byId;
+		}
+
+		/**
+		 * Returns true iff these schedules cover exactly the given groups and
+		 * their actors.
+		 * @param groups the groups
+		 * @return true iff these schedules apply to the groups
+		 */
+		public boolean matches(Set<ActorGroup> groups) {
+			if (internalSchedules.size() != groups.size())
+				return false;
+			for (ActorGroup g : groups) {
+				Map<Integer, Integer> internal = internalSchedules.get(g.id());
+				if (internal == null || internal.size() != g.actors().size()
+						|| !externalSchedule.containsKey(g.id()) || !initSchedule.containsKey(g.id()))
+					return false;
+				for (Actor a : g.actors())
+					if (!internal.containsKey(a.id()))
+						return false;
+			}
+			return true;
+		}
+
+		public ImmutableMap<Actor, Integer> internalSchedule(ActorGroup group) {
+			Map<Integer, Integer> internal = internalSchedules.get(group.id());
+			ImmutableMap.Builder<Actor, Integer> builder = ImmutableMap.builder();
+			for (Actor a : group.actors())
+				builder.put(a, internal.get(a.id()));
+			return builder.build();
+		}
+
+		public ImmutableMap<ActorGroup, Integer> externalSchedule(Set<ActorGroup> groups) {
+			return toGroups(externalSchedule, groups);
+		}
+
+		public ImmutableMap<ActorGroup, Integer> initSchedule(Set<ActorGroup> groups) {
+			return toGroups(initSchedule, groups);
+		}
+
+		private static ImmutableMap<ActorGroup, Integer> toGroups(Map<Integer, Integer> byId, Set<ActorGroup> groups) {
+			ImmutableMap.Builder<ActorGroup, Integer> builder = ImmutableMap.builder();
+			for (ActorGroup g : groups)
+				builder.put(g, byId.get(g.id()));
+			return builder.build();
+		}
+	}
+}
@@ -22,6 +22,8 @@
 package edu.mit.streamjit.impl.compiler2;
 
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
 import static com.google.common.base.Preconditions.checkState;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashBasedTable;
@@ -31,7 +33,9 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
+import com.google.common.collect.MultimapBuilder;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
@@ -39,11 +43,13 @@ import com.google.common.primitives.Ints;
 import com.google.common.primitives.Primitives;
 import com.google.common.reflect.TypeResolver;
 import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.Uninterruptibles;
 import edu.mit.streamjit.api.DuplicateSplitter;
 import edu.mit.streamjit.api.IllegalStreamGraphException;
 import edu.mit.streamjit.api.Input;
 import edu.mit.streamjit.api.Joiner;
 import edu.mit.streamjit.api.Output;
+import edu.mit.streamjit.api.Portal;
 import edu.mit.streamjit.api.RoundrobinJoiner;
 import edu.mit.streamjit.api.RoundrobinSplitter;
 import edu.mit.streamjit.api.Splitter;
@@ -57,15 +63,19 @@ import edu.mit.streamjit.impl.blob.Blob.Token;
 import edu.mit.streamjit.impl.blob.Buffer;
 import edu.mit.streamjit.impl.blob.DrainData;
 import edu.mit.streamjit.impl.blob.PeekableBuffer;
+import edu.mit.streamjit.impl.blob.PrimitiveBuffer;
 import edu.mit.streamjit.impl.common.Configuration;
 import edu.mit.streamjit.impl.common.Configuration.IntParameter;
 import edu.mit.streamjit.impl.common.Configuration.SwitchParameter;
 import edu.mit.streamjit.impl.common.InputBufferFactory;
+import edu.mit.streamjit.impl.common.MessageConstraint;
 import edu.mit.streamjit.impl.common.OutputBufferFactory;
+import edu.mit.streamjit.impl.common.Portals;
 import edu.mit.streamjit.impl.common.Workers;
 import edu.mit.streamjit.impl.compiler.Schedule;
 import edu.mit.streamjit.impl.compiler2.Compiler2BlobHost.DrainInstruction;
 import edu.mit.streamjit.impl.compiler2.Compiler2BlobHost.ReadInstruction;
+import edu.mit.streamjit.impl.compiler2.Compiler2BlobHost.StorageStep;
 import edu.mit.streamjit.impl.compiler2.Compiler2BlobHost.WriteInstruction;
 import edu.mit.streamjit.test.Benchmark;
 import edu.mit.streamjit.test.Benchmarker;
@@ -73,6 +83,7 @@ import edu.mit.streamjit.test.apps.fmradio.FMRadio;
 import edu.mit.streamjit.util.CollectionUtils;
 import edu.mit.streamjit.util.GeneralBinarySearch;
 import edu.mit.streamjit.util.bytecode.methodhandles.Combinators;
+import static edu.mit.streamjit.util.bytecode.methodhandles.LookupUtils.findStatic;
 import edu.mit.streamjit.util.Pair;
 import edu.mit.streamjit.util.ReflectionUtils;
 import edu.mit.streamjit.util.bytecode.Module;
@@ -81,18 +92,25 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -106,14 +124,34 @@ public class Compiler2 {
 			RoundrobinSplitter.class, WeightedRoundrobinSplitter.class, DuplicateSplitter.class,
 			RoundrobinJoiner.class, WeightedRoundrobinJoiner.class);
 	public static final ImmutableSet<IndexFunctionTransformer> INDEX_FUNCTION_TRANSFORMERS = ImmutableSet.<IndexFunctionTransformer>of(
-			new IdentityIndexFunctionTransformer()
-//			new ArrayifyIndexFunctionTransformer(false),
-//			new ArrayifyIndexFunctionTransformer(true)
+			new IdentityIndexFunctionTransformer(),
+			new ArrayifyIndexFunctionTransformer(false),
+			new ArrayifyIndexFunctionTransformer(true)
 	);
+	/**
+	 * Index functions cheaper than this aren't worth replacing with an array
+	 * load: identity, addition and their compositions cost less, while
+	 * anything through a removed roundrobin splitter or joiner costs at least
+	 * this much.
+	 */
+	private static final int MIN_TRANSFORMED_INDEX_FUNCTION_COST = 4;
+	/**
+	 * The largest domain we'll precompute an index function over, to bound
+	 * the size of the resulting arrays.
+	 */
+	private static final int MAX_TRANSFORMED_INDEX_FUNCTION_DOMAIN = 1 << 16;
+	private static final IndexFunctionTransformer IDENTITY_TRANSFORMER = new IdentityIndexFunctionTransformer();
+	/**
+	 * Stateless init groups with fewer worker executions than this run on one
+	 * core with their neighbors; splitting them across cores would cost more
+	 * in synchronization than it saves.
+	 */
+	private static final int MIN_PARALLEL_INIT_EXECUTIONS = 256;
+	private static final MethodHandle RUN_IN_PARALLEL = findStatic(MethodHandles.lookup(), "_runInParallel");
 	public static final RemovalStrategy REMOVAL_STRATEGY = new BitsetRemovalStrategy();
 	public static final FusionStrategy FUSION_STRATEGY = new BitsetFusionStrategy();
 	public static final UnboxingStrategy UNBOXING_STRATEGY = new BitsetUnboxingStrategy();
-	public static final AllocationStrategy ALLOCATION_STRATEGY = new SubsetBiasAllocationStrategy(8);
+	public static final AllocationStrategy ALLOCATION_STRATEGY = new WorkStealingAllocationStrategy(new SubsetBiasAllocationStrategy(8));
 	public static final StorageStrategy INTERNAL_STORAGE_STRATEGY = new TuneInternalStorageStrategy();
 	public static final StorageStrategy EXTERNAL_STORAGE_STRATEGY = new TuneExternalStorageStrategy();
 	public static final SwitchingStrategy SWITCHING_STRATEGY = SwitchingStrategy.tunePerWorker();
@@ -177,6 +215,11 @@ public class Compiler2 {
 	private final List<ReadInstruction> readInstructions = new ArrayList<>();
 	private final List<WriteInstruction> writeInstructions = new ArrayList<>();
 	private final List<DrainInstruction> drainInstructions = new ArrayList<>();
+	/**
+	 * Per-storage steps for a pipelined steady state, or null to run the
+	 * steady state with a global barrier.
+	 */
+	private ImmutableList<StorageStep> pipelineSteps;
 	public Compiler2(Set<Worker<?, ?>> workers, Configuration config, int maxNumCores, DrainData initialState, Input<?> input, Output<?> output) {
 		this.workers = ImmutableSet.copyOf(workers);
 		Map<Class<?>, ActorArchetype> archetypesBuilder = new HashMap<>();
@@ -191,6 +234,16 @@ public class Compiler2 {
 		}
 		this.archetypes = ImmutableSet.copyOf(archetypesBuilder.values());
 
+		//The portals need their constraints for the interpreter we drain with;
+		//our actors get Mailboxes to send and receive messages when compiled.
+		List<MessageConstraint> constraints = MessageConstraint.findConstraints(workers.iterator().next());
+		Set<Portal<?>> portals = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (MessageConstraint mc : constraints)
+			portals.add(mc.getPortal());
+		for (Portal<?> portal : portals)
+			Portals.setConstraints(portal, constraints);
+		Mailbox.install(workerActors, constraints);
+
 		Map<Token, TokenActor> tokenActors = new HashMap<>();
 		Table<Actor, Actor, Storage> storageTable = HashBasedTable.create();
 		int[] inputTokenId = new int[]{Integer.MIN_VALUE}, outputTokenId = new int[]{Integer.MAX_VALUE};
@@ -319,13 +372,27 @@ public class Compiler2 {
 	}
 
 	/**
-	 * Computes each group's internal schedule and the external schedule.
+	 * Computes each group's internal schedule, the external schedule and the
+	 * init schedule, or restores them from the compilation cache.
 	 */
 	private void schedule() {
-		for (ActorGroup g : groups)
-			internalSchedule(g);
-		externalSchedule();
-		initSchedule();
+		CompilationCache cache = CompilationCache.fromConfiguration(config);
+		String key = cache != null ? cache.key(workers, initialStateDataMap, config) : null;
+		CompilationCache.Schedules cached = cache != null ? cache.get(key) : null;
+		if (cached != null && cached.matches(groups)) {
+			for (ActorGroup g : groups)
+				g.setSchedule(cached.internalSchedule(g));
+			this.externalSchedule = cached.externalSchedule(groups);
+			this.initSchedule = cached.initSchedule(groups);
+		} else {
+			for (ActorGroup g : groups)
+				internalSchedule(g);
+			externalSchedule();
+			initSchedule();
+			if (cache != null)
+				cache.put(key, new CompilationCache.Schedules(groups, externalSchedule, initSchedule));
+		}
+		computePostInitLiveness();
 	}
 
 	private void externalSchedule() {
@@ -411,7 +478,13 @@ public class Compiler2 {
 		} catch (Schedule.ScheduleException ex) {
 			throw new StreamCompilationFailedException("couldn't find init schedule", ex);
 		}
+	}
 
+	/**
+	 * Computes the items live on each edge after the init schedule and
+	 * records their slots.
+	 */
+	private void computePostInitLiveness() {
 		ImmutableMap.Builder<Token, Integer> postInitLivenessBuilder = ImmutableMap.builder();
 		for (Storage s : storage) {
 			if (s.isInternal()) continue;
@@ -631,6 +704,11 @@ public class Compiler2 {
 			return _roundrobinTransferFunction(weight, prefixSum, N, operand);
 		}
 		@Override
+		public int cost() {
+			//multiply, divide, remainder and two adds
+			return 5;
+		}
+		@Override
 		public void applyBulk(int[] bulk) {
 			//TODO: is just a specialization point enough?
 			for (int i = 0; i < bulk.length; ++i)
@@ -903,21 +981,51 @@ public class Compiler2 {
 			for (int i = 0; i < a.outputs().size(); ++i)
 				outputTransformers.put(a, i, ift);
 		}
-		ImmutableMap.Builder<ActorGroup, Integer> unrollFactors = ImmutableMap.builder();
+		ImmutableMap.Builder<ActorGroup, Integer> unrollFactorsBuilder = ImmutableMap.builder();
 		for (ActorGroup g : groups)
-			unrollFactors.put(g, 1);
+			unrollFactorsBuilder.put(g, 1);
+		ImmutableMap<ActorGroup, Integer> unrollFactors = unrollFactorsBuilder.build();
+		ImmutableMap<Storage, ConcreteStorage> initCoreStorage = CollectionUtils.union(initStorage, internalStorage);
+		ImmutableTable<Actor, Integer, IndexFunctionTransformer> initInputTransformers = inputTransformers.build(),
+				initOutputTransformers = outputTransformers.build();
+		Supplier<Core> initCoreFactory = () -> new Core(initCoreStorage, (table, wa) -> Combinators.lookupswitch(table), unrollFactors, initInputTransformers, initOutputTransformers);
+		//The steady-state core threads are waiting for init, so we run it in
+		//the common pool, which there's no point oversubscribing.
+		int initCores = Math.min(maxNumCores, Runtime.getRuntime().availableProcessors());
+		AllocationStrategy initAllocationStrategy = new FullDataParallelAllocationStrategy(initCores);
 
 		/**
-		 * During init, all (nontoken) groups are assigned to the same Core in
-		 * topological order (via the ordering on ActorGroups).  At the same
-		 * time we build the token init schedule information required by the
-		 * blob host.
+		 * During init, groups run in topological order (via the ordering on
+		 * ActorGroups).  Stateless groups with enough work are split across
+		 * cores, with the phase ending when all cores finish; runs of other
+		 * (nontoken) groups share one core.  At the same time we build the
+		 * token init schedule information required by the blob host.
 		 */
-		Core initCore = new Core(CollectionUtils.union(initStorage, internalStorage), (table, wa) -> Combinators.lookupswitch(table), unrollFactors.build(), inputTransformers.build(), outputTransformers.build());
+		List<MethodHandle> initPhases = new ArrayList<>();
+		Core serialCore = initCoreFactory.get();
 		for (ActorGroup g : groups)
-			if (!g.isTokenGroup())
-				initCore.allocate(g, Range.closedOpen(0, initSchedule.get(g)));
-			else {
+			if (!g.isTokenGroup()) {
+				Range<Integer> iterations = Range.closedOpen(0, initSchedule.get(g));
+				int executions = initSchedule.get(g) * g.schedule().values().stream().mapToInt(Integer::intValue).sum();
+				if (initCores == 1 || g.isStateful() || executions < MIN_PARALLEL_INIT_EXECUTIONS) {
+					serialCore.allocate(g, iterations);
+					continue;
+				}
+				if (!serialCore.isEmpty()) {
+					initPhases.add(serialCore.code());
+					serialCore = initCoreFactory.get();
+				}
+				List<Core> cores = new ArrayList<>(initCores);
+				for (int i = 0; i < initCores; ++i)
+					cores.add(initCoreFactory.get());
+				initAllocationStrategy.allocateGroup(g, iterations, cores, config);
+				List<MethodHandle> code = new ArrayList<>(cores.size());
+				for (Core c : cores)
+					if (!c.isEmpty())
+						code.add(c.code().asType(MethodType.methodType(void.class)));
+				initPhases.add(code.size() == 1 ? code.get(0) :
+						RUN_IN_PARALLEL.bindTo(code.toArray(new MethodHandle[0])));
+			} else {
 				assert g.actors().size() == 1;
 				TokenActor ta = (TokenActor)g.actors().iterator().next();
 				assert g.schedule().get(ta) == 1;
@@ -928,11 +1036,42 @@ public class Compiler2 {
 				else
 					initWriteInstructions.add(makeWriteInstruction(ta, storage, executions));
 			}
-		this.initCode = initCore.code();
+		if (!serialCore.isEmpty())
+			initPhases.add(serialCore.code());
+		this.initCode = Combinators.semicolon(initPhases);
 
 		restoreOutputIndexFunctions(indexFxnBackup);
 	}
 
+	/**
+	 * Runs the given tasks (of type ()void), the first on this thread and the
+	 * others in the common fork-join pool, returning when all have finished.
+	 * The wait is uninterruptible, as the blob host may be interrupted for
+	 * draining while running init.
+	 */
+	private static void _runInParallel(MethodHandle[] tasks) throws Throwable {
+		List<Future<?>> futures = new ArrayList<>(tasks.length - 1);
+		for (int i = 1; i < tasks.length; ++i) {
+			MethodHandle task = tasks[i];
+			futures.add(ForkJoinPool.commonPool().submit(() -> {
+				try {
+					task.invokeExact();
+				} catch (Throwable ex) {
+					Throwables.propagateIfPossible(ex, Exception.class);
+					throw new AssertionError(ex);
+				}
+				return null;
+			}));
+		}
+		tasks[0].invokeExact();
+		for (Future<?> f : futures)
+			try {
+				Uninterruptibles.getUninterruptibly(f);
+			} catch (ExecutionException ex) {
+				throw ex.getCause();
+			}
+	}
+
 	private static final class AdditionIndexFunction implements IndexFunction {
 		private final int addend;
 		private AdditionIndexFunction(int addend) {
@@ -949,6 +1088,30 @@ public class Compiler2 {
 		}
 	}
 
+	/**
+	 * Returns the IndexFunctionTransformer the configuration selects for the
+	 * given group.  We only make parameters for workers next to removable
+	 * workers (the only ones whose index functions get expensive), so we use
+	 * the parameter of the group's lowest-numbered actor that has one.
+	 */
+	private IndexFunctionTransformer indexFunctionTransformer(ActorGroup g) {
+		for (Actor a : g.actors()) {
+			SwitchParameter<IndexFunctionTransformer> param = config.getParameter(String.format("Worker%dIndexFxnTransformer", a.id()), SwitchParameter.class, IndexFunctionTransformer.class);
+			if (param != null)
+				return param.getValue();
+		}
+		return IDENTITY_TRANSFORMER;
+	}
+
+	/**
+	 * Returns true if the given index function is expensive enough to be worth
+	 * replacing with an array load, and its domain is small enough to
+	 * precompute.
+	 */
+	private static boolean worthTransforming(IndexFunction fxn, int domainSize) {
+		return fxn.cost() >= MIN_TRANSFORMED_INDEX_FUNCTION_COST && domainSize <= MAX_TRANSFORMED_INDEX_FUNCTION_DOMAIN;
+	}
+
 	private void createSteadyStateCode() {
 		for (Actor a : actors) {
 			for (int i = 0; i < a.outputs().size(); ++i) {
@@ -970,24 +1133,26 @@ public class Compiler2 {
 		this.steadyStateStorage = createStorage(false, new PeekPokeStorageFactory(EXTERNAL_STORAGE_STRATEGY.asFactory(config)));
 		ImmutableMap<Storage, ConcreteStorage> internalStorage = createStorage(true, INTERNAL_STORAGE_STRATEGY.asFactory(config));
 
-		List<Core> ssCores = new ArrayList<>(maxNumCores);
-		IndexFunctionTransformer ift = new IdentityIndexFunctionTransformer();
-		for (int i = 0; i < maxNumCores; ++i) {
-			ImmutableTable.Builder<Actor, Integer, IndexFunctionTransformer> inputTransformers = ImmutableTable.builder(),
-					outputTransformers = ImmutableTable.builder();
-			for (Actor a : Iterables.filter(actors, WorkerActor.class)) {
-				for (int j = 0; j < a.inputs().size(); ++j) {
-//					String name = String.format("Core%dWorker%dInput%dIndexFxnTransformer", i, a.id(), j);
-//					SwitchParameter<IndexFunctionTransformer> param = config.getParameter(name, SwitchParameter.class, IndexFunctionTransformer.class);
-					inputTransformers.put(a, j, ift);
-				}
-				for (int j = 0; j < a.outputs().size(); ++j) {
-//					String name = String.format("Core%dWorker%dOutput%dIndexFxnTransformer", i, a.id(), j);
-//					SwitchParameter<IndexFunctionTransformer> param = config.getParameter(name, SwitchParameter.class, IndexFunctionTransformer.class);
-					outputTransformers.put(a, j, ift);
-				}
+		ImmutableTable.Builder<Actor, Integer, IndexFunctionTransformer> inputTransformersBuilder = ImmutableTable.builder(),
+				outputTransformersBuilder = ImmutableTable.builder();
+		for (ActorGroup g : groups) {
+			if (g.isTokenGroup()) continue;
+			IndexFunctionTransformer ift = indexFunctionTransformer(g);
+			for (Actor a : g.actors()) {
+				Range<Integer> executions = Range.closedOpen(0, externalSchedule.get(g) * g.schedule().get(a));
+				for (int j = 0; j < a.inputs().size(); ++j)
+					inputTransformersBuilder.put(a, j, worthTransforming(a.inputIndexFunctions().get(j), a.peeks(j, executions).size()) ?
+							ift : IDENTITY_TRANSFORMER);
+				for (int j = 0; j < a.outputs().size(); ++j)
+					outputTransformersBuilder.put(a, j, worthTransforming(a.outputIndexFunctions().get(j), a.pushes(j, executions).size()) ?
+							ift : IDENTITY_TRANSFORMER);
 			}
+		}
+		ImmutableTable<Actor, Integer, IndexFunctionTransformer> inputTransformers = inputTransformersBuilder.build(),
+				outputTransformers = outputTransformersBuilder.build();
 
+		List<Core> ssCores = new ArrayList<>(maxNumCores);
+		for (int i = 0; i < maxNumCores; ++i) {
 			ImmutableMap.Builder<ActorGroup, Integer> unrollFactors = ImmutableMap.builder();
 			for (ActorGroup g : groups) {
 				if (g.isTokenGroup()) continue;
@@ -995,10 +1160,12 @@ public class Compiler2 {
 				unrollFactors.put(g, param.getValue());
 			}
 
-			ssCores.add(new Core(CollectionUtils.union(steadyStateStorage, internalStorage), (table, wa) -> SWITCHING_STRATEGY.createSwitch(table, wa, config), unrollFactors.build(), inputTransformers.build(), outputTransformers.build()));
+			ssCores.add(new Core(CollectionUtils.union(steadyStateStorage, internalStorage), (table, wa) -> SWITCHING_STRATEGY.createSwitch(table, wa, config), unrollFactors.build(), inputTransformers, outputTransformers));
 		}
 
 		int throughputPerSteadyState = 0;
+		ListMultimap<Storage, ReadInstruction> storageReads = MultimapBuilder.hashKeys().arrayListValues().build();
+		ListMultimap<Storage, WriteInstruction> storageWrites = MultimapBuilder.hashKeys().arrayListValues().build();
 		for (ActorGroup g : groups)
 			if (!g.isTokenGroup())
 				ALLOCATION_STRATEGY.allocateGroup(g, Range.closedOpen(0, externalSchedule.get(g)), ssCores, config);
@@ -1006,19 +1173,27 @@ public class Compiler2 {
 				assert g.actors().size() == 1;
 				TokenActor ta = (TokenActor)g.actors().iterator().next();
 				assert g.schedule().get(ta) == 1;
-				ConcreteStorage storage = steadyStateStorage.get(Iterables.getOnlyElement(ta.isInput() ? g.outputs() : g.inputs()));
+				Storage s = Iterables.getOnlyElement(ta.isInput() ? g.outputs() : g.inputs());
+				ConcreteStorage storage = steadyStateStorage.get(s);
 				int executions = externalSchedule.get(g);
-				if (ta.isInput())
-					readInstructions.add(makeReadInstruction(ta, storage, executions));
-				else {
-					writeInstructions.add(makeWriteInstruction(ta, storage, executions));
+				if (ta.isInput()) {
+					ReadInstruction read = makeReadInstruction(ta, storage, executions);
+					readInstructions.add(read);
+					storageReads.put(s, read);
+				} else {
+					WriteInstruction write = makeWriteInstruction(ta, storage, executions);
+					writeInstructions.add(write);
+					storageWrites.put(s, write);
 					throughputPerSteadyState += executions;
 				}
 			}
+		List<Core> nonEmptyCores = new ArrayList<>(ssCores.size());
 		ImmutableList.Builder<MethodHandle> steadyStateCodeBuilder = ImmutableList.builder();
 		for (Core c : ssCores)
-			if (!c.isEmpty())
+			if (!c.isEmpty()) {
+				nonEmptyCores.add(c);
 				steadyStateCodeBuilder.add(c.code());
+			}
 		//Provide at least one core of code, even if it doesn't do anything; the
 		//blob host will still copy inputs to outputs.
 		this.steadyStateCode = steadyStateCodeBuilder.build();
@@ -1029,11 +1204,67 @@ public class Compiler2 {
 		createDrainInstructions();
 
 		Boolean reportThroughput = (Boolean)config.getExtraData("reportThroughput");
+		ImmutableList<WriteInstruction> unattachedWrites = ImmutableList.of();
 		if (reportThroughput != null && reportThroughput) {
 			ReportThroughputInstruction rti = new ReportThroughputInstruction(throughputPerSteadyState);
 			readInstructions.add(rti);
 			writeInstructions.add(rti);
+			unattachedWrites = ImmutableList.of(rti);
 		}
+
+		SwitchParameter<Boolean> pipelineParam = config.getParameter("PipelineSteadyState", SwitchParameter.class, Boolean.class);
+		if (pipelineParam != null && pipelineParam.getValue())
+			this.pipelineSteps = createPipelineSteps(nonEmptyCores, storageReads, storageWrites, unattachedWrites);
+	}
+
+	/**
+	 * Creates the per-storage steps for a pipelined steady state.  Each
+	 * steady-state storage gets a step listing the cores that use it, the
+	 * writes draining it, its adjust and the reads filling it.  Storage no core
+	 * uses (and instructions tied to no storage) get a step with no cores,
+	 * which the blob host runs with the reads.  Returns null if there are no
+	 * cores or some core uses no external storage, as there would be nothing to
+	 * order their iterations.
+	 * @param cores the nonempty steady-state cores, in code order
+	 * @param storageReads the read instructions filling each storage
+	 * @param storageWrites the write instructions draining each storage
+	 * @param unattachedWrites write instructions tied to no storage
+	 * @return the pipeline steps, or null
+	 */
+	private ImmutableList<StorageStep> createPipelineSteps(List<Core> cores,
+			ListMultimap<Storage, ReadInstruction> storageReads,
+			ListMultimap<Storage, WriteInstruction> storageWrites,
+			List<WriteInstruction> unattachedWrites) {
+		if (cores.isEmpty())
+			return null;
+		List<ImmutableSet<Storage>> coreStorage = new ArrayList<>(cores.size());
+		for (Core c : cores) {
+			ImmutableSet<Storage> used = c.externalStorage();
+			if (used.isEmpty())
+				return null;
+			coreStorage.add(used);
+		}
+
+		ImmutableList.Builder<StorageStep> steps = ImmutableList.builder();
+		List<WriteInstruction> coreLessWrites = new ArrayList<>(unattachedWrites);
+		List<MethodHandle> coreLessAdjusts = new ArrayList<>();
+		for (Map.Entry<Storage, ConcreteStorage> e : steadyStateStorage.entrySet()) {
+			Storage s = e.getKey();
+			ImmutableSet.Builder<Integer> users = ImmutableSet.builder();
+			for (int i = 0; i < coreStorage.size(); ++i)
+				if (coreStorage.get(i).contains(s))
+					users.add(i);
+			ImmutableSet<Integer> userSet = users.build();
+			if (userSet.isEmpty()) {
+				coreLessWrites.addAll(storageWrites.get(s));
+				coreLessAdjusts.add(e.getValue().adjustHandle());
+			} else
+				steps.add(new StorageStep(userSet, storageWrites.get(s), e.getValue().adjustHandle(), storageReads.get(s)));
+		}
+		if (!coreLessWrites.isEmpty() || !coreLessAdjusts.isEmpty())
+			steps.add(new StorageStep(ImmutableSet.<Integer>of(), coreLessWrites,
+					Combinators.semicolon(coreLessAdjusts), ImmutableList.<ReadInstruction>of()));
+		return steps.build();
 	}
 
 	private ReadInstruction makeReadInstruction(TokenActor a, ConcreteStorage cs, int count) {
@@ -1149,8 +1380,11 @@ public class Compiler2 {
 			drainInstructions.add(new XDrainInstruction(e.getKey(), storages, indices));
 		}
 
-		for (WorkerActor wa : Iterables.filter(actors, WorkerActor.class))
+		for (WorkerActor wa : Iterables.filter(actors, WorkerActor.class)) {
 			drainInstructions.add(wa.stateHolder());
+			if (wa.mailbox() != null)
+				drainInstructions.add(wa.mailbox());
+		}
 	}
 
 	//<editor-fold defaultstate="collapsed" desc="Output index function adjust/restore">
@@ -1163,7 +1397,7 @@ public class Compiler2 {
 	 * index set for the given external storage
 	 * @return the old output index functions, to be restored later
 	 */
-	private ImmutableMap<Actor, ImmutableList<IndexFunction>> adjustOutputIndexFunctions(Function<Storage, Set<Integer>> liveIndexExtractor) {
+	private ImmutableMap<Actor, ImmutableList<IndexFunction>> adjustOutputIndexFunctions(Function<Storage, IndexSet> liveIndexExtractor) {
 		ImmutableMap.Builder<Actor, ImmutableList<IndexFunction>> backup = ImmutableMap.builder();
 		for (Actor a : actors) {
 			backup.put(a, ImmutableList.copyOf(a.outputIndexFunctions()));
@@ -1172,7 +1406,7 @@ public class Compiler2 {
 				Storage s = a.outputs().get(i);
 				if (s.isInternal())
 					continue;
-				Set<Integer> liveIndices = liveIndexExtractor.apply(s);
+				IndexSet liveIndices = liveIndexExtractor.apply(s);
 				assert liveIndices != null : s +" "+liveIndexExtractor;
 				IndexFunction idxFxn = a.outputIndexFunctions().get(i);
 				int offset = GeneralBinarySearch.binarySearch(o -> liveIndices.contains(idxFxn.applyAsInt(o)), 0);
@@ -1237,7 +1471,7 @@ public class Compiler2 {
 		private MigrationInstruction(Storage storage, ConcreteStorage init, ConcreteStorage steady, Compiler2 compiler) {
 			this.init = init;
 			this.steady = steady;
-			Set<Integer> builder = new HashSet<>();
+			IndexSet.Builder builder = IndexSet.builder();
 			for (Actor a : storage.downstream())
 				for (int i = 0; i < a.inputs().size(); ++i)
 					if (a.inputs().get(i).equals(storage)) {
@@ -1248,8 +1482,7 @@ public class Compiler2 {
 							if (inputSlots.isLive(idx))
 								builder.add(bulk[idx]);
 					}
-			this.indicesToMigrate = Ints.toArray(builder);
-			//TODO: we used to sort here (using ImmutableSortedSet).  Does it matter?
+			this.indicesToMigrate = builder.build().toArray();
 		}
 		@Override
 		public void run() {
@@ -1381,20 +1614,81 @@ public class Compiler2 {
 	}
 
 	/**
-	 * TODO: consider using read/write handles instead of read(), write()?
+	 * Returns a handle of (Object array, int i, int idx) -> void type that
+	 * stores array[i] into the given storage at physical index idx, where
+	 * array is an array of the storage's (possibly primitive) type.  Used to
+	 * move items from a PrimitiveBuffer into storage without boxing.
+	 */
+	private static MethodHandle storeFromArray(ConcreteStorage storage) {
+		Class<?> type = storage.type(), arrayType = Array.newInstance(type, 0).getClass();
+		MethodHandle write = storage.writeHandle().asType(MethodType.methodType(void.class, int.class, type));
+		//(int idx, T[] array, int i)void
+		MethodHandle store = MethodHandles.collectArguments(write, 1, MethodHandles.arrayElementGetter(arrayType));
+		return MethodHandles.permuteArguments(store, MethodType.methodType(void.class, arrayType, int.class, int.class), 2, 0, 1)
+				.asType(MethodType.methodType(void.class, Object.class, int.class, int.class));
+	}
+
+	/**
+	 * Returns a handle of (Object array, int i, int idx) -> void type that
+	 * loads the item at physical index idx from the given storage into
+	 * array[i], where array is an array of the storage's (possibly primitive)
+	 * type.  Used to move items from storage into a PrimitiveBuffer without
+	 * boxing.
+	 */
+	private static MethodHandle loadIntoArray(ConcreteStorage storage) {
+		Class<?> type = storage.type(), arrayType = Array.newInstance(type, 0).getClass();
+		MethodHandle read = storage.readHandle().asType(MethodType.methodType(type, int.class));
+		return MethodHandles.filterArguments(MethodHandles.arrayElementSetter(arrayType), 2, read)
+				.asType(MethodType.methodType(void.class, Object.class, int.class, int.class));
+	}
+
+	/**
+	 * Returns true if the given storage can copy the given plan's runs to or
+	 * from the given data array directly.  Primitive storage needs a primitive
+	 * array of its type; reference storage can use an Object[], as
+	 * System.arraycopy checks each element's type.
+	 */
+	private static boolean canCopyRuns(TransferPlan plan, ConcreteStorage storage, Object data) {
+		return storage instanceof ArrayCopyConcreteStorage && plan.copyRuns() &&
+				(data.getClass().getComponentType() == storage.type() || !storage.type().isPrimitive());
+	}
+
+	/**
+	 * Reads items from a buffer into storage through the index function.  If
+	 * the buffer is a PrimitiveBuffer of the storage's type, items are moved
+	 * through a primitive array without boxing.  Either way, the array is
+	 * reused across iterations, and the index function is evaluated once up
+	 * front (see {@link TransferPlan}).
 	 */
 	private static final class TokenReadInstruction implements ReadInstruction {
 		private final Token token;
 		private final IndexFunction idxFxn;
 		private final ConcreteStorage storage;
 		private final int count;
+		private final TransferPlan plan;
+		private final int[] indices;
 		private Buffer buffer;
+		/**
+		 * If non-null, the storage, when it can copy runs directly from data.
+		 */
+		private ArrayCopyConcreteStorage copyStorage;
+		/**
+		 * If non-null, the buffer as a PrimitiveBuffer of the storage's type,
+		 * with data being a primitive array and store being a handle from
+		 * {@link #storeFromArray(ConcreteStorage)}.  If null, data is an
+		 * Object[].
+		 */
+		private PrimitiveBuffer primitiveBuffer;
+		private MethodHandle store;
+		private Object data;
 		private TokenReadInstruction(TokenActor a, ConcreteStorage storage, int count) {
 			assert a.isInput() : a;
 			this.token = a.token();
 			this.storage = storage;
 			this.idxFxn = Iterables.getOnlyElement(a.outputIndexFunctions());
 			this.count = count;
+			this.plan = TransferPlan.of(idxFxn, count);
+			this.indices = plan.indices();
 		}
 		@Override
 		public void init(Map<Token, Buffer> buffers) {
@@ -1402,6 +1696,13 @@ public class Compiler2 {
 			if (buffer != null)
 				checkState(buffers.get(token) == buffer, "reassigning %s from %s to %s", token, buffer, buffers.get(token));
 			this.buffer = buffers.get(token);
+			if (buffer instanceof PrimitiveBuffer && ((PrimitiveBuffer)buffer).primitiveType() == storage.type()) {
+				this.primitiveBuffer = (PrimitiveBuffer)buffer;
+				this.store = storeFromArray(storage);
+				this.data = Array.newInstance(storage.type(), count);
+			} else
+				this.data = new Object[count];
+			this.copyStorage = canCopyRuns(plan, storage, data) ? (ArrayCopyConcreteStorage)storage : null;
 		}
 		@Override
 		public Map<Token, Integer> getMinimumBufferCapacity() {
@@ -1409,17 +1710,28 @@ public class Compiler2 {
 		}
 		@Override
 		public boolean load() {
-			Object[] data = new Object[count];
-			if (!buffer.readAll(data))
-				return false;
-			for (int i = 0; i < data.length; ++i) {
-				int idx;
-				try {
-					idx = idxFxn.applyAsInt(i);
-				} catch (Throwable ex) {
-					throw new AssertionError("Can't happen! Index functions should not throw", ex);
-				}
-				storage.write(idx, data[i]);
+			if (primitiveBuffer != null) {
+				if (!primitiveBuffer.readAllArray(data, 0))
+					return false;
+				if (copyStorage != null)
+					plan.copyRuns(data, copyStorage);
+				else
+					for (int i = 0; i < count; ++i) {
+						try {
+							store.invokeExact(data, i, indices[i]);
+						} catch (Throwable ex) {
+							throw new AssertionError("Can't happen! Storage should not throw", ex);
+						}
+					}
+			} else {
+				Object[] data = (Object[])this.data;
+				if (!buffer.readAll(data))
+					return false;
+				if (copyStorage != null)
+					plan.copyRuns(data, copyStorage);
+				else
+					for (int i = 0; i < data.length; ++i)
+						storage.write(indices[i], data[i]);
 			}
 			storage.sync();
 			return true;
@@ -1500,21 +1812,41 @@ public class Compiler2 {
 	}
 
 	/**
-	 * TODO: consider using read handles instead of read()?
+	 * Writes items from storage to a buffer through the index function.  If
+	 * the buffer is a PrimitiveBuffer of the storage's type, items are moved
+	 * through a primitive array without boxing.  Either way, the array is
+	 * reused across iterations and only filled once per iteration, no matter
+	 * how many calls it takes to write it all, and the index function is
+	 * evaluated once up front (see {@link TransferPlan}).
 	 */
 	private static final class TokenWriteInstruction implements WriteInstruction {
 		private final Token token;
-		private final IndexFunction idxFxn;
 		private final ConcreteStorage storage;
 		private final int count;
+		private final TransferPlan plan;
+		private final int[] indices;
 		private Buffer buffer;
+		/**
+		 * If non-null, the storage, when it can copy runs directly into data.
+		 */
+		private ArrayCopyConcreteStorage copyStorage;
+		/**
+		 * If non-null, the buffer as a PrimitiveBuffer of the storage's type,
+		 * with data being a primitive array and load being a handle from
+		 * {@link #loadIntoArray(ConcreteStorage)}.  If null, data is an
+		 * Object[].
+		 */
+		private PrimitiveBuffer primitiveBuffer;
+		private MethodHandle load;
+		private Object data;
 		private int written;
 		private TokenWriteInstruction(TokenActor a, ConcreteStorage storage, int count) {
 			assert a.isOutput() : a;
 			this.token = a.token();
 			this.storage = storage;
-			this.idxFxn = Iterables.getOnlyElement(a.inputIndexFunctions());
 			this.count = count;
+			this.plan = TransferPlan.of(Iterables.getOnlyElement(a.inputIndexFunctions()), count);
+			this.indices = plan.indices();
 		}
 		@Override
 		public void init(Map<Token, Buffer> buffers) {
@@ -1522,6 +1854,13 @@ public class Compiler2 {
 			if (buffer != null)
 				checkState(buffers.get(token) == buffer, "reassigning %s from %s to %s", token, buffer, buffers.get(token));
 			this.buffer = buffers.get(token);
+			if (buffer instanceof PrimitiveBuffer && ((PrimitiveBuffer)buffer).primitiveType() == storage.type()) {
+				this.primitiveBuffer = (PrimitiveBuffer)buffer;
+				this.load = loadIntoArray(storage);
+				this.data = Array.newInstance(storage.type(), count);
+			} else
+				this.data = new Object[count];
+			this.copyStorage = canCopyRuns(plan, storage, data) ? (ArrayCopyConcreteStorage)storage : null;
 		}
 		@Override
 		public Map<Token, Integer> getMinimumBufferCapacity() {
@@ -1529,17 +1868,31 @@ public class Compiler2 {
 		}
 		@Override
 		public Boolean call() {
-			Object[] data = new Object[count];
-			for (int i = 0; i < count; ++i) {
-				int idx;
-				try {
-					idx = idxFxn.applyAsInt(i);
-				} catch (Throwable ex) {
-					throw new AssertionError("Can't happen! Index functions should not throw", ex);
+			if (primitiveBuffer != null) {
+				if (written == 0) {
+					if (copyStorage != null)
+						plan.copyRuns(copyStorage, data);
+					else
+						for (int i = 0; i < count; ++i) {
+							try {
+								load.invokeExact(data, i, indices[i]);
+							} catch (Throwable ex) {
+								throw new AssertionError("Can't happen! Storage should not throw", ex);
+							}
+						}
 				}
-				data[i] = storage.read(idx);
+				written += primitiveBuffer.writeArray(data, written, count-written);
+			} else {
+				Object[] data = (Object[])this.data;
+				if (written == 0) {
+					if (copyStorage != null)
+						plan.copyRuns(copyStorage, data);
+					else
+						for (int i = 0; i < count; ++i)
+							data[i] = storage.read(indices[i]);
+				}
+				written += buffer.write(data, written, data.length-written);
 			}
-			written += buffer.write(data, written, data.length-written);
 			if (written < count)
 				return false;
 			written = 0;
@@ -1678,8 +2031,12 @@ public class Compiler2 {
 	public Blob instantiateBlob() {
 		ImmutableSortedSet.Builder<Token> inputTokens = ImmutableSortedSet.naturalOrder(),
 				outputTokens = ImmutableSortedSet.naturalOrder();
-		for (TokenActor ta : Iterables.filter(actors, TokenActor.class))
+		ImmutableMap.Builder<Token, Class<?>> bufferTypes = ImmutableMap.builder();
+		for (TokenActor ta : Iterables.filter(actors, TokenActor.class)) {
 			(ta.isInput() ? inputTokens : outputTokens).add(ta.token());
+			Storage s = Iterables.getOnlyElement(ta.isInput() ? ta.outputs() : ta.inputs());
+			bufferTypes.put(ta.token(), s.type());
+		}
 		ImmutableList.Builder<MethodHandle> storageAdjusts = ImmutableList.builder();
 		for (ConcreteStorage s : steadyStateStorage.values())
 			storageAdjusts.add(s.adjustHandle());
@@ -1689,7 +2046,7 @@ public class Compiler2 {
 				storageAdjusts.build(),
 				initReadInstructions, initWriteInstructions, migrationInstructions,
 				readInstructions, writeInstructions, drainInstructions,
-				precreatedBuffers);
+				precreatedBuffers, bufferTypes.build(), pipelineSteps);
 	}
 
 	private final Map<Integer, int[]> bulkCache = new HashMap<>();
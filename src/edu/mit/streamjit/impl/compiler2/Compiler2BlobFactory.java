@@ -55,23 +55,27 @@ public final class Compiler2BlobFactory implements BlobFactory {
 		Compiler2.INTERNAL_STORAGE_STRATEGY.makeParameters(workers, builder);
 		Compiler2.EXTERNAL_STORAGE_STRATEGY.makeParameters(workers, builder);
 		Compiler2.SWITCHING_STRATEGY.makeParameters(workers, builder);
-		for (Worker<?, ?> w : workers)
-			for (int i = 0; i < Compiler2.ALLOCATION_STRATEGY.maxNumCores(); ++i) {
-				int id = Workers.getIdentifier(w);
-//				List<String> names = new ArrayList<>();
-//				for (int j = 0; j < w.getPopRates().size(); ++j)
-//					names.add(String.format("Core%dWorker%dInput%dIndexFxnTransformer", i, id, j));
-//				for (int j = 0; j < w.getPushRates().size(); ++j)
-//					names.add(String.format("Core%dWorker%dOutput%dIndexFxnTransformer", i, id, j));
-//				for (String name : names)
-//					builder.addParameter(new Configuration.SwitchParameter<>(name, IndexFunctionTransformer.class,
-//							Compiler2.INDEX_FUNCTION_TRANSFORMERS.asList().get(0),
-//							Compiler2.INDEX_FUNCTION_TRANSFORMERS));
-
+		for (Worker<?, ?> w : workers) {
+			int id = Workers.getIdentifier(w);
+			for (int i = 0; i < Compiler2.ALLOCATION_STRATEGY.maxNumCores(); ++i)
 				builder.addParameter(new Configuration.IntParameter(String.format("UnrollCore%dGroup%d", i, id),
 						1, 1024, 1));
-			}
+			//Only workers next to removable workers get index functions worth
+			//transforming; the group containing them uses the lowest-numbered
+			//one's parameter.
+			if (isAdjacentToRemovable(w))
+				builder.addParameter(new Configuration.SwitchParameter<>(String.format("Worker%dIndexFxnTransformer", id),
+						IndexFunctionTransformer.class,
+						Compiler2.INDEX_FUNCTION_TRANSFORMERS.asList().get(0),
+						Compiler2.INDEX_FUNCTION_TRANSFORMERS));
+		}
 		builder.addParameter(Configuration.SwitchParameter.create("UsePeekableBuffer", true));
+		//Run each storage's writes, adjust and reads as soon as the cores using it
+		//finish an iteration, rather than all at once behind a global barrier.
+		builder.addParameter(Configuration.SwitchParameter.create("PipelineSteadyState", false));
+		//Move items between our buffers and per-edge staging buffers on a
+		//dedicated thread, overlapping blob I/O with the cores' computation.
+		builder.addParameter(Configuration.SwitchParameter.create("OverlapBlobIO", false));
 		//Init scheduling trades off between firings during the init schedule
 		//and resulting extra buffering.  My ILP solver interface only supports
 		//int coefficients so this is discretized in units of 100.
@@ -84,6 +88,18 @@ public final class Compiler2BlobFactory implements BlobFactory {
 				.build();
 	}
 
+	private static boolean isAdjacentToRemovable(Worker<?, ?> w) {
+		if (Compiler2.REMOVABLE_WORKERS.contains(w.getClass()))
+			return true;
+		for (Worker<?, ?> p : Workers.getPredecessors(w))
+			if (Compiler2.REMOVABLE_WORKERS.contains(p.getClass()))
+				return true;
+		for (Worker<?, ?> s : Workers.getSuccessors(w))
+			if (Compiler2.REMOVABLE_WORKERS.contains(s.getClass()))
+				return true;
+		return false;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		return getClass() == o.getClass();
@@ -21,8 +21,6 @@
  */
 package edu.mit.streamjit.impl.compiler2;
 
-import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -30,13 +28,21 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Uninterruptibles;
 import edu.mit.streamjit.api.Worker;
 import edu.mit.streamjit.impl.blob.Blob;
 import edu.mit.streamjit.impl.blob.Buffer;
+import edu.mit.streamjit.impl.blob.Buffers;
 import edu.mit.streamjit.impl.blob.DrainData;
+import edu.mit.streamjit.impl.blob.PrimitiveBuffer;
+import edu.mit.streamjit.impl.blob.SPSCArrayBuffer;
+import edu.mit.streamjit.impl.blob.SPSCPrimitiveArrayBuffers;
+import edu.mit.streamjit.impl.blob.WaitStrategy;
 import edu.mit.streamjit.impl.common.Configuration;
+import edu.mit.streamjit.impl.common.Configuration.SwitchParameter;
+import edu.mit.streamjit.impl.common.Workers;
 import edu.mit.streamjit.impl.interp.Interpreter;
 import edu.mit.streamjit.util.CollectionUtils;
 import edu.mit.streamjit.util.bytecode.methodhandles.Combinators;
@@ -46,6 +52,9 @@ import edu.mit.streamjit.util.NothrowCallable;
 import edu.mit.streamjit.util.bytecode.Module;
 import edu.mit.streamjit.util.bytecode.ModuleClassLoader;
 import edu.mit.streamjit.util.bytecode.methodhandles.ProxyFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Array;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
@@ -53,6 +62,7 @@ import java.lang.invoke.SwitchPoint;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -60,6 +70,10 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * The actual blob produced by a Compiler2.
@@ -69,6 +83,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class Compiler2BlobHost implements Blob {
 	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
 	private static final MethodHandle MAIN_LOOP = findVirtual(LOOKUP, "mainLoop");
+	private static final MethodHandle PIPELINED_LOOP = findVirtual(LOOKUP, "pipelinedLoop");
 	private static final MethodHandle DO_INIT = findVirtual(LOOKUP, "doInit");
 	private static final MethodHandle DO_ADJUST = findVirtual(LOOKUP, "doAdjust");
 	private static final MethodHandle THROW_NEW_ASSERTION_ERROR = MethodHandles.filterReturnValue(
@@ -116,15 +131,107 @@ public class Compiler2BlobHost implements Blob {
 	 */
 	private final ImmutableList<DrainInstruction> drainInstructions;
 	private final ImmutableMap<Token, Buffer> precreatedBuffers;
+	/**
+	 * The element type of each input and output token's storage.
+	 */
+	private final ImmutableMap<Token, Class<?>> bufferTypes;
+	/**
+	 * Per-storage steps for a pipelined steady state, or null to run the
+	 * steady state with a global barrier.
+	 */
+	private final ImmutableList<StorageStep> pipelineSteps;
 	/* provided by the host */
 	private final boolean collectTimings;
+	private final WaitStrategy waitStrategy;
+	/**
+	 * If true, our instructions use staging buffers that a dedicated I/O
+	 * thread fills from our input buffers and empties into our output
+	 * buffers, so I/O overlaps with the cores' computation.
+	 */
+	private final boolean overlapIO;
 	private final ImmutableMap<Token, Integer> minimumBufferCapacity;
+	/**
+	 * Items read or written per steady-state iteration, for each input and
+	 * output token.
+	 */
+	private final ImmutableMap<Token, Integer> itemsPerIteration;
 	private ImmutableMap<Token, Buffer> buffers;
+	/**
+	 * The edges the I/O thread moves items across when overlapIO is set.
+	 */
+	private ImmutableList<StagedEdge> stagedEdges = ImmutableList.of();
+	/**
+	 * Our input buffers with staged edges, which the I/O thread waits on.
+	 */
+	private ImmutableList<Buffer> ioWaitBuffers = ImmutableList.of();
+	private volatile Thread ioThread;
+	private volatile boolean ioStopped;
+	/**
+	 * The buffers each read or write instruction waits on, for the
+	 * WaitStrategy.
+	 */
+	private final Map<Object, ImmutableList<Buffer>> waitBuffers = new IdentityHashMap<>();
 	private final ImmutableList<Runnable> coreCode;
 	private final SwitchPoint sp1 = new SwitchPoint(), sp2 = new SwitchPoint();
 	private final Phaser barrier;
 	private volatile Runnable drainCallback;
+	/**
+	 * True if drainForReconfiguration() was called, so doDrain() can leave
+	 * items in the DrainData rather than running the interpreter.  Written
+	 * before drainCallback, so visible once drainCallback is.
+	 */
+	private volatile boolean reconfiguring;
 	private volatile DrainData drainData;
+	/**
+	 * The thread running the barrier action, which drain() must wake if it's
+	 * parked waiting for input.
+	 */
+	private volatile Thread barrierActionThread;
+	/* pipelined steady state; unused when pipelineSteps is null */
+	/**
+	 * For each core, the indices of the pipeline steps whose storage it uses,
+	 * and for each step, the cores using its storage.
+	 */
+	private final int[][] coreSteps, stepCores;
+	/**
+	 * For each core, the number of steady-state iterations it has completed.
+	 * Only accessed by the thread running that core.
+	 */
+	private final int[] coreIterations;
+	/**
+	 * For each step, the number of its cores yet to finish the current
+	 * iteration.  The last core to finish runs the step.
+	 */
+	private final AtomicIntegerArray stepArrivals;
+	/**
+	 * For each step, the number of iterations whose writes and adjust have
+	 * run, and the number of iterations whose storage is ready to be used
+	 * again (for steps with reads, after the reads have run).
+	 */
+	private final AtomicIntegerArray stepsAdjusted, stepsReady;
+	/**
+	 * Steps whose completion is needed before the reads run: the steps with
+	 * reads, or every step with cores if no step has reads.
+	 */
+	private final boolean[] readTriggers;
+	private final int readTriggerCount;
+	private final AtomicInteger readTriggersRemaining;
+	/**
+	 * The number of iterations whose reads have all completed.  No core starts
+	 * an iteration before its reads complete, so if a read can't complete
+	 * because we're draining, every core stops at the same iteration.
+	 */
+	private volatile int readsCompleted;
+	/**
+	 * Cores parked waiting to start an iteration.
+	 */
+	private final AtomicReferenceArray<Thread> parkedCores;
+	private volatile boolean pipelineStopped;
+	/**
+	 * The iteration count every step must reach before we can drain, set by
+	 * whichever thread is running the reads.
+	 */
+	private int drainableIteration;
 
 	public Compiler2BlobHost(ImmutableSet<Worker<?, ?>> workers,
 			Configuration configuration,
@@ -139,7 +246,9 @@ public class Compiler2BlobHost implements Blob {
 			List<ReadInstruction> readInstructions,
 			List<WriteInstruction> writeInstructions,
 			List<DrainInstruction> drainInstructions,
-			ImmutableMap<Token, Buffer> precreatedBuffers) {
+			ImmutableMap<Token, Buffer> precreatedBuffers,
+			ImmutableMap<Token, Class<?>> bufferTypes,
+			ImmutableList<StorageStep> pipelineSteps) {
 		this.workers = workers;
 		this.config = configuration;
 		this.inputTokens = inputTokens;
@@ -154,8 +263,13 @@ public class Compiler2BlobHost implements Blob {
 		this.writeInstructions = ImmutableList.copyOf(writeInstructions);
 		this.drainInstructions = ImmutableList.copyOf(drainInstructions);
 		this.precreatedBuffers = precreatedBuffers;
+		this.bufferTypes = bufferTypes;
+		this.pipelineSteps = pipelineSteps;
 
 		this.collectTimings = config.getExtraData("timings") != null ? (Boolean)config.getExtraData("timings") : false;
+		this.waitStrategy = config.getExtraData("waitStrategy") != null ? WaitStrategy.valueOf((String)config.getExtraData("waitStrategy")) : WaitStrategy.PARK;
+		SwitchParameter<Boolean> overlapParam = config.getParameter("OverlapBlobIO", SwitchParameter.class, Boolean.class);
+		this.overlapIO = overlapParam != null && overlapParam.getValue();
 
 		List<Map<Token, Integer>> capacityRequirements = new ArrayList<>();
 		for (ReadInstruction i : Iterables.concat(this.initReadInstructions, this.readInstructions))
@@ -163,6 +277,12 @@ public class Compiler2BlobHost implements Blob {
 		for (WriteInstruction i : Iterables.concat(this.initWriteInstructions, this.writeInstructions))
 			capacityRequirements.add(i.getMinimumBufferCapacity());
 		this.minimumBufferCapacity = CollectionUtils.union((key, value) -> Collections.max(value), capacityRequirements);
+		List<Map<Token, Integer>> steadyStateRequirements = new ArrayList<>();
+		for (ReadInstruction i : this.readInstructions)
+			steadyStateRequirements.add(i.getMinimumBufferCapacity());
+		for (WriteInstruction i : this.writeInstructions)
+			steadyStateRequirements.add(i.getMinimumBufferCapacity());
+		this.itemsPerIteration = CollectionUtils.union((key, value) -> Collections.max(value), steadyStateRequirements);
 
 		MethodHandle mainLoop = MAIN_LOOP.bindTo(this),
 				doInit = DO_INIT.bindTo(this),
@@ -172,7 +292,9 @@ public class Compiler2BlobHost implements Blob {
 		ImmutableList.Builder<Runnable> coreCodeRunnables = ImmutableList.builder();
 		for (int i = 0; i < this.steadyStateCode.size(); ++i) {
 			MethodHandle ssc = this.steadyStateCode.get(i);
-			MethodHandle code = sp1.guardWithTest(mainLoopNop, sp2.guardWithTest(mainLoop.bindTo(ssc), NOP));
+			MethodHandle steadyState = pipelineSteps == null ? mainLoop.bindTo(ssc) :
+					MethodHandles.insertArguments(PIPELINED_LOOP, 0, this, ssc, i);
+			MethodHandle code = sp1.guardWithTest(mainLoopNop, sp2.guardWithTest(steadyState, NOP));
 			coreCodeRunnables.add(pf.createProxy("Proxy"+i, ImmutableMap.of("run", code), Runnable.class));
 		}
 		this.coreCode = coreCodeRunnables.build();
@@ -186,6 +308,37 @@ public class Compiler2BlobHost implements Blob {
 				return super.onAdvance(phase, registeredParties);
 			}
 		};
+
+		int cores = steadyStateCode.size(), steps = pipelineSteps == null ? 0 : pipelineSteps.size();
+		List<List<Integer>> coreStepLists = new ArrayList<>(cores);
+		for (int i = 0; i < cores; ++i)
+			coreStepLists.add(new ArrayList<>());
+		this.stepArrivals = new AtomicIntegerArray(steps);
+		this.stepsAdjusted = new AtomicIntegerArray(steps);
+		this.stepsReady = new AtomicIntegerArray(steps);
+		this.stepCores = new int[steps][];
+		this.readTriggers = new boolean[steps];
+		boolean anyReads = false;
+		for (int k = 0; k < steps; ++k)
+			anyReads |= !pipelineSteps.get(k).cores.isEmpty() && !pipelineSteps.get(k).reads.isEmpty();
+		int triggers = 0;
+		for (int k = 0; k < steps; ++k) {
+			StorageStep step = pipelineSteps.get(k);
+			for (int core : step.cores)
+				coreStepLists.get(core).add(k);
+			stepCores[k] = Ints.toArray(step.cores);
+			stepArrivals.set(k, stepCores[k].length);
+			readTriggers[k] = !step.cores.isEmpty() && (!anyReads || !step.reads.isEmpty());
+			if (readTriggers[k])
+				++triggers;
+		}
+		this.coreSteps = new int[cores][];
+		for (int i = 0; i < cores; ++i)
+			coreSteps[i] = Ints.toArray(coreStepLists.get(i));
+		this.coreIterations = new int[cores];
+		this.readTriggerCount = triggers;
+		this.readTriggersRemaining = new AtomicInteger(triggers);
+		this.parkedCores = new AtomicReferenceArray<>(cores);
 	}
 
 	@Override
@@ -210,6 +363,21 @@ public class Compiler2BlobHost implements Blob {
 		return minimumBufferCapacity.get(token);
 	}
 
+	@Override
+	public int getItemsPerIteration(Token token) {
+		if (!inputTokens.contains(token) && !outputTokens.contains(token))
+			throw new IllegalArgumentException(token.toString()+" not an input or output of this blob");
+		//Tokens only touched during init (or not at all) have no rate.
+		return itemsPerIteration.getOrDefault(token, 0);
+	}
+
+	@Override
+	public Class<?> getBufferType(Token token) {
+		if (!inputTokens.contains(token) && !outputTokens.contains(token))
+			throw new IllegalArgumentException(token.toString()+" not an input or output of this blob");
+		return bufferTypes.get(token);
+	}
+
 	@Override
 	public void installBuffers(Map<Token, Buffer> buffers) {
 		if (this.buffers != null)
@@ -227,11 +395,66 @@ public class Compiler2BlobHost implements Blob {
 			builder.put(t, b);
 		}
 		this.buffers = builder.build();
+		Map<Token, Buffer> instructionBuffers = overlapIO ? createStagedEdges() : this.buffers;
 
-		for (ReadInstruction i : Iterables.concat(this.initReadInstructions, this.readInstructions))
-			i.init(this.buffers);
-		for (WriteInstruction i : Iterables.concat(this.initWriteInstructions, this.writeInstructions))
-			i.init(this.buffers);
+		for (ReadInstruction i : Iterables.concat(this.initReadInstructions, this.readInstructions)) {
+			i.init(instructionBuffers);
+			waitBuffers.put(i, buffersFor(instructionBuffers, i.getMinimumBufferCapacity().keySet()));
+		}
+		for (WriteInstruction i : Iterables.concat(this.initWriteInstructions, this.writeInstructions)) {
+			i.init(instructionBuffers);
+			waitBuffers.put(i, buffersFor(instructionBuffers, i.getMinimumBufferCapacity().keySet()));
+		}
+	}
+
+	private static ImmutableList<Buffer> buffersFor(Map<Token, Buffer> buffers, Set<Token> tokens) {
+		ImmutableList.Builder<Buffer> builder = ImmutableList.builder();
+		for (Token t : tokens)
+			builder.add(buffers.get(t));
+		return builder.build();
+	}
+
+	/**
+	 * Creates a staging buffer for each input and output edge, except those
+	 * with precreated buffers (which are already local to this blob, and may
+	 * be read in place).  Each staging buffer holds two steady-state
+	 * iterations' worth of items, so the I/O thread can fill (or empty) one
+	 * iteration while the cores compute another.
+	 * @return the buffers our instructions should use
+	 */
+	private ImmutableMap<Token, Buffer> createStagedEdges() {
+		ImmutableMap.Builder<Token, Buffer> instructionBuffers = ImmutableMap.builder();
+		ImmutableList.Builder<StagedEdge> edges = ImmutableList.builder();
+		ImmutableList.Builder<Buffer> inputBuffers = ImmutableList.builder();
+		for (Map.Entry<Token, Buffer> e : buffers.entrySet()) {
+			Token t = e.getKey();
+			Buffer buffer = e.getValue();
+			if (precreatedBuffers.containsKey(t)) {
+				instructionBuffers.put(t, buffer);
+				continue;
+			}
+			int capacity = Math.max(Math.max(getMinimumBufferCapacity(t), 2 * getItemsPerIteration(t)), 1);
+			Class<?> type = bufferTypes.get(t);
+			Buffer staging;
+			Object scratch;
+			if (type.isPrimitive() && SPSCPrimitiveArrayBuffers.supports(type)) {
+				staging = SPSCPrimitiveArrayBuffers.create(type, capacity);
+				//Only skip boxing if the other side is primitive too.
+				scratch = buffer instanceof PrimitiveBuffer && ((PrimitiveBuffer)buffer).primitiveType() == type ?
+						Array.newInstance(type, capacity) : new Object[capacity];
+			} else {
+				staging = new SPSCArrayBuffer(capacity);
+				scratch = new Object[capacity];
+			}
+			boolean input = inputTokens.contains(t);
+			edges.add(new StagedEdge(t, input, buffer, staging, scratch));
+			if (input)
+				inputBuffers.add(buffer);
+			instructionBuffers.put(t, staging);
+		}
+		this.stagedEdges = edges.build();
+		this.ioWaitBuffers = inputBuffers.build();
+		return instructionBuffers.build();
 	}
 
 	@Override
@@ -247,6 +470,22 @@ public class Compiler2BlobHost implements Blob {
 	@Override
 	public void drain(Runnable callback) {
 		drainCallback = callback;
+		wakeIOThread();
+		Thread waiter = barrierActionThread;
+		if (waiter != null)
+			LockSupport.unpark(waiter);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * We skip running the interpreter on the items left in storage, leaving
+	 * them (and the workers' state) in our DrainData instead.
+	 */
+	@Override
+	public void drainForReconfiguration(Runnable callback) {
+		reconfiguring = true;
+		drain(callback);
 	}
 
 	@Override
@@ -259,6 +498,7 @@ public class Compiler2BlobHost implements Blob {
 			coreCode.invokeExact();
 			barrier.arriveAndAwaitAdvance();
 		} catch (Throwable ex) {
+			ioStopped = true;
 			barrier.forceTermination();
 			SwitchPoint.invalidateAll(new SwitchPoint[]{sp1, sp2});
 			ex.printStackTrace();
@@ -266,18 +506,166 @@ public class Compiler2BlobHost implements Blob {
 		}
 	}
 
+	/**
+	 * Runs one steady-state iteration of a core without a global barrier.  The
+	 * core waits until the storage it uses is ready for its next iteration,
+	 * runs its code, then arrives at each of its storage's steps, running the
+	 * steps it was last to arrive at.
+	 */
+	private void pipelinedLoop(MethodHandle coreCode, int core) throws Throwable {
+		try {
+			int iteration = coreIterations[core];
+			if (!awaitIteration(core, iteration))
+				return;
+			coreCode.invokeExact();
+			coreIterations[core] = iteration + 1;
+			//Arrive at read triggers last: the last trigger runs the reads,
+			//which may wait for this core's other steps if we're draining.
+			for (int k : coreSteps[core])
+				if (!readTriggers[k] && stepArrivals.decrementAndGet(k) == 0)
+					runStep(k, iteration + 1);
+			for (int k : coreSteps[core])
+				if (readTriggers[k] && stepArrivals.decrementAndGet(k) == 0)
+					runStep(k, iteration + 1);
+		} catch (Throwable ex) {
+			stopPipeline();
+			ioStopped = true;
+			barrier.forceTermination();
+			SwitchPoint.invalidateAll(new SwitchPoint[]{sp1, sp2});
+			ex.printStackTrace();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Waits until the given core may begin the given iteration: all reads for
+	 * the iteration have completed and all the core's storage is ready.
+	 * @return true if the core may proceed, false if we've stopped
+	 */
+	private boolean awaitIteration(int core, int iteration) {
+		if (isReady(core, iteration))
+			return true;
+		//Register before rechecking so we don't miss a wakeup.
+		parkedCores.set(core, Thread.currentThread());
+		try {
+			for (int attempt = 0; ; ++attempt) {
+				if (pipelineStopped)
+					return false;
+				if (isReady(core, iteration))
+					return true;
+				waitStrategy.idle(attempt, ImmutableList.<Buffer>of(), true);
+			}
+		} finally {
+			parkedCores.set(core, null);
+		}
+	}
+
+	private boolean isReady(int core, int iteration) {
+		if (readsCompleted < iteration)
+			return false;
+		for (int k : coreSteps[core])
+			if (stepsReady.get(k) < iteration)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Runs a step after all its cores completed the given iteration: the
+	 * writes draining its storage, then its adjust.  The last read trigger to
+	 * run performs the reads for the next iteration.
+	 */
+	private void runStep(int k, int completed) throws Throwable {
+		StorageStep step = pipelineSteps.get(k);
+		//No core can arrive again until we mark the step ready below.
+		stepArrivals.set(k, stepCores[k].length);
+		doWrites(step.writes);
+		step.adjust.invokeExact();
+		stepsAdjusted.set(k, completed);
+		if (!readTriggers[k]) {
+			stepsReady.set(k, completed);
+			unparkCores(stepCores[k]);
+		} else if (readTriggersRemaining.decrementAndGet() == 0)
+			pipelinedReads(completed);
+	}
+
+	/**
+	 * Runs the steps no core uses, then the reads for the next iteration,
+	 * then releases the cores waiting on the read triggers.
+	 */
+	private void pipelinedReads(int completed) throws Throwable {
+		if (collectTimings) {
+			adjustTime.start();
+			++adjustCount;
+		}
+		barrierActionThread = Thread.currentThread();
+		drainableIteration = completed;
+
+		for (StorageStep step : pipelineSteps)
+			if (step.cores.isEmpty()) {
+				doWrites(step.writes);
+				step.adjust.invokeExact();
+			}
+		if (readOrDrain()) {
+			readTriggersRemaining.set(readTriggerCount);
+			for (int k = 0; k < pipelineSteps.size(); ++k)
+				if (readTriggers[k])
+					stepsReady.set(k, completed);
+			readsCompleted = completed;
+			unparkCores(null);
+		}
+
+		if (collectTimings)
+			adjustTime.stop();
+	}
+
+	/**
+	 * Waits for every step to finish the current iteration's writes and
+	 * adjusts, so the storage is in the same state drain expects after a
+	 * barrier.  No core can start another iteration because the reads didn't
+	 * complete.
+	 */
+	private void awaitPipelineQuiescence() {
+		if (pipelineSteps == null)
+			return;
+		for (int k = 0; k < pipelineSteps.size(); ++k)
+			for (int attempt = 0; !pipelineSteps.get(k).cores.isEmpty() && stepsAdjusted.get(k) < drainableIteration; ++attempt)
+				waitStrategy.idle(attempt, ImmutableList.<Buffer>of(), true);
+	}
+
+	/**
+	 * Wakes the given parked cores, or all parked cores if null.
+	 */
+	private void unparkCores(int[] cores) {
+		int count = cores == null ? parkedCores.length() : cores.length;
+		for (int i = 0; i < count; ++i) {
+			Thread t = parkedCores.get(cores == null ? i : cores[i]);
+			if (t != null)
+				LockSupport.unpark(t);
+		}
+	}
+
+	private void stopPipeline() {
+		pipelineStopped = true;
+		if (pipelineSteps != null)
+			unparkCores(null);
+	}
+
 	private void doInit() throws Throwable {
 		Stopwatch initTime = null;
 		if (collectTimings)
 			initTime = Stopwatch.createStarted();
+		barrierActionThread = Thread.currentThread();
+		startIOThread();
 
 		for (int i = 0; i < initReadInstructions.size(); ++i) {
 			ReadInstruction inst = initReadInstructions.get(i);
-			while (!inst.load())
+			for (int attempt = 0; !inst.load(); ++attempt) {
 				if (isDraining()) {
 					doDrain(initReadInstructions.subList(0, i), ImmutableList.<DrainInstruction>of());
 					return;
 				}
+				waitStrategy.idle(attempt, waitBuffers.get(inst), true);
+			}
 		}
 
 		initCode.invoke();
@@ -307,6 +695,7 @@ public class Compiler2BlobHost implements Blob {
 			adjustTime.start();
 			++adjustCount;
 		}
+		barrierActionThread = Thread.currentThread();
 
 		doWrites(writeInstructions);
 
@@ -321,33 +710,120 @@ public class Compiler2BlobHost implements Blob {
 
 	/**
 	 * Handle short writes round-robin so other Blobs can make progress (thus
-	 * freeing up buffer space).
+	 * freeing up buffer space).  When no write completes in a full pass, we
+	 * wait on the remaining writes' buffers according to the WaitStrategy.
 	 * @param writes the write instructions to execute
 	 */
-	private static void doWrites(List<? extends NothrowCallable<Boolean>> writeInstructions) {
-		ArrayList<NothrowCallable<Boolean>> writes = new ArrayList<>(writeInstructions);
-		while (!writes.isEmpty())
-			for (Iterator<NothrowCallable<Boolean>> it = writes.iterator(); it.hasNext();) {
-				NothrowCallable<Boolean> write = it.next();
-				if (write.call())
+	private void doWrites(List<WriteInstruction> writeInstructions) {
+		//Fast path: everything fits on the first try.
+		int firstFailure = 0;
+		while (firstFailure < writeInstructions.size() && writeInstructions.get(firstFailure).call())
+			++firstFailure;
+		wakeIOThread();
+		if (firstFailure == writeInstructions.size())
+			return;
+
+		ArrayList<WriteInstruction> writes = new ArrayList<>(writeInstructions.subList(firstFailure, writeInstructions.size()));
+		List<Buffer> blocked = new ArrayList<>();
+		int attempt = 0;
+		while (!writes.isEmpty()) {
+			boolean progress = false;
+			blocked.clear();
+			for (Iterator<WriteInstruction> it = writes.iterator(); it.hasNext();) {
+				WriteInstruction write = it.next();
+				if (write.call()) {
 					it.remove();
+					progress = true;
+					wakeIOThread();
+				} else
+					blocked.addAll(waitBuffers.get(write));
 			}
+			if (progress)
+				attempt = 0;
+			else
+				waitStrategy.idle(attempt++, blocked, false);
+		}
 	}
 
-	private void readOrDrain() {
+	/**
+	 * Loads the steady-state reads, or drains if we can't and drain() was
+	 * called.
+	 * @return true if all reads loaded, false if we drained
+	 */
+	private boolean readOrDrain() {
 		for (int i = 0; i < readInstructions.size(); ++i) {
 			ReadInstruction inst = readInstructions.get(i);
-			while (!inst.load())
+			for (int attempt = 0; !inst.load(); ++attempt) {
 				if (isDraining()) {
+					awaitPipelineQuiescence();
 					doDrain(readInstructions.subList(0, i), drainInstructions);
-					return;
+					return false;
 				}
+				waitStrategy.idle(attempt, waitBuffers.get(inst), true);
+			}
+		}
+		wakeIOThread();
+		return true;
+	}
+
+	/**
+	 * Starts the I/O thread, if we have staged edges.
+	 */
+	private void startIOThread() {
+		if (stagedEdges.isEmpty())
+			return;
+		Thread t = new Thread(this::ioLoop, "Compiler2BlobHost I/O");
+		t.setDaemon(true);
+		ioThread = t;
+		t.start();
+	}
+
+	/**
+	 * Moves items across the staged edges until stopped: from our input
+	 * buffers into the staging buffers, so the next iteration's reads find
+	 * their items ready, and from the staging buffers into our output
+	 * buffers, so the last iteration's writes reach downstream blobs.
+	 */
+	private void ioLoop() {
+		int attempt = 0;
+		while (!ioStopped) {
+			boolean progress = false;
+			for (int i = 0; i < stagedEdges.size(); ++i)
+				progress |= stagedEdges.get(i).transfer() > 0;
+			if (progress)
+				attempt = 0;
+			else
+				waitStrategy.idle(attempt++, ioWaitBuffers, true);
 		}
 	}
 
+	/**
+	 * Wakes the I/O thread after we consume from or produce into the staging
+	 * buffers, in case it's parked on a full or empty one.
+	 */
+	private void wakeIOThread() {
+		Thread t = ioThread;
+		if (t != null)
+			LockSupport.unpark(t);
+	}
+
+	/**
+	 * Stops the I/O thread and waits for it to finish its last transfer, so
+	 * the staging buffers can be drained.
+	 */
+	private void stopIOThread() {
+		Thread t = ioThread;
+		if (t == null)
+			return;
+		ioStopped = true;
+		LockSupport.unpark(t);
+		Uninterruptibles.joinUninterruptibly(t);
+		ioThread = null;
+	}
+
 	/**
 	 * Extracts elements from storage and puts them in a DrainData for an
-	 * interpreter blob.
+	 * interpreter blob, or directly in our DrainData if reconfiguring.
 	 * @param reads read instructions whose load() completed (thus requiring
 	 * unload())
 	 * @param drains drain instructions, if we're in the steady-state, or an
@@ -358,46 +834,68 @@ public class Compiler2BlobHost implements Blob {
 		if (collectTimings)
 			drainTime = Stopwatch.createStarted();
 
-		List<Map<Token, Object[]>> data = new ArrayList<>(reads.size() + drains.size());
+		stopIOThread();
+		List<Map<Token, Object[]>> data = new ArrayList<>(reads.size() + drains.size() + 2);
+		//Staged output items were written before anything still in storage.
+		data.add(stagedItems(false));
 		for (ReadInstruction i : reads)
 			data.add(i.unload());
 		for (DrainInstruction i : drains)
 			data.add(i.call());
-		ImmutableMap<Token, List<Object>> mergedData = CollectionUtils.union((key, value) -> {
+		//Staged input items come after anything in storage, but before
+		//anything still in our input buffers.
+		data.add(stagedItems(true));
+		ImmutableMap<Token, Object[]> mergedData = CollectionUtils.union((key, value) -> {
+			if (value.size() == 1)
+				return value.get(0);
 			int size = 0;
 			for (Object[] v : value)
 				size += v.length;
-			List<Object> data1 = new ArrayList<>(size);
-			for (Object[] v : value)
-				data1.addAll(Arrays.asList(v));
-			return data1;
+			Object[] merged = new Object[size];
+			int pos = 0;
+			for (Object[] v : value) {
+				System.arraycopy(v, 0, merged, pos, v.length);
+				pos += v.length;
+			}
+			return merged;
 		}, data);
-		//Try once to write data on output edges, then let the interpreter handle it.
-		Predicate<Token> isOutput = Predicates.in(getOutputs());
-		for (Map.Entry<Token, List<Object>> e : Maps.filterKeys(mergedData, isOutput).entrySet()) {
-			final Buffer b = buffers.get(e.getKey());
-			final Object[] d = e.getValue().toArray();
-			int written = b.write(d, 0, d.length);
-			//Remove the data we wrote.
-			e.getValue().subList(0, written).clear();
+		//Try once to write data on output edges, then let the interpreter
+		//handle it (or leave it in our DrainData, if reconfiguring).
+		ImmutableMap.Builder<Token, List<Object>> remainingData = ImmutableMap.builder();
+		for (Map.Entry<Token, Object[]> e : mergedData.entrySet()) {
+			Object[] d = e.getValue();
+			int written = getOutputs().contains(e.getKey()) ? buffers.get(e.getKey()).write(d, 0, d.length) : 0;
+			remainingData.put(e.getKey(), Arrays.asList(d).subList(written, d.length));
+		}
+
+		if (reconfiguring)
+			//The items are already in the order the next blob's init storage
+			//wants them, and the StateHolders (which are DrainInstructions)
+			//put the state back in the workers, so there's nothing for the
+			//interpreter to do but run workers whose output we'd just drain
+			//again.
+			this.drainData = new DrainData(remainingData.build(), Workers.getState(workers));
+		else {
+			DrainData forInterp = new DrainData(remainingData.build(),
+					//We put state back in the workers via StateHolders, which
+					//are DrainInstructions, so no state in the DrainData.  (It
+					//will be in the DrainData produced by the interpreter
+					//blob, so distributed will still see it.)
+					ImmutableTable.<Integer, String, Object>of());
+
+			Interpreter.InterpreterBlobFactory interpFactory = new Interpreter.InterpreterBlobFactory();
+			Blob interp = interpFactory.makeBlob(workers, interpFactory.getDefaultConfiguration(workers), 1, forInterp);
+			interp.installBuffers(buffers);
+			Runnable interpCode = interp.getCoreCode(0);
+			final AtomicBoolean interpFinished = new AtomicBoolean();
+			interp.drain(() -> interpFinished.set(true));
+			while (!interpFinished.get())
+				interpCode.run();
+			this.drainData = interp.getDrainData();
 		}
-		DrainData forInterp = new DrainData(mergedData,
-				//We put state back in the workers via StateHolders, which are
-				//DrainInstructions, so no state in the DrainData.  (It will be
-				//in the DrainData produced by the interpreter blob, so
-				//distributed will still see it.)
-				ImmutableTable.<Integer, String, Object>of());
-
-		Interpreter.InterpreterBlobFactory interpFactory = new Interpreter.InterpreterBlobFactory();
-		Blob interp = interpFactory.makeBlob(workers, interpFactory.getDefaultConfiguration(workers), 1, forInterp);
-		interp.installBuffers(buffers);
-		Runnable interpCode = interp.getCoreCode(0);
-		final AtomicBoolean interpFinished = new AtomicBoolean();
-		interp.drain(() -> interpFinished.set(true));
-		while (!interpFinished.get())
-			interpCode.run();
-		this.drainData = interp.getDrainData();
+		closePrecreatedBuffers();
 
+		stopPipeline();
 		SwitchPoint.invalidateAll(new SwitchPoint[]{sp1, sp2});
 		drainCallback.run();
 
@@ -408,6 +906,37 @@ public class Compiler2BlobHost implements Blob {
 		}
 	}
 
+	/**
+	 * Closes the precreated buffers that need closing (e.g., the buffers of
+	 * Output.toBinaryFile or a windowed Input.fromBinaryFile).  We created
+	 * these buffers, and they won't be used after we drain.
+	 */
+	private void closePrecreatedBuffers() {
+		for (Buffer b : precreatedBuffers.values())
+			if (b instanceof Closeable)
+				try {
+					((Closeable)b).close();
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+	}
+
+	/**
+	 * Empties the staging buffers of the input or output edges.
+	 * @param inputs true for input edges, false for output edges
+	 * @return the items in each nonempty staging buffer
+	 */
+	private ImmutableMap<Token, Object[]> stagedItems(boolean inputs) {
+		ImmutableMap.Builder<Token, Object[]> builder = ImmutableMap.builder();
+		for (StagedEdge e : stagedEdges)
+			if (e.input == inputs && e.staging.size() > 0) {
+				Object[] items = new Object[e.staging.size()];
+				e.staging.readAll(items);
+				builder.put(e.token, items);
+			}
+		return builder.build();
+	}
+
 	private boolean isDraining() {
 		return drainCallback != null;
 	}
@@ -449,4 +978,52 @@ public class Compiler2BlobHost implements Blob {
 		@Override
 		public Map<Token, Object[]> call();
 	}
+
+	/**
+	 * An input or output edge whose items pass through a staging buffer.
+	 */
+	private static final class StagedEdge {
+		private final Token token;
+		private final boolean input;
+		private final Buffer buffer, staging;
+		/**
+		 * An Object[] or primitive array used to move items.
+		 */
+		private final Object scratch;
+		private StagedEdge(Token token, boolean input, Buffer buffer, Buffer staging, Object scratch) {
+			this.token = token;
+			this.input = input;
+			this.buffer = buffer;
+			this.staging = staging;
+			this.scratch = scratch;
+		}
+		/**
+		 * Moves items from the input buffer into staging, or from staging into
+		 * the output buffer.
+		 * @return the number of items moved
+		 */
+		private int transfer() {
+			return input ? Buffers.transfer(buffer, staging, scratch) : Buffers.transfer(staging, buffer, scratch);
+		}
+	}
+
+	/**
+	 * The work done on one steady-state storage between iterations of a
+	 * pipelined steady state.  Once every core using the storage has finished
+	 * an iteration, the writes draining it run, it's adjusted, and (with the
+	 * other steps' reads) the reads filling it run.  A step with no cores runs
+	 * just before the reads.
+	 */
+	public static final class StorageStep {
+		private final ImmutableSet<Integer> cores;
+		private final ImmutableList<WriteInstruction> writes;
+		private final MethodHandle adjust;
+		private final ImmutableList<ReadInstruction> reads;
+		public StorageStep(Set<Integer> cores, List<WriteInstruction> writes, MethodHandle adjust, List<ReadInstruction> reads) {
+			this.cores = ImmutableSet.copyOf(cores);
+			this.writes = ImmutableList.copyOf(writes);
+			this.adjust = adjust;
+			this.reads = ImmutableList.copyOf(reads);
+		}
+	}
 }
@@ -28,6 +28,7 @@ import edu.mit.streamjit.api.Output;
 import edu.mit.streamjit.api.Worker;
 import edu.mit.streamjit.impl.blob.Blob;
 import edu.mit.streamjit.impl.blob.Buffer;
+import edu.mit.streamjit.impl.blob.WaitStrategy;
 import edu.mit.streamjit.impl.common.BlobHostStreamCompiler;
 import edu.mit.streamjit.impl.common.Configuration;
 import edu.mit.streamjit.test.Datasets;
@@ -48,6 +49,8 @@ public final class Compiler2StreamCompiler extends BlobHostStreamCompiler {
 	private Path dumpFile;
 	private boolean timings = false;
 	private boolean throughput = false;
+	private WaitStrategy waitStrategy;
+	private Path compilationCache;
 	public Compiler2StreamCompiler() {
 		super(new Compiler2BlobFactory());
 	}
@@ -89,6 +92,29 @@ public final class Compiler2StreamCompiler extends BlobHostStreamCompiler {
 		return this;
 	}
 
+	/**
+	 * Sets how the blob waits for input or output space.  If not specified,
+	 * the blob uses {@link WaitStrategy#PARK}.
+	 * @param waitStrategy the wait strategy
+	 * @return this
+	 */
+	public Compiler2StreamCompiler waitStrategy(WaitStrategy waitStrategy) {
+		this.waitStrategy = waitStrategy;
+		return this;
+	}
+
+	/**
+	 * Caches schedules in the given directory, so compiling the same graph
+	 * with the same configuration again skips scheduling.
+	 * @param directory the cache directory
+	 * @return this
+	 * @see CompilationCache
+	 */
+	public Compiler2StreamCompiler compilationCache(Path directory) {
+		this.compilationCache = directory;
+		return this;
+	}
+
 	@Override
 	protected final int getMaxNumCores() {
 		return maxNumCores;
@@ -99,6 +125,10 @@ public final class Compiler2StreamCompiler extends BlobHostStreamCompiler {
 		if (config != null) {
 			Configuration.Builder builder = Configuration.builder(config);
 			builder.putExtraData("reportThroughput", throughput);
+			if (waitStrategy != null)
+				builder.putExtraData("waitStrategy", waitStrategy.name());
+			if (compilationCache != null)
+				builder.putExtraData("compilationCache", compilationCache.toString());
 			return builder.build();
 		}
 
@@ -114,6 +144,10 @@ public final class Compiler2StreamCompiler extends BlobHostStreamCompiler {
 			builder.putExtraData("dumpFile", dumpFile);
 		builder.putExtraData("timings", timings);
 		builder.putExtraData("reportThroughput", throughput);
+		if (waitStrategy != null)
+			builder.putExtraData("waitStrategy", waitStrategy.name());
+		if (compilationCache != null)
+			builder.putExtraData("compilationCache", compilationCache.toString());
 		return builder.build();
 	}
 
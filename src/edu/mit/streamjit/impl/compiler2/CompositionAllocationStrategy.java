@@ -75,6 +75,12 @@ public class CompositionAllocationStrategy implements AllocationStrategy {
 			for (Actor a : group.actors())
 				if (a instanceof WorkerActor && ((WorkerActor)a).archetype().isStateful())
 					minStatefulId = Math.min(minStatefulId, a.id());
+			//Groups that are only serial because they send or receive messages
+			//don't have a parameter; put them on the first core.
+			if (minStatefulId == Integer.MAX_VALUE) {
+				cores.get(0).allocate(group, iterations);
+				return;
+			}
 			Configuration.SwitchParameter<Integer> param = config.getParameter("Group"+minStatefulId+"Core", Configuration.SwitchParameter.class, Integer.class);
 			cores.get(param.getValue() % cores.size()).allocate(group, iterations);
 			return;
@@ -22,13 +22,16 @@
 package edu.mit.streamjit.impl.compiler2;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Range;
 import edu.mit.streamjit.util.bytecode.methodhandles.Combinators;
 import edu.mit.streamjit.util.Pair;
 import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiFunction;
 
 /**
@@ -42,6 +45,11 @@ public class Core {
 	private final ImmutableMap<ActorGroup, Integer> unrollFactors;
 	private final ImmutableTable<Actor, Integer, IndexFunctionTransformer> inputTransformers, outputTransformers;
 	private final List<Pair<ActorGroup, Range<Integer>>> allocations = new ArrayList<>();
+	/**
+	 * The queues of the groups whose iterations this core shares with other
+	 * cores.
+	 */
+	private final Map<ActorGroup, ChunkQueue> sharedAllocations = new HashMap<>();
 	public Core(ImmutableMap<Storage, ConcreteStorage> storage,
 			BiFunction<MethodHandle[], WorkerActor, MethodHandle> switchFactory,
 			ImmutableMap<ActorGroup, Integer> unrollFactors,
@@ -59,15 +67,60 @@ public class Core {
 			allocations.add(Pair.make(group, iterations));
 	}
 
+	/**
+	 * Allocates the given iterations of a group to this core, shared with the
+	 * other cores given the same queue: at run time, each core claims chunks
+	 * of the iterations from the queue until none remain.  This replaces any
+	 * previous allocation of the group to this core.
+	 * @param group the group to allocate
+	 * @param iterations the iterations to share
+	 * @param queue the queue to claim chunks from
+	 */
+	public void allocateShared(ActorGroup group, Range<Integer> iterations, ChunkQueue queue) {
+		allocations.removeIf(p -> p.first == group);
+		allocations.add(Pair.make(group, iterations));
+		sharedAllocations.put(group, queue);
+	}
+
+	/**
+	 * Returns true iff any iterations of the given group are allocated to this
+	 * core.
+	 * @param group the group
+	 * @return true iff the group is allocated to this core
+	 */
+	public boolean isAllocated(ActorGroup group) {
+		for (Pair<ActorGroup, Range<Integer>> p : allocations)
+			if (p.first == group)
+				return true;
+		return false;
+	}
+
 	public MethodHandle code() {
 		//TODO: ActorGroup ordering parameters: accumulate a
 		//List<Pair<ActorGroup, MethodHandle>>, then sort before semicolon(code).
 		List<MethodHandle> code = new ArrayList<>(allocations.size());
-		for (Pair<ActorGroup, Range<Integer>> p : allocations)
-			code.add(p.first.specialize(p.second, storage, switchFactory, unrollFactors.get(p.first), inputTransformers, outputTransformers));
+		for (Pair<ActorGroup, Range<Integer>> p : allocations) {
+			ChunkQueue queue = sharedAllocations.get(p.first);
+			if (queue != null)
+				code.add(p.first.specializeShared(p.second, queue, storage, switchFactory, unrollFactors.get(p.first), inputTransformers, outputTransformers));
+			else
+				code.add(p.first.specialize(p.second, storage, switchFactory, unrollFactors.get(p.first), inputTransformers, outputTransformers));
+		}
 		return Combinators.semicolon(code);
 	}
 
+	/**
+	 * Returns the external (non-internal) storage read or written by the
+	 * groups allocated to this Core.
+	 * @return the external storage this Core uses
+	 */
+	public ImmutableSet<Storage> externalStorage() {
+		ImmutableSet.Builder<Storage> builder = ImmutableSet.builder();
+		for (Pair<ActorGroup, Range<Integer>> p : allocations)
+			builder.addAll(p.first.inputs()).addAll(p.first.outputs());
+		return builder.build();
+	}
+
 	/**
 	 * Returns true iff this Core is empty (has no allocations) and thus doesn't
 	 * need to generate or run code.
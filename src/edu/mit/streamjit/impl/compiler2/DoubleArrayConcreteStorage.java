@@ -48,12 +48,15 @@ public class DoubleArrayConcreteStorage implements ConcreteStorage {
 	private final int capacity, throughput, readOffset;
 	private final MethodHandle readHandle, writeHandle, adjustHandle;
 	public DoubleArrayConcreteStorage(Arrayish.Factory arrayFactory, Storage s) {
+		this(arrayFactory.make(s.type(), s.throughput()), arrayFactory.make(s.type(), s.throughput()), s);
+	}
+	private DoubleArrayConcreteStorage(Arrayish readArray, Arrayish writeArray, Storage s) {
 		this.capacity = s.steadyStateCapacity();
 		assert capacity > 0 : s + " has capacity "+capacity;
 		this.throughput = s.throughput();
 		assert capacity == 2*throughput : "can't double buffer "+s;
-		this.readArray = arrayFactory.make(s.type(), throughput);
-		this.writeArray = arrayFactory.make(s.type(), throughput);
+		this.readArray = readArray;
+		this.writeArray = writeArray;
 
 		ImmutableSet<ActorGroup> relevantGroups = ImmutableSet.<ActorGroup>builder().addAll(s.upstreamGroups()).addAll(s.downstreamGroups()).build();
 		Map<ActorGroup, Integer> oneMap = Maps.asMap(relevantGroups, x -> 1);
@@ -112,9 +115,71 @@ public class DoubleArrayConcreteStorage implements ConcreteStorage {
 		return adjustHandle;
 	}
 
+	/**
+	 * Creates a DoubleArrayConcreteStorage, supporting bulk copies if the
+	 * given factory makes Arrayish backed by Java arrays.
+	 * @param arrayFactory the factory to make the arrays with
+	 * @param s the storage being implemented
+	 * @return a DoubleArrayConcreteStorage
+	 */
+	public static DoubleArrayConcreteStorage create(Arrayish.Factory arrayFactory, Storage s) {
+		Arrayish readArray = arrayFactory.make(s.type(), s.throughput()),
+				writeArray = arrayFactory.make(s.type(), s.throughput());
+		return readArray instanceof Arrayish.ArrayArrayish && writeArray instanceof Arrayish.ArrayArrayish ?
+				new JavaArrayStorage((Arrayish.ArrayArrayish)readArray, (Arrayish.ArrayArrayish)writeArray, s) :
+				new DoubleArrayConcreteStorage(readArray, writeArray, s);
+	}
+
 	public static StorageFactory factory() {
 		return storage -> storage.steadyStateCapacity() == 0 ?
 				new EmptyConcreteStorage(storage) :
-				new DoubleArrayConcreteStorage(Arrayish.ArrayArrayish.factory(), storage);
+				create(Arrayish.ArrayArrayish.factory(), storage);
+	}
+
+	/**
+	 * Copies with the same index mapping as {@link #write(int, Object)} and
+	 * {@link #read(int)}: indices past the throughput continue into the other
+	 * array.
+	 */
+	private static final class JavaArrayStorage extends DoubleArrayConcreteStorage implements ArrayCopyConcreteStorage {
+		private final Object readJavaArray, writeJavaArray;
+		private JavaArrayStorage(Arrayish.ArrayArrayish readArray, Arrayish.ArrayArrayish writeArray, Storage s) {
+			super(readArray, writeArray, s);
+			this.readJavaArray = readArray.array();
+			this.writeJavaArray = writeArray.array();
+		}
+		@Override
+		public void copyFrom(Object src, int srcPos, int index, int length) {
+			index -= super.readOffset;
+			while (length > 0) {
+				boolean first = index < super.throughput;
+				int start = first ? index : index - super.throughput,
+						n = Math.min(length, super.throughput - start);
+				System.arraycopy(src, srcPos, array(first), start, n);
+				srcPos += n;
+				index += n;
+				length -= n;
+			}
+		}
+		@Override
+		public void copyTo(int index, Object dest, int destPos, int length) {
+			index -= super.readOffset;
+			while (length > 0) {
+				boolean first = index < super.throughput;
+				int start = first ? index : index - super.throughput,
+						n = Math.min(length, super.throughput - start);
+				System.arraycopy(array(first), start, dest, destPos, n);
+				destPos += n;
+				index += n;
+				length -= n;
+			}
+		}
+		/**
+		 * Returns the Java array holding the first or second throughput's worth
+		 * of indices, given the current state.
+		 */
+		private Object array(boolean first) {
+			return first == super.state ? readJavaArray : writeJavaArray;
+		}
 	}
 }
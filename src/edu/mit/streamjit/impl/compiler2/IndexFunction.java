@@ -38,6 +38,16 @@ public interface IndexFunction extends IntUnaryOperator {
 			bulk[i] = applyAsInt(bulk[i]);
 	}
 
+	/**
+	 * Returns a rough estimate of the cost of evaluating this function, in
+	 * units of simple integer operations, for deciding whether it's worth
+	 * precomputing.
+	 * @return the estimated evaluation cost
+	 */
+	public default int cost() {
+		return 1;
+	}
+
 	@Override
 	public default IndexFunction compose(IntUnaryOperator before) {
 		return before instanceof IndexFunction ? new CompoundIndexFunction((IndexFunction)before, this)
@@ -71,6 +81,10 @@ final class IdentityIndexFunction implements IndexFunction {
 	public void applyBulk(int[] bulk) {
 		//do nothing
 	}
+	@Override
+	public int cost() {
+		return 0;
+	}
 }
 
 final class CompoundIndexFunction implements IndexFunction {
@@ -88,4 +102,8 @@ final class CompoundIndexFunction implements IndexFunction {
 		before.applyBulk(bulk);
 		after.applyBulk(bulk);
 	}
+	@Override
+	public int cost() {
+		return before.cost() + after.cost();
+	}
 }
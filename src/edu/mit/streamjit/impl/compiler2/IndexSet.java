@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.compiler2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.Range;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of physical indices, stored as sorted, disjoint runs of
+ * consecutive indices.  Index functions map the contiguous logical indices of
+ * an actor's reads or writes to a few runs (one per roundrobin weight, say),
+ * so this takes space proportional to the number of runs rather than the
+ * number of indices, and building one never boxes.
+ * @since 10/18/2026
+ */
+public final class IndexSet {
+	private static final IndexSet EMPTY = new IndexSet(new int[0], 0);
+	/**
+	 * The runs, as pairs of (inclusive) start and (exclusive) end, in
+	 * increasing order and neither overlapping nor adjacent.
+	 */
+	private final int[] runs;
+	private final int size;
+	private IndexSet(int[] runs, int size) {
+		this.runs = runs;
+		this.size = size;
+	}
+
+	public static IndexSet of() {
+		return EMPTY;
+	}
+
+	public static IndexSet of(int... indices) {
+		return builder().addAll(indices, 0, indices.length).build();
+	}
+
+	public static IndexSet of(Range<Integer> range) {
+		return builder().add(range).build();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int first() {
+		if (isEmpty())
+			throw new NoSuchElementException();
+		return runs[0];
+	}
+
+	public int last() {
+		if (isEmpty())
+			throw new NoSuchElementException();
+		return runs[runs.length-1]-1;
+	}
+
+	/**
+	 * Returns the number of runs of consecutive indices in this set.
+	 * @return the number of runs
+	 */
+	public int runCount() {
+		return runs.length/2;
+	}
+
+	public boolean contains(int index) {
+		//Find the last run starting at or before index.
+		int lo = 0, hi = runCount()-1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (runs[2*mid] <= index)
+				lo = mid + 1;
+			else
+				hi = mid - 1;
+		}
+		return hi >= 0 && index < runs[2*hi+1];
+	}
+
+	/**
+	 * Returns a canonical range spanning this set, or an empty range if this
+	 * set is empty.
+	 * @return a range spanning this set
+	 */
+	public Range<Integer> span() {
+		return isEmpty() ? Range.closedOpen(0, 0) : Range.closedOpen(runs[0], runs[runs.length-1]);
+	}
+
+	/**
+	 * Returns the indices in this set, in increasing order.
+	 * @return the indices in this set
+	 */
+	public int[] toArray() {
+		int[] array = new int[size];
+		int pos = 0;
+		for (int r = 0; r < runs.length; r += 2)
+			for (int i = runs[r]; i < runs[r+1]; ++i)
+				array[pos++] = i;
+		return array;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof IndexSet))
+			return false;
+		return Arrays.equals(runs, ((IndexSet)obj).runs);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(runs);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int r = 0; r < runs.length; r += 2) {
+			if (r > 0)
+				sb.append(", ");
+			sb.append(runs[r]);
+			if (runs[r+1] - runs[r] > 1)
+				sb.append("..").append(runs[r+1]-1);
+		}
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * Builds IndexSets from individual indices, ranges and other IndexSets.
+	 * Individual indices and runs are buffered in int arrays until build()
+	 * sorts and merges them.
+	 */
+	public static final class Builder {
+		private int[] indices = new int[16];
+		private int indicesSize;
+		/**
+		 * Runs added whole, as pairs of start and end.
+		 */
+		private int[] runs = new int[8];
+		private int runsSize;
+		private boolean built;
+		private Builder() {}
+
+		public Builder add(int index) {
+			checkState(!built);
+			if (indicesSize == indices.length)
+				indices = Arrays.copyOf(indices, 2*indices.length);
+			indices[indicesSize++] = index;
+			return this;
+		}
+
+		/**
+		 * Adds the given indices.  Consecutive increasing indices are added
+		 * as runs, so adding the results of applying an index function to a
+		 * range stays compact.
+		 */
+		public Builder addAll(int[] indices, int offset, int length) {
+			int end = offset + length;
+			for (int i = offset; i < end;) {
+				int start = i;
+				for (++i; i < end && indices[i] == indices[i-1] + 1; ++i);
+				if (i - start == 1)
+					add(indices[start]);
+				else
+					addRun(indices[start], indices[i-1] + 1);
+			}
+			return this;
+		}
+
+		public Builder add(Range<Integer> range) {
+			range = range.canonical(DiscreteDomain.integers());
+			if (!range.isEmpty())
+				addRun(range.lowerEndpoint(), range.upperEndpoint());
+			return this;
+		}
+
+		public Builder addAll(IndexSet set) {
+			for (int r = 0; r < set.runs.length; r += 2)
+				addRun(set.runs[r], set.runs[r+1]);
+			return this;
+		}
+
+		private void addRun(int start, int end) {
+			checkState(!built);
+			checkArgument(start < end, "empty run %s %s", start, end);
+			if (runsSize + 2 > runs.length)
+				runs = Arrays.copyOf(runs, 2*runs.length);
+			runs[runsSize++] = start;
+			runs[runsSize++] = end;
+		}
+
+		public IndexSet build() {
+			checkState(!built);
+			built = true;
+			//Sort the buffered runs by start, then merge them with the sorted
+			//individual indices.
+			long[] sortedRuns = new long[runsSize/2];
+			for (int r = 0; r < sortedRuns.length; ++r)
+				sortedRuns[r] = ((long)runs[2*r] << 32) | (runs[2*r+1] & 0xFFFFFFFFL);
+			Arrays.sort(sortedRuns);
+			Arrays.sort(indices, 0, indicesSize);
+
+			int[] result = new int[8];
+			int resultSize = 0, size = 0;
+			int i = 0, r = 0;
+			while (i < indicesSize || r < sortedRuns.length) {
+				int start, end;
+				if (r == sortedRuns.length || (i < indicesSize && indices[i] < (int)(sortedRuns[r] >> 32))) {
+					start = indices[i++];
+					end = start + 1;
+				} else {
+					start = (int)(sortedRuns[r] >> 32);
+					end = (int)sortedRuns[r++];
+				}
+				if (resultSize > 0 && start <= result[resultSize-1]) {
+					//Overlapping or adjacent: extend the previous run.
+					if (end > result[resultSize-1]) {
+						size += end - result[resultSize-1];
+						result[resultSize-1] = end;
+					}
+				} else {
+					if (resultSize + 2 > result.length)
+						result = Arrays.copyOf(result, 2*result.length);
+					result[resultSize++] = start;
+					result[resultSize++] = end;
+					size += end - start;
+				}
+			}
+			indices = null;
+			runs = null;
+			return size == 0 ? EMPTY : new IndexSet(Arrays.copyOf(result, resultSize), size);
+		}
+	}
+}
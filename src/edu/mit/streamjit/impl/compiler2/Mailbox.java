@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.compiler2;
+
+import com.google.common.collect.ImmutableMap;
+import edu.mit.streamjit.api.IllegalStreamGraphException;
+import edu.mit.streamjit.api.Portal;
+import edu.mit.streamjit.api.Worker;
+import edu.mit.streamjit.impl.blob.Blob.Token;
+import edu.mit.streamjit.impl.common.MessageConstraint;
+import edu.mit.streamjit.impl.common.Portals;
+import edu.mit.streamjit.impl.common.Workers;
+import edu.mit.streamjit.impl.compiler2.Compiler2BlobHost.DrainInstruction;
+import edu.mit.streamjit.impl.interp.Message;
+import edu.mit.streamjit.util.bytecode.methodhandles.Combinators;
+import static edu.mit.streamjit.util.bytecode.methodhandles.LookupUtils.findVirtual;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends and receives teleport messages for a WorkerActor in compiled code.
+ * Compiled code doesn't call Worker.doWork(), so the Mailbox counts the
+ * actor's executions, provides the handles its work method sends through, and
+ * delivers messages sent to it immediately before the execution their
+ * MessageConstraint computes.
+ *
+ * Groups containing actors with Mailboxes are treated as stateful, so each
+ * actor executes serially and only one thread at a time changes its
+ * execution count.  Senders may be on other cores, so the pending messages
+ * are guarded by this object's lock, but the recipient only takes the lock
+ * when a message is due.  (A message's delivery time depends on data the
+ * sender hasn't produced yet, so it's always after some synchronization
+ * between the sender and recipient.)
+ *
+ * The schedule doesn't account for message constraints, so upstream messages
+ * (to a recipient upstream of the sender) fail at run time: the recipient runs
+ * ahead of the sender, by up to a whole steady-state iteration, and unless the
+ * message latency covers that the delivery time has already passed when the
+ * message is sent.  deliver() then throws IllegalStreamGraphException.
+ * @since 10/18/2026
+ */
+public final class Mailbox implements DrainInstruction {
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final MethodHandle BEFORE_WORK = findVirtual(LOOKUP, "beforeWork");
+	private static final MethodHandle AFTER_WORK = findVirtual(LOOKUP, "afterWork");
+	private final WorkerActor actor;
+	/**
+	 * The number of completed executions of the actor.
+	 */
+	private long executions;
+	/**
+	 * Messages to be delivered to the actor, in delivery order.  Guarded by
+	 * this.
+	 */
+	private final List<PendingMessage> pending = new ArrayList<>();
+	/**
+	 * Delivered messages, linked through their next fields, for reuse by
+	 * later sends.  Guarded by this.
+	 */
+	private PendingMessage free;
+	/**
+	 * The delivery time of the first pending message, or Long.MAX_VALUE.
+	 */
+	private volatile long nextDelivery = Long.MAX_VALUE;
+	/**
+	 * Portal -> handle for sending messages from the actor through that portal.
+	 */
+	private final Map<Portal<?>, Object> handles = new IdentityHashMap<>();
+	private boolean receives;
+	private Mailbox(WorkerActor actor) {
+		this.actor = actor;
+	}
+
+	/**
+	 * Creates Mailboxes for the actors sending or receiving messages under the
+	 * given constraints.
+	 * @param actors the actors in the blob being compiled
+	 * @param constraints the message constraints of the stream graph
+	 * @throws IllegalArgumentException if a constraint's sender or recipient
+	 * isn't in the blob
+	 * @throws IllegalStreamGraphException if a portal's interface isn't
+	 * public (compiled code must be able to call through it)
+	 */
+	public static void install(Map<Worker<?, ?>, WorkerActor> actors, List<MessageConstraint> constraints) {
+		Map<WorkerActor, Mailbox> mailboxes = new HashMap<>();
+		//sender -> portal -> recipient -> constraint.  A sender with several
+		//getHandle() call sites has a constraint for each; like Portal, we
+		//keep only one per recipient.
+		Map<Mailbox, Map<Portal<?>, Map<Worker<?, ?>, MessageConstraint>>> sent = new HashMap<>();
+		for (MessageConstraint c : constraints) {
+			WorkerActor sender = actors.get(c.getSender()), recipient = actors.get(c.getRecipient());
+			if (sender == null && recipient == null)
+				continue;
+			if (sender == null || recipient == null)
+				throw new IllegalArgumentException("Constraint crosses blob boundary: "+c);
+			if (!Modifier.isPublic(Portals.getInterface(c.getPortal()).getModifiers()))
+				throw new IllegalStreamGraphException("Compiled code requires public portal interfaces: "+c.getPortal(), c.getSender(), c.getRecipient());
+			mailboxes.computeIfAbsent(recipient, Mailbox::new).receives = true;
+			sent.computeIfAbsent(mailboxes.computeIfAbsent(sender, Mailbox::new), k -> new IdentityHashMap<>())
+					.computeIfAbsent(c.getPortal(), k -> new IdentityHashMap<>()).put(c.getRecipient(), c);
+		}
+
+		for (Map.Entry<Mailbox, Map<Portal<?>, Map<Worker<?, ?>, MessageConstraint>>> e : sent.entrySet())
+			for (Map.Entry<Portal<?>, Map<Worker<?, ?>, MessageConstraint>> p : e.getValue().entrySet()) {
+				List<MessageConstraint> list = new ArrayList<>(p.getValue().values());
+				Mailbox[] recipients = new Mailbox[list.size()];
+				for (int i = 0; i < recipients.length; ++i)
+					recipients[i] = mailboxes.get(actors.get(list.get(i).getRecipient()));
+				Class<?> iface = Portals.getInterface(p.getKey());
+				Handle handle = new Handle(e.getKey().actor.worker(), e.getKey(), recipients, list.toArray(new MessageConstraint[0]), Portals.getHandlers(p.getKey()));
+				e.getKey().handles.put(p.getKey(), Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface}, handle));
+			}
+
+		//Continue from where the interpreter (or a previous blob, via our
+		//drain) left off: take over the workers' execution counts and any
+		//messages still pending delivery.
+		for (Map.Entry<Worker<?, ?>, WorkerActor> e : actors.entrySet()) {
+			List<Message> messages = Workers.takeMessages(e.getKey());
+			if (messages.isEmpty())
+				continue;
+			Mailbox m = mailboxes.computeIfAbsent(e.getValue(), Mailbox::new);
+			m.receives = true;
+			for (Message message : messages)
+				m.enqueue(message.timeToReceive, message.method, message.handler, message.args);
+		}
+		for (Mailbox m : mailboxes.values()) {
+			m.executions = Workers.getExecutions(m.actor.worker());
+			m.actor.setMailbox(m);
+		}
+	}
+
+	/**
+	 * Wraps the actor's work method to count executions and, if the actor
+	 * receives messages, deliver them.
+	 * @param work the actor's specialized work method
+	 * @return a handle of the same type that also counts and delivers
+	 */
+	public MethodHandle wrap(MethodHandle work) {
+		List<Class<?>> parameters = work.type().parameterList();
+		MethodHandle after = MethodHandles.dropArguments(AFTER_WORK.bindTo(this), 0, parameters);
+		if (!receives)
+			return Combinators.semicolon(work, after);
+		MethodHandle before = MethodHandles.dropArguments(BEFORE_WORK.bindTo(this), 0, parameters);
+		return Combinators.semicolon(before, work, after);
+	}
+
+	/* package-private */ Object getHandle(Portal<?> portal) {
+		Object handle = handles.get(portal);
+		if (handle == null) {
+			handle = noOpHandle(portal, actor.worker());
+			handles.put(portal, handle);
+		}
+		return handle;
+	}
+
+	/**
+	 * Returns a handle that discards messages sent through the given portal,
+	 * for senders through portals without recipients (which have no message
+	 * constraints, so get no Mailbox handle).
+	 * @param portal the portal
+	 * @param sender the sending worker, for error messages
+	 * @return a handle discarding messages
+	 * @throws IllegalStreamGraphException if the portal has recipients (so the
+	 * sender should have had a message constraint)
+	 */
+	/* package-private */ static Object noOpHandle(Portal<?> portal, Worker<?, ?> sender) {
+		if (!Portals.getRecipients(portal).isEmpty())
+			throw new IllegalStreamGraphException("Sending through "+portal+" without a message constraint", sender);
+		Class<?> iface = Portals.getInterface(portal);
+		return Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface},
+				new Handle(sender, null, new Mailbox[0], new MessageConstraint[0], Portals.getHandlers(portal)));
+	}
+
+	private void beforeWork() {
+		if (executions + 1 >= nextDelivery)
+			deliver();
+	}
+
+	private void afterWork() {
+		++executions;
+	}
+
+	private synchronized void deliver() {
+		while (!pending.isEmpty() && pending.get(0).timeToReceive <= executions + 1) {
+			PendingMessage m = pending.remove(0);
+			if (m.timeToReceive != executions + 1)
+				throw new IllegalStreamGraphException(String.format(
+						"Message delivery missed: %s due before execution %d, but %d executions completed (increase the latency?)",
+						m.method, m.timeToReceive, executions), actor.worker());
+			actor.stateHolder().deliver(m.handler, m.args);
+			m.set(0, null, null, null);
+			m.next = free;
+			free = m;
+		}
+		nextDelivery = pending.isEmpty() ? Long.MAX_VALUE : pending.get(0).timeToReceive;
+	}
+
+	private synchronized void enqueue(long timeToReceive, Method method, MethodHandle handler, Object[] args) {
+		PendingMessage message = free;
+		if (message != null) {
+			free = message.next;
+			message.next = null;
+		} else
+			message = new PendingMessage();
+		message.set(timeToReceive, method, handler, args);
+		//Messages due at the same time are delivered in the order sent.
+		int i = pending.size();
+		while (i > 0 && pending.get(i-1).timeToReceive > message.timeToReceive)
+			--i;
+		pending.add(i, message);
+		nextDelivery = pending.get(0).timeToReceive;
+	}
+
+	/**
+	 * Rather than produce data, "drain" by giving the worker our execution
+	 * count and pending messages, so the interpreter can continue delivering
+	 * them.
+	 * @return an empty immutable map
+	 */
+	@Override
+	public synchronized Map<Token, Object[]> call() {
+		Workers.setExecutions(actor.worker(), executions);
+		for (PendingMessage m : pending)
+			Workers.sendMessage(actor.worker(), new Message(m.method, m.handler, m.args, m.timeToReceive));
+		pending.clear();
+		nextDelivery = Long.MAX_VALUE;
+		return ImmutableMap.of();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Mailbox(%s, %d executions, %d pending)", actor, executions, pending.size());
+	}
+
+	/**
+	 * A message waiting for delivery.  These are reused after delivery, so
+	 * sending a message usually doesn't allocate beyond the proxy's argument
+	 * array, which is shared by all recipients.
+	 */
+	private static final class PendingMessage {
+		private long timeToReceive;
+		private Method method;
+		private MethodHandle handler;
+		private Object[] args;
+		private PendingMessage next;
+		private void set(long timeToReceive, Method method, MethodHandle handler, Object[] args) {
+			this.timeToReceive = timeToReceive;
+			this.method = method;
+			this.handler = handler;
+			this.args = args;
+		}
+	}
+
+	/**
+	 * The back-end of the proxy the actor sends messages through.
+	 */
+	private static final class Handle implements InvocationHandler {
+		private final Worker<?, ?> worker;
+		/**
+		 * The sender's Mailbox, or null if there are no recipients.
+		 */
+		private final Mailbox sender;
+		private final Mailbox[] recipients;
+		private final MessageConstraint[] constraints;
+		private final ImmutableMap<Method, MethodHandle> handlers;
+		private Handle(Worker<?, ?> worker, Mailbox sender, Mailbox[] recipients, MessageConstraint[] constraints, ImmutableMap<Method, MethodHandle> handlers) {
+			this.worker = worker;
+			this.sender = sender;
+			this.recipients = recipients;
+			this.constraints = constraints;
+			this.handlers = handlers;
+		}
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			MethodHandle handler = handlers.get(method);
+			if (handler == null)
+				throw new IllegalStreamGraphException("Call to Object method "+method+" through portal", worker);
+			for (int i = 0; i < recipients.length; ++i)
+				recipients[i].enqueue(constraints[i].getDeliveryTime(sender.executions), method, handler, args);
+			//Methods on the portal interface return void.
+			return null;
+		}
+	}
+}
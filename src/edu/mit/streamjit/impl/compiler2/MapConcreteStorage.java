@@ -22,36 +22,46 @@
 package edu.mit.streamjit.impl.compiler2;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Maps;
 import edu.mit.streamjit.util.bytecode.methodhandles.Combinators;
 import static edu.mit.streamjit.util.bytecode.methodhandles.LookupUtils.findVirtual;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.StringJoiner;
 
 /**
- * A ConcreteStorage implementation using a Map<Integer, T>.
+ * A ConcreteStorage implementation for sparse indices, mapping int indices to
+ * items without boxing the index.  Items are stored in fixed-size pages that
+ * are allocated when first written, so memory use is proportional to the
+ * span of indices actually written rather than to the largest index.
+ *
+ * The page directory is replaced (never modified) under a lock when a new
+ * page is needed, so concurrent writers to different indices only contend
+ * when allocating pages; once the pages for a steady-state iteration exist,
+ * reads and writes are plain array accesses.
  * @author Jeffrey Bosboom <jbosboom@csail.mit.edu>
  * @since 10/27/2013
  */
 public final class MapConcreteStorage implements ConcreteStorage {
 	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
-	private static final MethodHandle MAP_GET = findVirtual(Map.class, "get")
-			.asType(MethodType.methodType(Object.class, Map.class, int.class));
-	private static final MethodHandle MAP_PUT = findVirtual(Map.class, "put")
-			.asType(MethodType.methodType(void.class, Map.class, int.class, Object.class));
+	private static final MethodHandle READ = findVirtual(LOOKUP, "read");
+	private static final MethodHandle WRITE = findVirtual(LOOKUP, "write");
 	private static final MethodHandle ADJUST = findVirtual(LOOKUP, "adjust");
+	private static final int PAGE_SHIFT = 10, PAGE_SIZE = 1 << PAGE_SHIFT, PAGE_MASK = PAGE_SIZE - 1;
 	private final Class<?> type;
-	private final Map<Integer, Object> map = new ConcurrentHashMap<>();
+	/**
+	 * The current page directory.  Replaced under this object's lock by
+	 * {@link #allocatePage(int)}; pages themselves are never replaced, so a
+	 * writer holding a stale directory still writes to the right page.
+	 */
+	private volatile Directory directory = Directory.EMPTY;
 	private final MethodHandle readHandle, writeHandle, adjustHandle;
 	private final int minReadIndex, throughput;
 	private MapConcreteStorage(Class<?> type, MethodHandle adjustHandle, int minReadIndex, int throughput) {
 		this.type = type;
-		this.readHandle = MAP_GET.bindTo(map).asType(MethodType.methodType(type, int.class));
-		this.writeHandle = MAP_PUT.bindTo(map).asType(MethodType.methodType(void.class, int.class, type));
+		this.readHandle = READ.bindTo(this).asType(MethodType.methodType(type, int.class));
+		this.writeHandle = WRITE.bindTo(this).asType(MethodType.methodType(void.class, int.class, type));
 		this.adjustHandle = adjustHandle.bindTo(this);
 		this.minReadIndex = minReadIndex;
 		this.throughput = throughput;
@@ -70,16 +80,64 @@ public final class MapConcreteStorage implements ConcreteStorage {
 		return type;
 	}
 
+	@Override
+	public Object read(int index) {
+		Directory d = directory;
+		int p = (index >> PAGE_SHIFT) - d.firstPage;
+		if (p < 0 || p >= d.pages.length || d.pages[p] == null)
+			return null;
+		return d.pages[p][index & PAGE_MASK];
+	}
+
+	@Override
+	public void write(int index, Object data) {
+		page(index)[index & PAGE_MASK] = data;
+	}
+
+	private Object[] page(int index) {
+		Directory d = directory;
+		int p = (index >> PAGE_SHIFT) - d.firstPage;
+		if (p >= 0 && p < d.pages.length && d.pages[p] != null)
+			return d.pages[p];
+		return allocatePage(index);
+	}
+
+	private synchronized Object[] allocatePage(int index) {
+		int pageNumber = index >> PAGE_SHIFT;
+		Directory d = directory;
+		int first = pageNumber, last = pageNumber;
+		if (d.pages.length > 0) {
+			first = Math.min(first, d.firstPage);
+			last = Math.max(last, d.firstPage + d.pages.length - 1);
+		}
+		Object[][] pages = new Object[last - first + 1][];
+		System.arraycopy(d.pages, 0, pages, d.pages.length > 0 ? d.firstPage - first : 0, d.pages.length);
+		if (pages[pageNumber - first] == null)
+			pages[pageNumber - first] = new Object[PAGE_SIZE];
+		directory = new Directory(first, pages);
+		return pages[pageNumber - first];
+	}
+
 	@Override
 	public void adjust() {
-		//This is pretty slow, but we need them in order so we don't overwrite.
-		ImmutableSortedSet<Integer> indices = ImmutableSortedSet.copyOf(map.keySet());
-		for (int i : indices) {
-			int newReadIndex = i - throughput;
-			Object item = map.remove(i);
-			if (newReadIndex >= minReadIndex) {
-				Object overwrote = map.put(newReadIndex, item);
-				assert overwrote == null : newReadIndex;
+		//Indices only move down, so walking up from the lowest index never
+		//overwrites an item we haven't moved yet.  Pages allocated while moving
+		//are below the current item, so iterating the old directory is fine.
+		Directory d = directory;
+		for (int p = 0; p < d.pages.length; ++p) {
+			Object[] page = d.pages[p];
+			if (page == null) continue;
+			int base = (d.firstPage + p) << PAGE_SHIFT;
+			for (int i = 0; i < PAGE_SIZE; ++i) {
+				Object item = page[i];
+				if (item == null) continue;
+				page[i] = null;
+				int newReadIndex = base + i - throughput;
+				if (newReadIndex >= minReadIndex) {
+					Object[] newPage = page(newReadIndex);
+					assert newPage[newReadIndex & PAGE_MASK] == null : newReadIndex;
+					newPage[newReadIndex & PAGE_MASK] = item;
+				}
 			}
 		}
 	}
@@ -105,7 +163,14 @@ public final class MapConcreteStorage implements ConcreteStorage {
 
 	@Override
 	public String toString() {
-		return map.toString();
+		StringJoiner joiner = new StringJoiner(", ", "{", "}");
+		Directory d = directory;
+		for (int p = 0; p < d.pages.length; ++p)
+			if (d.pages[p] != null)
+				for (int i = 0; i < PAGE_SIZE; ++i)
+					if (d.pages[p][i] != null)
+						joiner.add(((d.firstPage + p) << PAGE_SHIFT) + i + "=" + d.pages[p][i]);
+		return joiner.toString();
 	}
 
 	public static StorageFactory factory() {
@@ -115,4 +180,18 @@ public final class MapConcreteStorage implements ConcreteStorage {
 	public static StorageFactory initFactory() {
 		return MapConcreteStorage::createNopAdjust;
 	}
+
+	private static final class Directory {
+		private static final Directory EMPTY = new Directory(0, new Object[0][]);
+		/**
+		 * The page number of pages[0]; page n holds indices
+		 * [n * PAGE_SIZE, (n+1) * PAGE_SIZE).
+		 */
+		private final int firstPage;
+		private final Object[][] pages;
+		private Directory(int firstPage, Object[][] pages) {
+			this.firstPage = firstPage;
+			this.pages = pages;
+		}
+	}
 }
@@ -22,7 +22,6 @@
 package edu.mit.streamjit.impl.compiler2;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Maps;
 import edu.mit.streamjit.impl.blob.Blob.Token;
 import edu.mit.streamjit.impl.blob.PeekableBuffer;
@@ -112,7 +111,7 @@ public final class PeekableBufferConcreteStorage implements ConcreteStorage {
 			}
 			ImmutableSet<ActorGroup> relevantGroups = ImmutableSet.<ActorGroup>builder()
 					.addAll(storage.upstreamGroups()).addAll(storage.downstreamGroups()).build();
-			ImmutableSortedSet<Integer> readIndices = storage.readIndices(Maps.asMap(relevantGroups, i -> 1));
+			IndexSet readIndices = storage.readIndices(Maps.asMap(relevantGroups, i -> 1));
 			int minReadIndex1 = readIndices.isEmpty() ? Integer.MIN_VALUE : readIndices.first();
 			return new PeekableBufferConcreteStorage(storage.type(), throughput1, minReadIndex1, buffers.get(storage.id()));
 		};
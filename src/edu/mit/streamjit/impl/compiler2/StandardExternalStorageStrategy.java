@@ -41,7 +41,7 @@ public final class StandardExternalStorageStrategy implements StorageStrategy {
 			if (storage.steadyStateCapacity() == 0)
 				return new EmptyConcreteStorage(storage);
 			Arrayish array = new Arrayish.ArrayArrayish(storage.type(), storage.steadyStateCapacity());
-			return new CircularArrayConcreteStorage(array, storage);
+			return CircularArrayConcreteStorage.create(array, storage);
 		};
 	}
 }
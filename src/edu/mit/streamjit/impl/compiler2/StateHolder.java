@@ -22,13 +22,22 @@
 package edu.mit.streamjit.impl.compiler2;
 
 import com.google.common.collect.ImmutableMap;
+import edu.mit.streamjit.api.IllegalStreamGraphException;
+import edu.mit.streamjit.api.Portal;
 import edu.mit.streamjit.api.Worker;
 import edu.mit.streamjit.impl.blob.Blob;
 import edu.mit.streamjit.impl.compiler2.Compiler2BlobHost.DrainInstruction;
 import edu.mit.streamjit.util.ReflectionUtils;
+import edu.mit.streamjit.util.bytecode.methodhandles.Combinators;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Subclasses of this class hold worker state.
@@ -37,11 +46,48 @@ import java.util.Map;
  * @since 12/11/2013
  */
 public abstract class StateHolder implements DrainInstruction {
+	private static final MethodType MOVE_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
 	private final Worker<?, ?> worker;
+	/**
+	 * The worker's Mailbox, if it sends or receives messages.
+	 */
+	private Mailbox mailbox;
+	/**
+	 * Portal -> handle discarding messages, for portals without recipients
+	 * when the worker has no Mailbox.  (Such workers may be data-parallel, so
+	 * this must be thread-safe.)
+	 */
+	private final Map<Portal<?>, Object> noOpHandles = new ConcurrentHashMap<>(1);
+	/**
+	 * Handles taking (worker, this) that copy our non-final fields into the
+	 * worker or back out, built on first use so delivering a message doesn't
+	 * go through reflection.
+	 */
+	private MethodHandle toWorker, fromWorker;
 	protected StateHolder(Worker<?, ?> worker) {
 		this.worker = worker;
 	}
 
+	/* package-private */ void setMailbox(Mailbox mailbox) {
+		this.mailbox = mailbox;
+	}
+
+	/**
+	 * Returns a handle that sends messages from the worker through the given
+	 * portal.  Compiled work methods call this in place of
+	 * {@link Portal#getHandle(Worker, int)}.  The latency is already part of
+	 * the message constraints, so it's ignored here.  Messages sent through a
+	 * portal without recipients are discarded.
+	 * @param portal the portal
+	 * @param latency the message latency (ignored)
+	 * @return a handle for sending messages through the portal
+	 */
+	public Object getHandle(Portal<?> portal, int latency) {
+		if (mailbox != null)
+			return mailbox.getHandle(portal);
+		return noOpHandles.computeIfAbsent(portal, p -> Mailbox.noOpHandle(p, worker));
+	}
+
 	/**
 	 * Rather than produce data, "drain" by moving any non-final fields back
 	 * into the worker.  (They'll then be used by the interpreter during
@@ -50,16 +96,72 @@ public abstract class StateHolder implements DrainInstruction {
 	 */
 	@Override
 	public Map<Blob.Token, Object[]> call() {
+		moveState(true);
+		return ImmutableMap.of();
+	}
+
+	/**
+	 * Delivers a message by invoking the given handler on the worker.  The
+	 * handler was written against the worker's fields, so we move our state
+	 * into the worker first and take it back afterwards.
+	 * @param handler the message handler, taking the worker and the message
+	 * arguments as an Object[]
+	 * @param args the message arguments
+	 */
+	/* package-private */ void deliver(MethodHandle handler, Object[] args) {
+		moveState(true);
+		try {
+			handler.invokeExact((Object)worker, args);
+		} catch (Throwable ex) {
+			throw new IllegalStreamGraphException("Bad stuff happened while processing message", ex, worker);
+		}
+		moveState(false);
+	}
+
+	private void moveState(boolean toWorker) {
+		if (this.toWorker == null)
+			makeMoveHandles();
+		try {
+			(toWorker ? this.toWorker : this.fromWorker).invokeExact((Object)worker, (Object)this);
+		} catch (Throwable ex) {
+			throw new AssertionError(ex);
+		}
+	}
+
+	private void makeMoveHandles() {
+		List<MethodHandle> to = new ArrayList<>(), from = new ArrayList<>();
 		for (Field hf : getClass().getDeclaredFields()) {
 			Field wf = ReflectionUtils.getFieldByName(worker, hf.getName());
-			if (!Modifier.isFinal(wf.getModifiers()))
-				try {
-					wf.setAccessible(true);
-					wf.set(worker, hf.get(this));
-				} catch (IllegalAccessException ex) {
-					throw new AssertionError(ex);
-				}
+			if (Modifier.isFinal(wf.getModifiers()))
+				continue;
+			wf.setAccessible(true);
+			try {
+				//(worker, holder) -> worker.f = holder.f
+				to.add(copyField(wf, hf));
+				//(worker, holder) -> holder.f = worker.f
+				from.add(MethodHandles.permuteArguments(copyField(hf, wf), MOVE_TYPE, 1, 0));
+			} catch (IllegalAccessException ex) {
+				throw new AssertionError(ex);
+			}
 		}
-		return ImmutableMap.of();
+		this.fromWorker = from.isEmpty() ? Combinators.nop(Object.class, Object.class) : Combinators.semicolon(from);
+		this.toWorker = to.isEmpty() ? Combinators.nop(Object.class, Object.class) : Combinators.semicolon(to);
+	}
+
+	/**
+	 * Returns a handle taking (target object, source object) that copies the
+	 * source field into the target field.  Either field may be static, in
+	 * which case the corresponding object is ignored.
+	 */
+	private static MethodHandle copyField(Field target, Field source) throws IllegalAccessException {
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		MethodHandle getter = lookup.unreflectGetter(source), setter = lookup.unreflectSetter(target);
+		if (Modifier.isStatic(source.getModifiers()))
+			getter = MethodHandles.dropArguments(getter, 0, Object.class);
+		if (Modifier.isStatic(target.getModifiers()))
+			setter = MethodHandles.dropArguments(setter, 0, Object.class);
+		getter = getter.asType(getter.type().changeParameterType(0, Object.class));
+		setter = setter.asType(setter.type().changeParameterType(0, Object.class));
+		return MethodHandles.filterArguments(setter, 1, getter);
 	}
 }
@@ -26,7 +26,6 @@ import com.google.common.collect.ContiguousSet;
 import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
@@ -181,15 +180,15 @@ public final class Storage implements Comparable<Storage> {
 	 * @return the indices holding initial data
 	 * @see #initialDataIndexSpan()
 	 */
-	public ImmutableSortedSet<Integer> initialDataIndices() {
-		ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
-		for (Pair<ImmutableList<Object>, IndexFunction> p : initialData())
-			for (int i = 0; i < p.first.size(); ++i)
-				try {
-					builder.add(p.second.applyAsInt(i));
-				} catch (Throwable ex) {
-					throw new AssertionError("index functions should not throw", ex);
-				}
+	public IndexSet initialDataIndices() {
+		IndexSet.Builder builder = IndexSet.builder();
+		for (Pair<ImmutableList<Object>, IndexFunction> p : initialData()) {
+			int[] indices = new int[p.first.size()];
+			for (int i = 0; i < indices.length; ++i)
+				indices[i] = i;
+			p.second.applyBulk(indices);
+			builder.addAll(indices, 0, indices.length);
+		}
 		return builder.build();
 	}
 
@@ -253,8 +252,8 @@ public final class Storage implements Comparable<Storage> {
 	 * index functions
 	 * @see #readIndexSpan(java.util.Map)
 	 */
-	public ImmutableSortedSet<Integer> readIndices(Map<ActorGroup, Integer> externalSchedule) {
-		ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+	public IndexSet readIndices(Map<ActorGroup, Integer> externalSchedule) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (Actor a : downstream())
 			builder.addAll(a.reads(this, Range.closedOpen(0, a.group().schedule().get(a) * externalSchedule.get(a.group()))));
 		return builder.build();
@@ -296,8 +295,8 @@ public final class Storage implements Comparable<Storage> {
 	 * index functions
 	 * @see #writeIndexSpan(java.util.Map)
 	 */
-	public ImmutableSortedSet<Integer> writeIndices(Map<ActorGroup, Integer> externalSchedule) {
-		ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+	public IndexSet writeIndices(Map<ActorGroup, Integer> externalSchedule) {
+		IndexSet.Builder builder = IndexSet.builder();
 		for (Actor a : upstream())
 			builder.addAll(a.writes(this, Range.closedOpen(0, a.group().schedule().get(a) * externalSchedule.get(a.group()))));
 		return builder.build();
@@ -322,7 +321,7 @@ public final class Storage implements Comparable<Storage> {
 			int maxIteration = a.group().schedule().get(a) * externalSchedule.get(a.group())-1;
 			if (maxIteration >= 0)
 				for (int iteration : new int[]{0, maxIteration}) {
-					ImmutableSortedSet<Integer> writes = a.writes(this, iteration);
+					IndexSet writes = a.writes(this, iteration);
 					Range<Integer> writeRange = writes.isEmpty() ? range : Range.closed(writes.first(), writes.last());
 					range = range == null ? writeRange : range.span(writeRange);
 				}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.compiler2;
+
+import java.util.Arrays;
+
+/**
+ * The physical indices a read or write instruction moves items to or from,
+ * computed once rather than evaluating the index function for every item of
+ * every steady-state iteration.  The indices are also split into runs of
+ * consecutive indices, so storage backed by arrays can copy whole runs at
+ * once; round-robin splitters and joiners produce one run per weight.
+ * @since 10/18/2026
+ */
+final class TransferPlan {
+	/**
+	 * Runs shorter than this on average are better moved by a scatter/gather
+	 * loop over the indices than by one copy per run.
+	 */
+	private static final int MIN_AVERAGE_RUN_LENGTH = 8;
+	private final int[] indices;
+	/**
+	 * For each run, the position of its first item in the instruction's data
+	 * array, then the physical index of that item, then the run length.
+	 */
+	private final int[] runs;
+	private TransferPlan(int[] indices, int[] runs) {
+		this.indices = indices;
+		this.runs = runs;
+	}
+
+	/**
+	 * Creates a plan for the given index function applied to logical indices
+	 * [0, count).
+	 * @param idxFxn the index function
+	 * @param count the number of items
+	 * @return a plan
+	 */
+	public static TransferPlan of(IndexFunction idxFxn, int count) {
+		int[] indices = new int[count];
+		for (int i = 0; i < count; ++i)
+			indices[i] = i;
+		idxFxn.applyBulk(indices);
+
+		int[] runs = new int[3*count];
+		int r = 0;
+		for (int i = 0; i < count;) {
+			int start = i;
+			for (++i; i < count && indices[i] == indices[i-1] + 1; ++i);
+			runs[r++] = start;
+			runs[r++] = indices[start];
+			runs[r++] = i - start;
+		}
+		return new TransferPlan(indices, Arrays.copyOf(runs, r));
+	}
+
+	/**
+	 * Returns the physical index of each item.  Callers must not modify the
+	 * returned array.
+	 * @return the physical indices
+	 */
+	public int[] indices() {
+		return indices;
+	}
+
+	/**
+	 * Returns true if this plan's runs are long enough to be worth copying
+	 * run-by-run.
+	 * @return true if copying runs is worthwhile
+	 */
+	public boolean copyRuns() {
+		int numRuns = runs.length / 3;
+		return numRuns > 0 && indices.length >= MIN_AVERAGE_RUN_LENGTH * numRuns;
+	}
+
+	/**
+	 * Copies the given array into the given storage, run by run.
+	 * @param data the source array
+	 * @param storage the destination storage
+	 */
+	public void copyRuns(Object data, ArrayCopyConcreteStorage storage) {
+		for (int r = 0; r < runs.length; r += 3)
+			storage.copyFrom(data, runs[r], runs[r+1], runs[r+2]);
+	}
+
+	/**
+	 * Copies the given storage into the given array, run by run.
+	 * @param storage the source storage
+	 * @param data the destination array
+	 */
+	public void copyRuns(ArrayCopyConcreteStorage storage, Object data) {
+		for (int r = 0; r < runs.length; r += 3)
+			storage.copyTo(runs[r+1], data, runs[r], runs[r+2]);
+	}
+}
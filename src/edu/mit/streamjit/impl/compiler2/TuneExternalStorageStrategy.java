@@ -58,8 +58,8 @@ public final class TuneExternalStorageStrategy implements StorageStrategy {
 					&& storage.steadyStateCapacity() == 2*storage.throughput() //no leftover data
 					&& storage.isFullyExternal() //no reads of writes before adjust
 					)
-				return new DoubleArrayConcreteStorage(factory, storage);
-			return new CircularArrayConcreteStorage(factory.make(storage.type(), storage.steadyStateCapacity()), storage);
+				return DoubleArrayConcreteStorage.create(factory, storage);
+			return CircularArrayConcreteStorage.create(factory.make(storage.type(), storage.steadyStateCapacity()), storage);
 		};
 	}
 }
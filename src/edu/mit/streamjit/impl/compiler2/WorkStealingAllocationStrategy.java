@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.compiler2;
+
+import com.google.common.collect.Range;
+import com.google.common.math.IntMath;
+import edu.mit.streamjit.api.Worker;
+import edu.mit.streamjit.impl.common.Configuration;
+import edu.mit.streamjit.impl.common.Configuration.IntParameter;
+import edu.mit.streamjit.impl.common.Configuration.SwitchParameter;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An AllocationStrategy that lets another strategy choose which cores run a
+ * stateless group, then (if enabled) has those cores share all the group's
+ * iterations through a {@link ChunkQueue} instead of running fixed ranges, so
+ * a slow core doesn't hold up the others at the barrier.
+ * @since 10/18/2026
+ */
+public final class WorkStealingAllocationStrategy implements AllocationStrategy {
+	private final AllocationStrategy delegate;
+	public WorkStealingAllocationStrategy(AllocationStrategy delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public int maxNumCores() {
+		return delegate.maxNumCores();
+	}
+
+	@Override
+	public void makeParameters(Set<Worker<?, ?>> workers, Configuration.Builder builder) {
+		delegate.makeParameters(workers, builder);
+		builder.addParameter(SwitchParameter.create("WorkStealing", false));
+		//More chunks balance better, but cost more claims.
+		builder.addParameter(new IntParameter("WorkStealingChunksPerCore", 1, 16, 4));
+	}
+
+	@Override
+	public void allocateGroup(ActorGroup group, Range<Integer> iterations, List<Core> cores, Configuration config) {
+		delegate.allocateGroup(group, iterations, cores, config);
+		SwitchParameter<Boolean> enabled = config.getParameter("WorkStealing", SwitchParameter.class, Boolean.class);
+		if (group.isStateful() || iterations.isEmpty() || enabled == null || !enabled.getValue())
+			return;
+
+		List<Core> sharing = new ArrayList<>();
+		for (Core c : cores)
+			if (c.isAllocated(group))
+				sharing.add(c);
+		if (sharing.size() <= 1)
+			return;
+		int chunksPerCore = config.getParameter("WorkStealingChunksPerCore", IntParameter.class).getValue();
+		int chunkSize = IntMath.divide(iterations.upperEndpoint() - iterations.lowerEndpoint(),
+				sharing.size() * chunksPerCore, RoundingMode.CEILING);
+		ChunkQueue queue = new ChunkQueue(iterations, chunkSize);
+		for (Core c : sharing)
+			c.allocateShared(group, iterations, queue);
+	}
+}
@@ -40,6 +40,7 @@ public final class WorkerActor extends Actor {
 	private final Worker<?, ?> worker;
 	private final ActorArchetype archetype;
 	private StateHolder stateHolder;
+	private Mailbox mailbox;
 	public WorkerActor(Worker<?, ?> worker, ActorArchetype archetype) {
 		super(archetype.declaredInputType(), archetype.declaredOutputType());
 		this.worker = worker;
@@ -67,6 +68,19 @@ public final class WorkerActor extends Actor {
 		this.stateHolder = stateHolder;
 	}
 
+	/**
+	 * Returns this actor's Mailbox, or null if it doesn't send or receive
+	 * messages.
+	 * @return this actor's Mailbox, or null
+	 */
+	public Mailbox mailbox() {
+		return mailbox;
+	}
+
+	public void setMailbox(Mailbox mailbox) {
+		this.mailbox = mailbox;
+	}
+
 	/**
 	 * Sets up Actor connections based on the worker's predecessor/successor
 	 * relationships, creating TokenActors and Storages as required.  This
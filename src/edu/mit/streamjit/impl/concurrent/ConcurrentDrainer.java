@@ -21,6 +21,8 @@
  */
 package edu.mit.streamjit.impl.concurrent;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 
@@ -29,6 +31,7 @@ import com.google.common.collect.ImmutableMap;
 
 import edu.mit.streamjit.impl.blob.Blob;
 import edu.mit.streamjit.impl.blob.Blob.Token;
+import edu.mit.streamjit.impl.blob.Buffer;
 import edu.mit.streamjit.impl.common.AbstractDrainer;
 import edu.mit.streamjit.impl.common.BlobThread;
 import edu.mit.streamjit.impl.distributed.common.Utils;
@@ -52,15 +55,29 @@ public final class ConcurrentDrainer extends AbstractDrainer {
 	 */
 	ImmutableMap<Blob, Set<BlobThread>> threadMap;
 
+	/**
+	 * The overall output buffer. Closed (if Closeable) after the final
+	 * draining, so buffered outputs such as Output.toBinaryFile write their
+	 * last elements before {@link #awaitDrained()} returns.
+	 */
+	private final Buffer outputBuffer;
+
 	public ConcurrentDrainer(BlobGraph blobGraph,
-			Map<Blob, Set<BlobThread>> threadMap) {
+			Map<Blob, Set<BlobThread>> threadMap, Buffer outputBuffer) {
 		setBlobGraph(blobGraph);
 		blobMap = buildBlobMap(threadMap.keySet());
 		this.threadMap = ImmutableMap.copyOf(threadMap);
+		this.outputBuffer = outputBuffer;
 	}
 
 	@Override
 	protected void drainingDone(boolean isFinal) {
+		if (isFinal && outputBuffer instanceof Closeable)
+			try {
+				((Closeable) outputBuffer).close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
 		System.out.println("Draining Finished");
 	}
 
@@ -43,7 +43,7 @@ import edu.mit.streamjit.api.Worker;
 import edu.mit.streamjit.impl.blob.Blob;
 import edu.mit.streamjit.impl.blob.Blob.Token;
 import edu.mit.streamjit.impl.blob.Buffer;
-import edu.mit.streamjit.impl.blob.ConcurrentArrayBuffer;
+import edu.mit.streamjit.impl.blob.SPSCArrayBuffer;
 import edu.mit.streamjit.impl.common.AbstractDrainer;
 import edu.mit.streamjit.impl.common.AbstractDrainer.BlobGraph;
 import edu.mit.streamjit.impl.common.BlobThread;
@@ -156,7 +156,7 @@ public class ConcurrentStreamCompiler implements StreamCompiler {
 		}
 
 		final ConcurrentCompiledStream cs = new ConcurrentCompiledStream(bg,
-				blobSet);
+				blobSet, outputBuffer);
 
 		if (input instanceof ManualInput)
 			InputBufferFactory.setManualInputDelegate((ManualInput<I>) input,
@@ -209,7 +209,7 @@ public class ConcurrentStreamCompiler implements StreamCompiler {
 				// TODO: Just to increase the performance. Change it later
 				bufSize = Math.max(1000, bufSize);
 
-				Buffer buf = new ConcurrentArrayBuffer(bufSize);
+				Buffer buf = new SPSCArrayBuffer(bufSize);
 				bufferMap.put(t, buf);
 			}
 		}
@@ -237,14 +237,16 @@ public class ConcurrentStreamCompiler implements StreamCompiler {
 		private Map<Blob, Set<BlobThread>> threadMap = new HashMap<>();
 		private final AbstractDrainer drainer;
 
-		public ConcurrentCompiledStream(BlobGraph blobGraph, Set<Blob> blobSet) {
+		public ConcurrentCompiledStream(BlobGraph blobGraph, Set<Blob> blobSet,
+				Buffer outputBuffer) {
 			List<Thread> blobThreads = new ArrayList<>(blobSet.size());
 			for (final Blob b : blobSet) {
 				BlobThread t = new BlobThread(b.getCoreCode(0));
 				blobThreads.add(t);
 				threadMap.put(b, Collections.singleton(t));
 			}
-			this.drainer = new ConcurrentDrainer(blobGraph, threadMap);
+			this.drainer = new ConcurrentDrainer(blobGraph, threadMap,
+					outputBuffer);
 			start(blobThreads);
 		}
 
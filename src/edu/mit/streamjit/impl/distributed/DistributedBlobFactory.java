@@ -28,8 +28,10 @@ import edu.mit.streamjit.impl.blob.Blob;
 import edu.mit.streamjit.impl.blob.BlobFactory;
 import edu.mit.streamjit.impl.blob.DrainData;
 import edu.mit.streamjit.impl.common.Configuration;
+import edu.mit.streamjit.impl.common.Configuration.IntParameter;
 import edu.mit.streamjit.impl.common.Configuration.Parameter;
 import edu.mit.streamjit.impl.compiler2.Compiler2BlobFactory;
+import edu.mit.streamjit.impl.distributed.common.GlobalConstants;
 import edu.mit.streamjit.impl.interp.Interpreter.InterpreterBlobFactory;
 
 /**
@@ -89,6 +91,10 @@ public class DistributedBlobFactory implements BlobFactory {
 		for (Parameter p : compilercfg.getParametersMap().values())
 			builder.addParameter(p);
 
+		builder.addParameter(new IntParameter(
+				GlobalConstants.BUFFER_MULTIPLIER, 1, 64,
+				GlobalConstants.DEFAULT_BUFFER_MULTIPLIER));
+
 		return builder.build();
 	}
 
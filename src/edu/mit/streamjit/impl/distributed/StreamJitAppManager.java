@@ -21,6 +21,8 @@
  */
 package edu.mit.streamjit.impl.distributed;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -91,6 +93,13 @@ public class StreamJitAppManager {
 	 */
 	private TailChannel tailChannel;
 
+	/**
+	 * The overall output buffer the {@link #tailChannel} fills. Closed (if
+	 * Closeable) after the final draining, so buffered outputs such as
+	 * Output.toBinaryFile write their last elements.
+	 */
+	private Buffer tailBuffer;
+
 	private Thread headThread;
 
 	private Thread tailThread;
@@ -195,7 +204,8 @@ public class StreamJitAppManager {
 			throw new IllegalArgumentException(
 					"No tail buffer in the passed bufferMap.");
 
-		tailChannel = new TailChannel(bufferMap.get(tailToken),
+		tailBuffer = bufferMap.get(tailToken);
+		tailChannel = new TailChannel(tailBuffer,
 				controller.getConProvider(), tailconInfo, "tailChannel - "
 						+ tailToken.toString(), 0, 1000);
 	}
@@ -267,11 +277,21 @@ public class StreamJitAppManager {
 		if (isFinal) {
 			this.status = AppStatus.STOPPED;
 			tailChannel.reset();
+			closeTailBuffer();
 			controller.closeAll();
 		}
 		isRunning = false;
 	}
 
+	private void closeTailBuffer() {
+		if (tailBuffer instanceof Closeable)
+			try {
+				((Closeable) tailBuffer).close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+	}
+
 	public void awaitForFixInput() throws InterruptedException {
 		tailChannel.awaitForFixInput();
 	}
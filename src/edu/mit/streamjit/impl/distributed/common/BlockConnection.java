@@ -0,0 +1,635 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.distributed.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.util.Arrays;
+
+import com.google.common.primitives.Primitives;
+
+/**
+ * A {@link Connection} for {@link BoundaryChannel}s that sends blocks of items
+ * over a {@link ByteChannel} in a compact framing protocol instead of
+ * serialising each item through an {@link ObjectOutputStream}. See
+ * {@link TCPBlockConnection} and {@link SharedMemoryChannel} for the
+ * channels used.
+ * <p>
+ * Each block is sent as a frame: a one-byte tag, the number of items as an
+ * int, and the payload. Blocks of a primitive type (either primitive arrays
+ * or {@code Object[]}s all of whose items are the same primitive wrapper type)
+ * are sent as raw big-endian primitives. Other blocks fall back to Java
+ * serialisation of the whole block, prefixed by its length in bytes. A frame
+ * with the {@link #END} tag marks a soft close.
+ * </p>
+ * <p>
+ * Frames are encoded and decoded through direct {@link ByteBuffer}s. Blocks
+ * are received as arrays of the type they were sent as (i.e., a block of
+ * Integers is received as an int[]), so receivers with a
+ * {@link edu.mit.streamjit.impl.blob.PrimitiveBuffer} can consume them without
+ * boxing.
+ * </p>
+ * <p>
+ * If the channel is in non-blocking mode, the connection must only be used
+ * through {@link #offerBlock(Object, int, int)}, {@link #pollBlock()},
+ * {@link #offerEnd()} and {@link #flushPending()}.
+ * </p>
+ * <p>
+ * BlockConnection is not thread safe.
+ * </p>
+ * 
+ * @since Oct 18, 2026
+ */
+public class BlockConnection implements Connection {
+
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private static final byte OBJECTS = 'L';
+	private static final byte END = 'E';
+
+	private final ByteChannel channel;
+
+	private final ByteBuffer out;
+
+	private final ByteBuffer in;
+
+	private boolean isconnected;
+
+	/**
+	 * The block readObject() is returning items from, and the index of the
+	 * next item to return.
+	 */
+	private Object pendingBlock;
+
+	private int pendingIndex;
+
+	/**
+	 * Non-blocking mode only. A frame too big for {@link #out}, to be sent
+	 * once out is empty.
+	 */
+	private ByteBuffer overflow;
+
+	/**
+	 * Non-blocking mode only. The frame {@link #pollBlock()} is receiving: its
+	 * tag and item count, the array being filled (a byte[] of serialised data
+	 * for {@link #OBJECTS} frames) and how much of it is filled.
+	 */
+	private byte partialTag;
+
+	private int partialLength;
+
+	private Object partial;
+
+	private int partialFilled;
+
+	private boolean softClosed;
+
+	public BlockConnection(ByteChannel channel) {
+		this.channel = channel;
+		this.out = ByteBuffer.allocateDirect(BUFFER_BYTES);
+		this.in = ByteBuffer.allocateDirect(BUFFER_BYTES);
+		in.limit(0);
+		this.isconnected = true;
+	}
+
+	@Override
+	public void writeObject(Object obj) throws IOException {
+		writeBlock(new Object[] { obj }, 0, 1);
+	}
+
+	@Override
+	public <T> T readObject() throws IOException, ClassNotFoundException {
+		while (pendingBlock == null
+				|| pendingIndex == Array.getLength(pendingBlock)) {
+			pendingBlock = readBlock();
+			pendingIndex = 0;
+			if (pendingBlock == null)
+				throw new EOFException("BlockConnection: soft closed");
+		}
+		@SuppressWarnings("unchecked")
+		T t = (T) Array.get(pendingBlock, pendingIndex++);
+		return t;
+	}
+
+	@Override
+	public void writeBlock(Object array, int offset, int length)
+			throws IOException {
+		checkConnected();
+		if (length == 0)
+			return;
+		try {
+			Class<?> type = array.getClass().getComponentType();
+			if (!type.isPrimitive())
+				type = commonPrimitiveType((Object[]) array, offset, length);
+			if (type == null)
+				writeObjects((Object[]) array, offset, length);
+			else {
+				ensureWritable(5);
+				out.put(tag(type)).putInt(length);
+				writePrimitives(array, type, offset, length);
+			}
+			flush();
+		} catch (IOException ex) {
+			isconnected = false;
+			throw ex;
+		}
+	}
+
+	@Override
+	public Object readBlock() throws IOException, ClassNotFoundException {
+		checkConnected();
+		if (pendingBlock != null) {
+			// Hand over whatever readObject() left behind.
+			Object block = pendingBlock;
+			int length = Array.getLength(block);
+			int index = pendingIndex;
+			pendingBlock = null;
+			if (index < length)
+				return index == 0 ? block : copyOfRange(block, index, length);
+		}
+		try {
+			ensureReadable(5);
+			byte tag = in.get();
+			int length = in.getInt();
+			if (tag == END)
+				return null;
+			if (tag == OBJECTS)
+				return readObjects(length);
+			return readPrimitives(type(tag), length);
+		} catch (IOException ex) {
+			isconnected = false;
+			throw ex;
+		}
+	}
+
+	private static Object copyOfRange(Object array, int from, int to) {
+		Object copy = Array.newInstance(array.getClass().getComponentType(),
+				to - from);
+		System.arraycopy(array, from, copy, 0, to - from);
+		return copy;
+	}
+
+	/**
+	 * Returns the primitive type of the given items if they're all of the
+	 * same primitive wrapper type, or null.
+	 */
+	private static Class<?> commonPrimitiveType(Object[] items, int offset,
+			int length) {
+		if (length == 0 || items[offset] == null)
+			return null;
+		Class<?> wrapper = items[offset].getClass();
+		if (!Primitives.isWrapperType(wrapper) || wrapper == Void.class
+				|| wrapper == Boolean.class)
+			return null;
+		for (int i = offset + 1; i < offset + length; ++i)
+			if (items[i] == null || items[i].getClass() != wrapper)
+				return null;
+		return Primitives.unwrap(wrapper);
+	}
+
+	private static byte tag(Class<?> type) {
+		if (type == int.class)
+			return 'I';
+		if (type == long.class)
+			return 'J';
+		if (type == float.class)
+			return 'F';
+		if (type == double.class)
+			return 'D';
+		if (type == short.class)
+			return 'S';
+		if (type == char.class)
+			return 'C';
+		if (type == byte.class)
+			return 'B';
+		throw new IllegalArgumentException("no tag for " + type);
+	}
+
+	private static Class<?> type(byte tag) throws IOException {
+		switch (tag) {
+			case 'I' :
+				return int.class;
+			case 'J' :
+				return long.class;
+			case 'F' :
+				return float.class;
+			case 'D' :
+				return double.class;
+			case 'S' :
+				return short.class;
+			case 'C' :
+				return char.class;
+			case 'B' :
+				return byte.class;
+			default :
+				throw new IOException("BlockConnection: bad frame tag "
+						+ tag);
+		}
+	}
+
+	private static int size(Class<?> type) {
+		if (type == long.class || type == double.class)
+			return 8;
+		if (type == int.class || type == float.class)
+			return 4;
+		if (type == short.class || type == char.class)
+			return 2;
+		return 1;
+	}
+
+	/**
+	 * Writes the given items, which are either a primitive array of the given
+	 * type or an Object[] of its wrapper type.
+	 */
+	private void writePrimitives(Object array, Class<?> type, int offset,
+			int length) throws IOException {
+		int size = size(type);
+		boolean boxed = !array.getClass().getComponentType().isPrimitive();
+		for (int i = offset; i < offset + length;) {
+			if (out.remaining() < size)
+				drainOut();
+			int n = Math.min(offset + length - i, out.remaining() / size);
+			if (boxed)
+				putBoxed((Object[]) array, type, i, n);
+			else
+				putPrimitives(array, type, i, n);
+			i += n;
+		}
+	}
+
+	private void putPrimitives(Object array, Class<?> type, int offset, int n) {
+		if (type == int.class)
+			out.asIntBuffer().put((int[]) array, offset, n);
+		else if (type == long.class)
+			out.asLongBuffer().put((long[]) array, offset, n);
+		else if (type == float.class)
+			out.asFloatBuffer().put((float[]) array, offset, n);
+		else if (type == double.class)
+			out.asDoubleBuffer().put((double[]) array, offset, n);
+		else if (type == short.class)
+			out.asShortBuffer().put((short[]) array, offset, n);
+		else if (type == char.class)
+			out.asCharBuffer().put((char[]) array, offset, n);
+		else
+			out.duplicate().put((byte[]) array, offset, n);
+		out.position(out.position() + n * size(type));
+	}
+
+	private void putBoxed(Object[] array, Class<?> type, int offset, int n) {
+		for (int i = offset; i < offset + n; ++i) {
+			if (type == int.class)
+				out.putInt((Integer) array[i]);
+			else if (type == long.class)
+				out.putLong((Long) array[i]);
+			else if (type == float.class)
+				out.putFloat((Float) array[i]);
+			else if (type == double.class)
+				out.putDouble((Double) array[i]);
+			else if (type == short.class)
+				out.putShort((Short) array[i]);
+			else if (type == char.class)
+				out.putChar((Character) array[i]);
+			else
+				out.put((Byte) array[i]);
+		}
+	}
+
+	private Object readPrimitives(Class<?> type, int length)
+			throws IOException {
+		int size = size(type);
+		Object array = Array.newInstance(type, length);
+		for (int i = 0; i < length;) {
+			if (in.remaining() < size)
+				ensureReadable(size);
+			i += getPrimitives(array, type, i, length - i);
+		}
+		return array;
+	}
+
+	/**
+	 * Copies up to n buffered primitives into the array.
+	 * 
+	 * @return number of primitives copied
+	 */
+	private int getPrimitives(Object array, Class<?> type, int offset, int n) {
+		n = Math.min(n, in.remaining() / size(type));
+		if (type == int.class)
+			in.asIntBuffer().get((int[]) array, offset, n);
+		else if (type == long.class)
+			in.asLongBuffer().get((long[]) array, offset, n);
+		else if (type == float.class)
+			in.asFloatBuffer().get((float[]) array, offset, n);
+		else if (type == double.class)
+			in.asDoubleBuffer().get((double[]) array, offset, n);
+		else if (type == short.class)
+			in.asShortBuffer().get((short[]) array, offset, n);
+		else if (type == char.class)
+			in.asCharBuffer().get((char[]) array, offset, n);
+		else
+			in.duplicate().get((byte[]) array, offset, n);
+		in.position(in.position() + n * size(type));
+		return n;
+	}
+
+	/**
+	 * The fallback path: serialises the items as a single Object[].
+	 */
+	private void writeObjects(Object[] array, int offset, int length)
+			throws IOException {
+		byte[] data = serialise(array, offset, length);
+		ensureWritable(9);
+		out.put(OBJECTS).putInt(length).putInt(data.length);
+		for (int i = 0; i < data.length;) {
+			if (!out.hasRemaining())
+				drainOut();
+			int n = Math.min(data.length - i, out.remaining());
+			out.put(data, i, n);
+			i += n;
+		}
+	}
+
+	private static byte[] serialise(Object[] array, int offset, int length)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject(Arrays.copyOfRange(array, offset, offset + length));
+		}
+		return bytes.toByteArray();
+	}
+
+	private Object[] readObjects(int length) throws IOException,
+			ClassNotFoundException {
+		ensureReadable(4);
+		byte[] data = new byte[in.getInt()];
+		for (int i = 0; i < data.length;) {
+			if (!in.hasRemaining())
+				ensureReadable(1);
+			int n = Math.min(data.length - i, in.remaining());
+			in.get(data, i, n);
+			i += n;
+		}
+		return deserialise(data, length);
+	}
+
+	private static Object[] deserialise(byte[] data, int length)
+			throws IOException, ClassNotFoundException {
+		try (ObjectInputStream ois = new ObjectInputStream(
+				new ByteArrayInputStream(data))) {
+			Object[] items = (Object[]) ois.readObject();
+			if (items.length != length)
+				throw new IOException("BlockConnection: expected "
+						+ length + " items but got " + items.length);
+			return items;
+		}
+	}
+
+	/**
+	 * Non-blocking version of {@link #writeBlock(Object, int, int)}. Accepts
+	 * as many leading items of the block as fit in the send buffer and tries
+	 * to send them.
+	 * 
+	 * @return number of items accepted. May be zero if the send buffer is
+	 *         full; try again after {@link #flushPending()} makes progress.
+	 */
+	public int offerBlock(Object array, int offset, int length)
+			throws IOException {
+		checkConnected();
+		try {
+			flushPending();
+			if (overflow != null || length == 0)
+				return 0;
+			Class<?> type = array.getClass().getComponentType();
+			if (!type.isPrimitive())
+				type = commonPrimitiveType((Object[]) array, offset, length);
+			if (type == null) {
+				byte[] data = serialise((Object[]) array, offset, length);
+				ByteBuffer frame = ByteBuffer.allocate(9 + data.length);
+				frame.put(OBJECTS).putInt(length).putInt(data.length)
+						.put(data).flip();
+				if (out.remaining() >= frame.remaining())
+					out.put(frame);
+				else
+					overflow = frame;
+			} else {
+				length = Math.min(length, (out.remaining() - 5) / size(type));
+				if (length <= 0)
+					return 0;
+				out.put(tag(type)).putInt(length);
+				writePrimitives(array, type, offset, length);
+			}
+			flushPending();
+			return length;
+		} catch (IOException ex) {
+			isconnected = false;
+			throw ex;
+		}
+	}
+
+	/**
+	 * Non-blocking version of {@link #softClose()}.
+	 * 
+	 * @return false if there was no room to queue the end frame; try again
+	 *         later.
+	 */
+	public boolean offerEnd() throws IOException {
+		checkConnected();
+		flushPending();
+		if (overflow != null || out.remaining() < 5)
+			return false;
+		out.put(END).putInt(0);
+		flushPending();
+		return true;
+	}
+
+	/**
+	 * Sends as much queued data as the socket accepts without blocking.
+	 * 
+	 * @return true iff nothing remains queued.
+	 */
+	public boolean flushPending() throws IOException {
+		try {
+			if (out.position() > 0) {
+				out.flip();
+				channel.write(out);
+				out.compact();
+			}
+			if (out.position() == 0 && overflow != null) {
+				channel.write(overflow);
+				if (!overflow.hasRemaining())
+					overflow = null;
+			}
+			return out.position() == 0 && overflow == null;
+		} catch (IOException ex) {
+			isconnected = false;
+			throw ex;
+		}
+	}
+
+	/**
+	 * @return true iff data queued by {@link #offerBlock(Object, int, int)} or
+	 *         {@link #offerEnd()} is still waiting to be sent.
+	 */
+	public boolean hasPendingOutput() {
+		return out.position() > 0 || overflow != null;
+	}
+
+	/**
+	 * Non-blocking version of {@link #readBlock()}.
+	 * 
+	 * @return a block of received items, or null if no complete block has
+	 *         arrived yet or the other side has soft closed (see
+	 *         {@link #isSoftClosed()}).
+	 * @throws EOFException
+	 *             if the other side has closed the connection.
+	 */
+	public Object pollBlock() throws IOException, ClassNotFoundException {
+		checkConnected();
+		try {
+			while (true) {
+				Object block = parse();
+				if (block != null || softClosed)
+					return block;
+				in.compact();
+				int read = channel.read(in);
+				in.flip();
+				if (read < 0)
+					throw new EOFException("BlockConnection: end of stream");
+				if (read == 0)
+					return null;
+			}
+		} catch (IOException ex) {
+			isconnected = false;
+			throw ex;
+		}
+	}
+
+	/**
+	 * @return true iff {@link #pollBlock()} has received the end frame.
+	 */
+	public boolean isSoftClosed() {
+		return softClosed;
+	}
+
+	/**
+	 * Advances the partial frame with the buffered bytes.
+	 * 
+	 * @return the frame's block if it is complete, otherwise null.
+	 */
+	private Object parse() throws IOException, ClassNotFoundException {
+		if (partial == null) {
+			if (in.remaining() < 5
+					|| (in.get(in.position()) == OBJECTS && in.remaining() < 9))
+				return null;
+			partialTag = in.get();
+			partialLength = in.getInt();
+			partialFilled = 0;
+			if (partialTag == END) {
+				softClosed = true;
+				return null;
+			} else if (partialTag == OBJECTS)
+				partial = new byte[in.getInt()];
+			else
+				partial = Array.newInstance(type(partialTag), partialLength);
+		}
+
+		if (partialTag == OBJECTS) {
+			byte[] data = (byte[]) partial;
+			int n = Math.min(data.length - partialFilled, in.remaining());
+			in.get(data, partialFilled, n);
+			partialFilled += n;
+			if (partialFilled < data.length)
+				return null;
+			partial = null;
+			return deserialise(data, partialLength);
+		}
+
+		partialFilled += getPrimitives(partial, type(partialTag),
+				partialFilled, partialLength - partialFilled);
+		if (partialFilled < partialLength)
+			return null;
+		Object block = partial;
+		partial = null;
+		return block;
+	}
+
+	private void ensureWritable(int bytes) throws IOException {
+		if (out.remaining() < bytes)
+			drainOut();
+	}
+
+	private void drainOut() throws IOException {
+		out.flip();
+		while (out.hasRemaining())
+			channel.write(out);
+		out.clear();
+	}
+
+	private void flush() throws IOException {
+		if (out.position() > 0)
+			drainOut();
+	}
+
+	/**
+	 * Reads from the channel until at least the given number of bytes are
+	 * buffered.
+	 */
+	private void ensureReadable(int bytes) throws IOException {
+		if (in.remaining() >= bytes)
+			return;
+		in.compact();
+		while (in.position() < bytes)
+			if (channel.read(in) < 0)
+				throw new EOFException("BlockConnection: end of stream");
+		in.flip();
+	}
+
+	private void checkConnected() throws IOException {
+		if (!isStillConnected())
+			throw new IOException("BlockConnection: Channel is not connected");
+	}
+
+	@Override
+	public void closeConnection() throws IOException {
+		isconnected = false;
+		channel.close();
+	}
+
+	@Override
+	public void softClose() throws IOException {
+		checkConnected();
+		ensureWritable(5);
+		out.put(END).putInt(0);
+		flush();
+	}
+
+	@Override
+	public boolean isStillConnected() {
+		return isconnected && channel.isOpen();
+	}
+}
@@ -23,7 +23,9 @@ package edu.mit.streamjit.impl.distributed.common;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.OptionalDataException;
 import java.io.Serializable;
+import java.lang.reflect.Array;
 
 import edu.mit.streamjit.impl.distributed.node.StreamNode;
 import edu.mit.streamjit.impl.distributed.runtimer.Controller;
@@ -32,9 +34,10 @@ import edu.mit.streamjit.impl.distributed.runtimer.Controller;
  * Communication interface for both {@link StreamNode} and {@link Controller}
  * side. This interface is for an IO connection that is already created, i.e.,
  * creating a connections is not handled at here. Consider
- * {@link ConnectionFactory} to create a connection. </p> For the moment,
- * communicates at object granularity level. We may need to add primitive
- * interface functions later.
+ * {@link ConnectionFactory} to create a connection. </p> Communicates at
+ * object granularity level. {@link #writeBlock(Object, int, int)} and
+ * {@link #readBlock()} let implementations such as {@link TCPBlockConnection}
+ * move a whole block of items (possibly a primitive array) at once.
  * 
  * @author Sumanan sumanan@mit.edu
  * @since May 14, 2013
@@ -59,6 +62,46 @@ public interface Connection {
 	 */
 	public void writeObject(Object obj) throws IOException;
 
+	/**
+	 * Write a block of items to the connection. The block is either an
+	 * Object[] or a primitive array. The default implementation writes each
+	 * item with {@link #writeObject(Object)}.
+	 * 
+	 * @param array
+	 *            an Object[] or a primitive array
+	 * @param offset
+	 *            index of the first item to write
+	 * @param length
+	 *            number of items to write
+	 * @throws IOException
+	 */
+	public default void writeBlock(Object array, int offset, int length)
+			throws IOException {
+		for (int i = offset; i < offset + length; i++)
+			writeObject(Array.get(array, i));
+	}
+
+	/**
+	 * Read a block of items written by {@link #writeBlock(Object, int, int)}
+	 * or {@link #writeObject(Object)}. The block is either an Object[] or a
+	 * primitive array, and may contain a different number of items than any
+	 * single writeBlock() call wrote. The default implementation returns a
+	 * single object wrapped in an Object[].
+	 * 
+	 * @return a non-empty block of received items, or null if the other side
+	 *         has called {@link #softClose()}.
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public default Object readBlock() throws IOException,
+			ClassNotFoundException {
+		try {
+			return new Object[] { readObject() };
+		} catch (OptionalDataException e) {
+			return null;
+		}
+	}
+
 	/**
 	 * Close the connection. This function is responsible for all kind of
 	 * resource cleanup. </p>throws exception if failed. So no return value
@@ -22,8 +22,14 @@
 package edu.mit.streamjit.impl.distributed.common;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 import edu.mit.streamjit.impl.distributed.runtimer.ListenerSocket;
 
@@ -100,4 +106,121 @@ public class ConnectionFactory {
 		else
 			return new TCPConnection(socket);
 	}
+
+	/**
+	 * Connects to serverAddress/portNo and returns a
+	 * {@link TCPBlockConnection}. Retries the same way
+	 * {@link #getConnection(String, int, boolean)} does.
+	 */
+	public static TCPBlockConnection getBlockConnection(String serverAddress,
+			int portNo) throws IOException {
+		Ipv4Validator validator = Ipv4Validator.getInstance();
+		System.out.println("Trying to make a block connection with - "
+				+ serverAddress + "/" + portNo);
+		if (!validator.isValid(serverAddress))
+			throw new IllegalArgumentException("Invalid Server IP address");
+
+		if (!validator.isValid(portNo))
+			throw new IllegalArgumentException("Invalid port No");
+
+		int maxTryAttempts = 10;
+		for (int i = 0; i < maxTryAttempts; i++) {
+			try {
+				SocketChannel channel = SocketChannel
+						.open(new InetSocketAddress(serverAddress, portNo));
+				return new TCPBlockConnection(channel);
+			} catch (IOException ioe) {
+				System.out.println("IO Connection failed - " + serverAddress
+						+ "/" + portNo);
+				if (i == maxTryAttempts - 1)
+					throw ioe;
+				System.out.println("Reattempting...." + i);
+			}
+			try {
+				Thread.sleep((i + 1) * 2000);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+		throw new IOException("Connection creation failed.");
+	}
+
+	/**
+	 * Listens at portNo for a single {@link TCPBlockConnection}.
+	 * 
+	 * @param portNo
+	 * @param timeOut
+	 *            in milliseconds. If zero, no timeout. See {@link ServerSocket}
+	 *            .setSoTimeout().
+	 * @return
+	 * @throws IOException
+	 */
+	public static TCPBlockConnection getBlockConnection(int portNo, int timeOut)
+			throws IOException {
+		System.out.println("Listening at - " + portNo);
+		try (ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.socket().setReuseAddress(true);
+			server.bind(new InetSocketAddress(portNo));
+			server.socket().setSoTimeout(timeOut);
+			// ServerSocketChannel.accept() ignores the SO timeout, but the
+			// adaptor socket honours it.
+			SocketChannel channel = server.socket().accept().getChannel();
+			return new TCPBlockConnection(channel);
+		}
+	}
+
+	/**
+	 * Creates a {@link SharedMemoryChannel} and returns its writing end. The
+	 * ring file's path is handed to the other side over a TCP connection
+	 * accepted at portNo. The file is deleted once the other side has mapped
+	 * it.
+	 * 
+	 * @param portNo
+	 * @param timeOut
+	 *            in milliseconds. If zero, no timeout. See {@link ServerSocket}
+	 *            .setSoTimeout().
+	 * @return
+	 * @throws IOException
+	 */
+	public static BlockConnection getSharedMemoryConnection(int portNo,
+			int timeOut) throws IOException {
+		TCPConnection tcpConnection = getConnection(portNo, timeOut, false);
+		Path path = SharedMemoryChannel.SHM_DIR.resolve(String.format(
+				"streamjit-%d-%d", portNo, System.nanoTime()));
+		try {
+			SharedMemoryChannel channel = SharedMemoryChannel.create(path,
+					SharedMemoryChannel.DEFAULT_CAPACITY);
+			tcpConnection.writeObject(path.toString());
+			// Wait until the other side has mapped the file.
+			tcpConnection.readObject();
+			return new BlockConnection(channel);
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		} finally {
+			Files.deleteIfExists(path);
+			tcpConnection.closeConnection();
+		}
+	}
+
+	/**
+	 * Connects to serverAddress/portNo, which must be on this host, and
+	 * returns the reading end of the {@link SharedMemoryChannel} the other
+	 * side sets up. See {@link #getSharedMemoryConnection(int, int)}.
+	 */
+	public static BlockConnection getSharedMemoryConnection(
+			String serverAddress, int portNo) throws IOException {
+		TCPConnection tcpConnection = getConnection(serverAddress, portNo,
+				false);
+		try {
+			String path = tcpConnection.readObject();
+			SharedMemoryChannel channel = SharedMemoryChannel.open(Paths
+					.get(path));
+			tcpConnection.writeObject(Boolean.TRUE);
+			return new BlockConnection(channel);
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		} finally {
+			tcpConnection.closeConnection();
+		}
+	}
 }
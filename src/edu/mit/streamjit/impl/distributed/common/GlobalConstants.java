@@ -22,6 +22,7 @@
 package edu.mit.streamjit.impl.distributed.common;
 
 import edu.mit.streamjit.impl.common.AbstractDrainer;
+import edu.mit.streamjit.impl.common.Configuration.IntParameter;
 import edu.mit.streamjit.impl.distributed.TailChannel;
 import edu.mit.streamjit.impl.distributed.node.StreamNode;
 import edu.mit.streamjit.impl.distributed.runtimer.StreamNodeAgent;
@@ -80,6 +81,26 @@ public final class GlobalConstants {
 	public static final String PARTITION = "partition";
 	public static final String CONINFOMAP = "ConInfoMap";
 
+	/**
+	 * Name of the {@link IntParameter} that sets a {@link StreamNode}'s
+	 * buffer capacities, as a multiple of the items per steady-state
+	 * iteration on each edge. See
+	 * {@link edu.mit.streamjit.impl.distributed.node.BlobsManagerImpl}.
+	 */
+	public static final String BUFFER_MULTIPLIER = "bufferMultiplier";
+
+	/**
+	 * Default value of the {@link #BUFFER_MULTIPLIER} parameter.
+	 */
+	public static final int DEFAULT_BUFFER_MULTIPLIER = 4;
+
+	/**
+	 * Upper bound on the memory a single buffer on a {@link StreamNode} may
+	 * hold, unless the blobs' minimum capacity requires more. Object items
+	 * are assumed to take 16 bytes.
+	 */
+	public static final int MAX_BUFFER_BYTES = 64 << 20;
+
 	/**
 	 * Whether to start the tuner automatically or not.
 	 * <ol>
@@ -120,6 +141,34 @@ public final class GlobalConstants {
 	 */
 	public static final boolean saveAllConfigurations = true;
 
+	/**
+	 * Whether {@link BoundaryChannel}s use {@link TCPBlockConnection}'s
+	 * compact binary framing instead of per-item Java serialisation. All
+	 * nodes must agree on this flag. Off by default; opt in by running the
+	 * controller and every node with -Dstreamjit.useBlockProtocol=true.
+	 */
+	public static final boolean useBlockProtocol = Boolean
+			.getBoolean("streamjit.useBlockProtocol");
+
+	/**
+	 * Whether a {@link StreamNode} services all of its {@link BoundaryChannel}s
+	 * from a single selector thread instead of running a thread per channel.
+	 * Requires {@link #useBlockProtocol}. Off by default; opt in with
+	 * -Dstreamjit.useSelectorChannels=true.
+	 */
+	public static final boolean useSelectorChannels = Boolean
+			.getBoolean("streamjit.useSelectorChannels");
+
+	/**
+	 * Whether {@link BoundaryChannel}s between {@link StreamNode}s on the same
+	 * host use a {@link SharedMemoryChannel} instead of loopback TCP. Requires
+	 * {@link #useBlockProtocol}. Off by default; opt in with
+	 * -Dstreamjit.useSharedMemory=true, and same-host channels are then
+	 * selected automatically.
+	 */
+	public static final boolean useSharedMemory = Boolean
+			.getBoolean("streamjit.useSharedMemory");
+
 	static {
 
 	}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.distributed.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import edu.mit.streamjit.impl.blob.WaitStrategy;
+
+/**
+ * A one-way, single-producer/single-consumer byte stream between two
+ * processes on the same host, backed by a ring buffer in a memory-mapped file
+ * (normally in {@link #SHM_DIR}, which is RAM-backed on Linux).
+ * <p>
+ * The file starts with a header holding the ring's capacity and the producer
+ * and consumer positions (on separate cache lines), followed by the ring
+ * itself. Positions only increase; each side publishes its position after
+ * copying data, and reads the other side's position before copying, with a
+ * {@link #fence()} between the position access and the copy.
+ * </p>
+ * <p>
+ * {@link #create(Path, int)} returns the writing end and
+ * {@link #open(Path)} the reading end. Reads and writes block (spinning, then
+ * yielding, then parking) until they can transfer at least one byte. Once the
+ * writing end is closed and the ring is empty, reads return -1.
+ * </p>
+ * 
+ * @since Oct 18, 2026
+ */
+public final class SharedMemoryChannel implements ByteChannel {
+
+	public static final Path SHM_DIR = Paths.get("/dev/shm");
+
+	public static final int DEFAULT_CAPACITY = 1 << 22;
+
+	/**
+	 * Only accessed by {@link #fence()}.
+	 */
+	private static volatile int fenceField;
+
+	private static final int MAGIC = 0x534a534d; // "SJSM"
+
+	// Header layout. Each field gets its own cache line.
+	private static final int MAGIC_OFFSET = 0;
+	private static final int CAPACITY_OFFSET = 4;
+	private static final int HEAD_OFFSET = 64;
+	private static final int TAIL_OFFSET = 128;
+	private static final int WRITER_CLOSED_OFFSET = 192;
+	private static final int READER_CLOSED_OFFSET = 256;
+	private static final int DATA_OFFSET = 320;
+
+	/**
+	 * The whole file, in native byte order. The header is accessed with
+	 * absolute gets and puts, which are single (atomic) memory accesses for
+	 * aligned offsets in native order.
+	 */
+	private final MappedByteBuffer map;
+
+	private final ByteBuffer data;
+
+	private final int mask;
+
+	private final boolean isWriter;
+
+	private boolean open;
+
+	private SharedMemoryChannel(MappedByteBuffer map, boolean isWriter) {
+		this.map = map;
+		int capacity = map.getInt(CAPACITY_OFFSET);
+		map.position(DATA_OFFSET);
+		this.data = map.slice();
+		this.mask = capacity - 1;
+		this.isWriter = isWriter;
+		this.open = true;
+	}
+
+	/**
+	 * Creates a new ring file and returns its writing end.
+	 * 
+	 * @param path
+	 *            the file to create. Must not exist.
+	 * @param capacity
+	 *            ring capacity in bytes. Must be a power of two.
+	 */
+	public static SharedMemoryChannel create(Path path, int capacity)
+			throws IOException {
+		if (Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException(
+					"capacity must be a power of two: " + capacity);
+		try (FileChannel fc = FileChannel.open(path,
+				StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			MappedByteBuffer map = fc.map(FileChannel.MapMode.READ_WRITE, 0,
+					DATA_OFFSET + capacity);
+			map.order(ByteOrder.nativeOrder());
+			map.putInt(CAPACITY_OFFSET, capacity);
+			// Publish the header last, so open() never sees half of it.
+			fence();
+			map.putInt(MAGIC_OFFSET, MAGIC);
+			return new SharedMemoryChannel(map, true);
+		}
+	}
+
+	/**
+	 * Opens the reading end of a ring file made by
+	 * {@link #create(Path, int)}. Once both ends are open the file can be
+	 * deleted.
+	 */
+	public static SharedMemoryChannel open(Path path) throws IOException {
+		try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			if (fc.size() < DATA_OFFSET)
+				throw new IOException(path + " is not a shared memory ring");
+			MappedByteBuffer map = fc.map(FileChannel.MapMode.READ_WRITE, 0,
+					fc.size());
+			map.order(ByteOrder.nativeOrder());
+			if (map.getInt(MAGIC_OFFSET) != MAGIC)
+				throw new IOException(path + " is not a shared memory ring");
+			fence();
+			return new SharedMemoryChannel(map, false);
+		}
+	}
+
+	/**
+	 * @return true iff shared memory rings can be created on this host.
+	 */
+	public static boolean isSupported() {
+		return Files.isDirectory(SHM_DIR) && Files.isWritable(SHM_DIR);
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		if (!isWriter)
+			throw new NonWritableChannelException();
+		ensureOpen();
+		if (!src.hasRemaining())
+			return 0;
+		long tail = map.getLong(TAIL_OFFSET);
+		int free;
+		for (int attempt = 0; (free = mask + 1
+				- (int) (tail - map.getLong(HEAD_OFFSET))) == 0; ++attempt) {
+			fence();
+			if (map.getInt(READER_CLOSED_OFFSET) != 0)
+				throw new IOException("SharedMemoryChannel: reader closed");
+			WaitStrategy.PARK.idle(attempt, Collections.emptyList(), false);
+		}
+		// Don't overwrite bytes before the reader is done with them...
+		fence();
+		int n = Math.min(free, src.remaining());
+		copy(src, (int) tail & mask, n, true);
+		// ...and don't publish bytes before they're written.
+		fence();
+		map.putLong(TAIL_OFFSET, tail + n);
+		return n;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		if (isWriter)
+			throw new NonReadableChannelException();
+		ensureOpen();
+		if (!dst.hasRemaining())
+			return 0;
+		long head = map.getLong(HEAD_OFFSET);
+		int available;
+		for (int attempt = 0; (available = (int) (map.getLong(TAIL_OFFSET)
+				- head)) == 0; ++attempt) {
+			fence();
+			if (map.getInt(WRITER_CLOSED_OFFSET) != 0) {
+				// The writer may have written just before closing.
+				fence();
+				if (map.getLong(TAIL_OFFSET) == head)
+					return -1;
+				continue;
+			}
+			WaitStrategy.PARK.idle(attempt, Collections.emptyList(), true);
+		}
+		// Don't read bytes before they're published...
+		fence();
+		int n = Math.min(available, dst.remaining());
+		copy(dst, (int) head & mask, n, false);
+		// ...and don't free bytes before we've read them.
+		fence();
+		map.putLong(HEAD_OFFSET, head + n);
+		return n;
+	}
+
+	/**
+	 * Copies n bytes between buf and the ring starting at index, wrapping
+	 * around the end of the ring.
+	 */
+	private void copy(ByteBuffer buf, int index, int n, boolean toRing) {
+		while (n > 0) {
+			int chunk = Math.min(n, mask + 1 - index);
+			ByteBuffer ring = data.duplicate();
+			ring.position(index).limit(index + chunk);
+			if (toRing) {
+				ByteBuffer src = buf.duplicate();
+				src.limit(src.position() + chunk);
+				ring.put(src);
+				buf.position(buf.position() + chunk);
+			} else
+				buf.put(ring);
+			index = 0;
+			n -= chunk;
+		}
+	}
+
+	private void ensureOpen() throws ClosedChannelException {
+		if (!open)
+			throw new ClosedChannelException();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * Closes this end. The other end sees the close once it has consumed
+	 * everything written (reader) or on its next blocked write (writer).
+	 */
+	@Override
+	public void close() {
+		if (!open)
+			return;
+		open = false;
+		// Publish the close after everything written or read before it.
+		fence();
+		map.putInt(isWriter ? WRITER_CLOSED_OFFSET : READER_CLOSED_OFFSET, 1);
+		fence();
+	}
+
+	/**
+	 * Keeps memory accesses before this call from being reordered with those
+	 * after it, including the plain accesses to the mapped file. Java 8 has
+	 * no public fence, but the memory model keeps earlier accesses before a
+	 * volatile store, later accesses after a volatile load, and a volatile
+	 * store before a following volatile load, so the pair acts as a full
+	 * fence. The loads in the wait loops also can't be hoisted past it.
+	 */
+	private static void fence() {
+		fenceField = 0;
+		int unused = fenceField;
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.distributed.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Loopback check for {@link SharedMemoryChannel}: a writer thread sends a
+ * sequence of longs through a small ring in randomly sized chunks, and the
+ * reader verifies it arrives in order and sees end-of-stream after the writer
+ * closes. Run with the number of longs to send (default 3000000).
+ * 
+ * @since Oct 18, 2026
+ */
+public class SharedMemoryChannelTester {
+
+	public static void main(String[] args) throws Exception {
+		final long count = args.length > 0 ? Long.parseLong(args[0]) : 3000000;
+		if (!SharedMemoryChannel.isSupported()) {
+			System.out.println("no " + SharedMemoryChannel.SHM_DIR);
+			return;
+		}
+		Path path = SharedMemoryChannel.SHM_DIR.resolve("streamjit-tester-"
+				+ System.nanoTime());
+		// A small ring makes both sides wrap around and wait often.
+		final SharedMemoryChannel writer = SharedMemoryChannel.create(path,
+				1 << 12);
+		SharedMemoryChannel reader = SharedMemoryChannel.open(path);
+		Files.delete(path);
+
+		Thread writerThread = new Thread() {
+			@Override
+			public void run() {
+				Random r = new Random(1);
+				ByteBuffer buf = ByteBuffer.allocate(8 * 1000);
+				try {
+					for (long next = 0; next < count;) {
+						buf.clear();
+						int n = (int) Math.min(1 + r.nextInt(1000), count - next);
+						for (int i = 0; i < n; ++i)
+							buf.putLong(next++);
+						buf.flip();
+						while (buf.hasRemaining())
+							writer.write(buf);
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				} finally {
+					writer.close();
+				}
+			}
+		};
+		writerThread.start();
+
+		Random r = new Random(2);
+		ByteBuffer buf = ByteBuffer.allocate(8 * 777);
+		long expected = 0;
+		long start = System.nanoTime();
+		while (true) {
+			buf.limit(buf.position() + 1
+					+ r.nextInt(buf.capacity() - buf.position()));
+			int read = reader.read(buf);
+			if (read < 0)
+				break;
+			buf.flip();
+			while (buf.remaining() >= 8) {
+				long v = buf.getLong();
+				if (v != expected)
+					throw new AssertionError("expected " + expected + ", got "
+							+ v);
+				++expected;
+			}
+			buf.compact();
+		}
+		writerThread.join();
+		reader.close();
+		if (expected != count || buf.position() != 0)
+			throw new AssertionError("received " + expected + " of " + count
+					+ " longs, " + buf.position() + " stray bytes");
+		System.out.println(String.format("%d longs ok in %d ms", count,
+				(System.nanoTime() - start) / 1000000));
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.distributed.common;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A {@link BlockConnection} over TCP. Can be switched to non-blocking mode and
+ * serviced by a {@link Selector}.
+ * 
+ * @since Oct 18, 2026
+ */
+public class TCPBlockConnection extends BlockConnection {
+
+	private final SocketChannel channel;
+
+	public TCPBlockConnection(SocketChannel channel) throws IOException {
+		super(channel);
+		this.channel = channel;
+		channel.configureBlocking(true);
+		// We batch ourselves, so don't let Nagle delay the tail of a block.
+		channel.socket().setTcpNoDelay(true);
+	}
+
+	/**
+	 * Switches this connection to non-blocking mode and registers it with the
+	 * selector.
+	 */
+	public SelectionKey register(Selector selector, int ops, Object attachment)
+			throws IOException {
+		channel.configureBlocking(false);
+		return channel.register(selector, ops, attachment);
+	}
+
+	public InetAddress getInetAddress() {
+		return channel.socket().getInetAddress();
+	}
+}
@@ -251,7 +251,7 @@ public class TCPConnection implements Connection {
 	 */
 	public static class TCPConnectionProvider {
 
-		private ConcurrentMap<TCPConnectionInfo, TCPConnection> allConnections;
+		private ConcurrentMap<TCPConnectionInfo, Connection> allConnections;
 
 		private final int myNodeID;
 
@@ -290,7 +290,7 @@ public class TCPConnection implements Connection {
 		 */
 		public Connection getConnection(TCPConnectionInfo conInfo, int timeOut)
 				throws SocketTimeoutException, IOException {
-			TCPConnection con = allConnections.get(conInfo);
+			Connection con = allConnections.get(conInfo);
 			if (con != null) {
 				if (con.isStillConnected()) {
 					return con;
@@ -300,25 +300,69 @@ public class TCPConnection implements Connection {
 				}
 			}
 
-			if (conInfo.getSrcID() == myNodeID) {
-				con = ConnectionFactory.getConnection(conInfo.getPortNo(),
-						timeOut, false);
+			if (usesSharedMemory(conInfo)) {
+				if (conInfo.getSrcID() == myNodeID)
+					con = ConnectionFactory.getSharedMemoryConnection(
+							conInfo.getPortNo(), timeOut);
+				else
+					con = ConnectionFactory.getSharedMemoryConnection(
+							address(conInfo.getSrcID()).getHostAddress(),
+							conInfo.getPortNo());
+			} else if (conInfo.getSrcID() == myNodeID) {
+				if (GlobalConstants.useBlockProtocol)
+					con = ConnectionFactory.getBlockConnection(
+							conInfo.getPortNo(), timeOut);
+				else
+					con = ConnectionFactory.getConnection(conInfo.getPortNo(),
+							timeOut, false);
 			} else if (conInfo.getDstID() == myNodeID) {
-				InetAddress ipAddress = iNetAddressMap.get(conInfo.getSrcID());
-				if (ipAddress.isLoopbackAddress())
-					ipAddress = iNetAddressMap.get(0);
-
+				InetAddress ipAddress = address(conInfo.getSrcID());
 				int portNo = conInfo.getPortNo();
-				con = ConnectionFactory.getConnection(
-						ipAddress.getHostAddress(), portNo, false);
+				if (GlobalConstants.useBlockProtocol)
+					con = ConnectionFactory.getBlockConnection(
+							ipAddress.getHostAddress(), portNo);
+				else
+					con = ConnectionFactory.getConnection(
+							ipAddress.getHostAddress(), portNo, false);
 			}
 			allConnections.put(conInfo, con);
 			return con;
 		}
 
+		/**
+		 * Returns true iff the connection for conInfo is made over a
+		 * {@link SharedMemoryChannel}. This is the case if both nodes run on
+		 * the same host. Shared memory connections are one-way, from
+		 * conInfo.getSrcID() to conInfo.getDstID().
+		 */
+		public boolean usesSharedMemory(TCPConnectionInfo conInfo) {
+			if (!GlobalConstants.useSharedMemory
+					|| !GlobalConstants.useBlockProtocol
+					|| !SharedMemoryChannel.isSupported())
+				return false;
+			InetAddress src = address(conInfo.getSrcID());
+			InetAddress dst = address(conInfo.getDstID());
+			return src != null && src.equals(dst);
+		}
+
+		/**
+		 * Nodes that run on the controller's host may have registered with a
+		 * loopback address. Those are reachable at the controller's address.
+		 */
+		private InetAddress address(int nodeID) {
+			InetAddress ipAddress = iNetAddressMap.get(nodeID);
+			if (ipAddress != null && ipAddress.isLoopbackAddress())
+				ipAddress = iNetAddressMap.get(0);
+			return ipAddress;
+		}
+
 		public void closeAllConnections() {
-			for (TCPConnection con : allConnections.values()) {
-				con.closeConnection();
+			for (Connection con : allConnections.values()) {
+				try {
+					con.closeConnection();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
 			}
 		}
 	}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.distributed.node;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.mit.streamjit.impl.blob.Buffer;
+import edu.mit.streamjit.impl.distributed.common.BoundaryChannel.BoundaryInputChannel;
+import edu.mit.streamjit.impl.distributed.common.Connection;
+import edu.mit.streamjit.impl.distributed.common.TCPBlockConnection;
+import edu.mit.streamjit.impl.distributed.common.TCPConnection.TCPConnectionInfo;
+import edu.mit.streamjit.impl.distributed.common.TCPConnection.TCPConnectionProvider;
+import edu.mit.streamjit.impl.distributed.node.BoundaryChannelSelector.AsyncChannel;
+import edu.mit.streamjit.impl.distributed.node.TCPInputChannel.ExtraBuffer;
+
+/**
+ * Non-blocking counterpart of {@link TCPInputChannel}, driven by a
+ * {@link BoundaryChannelSelector} instead of a dedicated thread. Talks to
+ * either kind of output channel, as both use {@link TCPBlockConnection}'s
+ * framing.
+ * <p>
+ * Note: AsyncTCPInputChannel acts as client when making TCP connection.
+ * </p>
+ * <p>
+ * Instead of sleeping while the buffer is full, a received block is kept
+ * pending and the socket is not read until the block has been written out.
+ * As in {@link TCPInputChannel}, if the channel has been stopped with type 2
+ * and the buffer stays full for a while, the rest goes to an extra buffer.
+ * </p>
+ * 
+ * @since Oct 18, 2026
+ */
+public class AsyncTCPInputChannel implements BoundaryInputChannel,
+		AsyncChannel {
+
+	/**
+	 * How long the buffer must stay full after stop(2) before data spills
+	 * into the extra buffer.
+	 */
+	private static final long FULL_TIMEOUT_NANOS = TimeUnit.MILLISECONDS
+			.toNanos(600);
+
+	private final int debugPrint;
+
+	private final Buffer buffer;
+
+	private volatile Buffer extraBuffer;
+
+	private final TCPConnectionProvider conProvider;
+
+	private final TCPConnectionInfo conInfo;
+
+	private volatile TCPBlockConnection tcpConnection;
+
+	private final AtomicInteger stopType;
+
+	private final String name;
+
+	private boolean softClosed;
+
+	private volatile boolean isClosed;
+
+	private int count;
+
+	/**
+	 * A received block whose items from pendingOffset on haven't been written
+	 * into the buffer yet.
+	 */
+	private Object pendingBlock;
+
+	private int pendingOffset;
+
+	/**
+	 * When the buffer was first found full while delivering the pending
+	 * block, or -1.
+	 */
+	private long fullSince;
+
+	private volatile boolean finished;
+
+	private final CountDownLatch finishedLatch;
+
+	private ImmutableList<Object> unProcessedData;
+
+	public AsyncTCPInputChannel(Buffer buffer,
+			TCPConnectionProvider conProvider, TCPConnectionInfo conInfo,
+			String bufferTokenName, int debugPrint) {
+		this.buffer = buffer;
+		this.conProvider = conProvider;
+		this.conInfo = conInfo;
+		this.name = "AsyncTCPInputChannel - " + bufferTokenName;
+		this.debugPrint = debugPrint;
+		this.softClosed = false;
+		this.extraBuffer = null;
+		this.unProcessedData = null;
+		this.isClosed = false;
+		this.stopType = new AtomicInteger(0);
+		this.fullSince = -1;
+		this.finishedLatch = new CountDownLatch(1);
+		count = 0;
+	}
+
+	@Override
+	public TCPBlockConnection connect() throws IOException {
+		Connection con = conProvider.getConnection(conInfo);
+		if (!(con instanceof TCPBlockConnection))
+			throw new IllegalStateException(name
+					+ " needs GlobalConstants.useBlockProtocol");
+		tcpConnection = (TCPBlockConnection) con;
+		return tcpConnection;
+	}
+
+	@Override
+	public boolean service() throws IOException {
+		boolean progress = false;
+		while (true) {
+			if (pendingBlock != null) {
+				progress |= deliver();
+				if (pendingBlock != null)
+					break;
+			}
+			Object block;
+			try {
+				block = tcpConnection.pollBlock();
+			} catch (ClassNotFoundException e) {
+				e.printStackTrace();
+				continue;
+			}
+			if (block == null) {
+				softClosed = tcpConnection.isSoftClosed();
+				break;
+			}
+			progress = true;
+			int n = Array.getLength(block);
+			count += n;
+			if (debugPrint == 2 && count % 1000 < n) {
+				System.out.println(name + " - " + count
+						+ " no of items have been received");
+			}
+			// Stop type 3: we don't care about the data any more.
+			if (stopType.get() != 3) {
+				pendingBlock = block;
+				pendingOffset = 0;
+			}
+		}
+		if (softClosed && pendingBlock == null)
+			finish();
+		return progress;
+	}
+
+	/**
+	 * Writes as much of the pending block as fits.
+	 * 
+	 * @return true iff any items were written.
+	 */
+	private boolean deliver() {
+		if (stopType.get() == 3) {
+			pendingBlock = null;
+			return false;
+		}
+		Buffer target = extraBuffer != null ? extraBuffer : buffer;
+		int length = Array.getLength(pendingBlock);
+		int n = TCPInputChannel.write(target, pendingBlock, pendingOffset,
+				length - pendingOffset);
+		pendingOffset += n;
+		if (pendingOffset == length) {
+			pendingBlock = null;
+			fullSince = -1;
+		} else if (n > 0)
+			fullSince = -1;
+		else if (fullSince == -1)
+			fullSince = System.nanoTime();
+		else if (stopType.get() > 1
+				&& System.nanoTime() - fullSince > FULL_TIMEOUT_NANOS)
+			spillPending();
+		return n > 0;
+	}
+
+	/**
+	 * Moves the rest of the pending block into the extra buffer.
+	 */
+	private void spillPending() {
+		if (extraBuffer == null)
+			extraBuffer = new ExtraBuffer();
+		int length = Array.getLength(pendingBlock);
+		pendingOffset += TCPInputChannel.write(extraBuffer, pendingBlock,
+				pendingOffset, length - pendingOffset);
+		assert pendingOffset == length : "ExtraBuffer is full. This shouldn't be the case.";
+		pendingBlock = null;
+	}
+
+	/**
+	 * Must only be called on the selector thread. See {@link #service()}.
+	 */
+	@Override
+	public void receiveData() {
+		try {
+			service();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public int interestOps() {
+		return pendingBlock == null ? SelectionKey.OP_READ : 0;
+	}
+
+	@Override
+	public boolean onIOException(IOException ex) {
+		if (tcpConnection != null) {
+			try {
+				tcpConnection.closeConnection();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		if (ex instanceof EOFException)
+			System.out
+					.println("receiveData:Closing by EOFExp. Not by softClose");
+		else if (stopType.get() == 0) {
+			System.out.println(name + " : Reconnecting...");
+			return true;
+		}
+		finish();
+		return false;
+	}
+
+	private void finish() {
+		// Don't lose a block the buffer had no room for.
+		if (pendingBlock != null && stopType.get() != 3)
+			spillPending();
+		pendingBlock = null;
+		isClosed = true;
+		finished = true;
+		finishedLatch.countDown();
+		if (debugPrint > 0)
+			System.err.println(name + " - Exiting...");
+	}
+
+	@Override
+	public void abandon(IOException ex) {
+		if (tcpConnection != null) {
+			try {
+				tcpConnection.closeConnection();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		if (!finished)
+			finish();
+	}
+
+	@Override
+	public boolean isFinished() {
+		return finished;
+	}
+
+	@Override
+	public void awaitFinished() throws InterruptedException {
+		finishedLatch.await();
+	}
+
+	@Override
+	public void closeConnection() throws IOException {
+		this.isClosed = true;
+	}
+
+	@Override
+	public boolean isStillConnected() {
+		TCPBlockConnection con = tcpConnection;
+		return con != null && con.isStillConnected();
+	}
+
+	/**
+	 * @return a {@link Runnable} that services only this channel, on the
+	 *         calling thread.
+	 */
+	@Override
+	public Runnable getRunnable() {
+		return () -> {
+			try {
+				BoundaryChannelSelector selector = new BoundaryChannelSelector(
+						name);
+				selector.register(this);
+				selector.run();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		};
+	}
+
+	@Override
+	public int getOtherNodeID() {
+		return 0;
+	}
+
+	@Override
+	public void stop(int type) {
+		assert 0 < type && type < 4 : "Undefined stop type";
+		this.stopType.set(type);
+	}
+
+	@Override
+	public String name() {
+		return name;
+	}
+
+	@Override
+	public Buffer getExtraBuffer() {
+		return extraBuffer;
+	}
+
+	private void fillUnprocessedData() {
+		Buffer extra = extraBuffer;
+		int extraSize = extra == null ? 0 : extra.size();
+		int size = buffer.size();
+		Object[] array = new Object[size + extraSize];
+		buffer.readAll(array);
+		assert buffer.size() == 0 : String.format(
+				"buffer size is %d. But 0 is expected", buffer.size());
+		if (extra != null) {
+			System.out.println(name + " - Extra data buffer size is - "
+					+ extraSize);
+			extra.readAll(array, size);
+		}
+		this.unProcessedData = ImmutableList.copyOf(array);
+	}
+
+	@Override
+	public ImmutableList<Object> getUnprocessedData() {
+		if (!this.isClosed)
+			throw new IllegalAccessError(
+					"Still processing... No unprocessed data");
+
+		if (unProcessedData == null)
+			fillUnprocessedData();
+
+		return unProcessedData;
+	}
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.distributed.node;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.mit.streamjit.impl.blob.Buffer;
+import edu.mit.streamjit.impl.blob.PrimitiveBuffer;
+import edu.mit.streamjit.impl.distributed.common.BoundaryChannel.BoundaryOutputChannel;
+import edu.mit.streamjit.impl.distributed.common.Connection;
+import edu.mit.streamjit.impl.distributed.common.TCPBlockConnection;
+import edu.mit.streamjit.impl.distributed.common.TCPConnection.TCPConnectionInfo;
+import edu.mit.streamjit.impl.distributed.common.TCPConnection.TCPConnectionProvider;
+import edu.mit.streamjit.impl.distributed.node.BoundaryChannelSelector.AsyncChannel;
+
+/**
+ * Non-blocking counterpart of {@link TCPOutputChannel}, driven by a
+ * {@link BoundaryChannelSelector} instead of a dedicated thread. Talks to
+ * either kind of input channel, as both use {@link TCPBlockConnection}'s
+ * framing.
+ * <p>
+ * Note: AsyncTCPOutputChannel acts as server when making TCP connection.
+ * </p>
+ * 
+ * @since Oct 18, 2026
+ */
+public class AsyncTCPOutputChannel implements BoundaryOutputChannel,
+		AsyncChannel {
+
+	private static final int BLOCK = 8192;
+
+	private final int debugPrint;
+
+	private final Buffer buffer;
+
+	private final TCPConnectionProvider conProvider;
+
+	private final TCPConnectionInfo conInfo;
+
+	private volatile TCPBlockConnection tcpConnection;
+
+	private final AtomicBoolean stopFlag;
+
+	private final String name;
+
+	private volatile boolean isFinal;
+
+	private int count;
+
+	/**
+	 * Items read from {@link #buffer} but not yet accepted by
+	 * {@link #tcpConnection} are block[blockOffset, blockOffset+blockLength).
+	 */
+	private final Object block;
+
+	private int blockOffset;
+
+	private int blockLength;
+
+	private boolean endSent;
+
+	private volatile boolean finished;
+
+	private final CountDownLatch finishedLatch;
+
+	protected ImmutableList<Object> unProcessedData;
+
+	public AsyncTCPOutputChannel(Buffer buffer,
+			TCPConnectionProvider conProvider, TCPConnectionInfo conInfo,
+			String bufferTokenName, int debugPrint) {
+		this.buffer = buffer;
+		this.conProvider = conProvider;
+		this.conInfo = conInfo;
+		this.stopFlag = new AtomicBoolean(false);
+		this.isFinal = false;
+		this.name = "AsyncTCPOutputChannel - " + bufferTokenName;
+		this.debugPrint = debugPrint;
+		this.unProcessedData = null;
+		this.finishedLatch = new CountDownLatch(1);
+		count = 0;
+		if (buffer instanceof PrimitiveBuffer)
+			this.block = Array.newInstance(
+					((PrimitiveBuffer) buffer).primitiveType(), BLOCK);
+		else
+			this.block = new Object[BLOCK];
+	}
+
+	@Override
+	public TCPBlockConnection connect() throws IOException {
+		// Time out periodically to recheck the stopFlag. Otherwise we would
+		// get stuck at server.accept() if the other side never connects.
+		while (!stopFlag.get()) {
+			try {
+				Connection con = conProvider.getConnection(conInfo, 1000);
+				if (!(con instanceof TCPBlockConnection))
+					throw new IllegalStateException(name
+							+ " needs GlobalConstants.useBlockProtocol");
+				tcpConnection = (TCPBlockConnection) con;
+				return tcpConnection;
+			} catch (SocketTimeoutException stex) {
+			}
+		}
+		throw new IOException(name + " stopped before connecting");
+	}
+
+	@Override
+	public boolean service() throws IOException {
+		boolean progress = send();
+		if (stopFlag.get()
+				&& (!isFinal || (blockLength == 0 && buffer.size() == 0))) {
+			if (!endSent)
+				endSent = tcpConnection.offerEnd();
+			if (endSent && tcpConnection.flushPending())
+				finish();
+		}
+		return progress;
+	}
+
+	/**
+	 * Must only be called on the selector thread. See {@link #service()}.
+	 */
+	@Override
+	public final void sendData() {
+		try {
+			send();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Offers buffered items to the connection until it or the buffer runs
+	 * out of room.
+	 * 
+	 * @return true iff any items were sent.
+	 */
+	private boolean send() throws IOException {
+		boolean progress = false;
+		while (!stopFlag.get() || isFinal) {
+			if (blockLength == 0) {
+				blockOffset = 0;
+				blockLength = readBlock();
+				if (blockLength == 0)
+					break;
+			}
+			int n = tcpConnection.offerBlock(block, blockOffset, blockLength);
+			if (n == 0)
+				break;
+			progress = true;
+			blockOffset += n;
+			blockLength -= n;
+			count += n;
+			if (debugPrint == 2 && count % 1000 < n) {
+				System.out.println(name + " - " + count
+						+ " items have been sent");
+			}
+		}
+		return progress;
+	}
+
+	/**
+	 * Reads up to {@link #BLOCK} items into {@link #block}. Never asks for
+	 * more than {@link Buffer#size()} items. See
+	 * {@link TCPOutputChannel#sendData()}.
+	 * 
+	 * @return number of items read
+	 */
+	private int readBlock() {
+		int n = Math.min(BLOCK, buffer.size());
+		if (n == 0)
+			return 0;
+		if (block instanceof Object[])
+			return buffer.read((Object[]) block, 0, n);
+		return ((PrimitiveBuffer) buffer).readArray(block, 0, n);
+	}
+
+	@Override
+	public int interestOps() {
+		return tcpConnection.hasPendingOutput() ? SelectionKey.OP_WRITE : 0;
+	}
+
+	@Override
+	public boolean onIOException(IOException ex) {
+		System.err.println(name + " - " + ex);
+		if (tcpConnection != null) {
+			try {
+				tcpConnection.closeConnection();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		if (!stopFlag.get())
+			return true;
+		finish();
+		return false;
+	}
+
+	private void finish() {
+		fillUnprocessedData();
+		finished = true;
+		finishedLatch.countDown();
+		if (debugPrint > 0)
+			System.err.println(name + " - Exiting...");
+	}
+
+	@Override
+	public void abandon(IOException ex) {
+		// Also makes a connector thread stuck in connect() give up.
+		stopFlag.set(true);
+		if (tcpConnection != null) {
+			try {
+				tcpConnection.closeConnection();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		if (!finished)
+			finish();
+	}
+
+	@Override
+	public boolean isFinished() {
+		return finished;
+	}
+
+	@Override
+	public void awaitFinished() throws InterruptedException {
+		finishedLatch.await();
+	}
+
+	@Override
+	public final void closeConnection() throws IOException {
+		// The selector soft closes the connection once this channel stops.
+	}
+
+	@Override
+	public final boolean isStillConnected() {
+		TCPBlockConnection con = tcpConnection;
+		return con != null && con.isStillConnected();
+	}
+
+	/**
+	 * @return a {@link Runnable} that services only this channel, on the
+	 *         calling thread.
+	 */
+	@Override
+	public final Runnable getRunnable() {
+		return () -> {
+			try {
+				BoundaryChannelSelector selector = new BoundaryChannelSelector(
+						name);
+				selector.register(this);
+				selector.run();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		};
+	}
+
+	@Override
+	public final int getOtherNodeID() {
+		return 0;
+	}
+
+	@Override
+	public final void stop(boolean isFinal) {
+		if (debugPrint > 0)
+			System.out.println(name + " - stop request");
+		this.isFinal = isFinal;
+		this.stopFlag.set(true);
+	}
+
+	@Override
+	public final String name() {
+		return name;
+	}
+
+	/**
+	 * Unprocessed data are the items this channel read but didn't send,
+	 * followed by the items still in the buffer.
+	 */
+	protected void fillUnprocessedData() {
+		Object[] obArray = new Object[blockLength + buffer.size()];
+		for (int i = 0; i < blockLength; i++)
+			obArray[i] = Array.get(block, blockOffset + i);
+		buffer.readAll(obArray, blockLength);
+		assert buffer.size() == 0 : String.format(
+				"buffer size is %d. But 0 is expected", buffer.size());
+		blockLength = 0;
+		this.unProcessedData = ImmutableList.copyOf(obArray);
+	}
+
+	@Override
+	public ImmutableList<Object> getUnprocessedData() {
+		if (unProcessedData == null)
+			throw new IllegalAccessError(
+					"Still processing... No unprocessed data");
+		return unProcessedData;
+	}
+}
@@ -35,10 +35,13 @@ import com.google.common.collect.Sets;
 import edu.mit.streamjit.api.Worker;
 import edu.mit.streamjit.impl.blob.Blob;
 import edu.mit.streamjit.impl.blob.Buffer;
-import edu.mit.streamjit.impl.blob.ConcurrentArrayBuffer;
+import edu.mit.streamjit.impl.blob.SPSCArrayBuffer;
+import edu.mit.streamjit.impl.blob.SPSCPrimitiveArrayBuffers;
 import edu.mit.streamjit.impl.blob.Blob.Token;
 import edu.mit.streamjit.impl.blob.DrainData;
 import edu.mit.streamjit.impl.common.BlobThread;
+import edu.mit.streamjit.impl.common.Configuration;
+import edu.mit.streamjit.impl.common.Configuration.IntParameter;
 import edu.mit.streamjit.impl.common.Workers;
 import edu.mit.streamjit.impl.distributed.common.BoundaryChannel;
 import edu.mit.streamjit.impl.distributed.common.BoundaryChannel.BoundaryInputChannel;
@@ -54,6 +57,8 @@ import edu.mit.streamjit.impl.distributed.common.SNMessageElement;
 import edu.mit.streamjit.impl.distributed.common.TCPConnection.TCPConnectionInfo;
 import edu.mit.streamjit.impl.distributed.common.TCPConnection.TCPConnectionProvider;
 import edu.mit.streamjit.impl.distributed.common.Utils;
+import edu.mit.streamjit.impl.distributed.node.BoundaryChannelSelector.AsyncChannel;
+import edu.mit.streamjit.util.PrimitiveUtils;
 
 /**
  * {@link BlobsManagerImpl} responsible to run all {@link Blob}s those are
@@ -64,6 +69,11 @@ import edu.mit.streamjit.impl.distributed.common.Utils;
  */
 public class BlobsManagerImpl implements BlobsManager {
 
+	/**
+	 * No buffer is smaller than this many items.
+	 */
+	private static final int MIN_BUFFER_CAPACITY = 1000;
+
 	private Set<BlobExecuter> blobExecuters;
 	private final StreamNode streamNode;
 	private final TCPConnectionProvider conProvider;
@@ -75,17 +85,36 @@ public class BlobsManagerImpl implements BlobsManager {
 
 	private final ImmutableMap<Token, Buffer> bufferMap;
 
+	/**
+	 * Services all TCP {@link BoundaryChannel}s of this node if
+	 * {@link GlobalConstants#useSelectorChannels} is set. Null otherwise.
+	 * Other channels, including shared memory ones, run on their own threads.
+	 */
+	private final BoundaryChannelSelector channelSelector;
+
+	/**
+	 * Buffer capacities are this multiple of the items per steady-state
+	 * iteration on their edge. See {@link #bufferCapacity(int, int, Class)}.
+	 */
+	private final int bufferMultiplier;
+
 	public BlobsManagerImpl(ImmutableSet<Blob> blobSet,
 			Map<Token, TCPConnectionInfo> conInfoMap, StreamNode streamNode,
-			TCPConnectionProvider conProvider) {
+			TCPConnectionProvider conProvider, Configuration config) {
 		this.conInfoMap = conInfoMap;
 		this.streamNode = streamNode;
 		this.conProvider = conProvider;
 
+		IntParameter multiplierParam = config.getParameter(
+				GlobalConstants.BUFFER_MULTIPLIER, IntParameter.class);
+		this.bufferMultiplier = multiplierParam != null ? multiplierParam
+				.getValue() : GlobalConstants.DEFAULT_BUFFER_MULTIPLIER;
+
 		this.cmdProcessor = new CommandProcessorImpl();
 		this.drainProcessor = new CTRLRDrainProcessorImpl();
 
 		bufferMap = createBufferMap(blobSet);
+		channelSelector = createChannelSelector();
 
 		for (Blob b : blobSet) {
 			b.installBuffers(bufferMap);
@@ -110,6 +139,21 @@ public class BlobsManagerImpl implements BlobsManager {
 	public void start() {
 		for (BlobExecuter be : blobExecuters)
 			be.start();
+		if (channelSelector != null)
+			channelSelector.start();
+	}
+
+	private BoundaryChannelSelector createChannelSelector() {
+		if (!GlobalConstants.useSelectorChannels
+				|| !GlobalConstants.useBlockProtocol)
+			return null;
+		try {
+			return new BoundaryChannelSelector("BoundaryChannelSelector");
+		} catch (IOException e) {
+			// Fall back to a thread per channel.
+			e.printStackTrace();
+			return null;
+		}
 	}
 
 	/**
@@ -121,24 +165,31 @@ public class BlobsManagerImpl implements BlobsManager {
 			be.stop();
 	}
 
-	// TODO: Buffer sizes, including head and tail buffers, must be optimized.
-	// consider adding some tuning factor
 	private ImmutableMap<Token, Buffer> createBufferMap(Set<Blob> blobSet) {
 		ImmutableMap.Builder<Token, Buffer> bufferMapBuilder = ImmutableMap
 				.<Token, Buffer> builder();
 
 		Map<Token, Integer> minInputBufCapaciy = new HashMap<>();
 		Map<Token, Integer> minOutputBufCapaciy = new HashMap<>();
+		Map<Token, Class<?>> bufferTypes = new HashMap<>();
+		// Items per steady-state iteration of the faster side of each edge.
+		Map<Token, Integer> itemsPerIteration = new HashMap<>();
 
 		for (Blob b : blobSet) {
 			Set<Blob.Token> inputs = b.getInputs();
 			for (Token t : inputs) {
 				minInputBufCapaciy.put(t, b.getMinimumBufferCapacity(t));
+				addBufferType(t, b.getBufferType(t), bufferTypes);
+				itemsPerIteration.merge(t, b.getItemsPerIteration(t),
+						Math::max);
 			}
 
 			Set<Blob.Token> outputs = b.getOutputs();
 			for (Token t : outputs) {
 				minOutputBufCapaciy.put(t, b.getMinimumBufferCapacity(t));
+				addBufferType(t, b.getBufferType(t), bufferTypes);
+				itemsPerIteration.merge(t, b.getItemsPerIteration(t),
+						Math::max);
 			}
 		}
 
@@ -152,33 +203,80 @@ public class BlobsManagerImpl implements BlobsManager {
 		for (Token t : localTokens) {
 			int bufSize = lcm(minInputBufCapaciy.get(t),
 					minOutputBufCapaciy.get(t));
-			addBuffer(t, bufSize, bufferMapBuilder);
+			addBuffer(t, bufSize, itemsPerIteration.get(t),
+					bufferTypes.get(t), bufferMapBuilder);
 		}
 
 		for (Token t : globalInputTokens) {
 			int bufSize = minInputBufCapaciy.get(t);
-			addBuffer(t, bufSize, bufferMapBuilder);
+			addBuffer(t, bufSize, itemsPerIteration.get(t),
+					bufferTypes.get(t), bufferMapBuilder);
 		}
 
 		for (Token t : globalOutputTokens) {
 			int bufSize = minOutputBufCapaciy.get(t);
-			addBuffer(t, bufSize, bufferMapBuilder);
+			addBuffer(t, bufSize, itemsPerIteration.get(t),
+					bufferTypes.get(t), bufferMapBuilder);
 		}
 		return bufferMapBuilder.build();
 	}
 
 	/**
-	 * Just introduced to avoid code duplication.
+	 * Records the element type a blob wants on the edge t. If the blobs on
+	 * both sides of a local edge disagree, falls back to Object.
+	 * 
+	 * @param t
+	 * @param type
+	 * @param bufferTypes
+	 */
+	private void addBufferType(Token t, Class<?> type,
+			Map<Token, Class<?>> bufferTypes) {
+		Class<?> previous = bufferTypes.put(t, type);
+		if (previous != null && previous != type)
+			bufferTypes.put(t, Object.class);
+	}
+
+	/**
+	 * Just introduced to avoid code duplication. Creates a primitive buffer
+	 * when the blobs on the edge store unboxed data, so they can move items
+	 * without boxing.
 	 * 
 	 * @param t
 	 * @param minSize
+	 * @param itemsPerIteration
+	 * @param type
 	 * @param bufferMapBuilder
 	 */
-	private void addBuffer(Token t, int minSize,
-			ImmutableMap.Builder<Token, Buffer> bufferMapBuilder) {
-		// TODO: Just to increase the performance. Change it later
-		int bufSize = Math.max(1000, minSize);
-		bufferMapBuilder.put(t, new ConcurrentArrayBuffer(bufSize));
+	private void addBuffer(Token t, int minSize, int itemsPerIteration,
+			Class<?> type, ImmutableMap.Builder<Token, Buffer> bufferMapBuilder) {
+		int bufSize = bufferCapacity(minSize, itemsPerIteration, type);
+		Buffer buffer = SPSCPrimitiveArrayBuffers.supports(type)
+				? SPSCPrimitiveArrayBuffers.create(type, bufSize)
+				: new SPSCArrayBuffer(bufSize);
+		bufferMapBuilder.put(t, buffer);
+	}
+
+	/**
+	 * Sizes a buffer to hold {@link #bufferMultiplier} steady-state
+	 * iterations' worth of items, so neither side of the edge waits on the
+	 * other every iteration. The capacity is capped at
+	 * {@link GlobalConstants#MAX_BUFFER_BYTES}, but it is never less than
+	 * minSize, the capacity the blobs require, nor less than
+	 * {@link #MIN_BUFFER_CAPACITY} (Interpreter blobs report only their minimum
+	 * capacity as their rate, which is often tiny).
+	 * 
+	 * @param minSize
+	 * @param itemsPerIteration
+	 * @param type
+	 * @return
+	 */
+	private int bufferCapacity(int minSize, int itemsPerIteration,
+			Class<?> type) {
+		int itemBytes = type.isPrimitive() ? PrimitiveUtils.sizeof(type) : 16;
+		long wanted = (long) bufferMultiplier * itemsPerIteration;
+		long limit = GlobalConstants.MAX_BUFFER_BYTES / itemBytes;
+		return (int) Math.max(Math.max(minSize, MIN_BUFFER_CAPACITY),
+				Math.min(wanted, limit));
 	}
 
 	private int gcd(int a, int b) {
@@ -220,8 +318,13 @@ public class BlobsManagerImpl implements BlobsManager {
 		ImmutableMap.Builder<Token, BoundaryInputChannel> inputChannelMap = new ImmutableMap.Builder<>();
 		for (Token t : inputTokens) {
 			TCPConnectionInfo conInfo = conInfoMap.get(t);
-			inputChannelMap.put(t, new TCPInputChannel(bufferMap.get(t),
-					conProvider, conInfo, t.toString(), 0));
+			if (channelSelector != null
+					&& !conProvider.usesSharedMemory(conInfo))
+				inputChannelMap.put(t, new AsyncTCPInputChannel(
+						bufferMap.get(t), conProvider, conInfo, t.toString(), 0));
+			else
+				inputChannelMap.put(t, new TCPInputChannel(bufferMap.get(t),
+						conProvider, conInfo, t.toString(), 0));
 		}
 		return inputChannelMap.build();
 	}
@@ -231,8 +334,13 @@ public class BlobsManagerImpl implements BlobsManager {
 		ImmutableMap.Builder<Token, BoundaryOutputChannel> outputChannelMap = new ImmutableMap.Builder<>();
 		for (Token t : outputTokens) {
 			TCPConnectionInfo conInfo = conInfoMap.get(t);
-			outputChannelMap.put(t, new TCPOutputChannel(bufferMap.get(t),
-					conProvider, conInfo, t.toString(), 0));
+			if (channelSelector != null
+					&& !conProvider.usesSharedMemory(conInfo))
+				outputChannelMap.put(t, new AsyncTCPOutputChannel(
+						bufferMap.get(t), conProvider, conInfo, t.toString(), 0));
+			else
+				outputChannelMap.put(t, new TCPOutputChannel(bufferMap.get(t),
+						conProvider, conInfo, t.toString(), 0));
 		}
 		return outputChannelMap.build();
 	}
@@ -280,20 +388,54 @@ public class BlobsManagerImpl implements BlobsManager {
 		}
 
 		private void start() {
-			for (BoundaryInputChannel bc : inputChannels.values()) {
-				Thread t = new Thread(bc.getRunnable(), bc.name());
+			for (BoundaryInputChannel bc : inputChannels.values())
+				startChannel(bc, inputChannelThreads);
+
+			for (BoundaryOutputChannel bc : outputChannels.values())
+				startChannel(bc, outputChannelThreads);
+
+			for (Thread t : blobThreads)
 				t.start();
-				inputChannelThreads.add(t);
+		}
+
+		/**
+		 * Registers the channel with {@link #channelSelector} if it is an
+		 * {@link AsyncChannel}. Runs it on a new thread otherwise.
+		 */
+		private void startChannel(BoundaryChannel bc, Set<Thread> threads) {
+			if (bc instanceof AsyncChannel) {
+				channelSelector.register((AsyncChannel) bc);
+				return;
 			}
+			Thread t = new Thread(bc.getRunnable(), bc.name());
+			t.start();
+			threads.add(t);
+		}
 
-			for (BoundaryOutputChannel bc : outputChannels.values()) {
-				Thread t = new Thread(bc.getRunnable(), bc.name());
-				t.start();
-				outputChannelThreads.add(t);
+		/**
+		 * Waits for the channels to finish, whether they run on their own
+		 * threads or on {@link #channelSelector}.
+		 */
+		private void awaitChannels(
+				ImmutableMap<Token, ? extends BoundaryChannel> channels,
+				Set<Thread> threads) {
+			for (Thread t : threads) {
+				try {
+					t.join();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
 			}
 
-			for (Thread t : blobThreads)
-				t.start();
+			for (BoundaryChannel bc : channels.values()) {
+				if (!(bc instanceof AsyncChannel))
+					continue;
+				try {
+					((AsyncChannel) bc).awaitFinished();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
 		}
 
 		private void stop() {
@@ -327,17 +469,14 @@ public class BlobsManagerImpl implements BlobsManager {
 					bc.stop(3);
 			}
 
-			for (Thread t : inputChannelThreads) {
-				try {
-					t.join();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
+			awaitChannels(inputChannels, inputChannelThreads);
 
 			DrainCallback dcb = new DrainCallback(this);
 			drainState = 2;
-			this.blob.drain(dcb);
+			if (GlobalConstants.useDrainData && this.reqDrainData)
+				this.blob.drainForReconfiguration(dcb);
+			else
+				this.blob.drain(dcb);
 		}
 
 		private void drained() {
@@ -350,13 +489,7 @@ public class BlobsManagerImpl implements BlobsManager {
 				bc.stop(!this.reqDrainData);
 			}
 
-			for (Thread t : outputChannelThreads) {
-				try {
-					t.join();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
+			awaitChannels(outputChannels, outputChannelThreads);
 
 			drainState = 4;
 			SNMessageElement drained = new SNDrainElement.Drained(blobID);
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2013-2014 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.impl.distributed.node;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.mit.streamjit.impl.distributed.common.BoundaryChannel;
+import edu.mit.streamjit.impl.distributed.common.TCPBlockConnection;
+
+/**
+ * Services many {@link BoundaryChannel}s from a single thread. Each
+ * {@link AsyncChannel} is connected on a short-lived connector thread (making
+ * a connection blocks on accept() or on connect retries), then its
+ * {@link TCPBlockConnection} is switched to non-blocking mode and registered
+ * with a {@link Selector}. The selector thread repeatedly lets every channel
+ * move as much data as it can without blocking.
+ * <p>
+ * Buffers can't wake a {@link Selector}, so output channels are polled. When
+ * a round makes no progress the selector sleeps for exponentially longer
+ * periods, up to {@value #MAX_IDLE_MILLIS}ms, and wakes early when an input
+ * socket becomes readable or a blocked output socket becomes writable.
+ * </p>
+ * <p>
+ * The selector thread exits once all registered channels have finished, so
+ * all channels must be registered before {@link #start()}. If the selector
+ * itself fails, every unfinished channel is abandoned (see
+ * {@link AsyncChannel#abandon(IOException)}) so nobody waits on it forever.
+ * </p>
+ * 
+ * @since Oct 18, 2026
+ */
+public class BoundaryChannelSelector implements Runnable {
+
+	private static final long MAX_IDLE_MILLIS = 8;
+
+	private final String name;
+
+	private final Selector selector;
+
+	/**
+	 * Work handed to the selector thread by other threads.
+	 */
+	private final Queue<Runnable> tasks;
+
+	/**
+	 * Connected channels. Only accessed by the selector thread.
+	 */
+	private final Map<AsyncChannel, SelectionKey> keys;
+
+	/**
+	 * All registered channels, for abandoning them if the selector fails.
+	 */
+	private final Set<AsyncChannel> channels;
+
+	/**
+	 * Number of registered channels that haven't finished yet.
+	 */
+	private final AtomicInteger liveChannels;
+
+	private final ExecutorService connector;
+
+	public BoundaryChannelSelector(String name) throws IOException {
+		this.name = name;
+		this.selector = Selector.open();
+		this.tasks = new ConcurrentLinkedQueue<>();
+		this.keys = new HashMap<>();
+		this.channels = ConcurrentHashMap.newKeySet();
+		this.liveChannels = new AtomicInteger(0);
+		this.connector = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, name + " - connector");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Starts connecting the channel. Once connected, the selector thread
+	 * services it until it finishes.
+	 */
+	public void register(AsyncChannel channel) {
+		channels.add(channel);
+		liveChannels.incrementAndGet();
+		connect(channel);
+	}
+
+	/**
+	 * Starts the selector thread.
+	 */
+	public void start() {
+		new Thread(this, name).start();
+	}
+
+	@Override
+	public void run() {
+		long idleMillis = 0;
+		try {
+			while (liveChannels.get() > 0) {
+				if (idleMillis == 0)
+					selector.selectNow();
+				else
+					selector.select(idleMillis);
+				// Every channel gets serviced in every round, so we don't care
+				// which keys were selected.
+				selector.selectedKeys().clear();
+
+				Runnable task;
+				while ((task = tasks.poll()) != null)
+					task.run();
+
+				if (serviceAll())
+					idleMillis = 0;
+				else
+					idleMillis = Math.min(Math.max(1, idleMillis * 2),
+							MAX_IDLE_MILLIS);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			abandonAll(e);
+		} catch (RuntimeException | Error e) {
+			abandonAll(new IOException(name + " failed", e));
+			throw e;
+		} finally {
+			connector.shutdown();
+			try {
+				selector.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * @return true iff any channel made progress.
+	 */
+	private boolean serviceAll() {
+		boolean progress = false;
+		Iterator<Map.Entry<AsyncChannel, SelectionKey>> it = keys.entrySet()
+				.iterator();
+		while (it.hasNext()) {
+			Map.Entry<AsyncChannel, SelectionKey> e = it.next();
+			AsyncChannel channel = e.getKey();
+			SelectionKey key = e.getValue();
+			try {
+				progress |= channel.service();
+				if (channel.isFinished()) {
+					key.cancel();
+					it.remove();
+					liveChannels.decrementAndGet();
+				} else
+					key.interestOps(channel.interestOps());
+			} catch (IOException ex) {
+				key.cancel();
+				it.remove();
+				failed(channel, ex);
+			}
+		}
+		return progress;
+	}
+
+	private void connect(AsyncChannel channel) {
+		connector.execute(() -> {
+			try {
+				TCPBlockConnection con = channel.connect();
+				addTask(() -> {
+					try {
+						keys.put(channel,
+								con.register(selector, 0, channel));
+					} catch (IOException ex) {
+						failed(channel, ex);
+					}
+				});
+			} catch (IOException ex) {
+				addTask(() -> failed(channel, ex));
+			} catch (RuntimeException ex) {
+				// Retrying won't help (e.g., the wrong kind of connection).
+				ex.printStackTrace();
+				addTask(() -> {
+					channel.abandon(new IOException(ex));
+					liveChannels.decrementAndGet();
+				});
+			}
+		});
+	}
+
+	private void failed(AsyncChannel channel, IOException ex) {
+		if (channel.onIOException(ex))
+			connect(channel);
+		else {
+			assert channel.isFinished() : channel.name()
+					+ " neither reconnects nor finishes";
+			liveChannels.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Finishes every channel that hasn't finished yet, after the selector
+	 * thread has failed.
+	 */
+	private void abandonAll(IOException ex) {
+		for (AsyncChannel channel : channels)
+			if (!channel.isFinished())
+				channel.abandon(ex);
+		keys.clear();
+		liveChannels.set(0);
+	}
+
+	private void addTask(Runnable task) {
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	/**
+	 * A {@link BoundaryChannel} that can be driven by a
+	 * {@link BoundaryChannelSelector}. All methods except {@link #connect()}
+	 * and {@link #awaitFinished()} are called on the selector thread.
+	 */
+	public interface AsyncChannel extends BoundaryChannel {
+
+		/**
+		 * Makes the connection to the other node. Called on a connector
+		 * thread, so it may block.
+		 */
+		TCPBlockConnection connect() throws IOException;
+
+		/**
+		 * Moves as much data as possible without blocking.
+		 * 
+		 * @return true iff any data was moved.
+		 */
+		boolean service() throws IOException;
+
+		/**
+		 * @return the {@link SelectionKey} operations this channel is waiting
+		 *         for.
+		 */
+		int interestOps();
+
+		/**
+		 * Called if connecting or servicing fails.
+		 * 
+		 * @return true to reconnect. If false, this channel must have
+		 *         finished.
+		 */
+		boolean onIOException(IOException ex);
+
+		/**
+		 * Called on the failing selector thread if the selector can't
+		 * service this channel any more. The channel must close its
+		 * connection and finish, keeping any data it hasn't moved as
+		 * unprocessed data.
+		 */
+		void abandon(IOException ex);
+
+		/**
+		 * @return true iff this channel has done all its work.
+		 */
+		boolean isFinished();
+
+		/**
+		 * Blocks until this channel has finished.
+		 */
+		void awaitFinished() throws InterruptedException;
+	}
+}
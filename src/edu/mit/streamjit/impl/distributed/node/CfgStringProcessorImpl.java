@@ -106,7 +106,7 @@ public class CfgStringProcessorImpl implements ConfigurationStringProcessor {
 						.getExtraData(GlobalConstants.CONINFOMAP);
 
 				streamNode.setBlobsManager(new BlobsManagerImpl(blobSet,
-						conInfoMap, streamNode, conProvider));
+						conInfoMap, streamNode, conProvider, cfg));
 			} else {
 				try {
 					streamNode.controllerConnection
@@ -24,7 +24,7 @@ package edu.mit.streamjit.impl.distributed.node;
 import java.io.EOFException;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.OptionalDataException;
+import java.lang.reflect.Array;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Queue;
@@ -34,6 +34,7 @@ import com.google.common.collect.ImmutableList;
 
 import edu.mit.streamjit.impl.blob.AbstractBuffer;
 import edu.mit.streamjit.impl.blob.Buffer;
+import edu.mit.streamjit.impl.blob.PrimitiveBuffer;
 import edu.mit.streamjit.impl.distributed.common.BoundaryChannel.BoundaryInputChannel;
 import edu.mit.streamjit.impl.distributed.common.Connection;
 import edu.mit.streamjit.impl.distributed.common.TCPConnection.TCPConnectionInfo;
@@ -46,6 +47,11 @@ import edu.mit.streamjit.impl.distributed.common.TCPConnection.TCPConnectionProv
  * Note: TCPInputChannel acts as client when making TCP connection.
  * </p>
  * <p>
+ * Data is received in blocks (see {@link Connection#readBlock()}). Primitive
+ * blocks are written into {@link PrimitiveBuffer}s of the same type without
+ * boxing.
+ * </p>
+ * <p>
  * In some case, after Stop() is called, buffer might be full forever and there
  * might be more data in the kernel TCP buffer. In this case before extraBuffer
  * will be filled with all kernel data.
@@ -163,58 +169,23 @@ public class TCPInputChannel implements BoundaryInputChannel {
 
 	@Override
 	public void receiveData() {
-		int bufFullCount = 0;
 		try {
-			Object obj = tcpConnection.readObject();
-			count++;
-
-			if (debugPrint == 3) {
-				System.out.println(Thread.currentThread().getName() + " - "
-						+ obj.toString());
-			}
-
-			if (writer != null) {
-				writer.write(obj.toString());
-				writer.write('\n');
-			}
-
-			while (!this.buffer.write(obj)) {
-				if (debugPrint == 3) {
-					System.out.println(Thread.currentThread().getName()
-							+ " Buffer FULL - " + obj.toString());
-				}
-				if (writer != null) {
-					writer.write("receiveData:Buffer FULL");
-					writer.write('\n');
-				}
-				try {
-					// TODO: Need to tune the sleep time.
-					Thread.sleep(100);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-				if (stopType.get() > 1 && ++bufFullCount > 5) {
-					this.extraBuffer = new ExtraBuffer();
-					extraBuffer.write(obj);
-					System.err
-							.println("@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@");
-					System.err
-							.println(name
-									+ " receiveData:Writing extra data in to extra buffer");
-					System.err
-							.println("@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@");
-					break;
-				}
+			Object block = tcpConnection.readBlock();
+			if (block == null) {
+				softClosed = true;
+				return;
 			}
+			int n = Array.getLength(block);
+			count += n;
+			debugBlock(block, "");
+			deliver(this.buffer, block, "receiveData");
 
-			if (count % 1000 == 0 && debugPrint == 2) {
+			if (debugPrint == 2 && count % 1000 < n) {
 				System.out.println(Thread.currentThread().getName() + " - "
 						+ count + " no of items have been received");
 			}
 		} catch (ClassNotFoundException e) {
 			e.printStackTrace();
-		} catch (OptionalDataException e) {
-			softClosed = true;
 		} catch (EOFException e) {
 			// Other side is closed.
 			System.out
@@ -239,65 +210,26 @@ public class TCPInputChannel implements BoundaryInputChannel {
 	private void finalReceive() {
 		assert stopType.get() == 1 || stopType.get() == 2 : "Illegal stopType state";
 		boolean hasData;
-		int bufFullCount;
 		Buffer buffer;
 		if (this.extraBuffer == null)
 			buffer = this.buffer;
 		else
 			buffer = this.extraBuffer;
 		do {
-			bufFullCount = 0;
 			try {
-				Object obj = tcpConnection.readObject();
-				count++;
-
-				if (debugPrint == 2) {
-					System.out.println(Thread.currentThread().getName()
-							+ " finalReceive - " + obj.toString());
+				Object block = tcpConnection.readBlock();
+				if (block == null) {
+					softClosed = true;
+					hasData = false;
+					continue;
 				}
-
-				if (writer != null) {
-					writer.write(obj.toString());
-					writer.write('\n');
-				}
-
+				int n = Array.getLength(block);
+				count += n;
+				debugBlock(block, " finalReceive");
 				hasData = true;
+				buffer = deliver(buffer, block, "finalReceive");
 
-				while (!buffer.write(obj)) {
-					if (debugPrint == 3) {
-						System.out.println(Thread.currentThread().getName()
-								+ " finalReceive:Buffer FULL - "
-								+ obj.toString());
-					}
-
-					if (writer != null) {
-						writer.write("finalReceive:Buffer FULL");
-						writer.write('\n');
-					}
-
-					try {
-						Thread.sleep(100);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-
-					if (stopType.get() == 2 && ++bufFullCount > 5) {
-						assert buffer != this.extraBuffer : "ExtraBuffer is full. This shouldn't be the case.";
-						assert this.extraBuffer == null : "Extra buffer has already been created.";
-						this.extraBuffer = new ExtraBuffer();
-						extraBuffer.write(obj);
-						buffer = extraBuffer;
-						System.err
-								.println("@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@");
-						System.err
-								.println(name
-										+ " finalReceive:Writing extra data in to extra buffer");
-						System.err
-								.println("@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@");
-					}
-				}
-
-				if (count % 1000 == 0 && debugPrint == 2) {
+				if (debugPrint == 2 && count % 1000 < n) {
 					System.out.println(Thread.currentThread().getName() + " - "
 							+ count + " no of items have been received");
 				}
@@ -305,9 +237,6 @@ public class TCPInputChannel implements BoundaryInputChannel {
 			} catch (ClassNotFoundException e) {
 				hasData = true;
 				e.printStackTrace();
-			} catch (OptionalDataException e) {
-				softClosed = true;
-				hasData = false;
 			} catch (IOException e) {
 				System.out
 						.println("finalReceive:Closing by IOException. Not by softClose.");
@@ -316,6 +245,90 @@ public class TCPInputChannel implements BoundaryInputChannel {
 		} while (hasData);
 	}
 
+	/**
+	 * Writes all items of the block into buffer, waiting while it is full. If
+	 * this channel has been asked to stop (stopType 2 or 3) and buffer stays
+	 * full, the rest of the block goes into a newly created
+	 * {@link #extraBuffer}.
+	 * 
+	 * @return the buffer the next block should be written into.
+	 */
+	private Buffer deliver(Buffer buffer, Object block, String caller)
+			throws IOException {
+		int length = Array.getLength(block);
+		int written = 0;
+		int bufFullCount = 0;
+		while (written < length) {
+			int n = write(buffer, block, written, length - written);
+			written += n;
+			if (written == length || n > 0)
+				continue;
+
+			if (debugPrint == 3) {
+				System.out.println(Thread.currentThread().getName() + " "
+						+ caller + ":Buffer FULL - "
+						+ Array.get(block, written));
+			}
+			if (writer != null) {
+				writer.write(caller + ":Buffer FULL");
+				writer.write('\n');
+			}
+			try {
+				// TODO: Need to tune the sleep time.
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			if (stopType.get() > 1 && ++bufFullCount > 5) {
+				assert buffer != this.extraBuffer : "ExtraBuffer is full. This shouldn't be the case.";
+				assert this.extraBuffer == null : "Extra buffer has already been created.";
+				this.extraBuffer = new ExtraBuffer();
+				buffer = extraBuffer;
+				System.err.println("@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@");
+				System.err.println(name + " " + caller
+						+ ":Writing extra data in to extra buffer");
+				System.err.println("@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@");
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Writes up to length items of the block, which is either an Object[] or a
+	 * primitive array, into buffer.
+	 * 
+	 * @return number of items written
+	 */
+	static int write(Buffer buffer, Object block, int offset,
+			int length) {
+		if (block instanceof Object[])
+			return buffer.write((Object[]) block, offset, length);
+		if (buffer instanceof PrimitiveBuffer
+				&& ((PrimitiveBuffer) buffer).primitiveType() == block
+						.getClass().getComponentType())
+			return ((PrimitiveBuffer) buffer).writeArray(block, offset,
+					length);
+		int i = offset;
+		while (i < offset + length && buffer.write(Array.get(block, i)))
+			i++;
+		return i - offset;
+	}
+
+	private void debugBlock(Object block, String prefix) throws IOException {
+		if (debugPrint != 3 && writer == null)
+			return;
+		for (int i = 0; i < Array.getLength(block); i++) {
+			String s = String.valueOf(Array.get(block, i));
+			if (debugPrint == 3)
+				System.out.println(Thread.currentThread().getName() + prefix
+						+ " - " + s);
+			if (writer != null) {
+				writer.write(s);
+				writer.write('\n');
+			}
+		}
+	}
+
 	/**
 	 * Just discards all data in the input buffers. This is useful if we don't
 	 * care about the data and just tuning a app for performance.
@@ -325,14 +338,12 @@ public class TCPInputChannel implements BoundaryInputChannel {
 		boolean hasData;
 		do {
 			try {
-				Object obj = tcpConnection.readObject();
-				hasData = true;
+				hasData = tcpConnection.readBlock() != null;
+				if (!hasData)
+					softClosed = true;
 			} catch (ClassNotFoundException e) {
 				hasData = true;
 				e.printStackTrace();
-			} catch (OptionalDataException e) {
-				softClosed = true;
-				hasData = false;
 			} catch (IOException e) {
 				System.out
 						.println("finalReceive:Closing by IOException. Not by softClose.");
@@ -341,6 +352,13 @@ public class TCPInputChannel implements BoundaryInputChannel {
 		} while (hasData);
 	}
 
+	/**
+	 * @return the number of items this channel has received so far.
+	 */
+	protected int receivedCount() {
+		return count;
+	}
+
 	private void reConnect() {
 		while (stopType.get() == 0) {
 			try {
@@ -385,7 +403,7 @@ public class TCPInputChannel implements BoundaryInputChannel {
 	 * @author Sumanan sumanan@mit.edu
 	 * @since Oct 17, 2013
 	 */
-	private class ExtraBuffer extends AbstractBuffer {
+	static class ExtraBuffer extends AbstractBuffer {
 
 		private final Queue<Object> queue;
 
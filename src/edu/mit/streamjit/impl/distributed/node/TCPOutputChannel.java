@@ -23,12 +23,14 @@ package edu.mit.streamjit.impl.distributed.node;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.net.SocketTimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.collect.ImmutableList;
 
 import edu.mit.streamjit.impl.blob.Buffer;
+import edu.mit.streamjit.impl.blob.PrimitiveBuffer;
 import edu.mit.streamjit.impl.distributed.common.BoundaryChannel.BoundaryOutputChannel;
 import edu.mit.streamjit.impl.distributed.common.Connection;
 import edu.mit.streamjit.impl.distributed.common.TCPConnection.TCPConnectionInfo;
@@ -40,14 +42,14 @@ import edu.mit.streamjit.impl.distributed.common.TCPConnection.TCPConnectionProv
  * <p>
  * Note: TCPOutputChannel acts as server when making TCP connection.
  * </p>
- * <p>
- * TODO: Need to aggressively optimise this class.
  * 
  * @author Sumanan sumanan@mit.edu
  * @since May 29, 2013
  */
 public class TCPOutputChannel implements BoundaryOutputChannel {
 
+	private static final int BLOCK = 8192;
+
 	FileWriter writer;
 
 	private final int debugPrint;
@@ -70,6 +72,12 @@ public class TCPOutputChannel implements BoundaryOutputChannel {
 
 	protected ImmutableList<Object> unProcessedData;
 
+	/**
+	 * Scratch array blocks are read into. Either an Object[] or, if
+	 * {@link #buffer} is a {@link PrimitiveBuffer}, a primitive array.
+	 */
+	private final Object block;
+
 	public TCPOutputChannel(Buffer buffer, TCPConnectionProvider conProvider,
 			TCPConnectionInfo conInfo, String bufferTokenName, int debugPrint) {
 		this.buffer = buffer;
@@ -81,6 +89,11 @@ public class TCPOutputChannel implements BoundaryOutputChannel {
 		this.debugPrint = debugPrint;
 		this.unProcessedData = null;
 		count = 0;
+		if (buffer instanceof PrimitiveBuffer)
+			this.block = Array.newInstance(
+					((PrimitiveBuffer) buffer).primitiveType(), BLOCK);
+		else
+			this.block = new Object[BLOCK];
 
 		FileWriter w = null;
 		if (this.debugPrint == 5) {
@@ -153,32 +166,52 @@ public class TCPOutputChannel implements BoundaryOutputChannel {
 
 	public final void sendData() {
 		while (this.buffer.size() > 0 && !stopFlag.get()) {
+			int n = readBlock();
 			try {
-				Object obj = buffer.read();
-				tcpConnection.writeObject(obj);
-				count++;
-
-				if (debugPrint == 3) {
-					System.out.println(Thread.currentThread().getName() + " - "
-							+ obj.toString());
-				}
-
-				if (writer != null) {
-					writer.write(obj.toString());
-					writer.write('\n');
-				}
+				tcpConnection.writeBlock(block, 0, n);
+				count += n;
+				debugBlock(n, "");
 			} catch (IOException e) {
 				System.err
 						.println("TCP Output Channel. WriteObject exception.");
 				reConnect();
 			}
-			if (count % 1000 == 0 && debugPrint == 2) {
+			if (debugPrint == 2 && count % 1000 < n) {
 				System.out.println(Thread.currentThread().getName() + " - "
 						+ count + " items have been sent");
 			}
 		}
 	}
 
+	/**
+	 * Reads up to {@link #BLOCK} items into {@link #block}. Never asks for
+	 * more than {@link Buffer#size()} items, so reads don't run off the end of
+	 * the data (see {@link edu.mit.streamjit.impl.distributed.HeadChannel}).
+	 * 
+	 * @return number of items read
+	 */
+	private int readBlock() {
+		int n = Math.min(BLOCK, buffer.size());
+		if (block instanceof Object[])
+			return buffer.read((Object[]) block, 0, n);
+		return ((PrimitiveBuffer) buffer).readArray(block, 0, n);
+	}
+
+	private void debugBlock(int n, String prefix) throws IOException {
+		if (debugPrint != 3 && writer == null)
+			return;
+		for (int i = 0; i < n; i++) {
+			String s = String.valueOf(Array.get(block, i));
+			if (debugPrint == 3)
+				System.out.println(Thread.currentThread().getName() + prefix
+						+ " - " + s);
+			if (writer != null) {
+				writer.write(s);
+				writer.write('\n');
+			}
+		}
+	}
+
 	@Override
 	public final int getOtherNodeID() {
 		return 0;
@@ -199,25 +232,15 @@ public class TCPOutputChannel implements BoundaryOutputChannel {
 	 */
 	private void finalSend() {
 		while (this.buffer.size() > 0) {
+			int n = readBlock();
 			try {
-				Object o = buffer.read();
-				tcpConnection.writeObject(o);
-				count++;
-
-				if (debugPrint == 3) {
-					System.out.println(Thread.currentThread().getName()
-							+ " FinalSend - " + o.toString());
-				}
-
-				if (writer != null) {
-					writer.write(o.toString());
-					writer.write('\n');
-				}
-
+				tcpConnection.writeBlock(block, 0, n);
+				count += n;
+				debugBlock(n, " FinalSend");
 			} catch (IOException e) {
 				System.err.println("TCP Output Channel. finalSend exception.");
 			}
-			if (count % 1000 == 0 && debugPrint == 2) {
+			if (debugPrint == 2 && count % 1000 < n) {
 				System.out.println(Thread.currentThread().getName()
 						+ " FinalSend - " + count
 						+ " no of items have been sent");
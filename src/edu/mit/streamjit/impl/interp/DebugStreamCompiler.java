@@ -57,7 +57,6 @@ import edu.mit.streamjit.impl.common.VerifyStreamGraph;
 import edu.mit.streamjit.impl.common.Workers;
 import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -84,8 +83,7 @@ public class DebugStreamCompiler extends BlobHostStreamCompiler {
 	private static final class DebugInterpreterBlobFactory extends Interpreter.InterpreterBlobFactory {
 		@Override
 		public Blob makeBlob(Set<Worker<?, ?>> workers, Configuration config, int maxNumCores, DrainData initialState) {
-			//TODO: find message constraints
-			return new DebugInterpreter(workers, Collections.<MessageConstraint>emptyList(), config, initialState);
+			return new DebugInterpreter(workers, findConstraints(workers), config, initialState);
 		}
 		@Override
 		public Configuration getDefaultConfiguration(Set<Worker<?, ?>> workers) {
@@ -25,11 +25,11 @@ import static com.google.common.base.Preconditions.*;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Iterables;
+import com.google.common.primitives.Ints;
 import edu.mit.streamjit.api.IllegalStreamGraphException;
+import edu.mit.streamjit.api.Portal;
 import edu.mit.streamjit.api.Rate;
-import edu.mit.streamjit.api.StatefulFilter;
 import edu.mit.streamjit.api.Worker;
 import edu.mit.streamjit.impl.blob.Blob;
 import edu.mit.streamjit.impl.blob.BlobFactory;
@@ -39,6 +39,7 @@ import edu.mit.streamjit.impl.common.Configuration;
 import edu.mit.streamjit.impl.common.Configuration.SwitchParameter;
 import edu.mit.streamjit.impl.common.IOInfo;
 import edu.mit.streamjit.impl.common.MessageConstraint;
+import edu.mit.streamjit.impl.common.Portals;
 import edu.mit.streamjit.impl.common.Workers;
 import edu.mit.streamjit.util.ReflectionUtils;
 import java.lang.reflect.Field;
@@ -46,9 +47,9 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Deque;
-import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
@@ -103,6 +104,32 @@ public class Interpreter implements Blob {
 	 * can't fire a source.
 	 */
 	private ImmutableMap<Channel<?>, Buffer> inputBuffers, outputBuffers;
+	/**
+	 * The output channels and their buffers, in the same order, and for each
+	 * sink (in the order of sinkArray), the indices of its output channels in
+	 * that order.  Built by installBuffers() so interpret() doesn't have to
+	 * walk the maps.
+	 */
+	private Channel<?>[] outputChannelArray;
+	private Buffer[] outputBufferArray;
+	private Worker<?, ?>[] sinkArray;
+	private int[][] sinkOutputChannels;
+	/**
+	 * The output channels (by index in outputChannelArray) we couldn't flush
+	 * completely during the last pushOutputs(), whose sinks can't fire.
+	 */
+	private final BitSet nonEmptyOutputs = new BitSet();
+	/**
+	 * Scratch space for moving items between channels and buffers, grown as
+	 * required.
+	 */
+	private Object[] transferArray = new Object[0];
+	/**
+	 * pull()'s stack of workers it's trying to fire, and the identifiers of
+	 * those workers, for detecting unsatisfiable message constraints.
+	 */
+	private final Deque<Worker<?, ?>> pullStack = new ArrayDeque<>();
+	private final BitSet pullStackIds = new BitSet();
 	public Interpreter(Iterable<Worker<?, ?>> workersIter, Iterable<MessageConstraint> constraintsIter, Configuration config) {
 		this(workersIter, constraintsIter, config, null);
 	}
@@ -231,6 +258,20 @@ public class Interpreter implements Blob {
 		}
 		this.inputBuffers = inputBufferBuilder.build();
 		this.outputBuffers = outputBufferBuilder.build();
+
+		List<Channel<?>> outputChannels = this.outputBuffers.keySet().asList();
+		this.outputChannelArray = outputChannels.toArray(new Channel<?>[0]);
+		this.outputBufferArray = this.outputBuffers.values().toArray(new Buffer[0]);
+		this.sinkArray = sinks.toArray(new Worker<?, ?>[0]);
+		this.sinkOutputChannels = new int[sinkArray.length][];
+		for (int i = 0; i < sinkArray.length; ++i) {
+			List<Integer> indices = new ArrayList<>();
+			for (Channel<?> ch : Workers.getOutputChannels(sinkArray[i]))
+				for (int j = 0; j < outputChannelArray.length; ++j)
+					if (outputChannelArray[j] == ch)
+						indices.add(j);
+			this.sinkOutputChannels[i] = Ints.toArray(indices);
+		}
 	}
 
 	@Override
@@ -277,34 +318,35 @@ public class Interpreter implements Blob {
 		for (IOInfo info : IOInfo.allEdges(workers))
 			dataBuilder.put(info.token(), ImmutableList.copyOf(info.channel()));
 
-		ImmutableTable.Builder<Integer, String, Object> stateBuilder = ImmutableTable.builder();
-		for (Worker<?, ?> worker : workers) {
-			if (!(worker instanceof StatefulFilter))
-				continue;
-			int id = Workers.getIdentifier(worker);
-			for (Class<?> klass = worker.getClass(); !klass.equals(StatefulFilter.class); klass = klass.getSuperclass()) {
-				for (Field f : klass.getDeclaredFields()) {
-					if ((f.getModifiers() & (Modifier.STATIC | Modifier.FINAL)) != 0)
-						continue;
-					f.setAccessible(true);
-					try {
-						stateBuilder.put(id, f.getName(), f.get(worker));
-					} catch (IllegalArgumentException | IllegalAccessException ex) {
-						throw new AssertionError(ex);
-					}
-				}
-			}
-		}
-
-		return new DrainData(dataBuilder.build(), stateBuilder.build());
+		return new DrainData(dataBuilder.build(), Workers.getState(workers));
 	}
 
 	public static class InterpreterBlobFactory implements BlobFactory {
 		public InterpreterBlobFactory() {}
 		@Override
 		public Blob makeBlob(Set<Worker<?, ?>> workers, Configuration config, int maxNumCores, DrainData initialState) {
-			//TODO: get the constraints!
-			return new Interpreter(workers, Collections.<MessageConstraint>emptyList(), config, initialState);
+			return new Interpreter(workers, findConstraints(workers), config, initialState);
+		}
+		/**
+		 * Finds the message constraints of the stream graph containing the
+		 * given workers and registers them with their portals, so the portals
+		 * can make handles for the senders.
+		 * @param workers the workers in the blob being made
+		 * @return the constraints with both sender and recipient in the blob
+		 */
+		protected static List<MessageConstraint> findConstraints(Set<Worker<?, ?>> workers) {
+			List<MessageConstraint> constraints = MessageConstraint.findConstraints(workers.iterator().next());
+			Set<Portal<?>> portals = Collections.newSetFromMap(new IdentityHashMap<Portal<?>, Boolean>());
+			for (MessageConstraint mc : constraints)
+				portals.add(mc.getPortal());
+			for (Portal<?> portal : portals)
+				Portals.setConstraints(portal, constraints);
+			//Constraints crossing into other blobs can't be satisfied here.
+			List<MessageConstraint> internal = new ArrayList<>();
+			for (MessageConstraint mc : constraints)
+				if (workers.contains(mc.getSender()) && workers.contains(mc.getRecipient()))
+					internal.add(mc);
+			return internal;
 		}
 		@Override
 		public Configuration getDefaultConfiguration(Set<Worker<?, ?>> workers) {
@@ -352,64 +394,70 @@ public class Interpreter implements Blob {
 		//Fire each sink once if possible, then repeat until we can't fire any
 		//sinks.
 		boolean fired, everFired = false;
-		Set<Worker<?, ?>> firableSinks;
 		do {
 			// Because we're using unbounded Channels, if we keep getting input,
 			// we'll keep firing our workers. We need to flush output to buffers
 			// to prevent memory exhaustion and starvation of the next Blob.
-			firableSinks = pushOutputs();
+			pushOutputs();
 
 			fired = false;
-			for (Worker<?, ?> sink : firableSinks) {
-				everFired |= fired |= pull(sink);
-			}
+			for (int i = 0; i < sinkArray.length; ++i)
+				if (isFirable(i))
+					everFired |= fired |= pull(sinkArray[i]);
 		} while (fired);
 
 		return everFired;
 	}
 
-	private Set<Worker<?, ?>> pushOutputs() {
+	/**
+	 * Flushes the output channels to their buffers, recording which channels
+	 * we couldn't empty in nonEmptyOutputs.
+	 */
+	private void pushOutputs() {
 		//Flush in a round-robin manner to avoid deadlocks where our consumer is
 		//blocked on another one of our channels.
-		List<Channel<?>> check = new ArrayList<>(outputBuffers.keySet());
-		List<Channel<?>> nonEmptyChannels = new ArrayList<>();
-		for (Channel<?> channel : check) {
-			Buffer buffer = outputBuffers.get(channel);
+		nonEmptyOutputs.clear();
+		for (int i = 0; i < outputChannelArray.length; ++i) {
+			Channel<?> channel = outputChannelArray[i];
+			Buffer buffer = outputBufferArray[i];
 			int room = Math.min(buffer.capacity() - buffer.size(), channel.size());
 			if (room != 0) {
-				Object[] data = new Object[room];
-				for (int j = 0; j < data.length; ++j)
+				Object[] data = transferArray(room);
+				for (int j = 0; j < room; ++j)
 					data[j] = channel.pop();
 				int written = 0;
 				int tries = 0;
-				while (written < data.length) {
-					written += buffer.write(data, written, data.length - written);
+				while (written < room) {
+					written += buffer.write(data, written, room - written);
 					++tries;
 				}
 				assert tries == 1 : "We checked we have space, but still needed "+tries+" tries";
+				//Don't keep the items alive.
+				Arrays.fill(data, 0, room, null);
 			}
 			if (!channel.isEmpty())
-				nonEmptyChannels.add(channel);
+				nonEmptyOutputs.set(i);
 		}
-		return firableWorkers(nonEmptyChannels);
 	}
 
-	private Set<Worker<?, ?>> firableWorkers(List<Channel<?>> nonEmptyChannels) {
-		Set<Worker<?, ?>> firableWorkers = new HashSet<>();
-		boolean firable = true;
-		for (Worker<?, ?> w : sinks) {
-			firable = true;
-			for (Channel<?> ch : Workers.getOutputChannels(w)) {
-				if (nonEmptyChannels.contains(ch)) {
-					firable = false;
-					break;
-				}
-			}
+	/**
+	 * Returns true if the sink at the given index in sinkArray can fire; that
+	 * is, if pushOutputs() emptied all its output channels.
+	 */
+	private boolean isFirable(int sink) {
+		for (int ch : sinkOutputChannels[sink])
+			if (nonEmptyOutputs.get(ch))
+				return false;
+		return true;
+	}
 
-			if (firable)
-				firableWorkers.add(w);
-		}
-		return firableWorkers;
+	/**
+	 * Returns transferArray, first growing it to the given length if required.
+	 */
+	private Object[] transferArray(int length) {
+		if (transferArray.length < length)
+			transferArray = new Object[Math.max(length, 2*transferArray.length)];
+		return transferArray;
 	}
 
 	private void printBufferSizes() {
@@ -446,42 +494,36 @@ public class Interpreter implements Blob {
 		//This stack holds all the unsatisfied workers we've encountered
 		//while trying to fire the argument.
 		pullsSinceProgress++;
-		Deque<Worker<?, ?>> stack = new ArrayDeque<>();
-		stack.push(worker);
+		Deque<Worker<?, ?>> stack = pullStack;
+		stack.clear();
+		pullStackIds.clear();
+		pushPull(worker);
 		recurse:
 		while (!stack.isEmpty()) {
 			Worker<?, ?> current = stack.element();
 			assert workers.contains(current) : "Executing outside stream graph section";
-			//If we're already trying to fire current, current depends on
-			//itself, so throw.  TODO: explain which constraints are bad?
-			//We have to pop then push so contains can't just find the top
-			//of the stack every time.  (no indexOf(), annoying)
-			stack.pop();
-			if (stack.contains(current))
-				throw new IllegalStreamGraphException("Unsatisfiable message constraints", current);
-			stack.push(current);
 
 			//Execute predecessors based on data dependencies.
 			int channel = indexOfUnsatisfiedChannel(current);
 			if (channel != -1) {
 				if (!workers.contains(Iterables.get(Workers.getPredecessors(current), channel, null))) {
-					//Try to get an item for this channel.
+					//Try to get enough items for this channel.
 					Channel unsatChannel = Workers.getInputChannels(current).get(channel);
 					Buffer buffer = inputBuffers.get(unsatChannel);
-					//TODO: compute how much and use readAll()
-					if (buffer.size() > 0) {
-						Object item = buffer.read();
-						if (item != null) {
-							unsatChannel.push(item);
-							continue recurse; //try again
-						}
-					}
+					int needed = requiredItems(current, channel) - unsatChannel.size();
+					Object[] data = transferArray(needed);
+					int read = buffer.read(data, 0, needed);
+					for (int i = 0; i < read; ++i)
+						unsatChannel.push(data[i]);
+					Arrays.fill(data, 0, read, null);
+					if (read == needed)
+						continue recurse; //try again
 //					print(current, channel);
 					return false; //Couldn't fire.
 				}
 
 				//Otherwise, recursively fire the worker blocking us.
-				stack.push(Workers.getPredecessors(current).get(channel));
+				pushPull(Workers.getPredecessors(current).get(channel));
 				continue recurse;
 			}
 
@@ -501,7 +543,7 @@ public class Interpreter implements Blob {
 						//We checked in our constructor that message constraints
 						//do not cross the interpreter boundary.  Assert that.
 						assert workers.contains(sender);
-						stack.push(sender);
+						pushPull(sender);
 						continue recurse;
 					}
 				}
@@ -509,13 +551,26 @@ public class Interpreter implements Blob {
 			Workers.doWork(current);
 			afterFire(current);
 			pullsSinceProgress = 0;
-			stack.pop(); //return from the recursion
+			pullStackIds.clear(Workers.getIdentifier(stack.pop())); //return from the recursion
 		}
 
 		//Stack's empty: we fired the argument.
 		return true;
 	}
 
+	/**
+	 * Pushes the given worker on pull()'s stack.  If we're already trying to
+	 * fire it, it depends on itself, so throw.
+	 */
+	private void pushPull(Worker<?, ?> worker) {
+		int id = Workers.getIdentifier(worker);
+		//TODO: explain which constraints are bad?
+		if (pullStackIds.get(id))
+			throw new IllegalStreamGraphException("Unsatisfiable message constraints", worker);
+		pullStackIds.set(id);
+		pullStack.push(worker);
+	}
+
 	/**
 	 * Searches the given worker's input channels for one that requires more
 	 * elements before the worker can fire, returning the index of the found
@@ -523,19 +578,23 @@ public class Interpreter implements Blob {
 	 */
 	private <I, O> int indexOfUnsatisfiedChannel(Worker<I, O> worker) {
 		List<Channel<? extends I>> channels = Workers.getInputChannels(worker);
-		List<Rate> peekRates = worker.getPeekRates();
-		List<Rate> popRates = worker.getPopRates();
-		for (int i = 0; i < channels.size(); ++i) {
-			Rate peek = peekRates.get(i), pop = popRates.get(i);
-			if (peek.max() == Rate.DYNAMIC || pop.max() == Rate.DYNAMIC)
-				throw new UnsupportedOperationException("Unbounded input rates not yet supported");
-			int required = Math.max(peek.max(), pop.max());
-			if (channels.get(i).size() < required)
+		for (int i = 0; i < channels.size(); ++i)
+			if (channels.get(i).size() < requiredItems(worker, i))
 				return i;
-		}
 		return -1;
 	}
 
+	/**
+	 * Returns the number of items the given worker requires on the given input
+	 * channel to fire.
+	 */
+	private static int requiredItems(Worker<?, ?> worker, int channel) {
+		Rate peek = worker.getPeekRates().get(channel), pop = worker.getPopRates().get(channel);
+		if (peek.max() == Rate.DYNAMIC || pop.max() == Rate.DYNAMIC)
+			throw new UnsupportedOperationException("Unbounded input rates not yet supported");
+		return Math.max(peek.max(), pop.max());
+	}
+
 	/**
 	 * Called after the given worker is fired.  Provided for the debug
 	 * interpreter to check rate declarations.
@@ -21,19 +21,26 @@
  */
 package edu.mit.streamjit.impl.interp;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 
 public class Message implements Comparable<Message> {
 	public final Method method;
+	/**
+	 * Invokes the method, taking the recipient and the arguments as an
+	 * Object[].
+	 */
+	public final MethodHandle handler;
 	public final Object[] args;
 	/**
 	 * The execution immediately before which this message will be received.
 	 */
 	public long timeToReceive;
 
-	public Message(Method method, Object[] args, long timeToReceive) {
+	public Message(Method method, MethodHandle handler, Object[] args, long timeToReceive) {
 		this.method = method;
+		this.handler = handler;
 		this.args = args;
 		this.timeToReceive = timeToReceive;
 	}
@@ -22,10 +22,12 @@
 package edu.mit.streamjit.test.sanity;
 
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 import com.jeffreybosboom.serviceproviderprocessor.ServiceProvider;
 import edu.mit.streamjit.api.CompiledStream;
 import edu.mit.streamjit.impl.interp.DebugStreamCompiler;
 import edu.mit.streamjit.api.Filter;
+import edu.mit.streamjit.api.Input;
 import edu.mit.streamjit.api.OneToOneElement;
 import edu.mit.streamjit.api.Output;
 import edu.mit.streamjit.api.Pipeline;
@@ -34,42 +36,59 @@ import edu.mit.streamjit.api.StatefulFilter;
 import edu.mit.streamjit.api.StreamCompiler;
 import edu.mit.streamjit.test.SuppliedBenchmark;
 import edu.mit.streamjit.test.Benchmark;
+import edu.mit.streamjit.test.Benchmark.Dataset;
 import edu.mit.streamjit.test.Datasets;
 
 /**
- * TODO: messaging is currently broken (something with Portal/constraint
- * registration?)
+ * Sends a message downstream with latency 0: the recipient handles the
+ * message about an item before it processes that item.
+ *
+ * Only downstream messages are tested.  Upstream messages fail at run time
+ * with an IllegalStreamGraphException unless their latency covers how far the
+ * recipient runs ahead of the sender; see Mailbox.
  * @author Jeffrey Bosboom <jbosboom@csail.mit.edu>
  * @since 1/24/2013
  */
 public class DownstreamMessageTest {
-//	public static void main(String[] args) throws InterruptedException {
-//		Benchmark benchmark = new DownstreamMessageTestBenchmark();
-//		StreamCompiler dsc = new DebugStreamCompiler();
-//		CompiledStream stream = dsc.compile(benchmark.instantiate(), benchmark.inputs().get(0).input(), Output.toPrintStream(System.out));
-//		stream.awaitDrained();
-//	}
-//
-//	@ServiceProvider(Benchmark.class)
-//	public static final class DownstreamMessageTestBenchmark extends SuppliedBenchmark {
-//		public DownstreamMessageTestBenchmark() {
-//			super("DownstreamMessageTest", new Supplier<OneToOneElement<Object, Object>>() {
-//				@Override
-//				@SuppressWarnings("unchecked")
-//				public OneToOneElement<Object, Object> get() {
-//					Portal<MessageInterface> portal = new Portal<>(MessageInterface.class);
-//					Pipeline<Integer, Integer> stream = new Pipeline<>();
-//					stream.add(new MessageSender(portal));
-//					MessageRecipient mr = new MessageRecipient();
-//					portal.addRecipient(mr);
-//					stream.add(mr);
-//					return (OneToOneElement)stream;
-//				}
-//			}, Dataset.builder(Datasets.allIntsInRange(0, 10)).build());
-//		}
-//	}
+	public static void main(String[] args) throws InterruptedException {
+		Benchmark benchmark = new DownstreamMessageTestBenchmark();
+		StreamCompiler dsc = new DebugStreamCompiler();
+		CompiledStream stream = dsc.compile(benchmark.instantiate(), benchmark.inputs().get(0).input(), Output.toPrintStream(System.out));
+		stream.awaitDrained();
+	}
+
+	@ServiceProvider(Benchmark.class)
+	public static final class DownstreamMessageTestBenchmark extends SuppliedBenchmark {
+		public DownstreamMessageTestBenchmark() {
+			super("DownstreamMessageTest", new Supplier<OneToOneElement<Object, Object>>() {
+				@Override
+				@SuppressWarnings("unchecked")
+				public OneToOneElement<Object, Object> get() {
+					Portal<MessageInterface> portal = new Portal<>(MessageInterface.class);
+					Pipeline<Integer, Integer> stream = new Pipeline<>();
+					stream.add(new MessageSender(portal));
+					MessageRecipient mr = new MessageRecipient();
+					portal.addRecipient(mr);
+					stream.add(mr);
+					return (OneToOneElement)stream;
+				}
+			}, dataset(100000));
+		}
+		private static Dataset dataset(int n) {
+			Dataset dataset = Datasets.allIntsInRange(0, n);
+			//Each item is followed by the message the sender sent about it.
+			ImmutableList.Builder<Integer> output = ImmutableList.builder();
+			for (int i = 0; i < n; ++i)
+				output.add(i, -i);
+			return dataset.withOutput(Input.fromIterable(output.build()));
+		}
+	}
 
-	private static interface MessageInterface {
+	/**
+	 * Compiled code calls portal interface methods directly, so the interface
+	 * must be public.
+	 */
+	public static interface MessageInterface {
 		public void handler(int value);
 	}
 
@@ -35,6 +35,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -43,11 +44,33 @@ import java.util.Map;
  * @since 8/5/2013
  */
 public final class ILPSolver {
+	/**
+	 * Which solver to use.  AUTO uses lp_solve if its native library loads,
+	 * and otherwise the pure-Java solver.
+	 */
+	public static enum Backend {
+		AUTO, NATIVE, JAVA;
+	}
+	/**
+	 * The backend used by the no-argument constructor, from the
+	 * streamjit.ilpsolver system property (default AUTO).
+	 */
+	private static final Backend DEFAULT_BACKEND = Backend.valueOf(System.getProperty("streamjit.ilpsolver", "AUTO").toUpperCase(Locale.ROOT));
+	/**
+	 * Set when lp_solve fails to load, so AUTO solvers don't retry it.
+	 */
+	private static volatile boolean nativeUnavailable = false;
+	private final Backend backend;
 	private final List<Variable> variables = new ArrayList<>();
 	private final List<Constraint> constraints = new ArrayList<>();
 	private ObjectiveFunction objFn = null;
 	private boolean solved = false;
-	public ILPSolver() {}
+	public ILPSolver() {
+		this(DEFAULT_BACKEND);
+	}
+	public ILPSolver(Backend backend) {
+		this.backend = checkNotNull(backend);
+	}
 
 	public Variable newVariable() {
 		return newVariable(null);
@@ -99,7 +122,50 @@ public final class ILPSolver {
 	public void solve() {
 		checkState(!solved, "system already solved");
 		checkState(objFn != null, "objective function not set");
+		if (backend == Backend.JAVA || (backend == Backend.AUTO && nativeUnavailable)) {
+			solveJava();
+			return;
+		}
+		try {
+			solveNative();
+		} catch (LinkageError ex) {
+			if (backend == Backend.NATIVE)
+				throw ex;
+			nativeUnavailable = true;
+			solveJava();
+		}
+	}
+
+	private void solveJava() {
+		int[][] rows = new int[constraints.size()][];
+		int[] types = new int[constraints.size()], rhs = new int[constraints.size()];
+		for (int i = 0; i < constraints.size(); ++i) {
+			Constraint c = constraints.get(i);
+			rows[i] = coefficients(c.expr);
+			types[i] = c.signum;
+			rhs[i] = c.value;
+		}
+		int[] lower = new int[variables.size()], upper = new int[variables.size()];
+		for (int i = 0; i < variables.size(); ++i) {
+			lower[i] = variables.get(i).lowerBound;
+			upper[i] = variables.get(i).upperBound;
+		}
+		int[] values = new JavaILPSolver(coefficients(objFn.expr), objFn.signum == 1, rows, types, rhs, lower, upper).solve();
+		for (int i = 0; i < variables.size(); ++i)
+			variables.get(i).value = values[i];
+		solved = true;
+	}
+
+	private int[] coefficients(LinearExpr expr) {
+		int[] coefficients = new int[variables.size()];
+		for (int i = 0; i < variables.size(); ++i) {
+			Integer c = expr.coefficients.get(variables.get(i));
+			coefficients[i] = c != null ? c : 0;
+		}
+		return coefficients;
+	}
 
+	private void solveNative() {
 		Pointer<lprec> lp = null;
 		Pointer<Double> row = null, column = null;
 		Path logFile = null;
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.util.ilpsolve;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks that the pure-Java backend agrees with lp_solve: both must find the
+ * same optimal objective value, or both must report the system infeasible.
+ * Runs 400 random systems with small variable bounds, plus systems with the
+ * default bounds whose relaxation is feasible but which have no integer
+ * solution.  (lp_solve itself can run for a very long time on some random
+ * systems with the default bounds, so we don't generate those.)  Needs the
+ * native lp_solve library.
+ * @since 10/18/2026
+ */
+public final class ILPSolverTester {
+	private ILPSolverTester() {}
+
+	/**
+	 * A system of random constraints over nonnegative variables, minimizing
+	 * a positive combination of them.
+	 */
+	private static final class LinearSystem {
+		private final int[][] rows;
+		private final int[] types, rhs, cost;
+		private final int upperBound;
+		LinearSystem(Random r) {
+			int n = 2 + r.nextInt(6), m = 1 + r.nextInt(6);
+			this.rows = new int[m][n];
+			this.types = new int[m];
+			this.rhs = new int[m];
+			this.cost = new int[n];
+			for (int i = 0; i < m; ++i) {
+				for (int j = 0; j < n; ++j)
+					rows[i][j] = r.nextInt(3) == 0 ? 0 : r.nextInt(13) - 6;
+				types[i] = r.nextInt(3);
+				rhs[i] = r.nextInt(41) - 20;
+			}
+			for (int j = 0; j < n; ++j)
+				cost[j] = 1 + r.nextInt(9);
+			this.upperBound = 50;
+		}
+		LinearSystem(int[][] rows, int[] types, int[] rhs, int[] cost) {
+			this.rows = rows;
+			this.types = types;
+			this.rhs = rhs;
+			this.cost = cost;
+			this.upperBound = Integer.MAX_VALUE;
+		}
+
+		/**
+		 * Solves this system with the given backend.
+		 * @return the minimum objective value, or null if infeasible
+		 */
+		Long solve(ILPSolver.Backend backend) {
+			ILPSolver solver = new ILPSolver(backend);
+			ILPSolver.Variable[] v = new ILPSolver.Variable[cost.length];
+			for (int j = 0; j < v.length; ++j)
+				v[j] = solver.newVariable("v"+j).upperBound(upperBound);
+			for (int i = 0; i < rows.length; ++i) {
+				Map<ILPSolver.Variable, Integer> coefficients = new HashMap<>();
+				for (int j = 0; j < v.length; ++j)
+					if (rows[i][j] != 0)
+						coefficients.put(v[j], rows[i][j]);
+				if (coefficients.isEmpty())
+					continue;
+				ILPSolver.LinearExpr expr = solver.newLinearExpr(coefficients);
+				if (types[i] == 0)
+					solver.constrainAtMost(expr, rhs[i]);
+				else if (types[i] == 1)
+					solver.constrainAtLeast(expr, rhs[i]);
+				else
+					solver.constrainEquals(expr, rhs[i]);
+			}
+			Map<ILPSolver.Variable, Integer> objective = new HashMap<>();
+			for (int j = 0; j < v.length; ++j)
+				objective.put(v[j], cost[j]);
+			solver.minimize(solver.newLinearExpr(objective));
+			try {
+				solver.solve();
+			} catch (InfeasibleSystemException ex) {
+				return null;
+			}
+			long value = 0;
+			for (int j = 0; j < v.length; ++j)
+				value += (long)cost[j] * v[j].value();
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			return Arrays.deepToString(rows)+" "+Arrays.toString(types)+" "+Arrays.toString(rhs)+" min "+Arrays.toString(cost);
+		}
+	}
+
+	private static void check(LinearSystem system) {
+		Long expected = system.solve(ILPSolver.Backend.NATIVE), actual = system.solve(ILPSolver.Backend.JAVA);
+		if (expected == null ? actual != null : !expected.equals(actual))
+			throw new AssertionError(String.format("%s: lp_solve %s, Java %s", system, expected, actual));
+	}
+
+	public static void main(String[] args) {
+		//Feasible relaxations, but no integer solutions.  In the last, x must
+		//be both even and odd, which no single row shows.
+		check(new LinearSystem(new int[][]{{2, -2}}, new int[]{2}, new int[]{1}, new int[]{1, 1}));
+		check(new LinearSystem(new int[][]{{4, 6, -2}}, new int[]{2}, new int[]{3}, new int[]{1, 1, 1}));
+		check(new LinearSystem(new int[][]{{1, -2, 0}, {1, 0, -2}}, new int[]{2, 2}, new int[]{0, 1}, new int[]{1, 1, 1}));
+		Random r = new Random(7);
+		for (int t = 0; t < 400; ++t)
+			check(new LinearSystem(r));
+		System.out.println("lp_solve and Java agree");
+	}
+}
@@ -0,0 +1,475 @@
+/*
+ * Copyright (c) 2013-2015 Massachusetts Institute of Technology
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package edu.mit.streamjit.util.ilpsolve;
+
+import static edu.mit.streamjit.util.ilpsolve.lib.Bindings.EQ;
+import static edu.mit.streamjit.util.ilpsolve.lib.Bindings.GE;
+import static edu.mit.streamjit.util.ilpsolve.lib.Bindings.LE;
+import com.google.common.math.IntMath;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * A pure-Java integer linear program solver, used when the native lp_solve
+ * library isn't available.  It runs best-first branch and bound over an
+ * exact rational two-phase simplex (with Bland's rule, so it never cycles).
+ * That's far slower than lp_solve per pivot, but the systems Schedule builds
+ * are small and sparse, and their LP relaxations are usually integral, so
+ * we rarely branch at all.
+ * <p/>
+ * Like lp_solve with its default settings, the search is limited to a depth
+ * of {@link #DEPTH_LIMIT_PER_VARIABLE} times the number of variables; a system
+ * without an integer solution in that depth is reported infeasible, rather
+ * than searched forever.
+ * <p/>
+ * Only uses the lp_solve constraint type constants, which are compile-time
+ * constants, so this class never loads the native bindings.
+ * @since 10/18/2026
+ */
+final class JavaILPSolver {
+	/**
+	 * The maximum branch-and-bound depth, per variable.  This matches
+	 * lp_solve's default (relative) depth limit of 50.
+	 */
+	private static final int DEPTH_LIMIT_PER_VARIABLE = 50;
+	private final int[] objective;
+	private final boolean maximize;
+	private final int[][] rows;
+	private final int[] types, rhs;
+	/**
+	 * Variable bounds.  Like lp_solve, we treat an upper bound of
+	 * Integer.MAX_VALUE (the default) as a finite bound.
+	 */
+	private final int[] lower, upper;
+	private final int n;
+	/**
+	 * Creates a solver for the given system.
+	 * @param objective the objective function coefficients
+	 * @param maximize true to maximize, false to minimize
+	 * @param rows the constraint coefficients, one row per constraint
+	 * @param types each constraint's type (LE, GE or EQ)
+	 * @param rhs each constraint's right-hand side
+	 * @param lower each variable's lower bound
+	 * @param upper each variable's upper bound
+	 */
+	JavaILPSolver(int[] objective, boolean maximize, int[][] rows, int[] types, int[] rhs, int[] lower, int[] upper) {
+		this.objective = objective;
+		this.maximize = maximize;
+		this.rows = rows;
+		this.types = types;
+		this.rhs = rhs;
+		this.lower = lower;
+		this.upper = upper;
+		this.n = objective.length;
+	}
+
+	/**
+	 * Solves the system.
+	 * @return the optimal variable values
+	 * @throws InfeasibleSystemException if the system has no integer solution
+	 * @throws SolverException if the system is unbounded
+	 */
+	int[] solve() {
+		//An equality whose coefficients' gcd doesn't divide its right-hand
+		//side has no integer solution, however feasible its relaxation.
+		for (int i = 0; i < rows.length; ++i)
+			if (types[i] == EQ) {
+				int gcd = 0;
+				for (int coeff : rows[i])
+					gcd = IntMath.gcd(gcd, Math.abs(coeff));
+				if (gcd != 0 && rhs[i] % gcd != 0)
+					throw new InfeasibleSystemException();
+			}
+		long[] rootLower = new long[n], rootUpper = new long[n];
+		for (int j = 0; j < n; ++j) {
+			rootLower[j] = lower[j];
+			rootUpper[j] = upper[j];
+		}
+		Node root = node(rootLower, rootUpper, 0);
+		if (root == null)
+			throw new InfeasibleSystemException();
+		//Best-first: with the default bounds near Integer.MAX_VALUE, diving
+		//depth-first can chase a variable upwards without finding an
+		//incumbent, but expanding the best bound first finds the optimum
+		//quickly when it exists.  Among equal bounds, prefer deeper nodes to
+		//find an incumbent sooner.
+		int depthLimit = DEPTH_LIMIT_PER_VARIABLE * n;
+		PriorityQueue<Node> nodes = new PriorityQueue<>();
+		nodes.add(root);
+		int[] best = null;
+		BigInteger bestValue = null;
+		while (!nodes.isEmpty()) {
+			Node node = nodes.poll();
+			//We maximize internally; the objective is integral at integer
+			//points, so a node can't beat the incumbent unless its floor does.
+			if (bestValue != null && node.value.floor().compareTo(bestValue) <= 0)
+				break;
+			int branch = -1;
+			for (int j = 0; j < n && branch == -1; ++j)
+				if (!node.x[j].isInteger())
+					branch = j;
+			if (branch == -1) {
+				best = new int[n];
+				for (int j = 0; j < n; ++j)
+					best[j] = node.x[j].intValueExact();
+				bestValue = node.value.floor();
+				continue;
+			}
+			if (node.depth >= depthLimit)
+				continue;
+			long floor = node.x[branch].floor().longValue();
+			long[] downUpper = node.hi.clone();
+			downUpper[branch] = floor;
+			long[] upLower = node.lo.clone();
+			upLower[branch] = floor + 1;
+			Node down = node(node.lo, downUpper, node.depth + 1),
+					up = node(upLower, node.hi, node.depth + 1);
+			if (down != null)
+				nodes.add(down);
+			if (up != null)
+				nodes.add(up);
+		}
+		if (best == null)
+			throw new InfeasibleSystemException();
+		return best;
+	}
+
+	/**
+	 * Solves the relaxation for a branch-and-bound node.
+	 * @return the node, or null if its relaxation is infeasible
+	 */
+	private Node node(long[] lo, long[] hi, int depth) {
+		Rational[] x = solveRelaxation(lo, hi);
+		if (x == null)
+			return null;
+		Rational value = Rational.ZERO;
+		for (int j = 0; j < n; ++j)
+			value = value.add(x[j].multiply(objective[j]));
+		return new Node(lo, hi, depth, x, maximize ? value : value.negate());
+	}
+
+	private static final class Node implements Comparable<Node> {
+		final long[] lo, hi;
+		final int depth;
+		final Rational[] x;
+		/**
+		 * The relaxation's objective value, negated when minimizing.
+		 */
+		final Rational value;
+		Node(long[] lo, long[] hi, int depth, Rational[] x, Rational value) {
+			this.lo = lo;
+			this.hi = hi;
+			this.depth = depth;
+			this.x = x;
+			this.value = value;
+		}
+		@Override
+		public int compareTo(Node o) {
+			int c = o.value.compareTo(value);
+			return c != 0 ? c : Integer.compare(o.depth, depth);
+		}
+	}
+
+	/**
+	 * Solves the LP relaxation with the given variable bounds.
+	 * @return the variable values, or null if infeasible
+	 * @throws SolverException if the relaxation is unbounded
+	 */
+	private Rational[] solveRelaxation(long[] lo, long[] hi) {
+		for (int j = 0; j < n; ++j)
+			if (lo[j] > hi[j])
+				return null;
+		//Substitute y = x - lo, so y >= 0, and add rows for the upper bounds.
+		int m = rows.length + n;
+		Rational[][] a = new Rational[m][n];
+		Rational[] b = new Rational[m];
+		int[] type = new int[m];
+		for (int i = 0; i < rows.length; ++i) {
+			Rational bi = Rational.of(rhs[i]);
+			for (int j = 0; j < n; ++j) {
+				a[i][j] = Rational.of(rows[i][j]);
+				bi = bi.subtract(Rational.of(rows[i][j]).multiply(lo[j]));
+			}
+			b[i] = bi;
+			type[i] = types[i];
+		}
+		int r = rows.length;
+		for (int j = 0; j < n; ++j, ++r) {
+			Arrays.fill(a[r], Rational.ZERO);
+			a[r][j] = Rational.ONE;
+			b[r] = Rational.of(hi[j] - lo[j]);
+			type[r] = LE;
+		}
+		Rational[] c = new Rational[n];
+		for (int j = 0; j < n; ++j)
+			c[j] = Rational.of(maximize ? objective[j] : -objective[j]);
+
+		Rational[] y = Simplex.maximize(c, a, type, b);
+		if (y == null)
+			return null;
+		Rational[] x = new Rational[n];
+		for (int j = 0; j < n; ++j)
+			x[j] = y[j].add(Rational.of(lo[j]));
+		return x;
+	}
+
+	/**
+	 * A dense two-phase simplex over exact rationals.
+	 */
+	private static final class Simplex {
+		private final Rational[][] t;
+		private final int[] basis;
+		private final int m, cols;
+		private Simplex(Rational[][] t, int[] basis) {
+			this.t = t;
+			this.basis = basis;
+			this.m = t.length;
+			this.cols = t.length > 0 ? t[0].length - 1 : 0;
+		}
+
+		/**
+		 * Maximizes c.y subject to a.y (type) b, y >= 0.
+		 * @return an optimal y, or null if infeasible
+		 * @throws SolverException if unbounded
+		 */
+		static Rational[] maximize(Rational[] c, Rational[][] a, int[] type, Rational[] b) {
+			int m = a.length, n = c.length;
+			//Normalize to b >= 0.
+			a = a.clone();
+			b = b.clone();
+			type = type.clone();
+			int slacks = 0, artificials = 0;
+			for (int i = 0; i < m; ++i) {
+				if (b[i].signum() < 0) {
+					a[i] = a[i].clone();
+					for (int j = 0; j < n; ++j)
+						a[i][j] = a[i][j].negate();
+					b[i] = b[i].negate();
+					type[i] = type[i] == LE ? GE : type[i] == GE ? LE : EQ;
+				}
+				if (type[i] != EQ)
+					++slacks;
+				if (type[i] != LE)
+					++artificials;
+			}
+			int cols = n + slacks + artificials, firstArtificial = n + slacks;
+			Rational[][] t = new Rational[m][cols + 1];
+			int[] basis = new int[m];
+			int slack = n, artificial = firstArtificial;
+			for (int i = 0; i < m; ++i) {
+				Arrays.fill(t[i], Rational.ZERO);
+				System.arraycopy(a[i], 0, t[i], 0, n);
+				t[i][cols] = b[i];
+				if (type[i] == LE) {
+					t[i][slack] = Rational.ONE;
+					basis[i] = slack++;
+				} else {
+					if (type[i] == GE)
+						t[i][slack++] = Rational.ONE.negate();
+					t[i][artificial] = Rational.ONE;
+					basis[i] = artificial++;
+				}
+			}
+			Simplex s = new Simplex(t, basis);
+
+			if (artificials > 0) {
+				Rational[] phase1 = new Rational[cols];
+				Arrays.fill(phase1, Rational.ZERO);
+				for (int j = firstArtificial; j < cols; ++j)
+					phase1[j] = Rational.ONE.negate();
+				s.run(phase1, cols);
+				if (s.value(phase1).signum() < 0)
+					return null;
+				s.evictArtificials(firstArtificial);
+			}
+
+			Rational[] phase2 = new Rational[cols];
+			Arrays.fill(phase2, Rational.ZERO);
+			System.arraycopy(c, 0, phase2, 0, n);
+			s.run(phase2, firstArtificial);
+
+			Rational[] y = new Rational[n];
+			Arrays.fill(y, Rational.ZERO);
+			for (int i = 0; i < m; ++i)
+				if (s.basis[i] >= 0 && s.basis[i] < n)
+					y[s.basis[i]] = t[i][cols];
+			return y;
+		}
+
+		/**
+		 * Pivots to optimality for the given costs, entering only columns
+		 * before the given limit.
+		 */
+		private void run(Rational[] cost, int enterLimit) {
+			while (true) {
+				//Bland's rule: the lowest-index improving column enters...
+				int enter = -1;
+				for (int j = 0; j < enterLimit && enter == -1; ++j)
+					if (reducedCost(cost, j).signum() > 0)
+						enter = j;
+				if (enter == -1)
+					return;
+				//...and the lowest-index basic variable among ties leaves.
+				int leave = -1;
+				Rational bestRatio = null;
+				for (int i = 0; i < m; ++i) {
+					if (basis[i] < 0 || t[i][enter].signum() <= 0)
+						continue;
+					Rational ratio = t[i][cols].divide(t[i][enter]);
+					int cmp = bestRatio == null ? -1 : ratio.compareTo(bestRatio);
+					if (cmp < 0 || (cmp == 0 && basis[i] < basis[leave])) {
+						leave = i;
+						bestRatio = ratio;
+					}
+				}
+				if (leave == -1)
+					throw new SolverException("system is unbounded");
+				pivot(leave, enter);
+			}
+		}
+
+		private Rational reducedCost(Rational[] cost, int j) {
+			Rational d = cost[j];
+			for (int i = 0; i < m; ++i)
+				if (basis[i] >= 0 && t[i][j].signum() != 0)
+					d = d.subtract(cost[basis[i]].multiply(t[i][j]));
+			return d;
+		}
+
+		private Rational value(Rational[] cost) {
+			Rational v = Rational.ZERO;
+			for (int i = 0; i < m; ++i)
+				if (basis[i] >= 0)
+					v = v.add(cost[basis[i]].multiply(t[i][cols]));
+			return v;
+		}
+
+		/**
+		 * Pivots artificial variables (all at zero after a feasible phase 1)
+		 * out of the basis, dropping rows that turn out to be redundant.
+		 */
+		private void evictArtificials(int firstArtificial) {
+			for (int i = 0; i < m; ++i) {
+				if (basis[i] < firstArtificial)
+					continue;
+				int enter = -1;
+				for (int j = 0; j < firstArtificial && enter == -1; ++j)
+					if (t[i][j].signum() != 0)
+						enter = j;
+				if (enter != -1)
+					pivot(i, enter);
+				else
+					basis[i] = -1; //redundant row
+			}
+		}
+
+		private void pivot(int row, int col) {
+			Rational p = t[row][col];
+			for (int j = 0; j <= cols; ++j)
+				t[row][j] = t[row][j].divide(p);
+			for (int i = 0; i < m; ++i) {
+				if (i == row || t[i][col].signum() == 0)
+					continue;
+				Rational f = t[i][col];
+				for (int j = 0; j <= cols; ++j)
+					if (t[row][j].signum() != 0)
+						t[i][j] = t[i][j].subtract(f.multiply(t[row][j]));
+			}
+			basis[row] = col;
+		}
+	}
+
+	/**
+	 * An exact rational number in lowest terms with a positive denominator.
+	 */
+	private static final class Rational implements Comparable<Rational> {
+		static final Rational ZERO = new Rational(BigInteger.ZERO, BigInteger.ONE);
+		static final Rational ONE = new Rational(BigInteger.ONE, BigInteger.ONE);
+		private final BigInteger num, den;
+		private Rational(BigInteger num, BigInteger den) {
+			this.num = num;
+			this.den = den;
+		}
+		static Rational of(long x) {
+			return x == 0 ? ZERO : x == 1 ? ONE : new Rational(BigInteger.valueOf(x), BigInteger.ONE);
+		}
+		private static Rational make(BigInteger num, BigInteger den) {
+			if (num.signum() == 0)
+				return ZERO;
+			if (den.signum() < 0) {
+				num = num.negate();
+				den = den.negate();
+			}
+			BigInteger g = num.gcd(den);
+			if (!g.equals(BigInteger.ONE)) {
+				num = num.divide(g);
+				den = den.divide(g);
+			}
+			return new Rational(num, den);
+		}
+		Rational add(Rational o) {
+			if (den.equals(o.den))
+				return make(num.add(o.num), den);
+			return make(num.multiply(o.den).add(o.num.multiply(den)), den.multiply(o.den));
+		}
+		Rational subtract(Rational o) {
+			return add(o.negate());
+		}
+		Rational multiply(Rational o) {
+			return make(num.multiply(o.num), den.multiply(o.den));
+		}
+		Rational multiply(long x) {
+			return make(num.multiply(BigInteger.valueOf(x)), den);
+		}
+		Rational divide(Rational o) {
+			return make(num.multiply(o.den), den.multiply(o.num));
+		}
+		Rational negate() {
+			return new Rational(num.negate(), den);
+		}
+		int signum() {
+			return num.signum();
+		}
+		boolean isInteger() {
+			return den.equals(BigInteger.ONE);
+		}
+		BigInteger floor() {
+			BigInteger[] qr = num.divideAndRemainder(den);
+			return qr[1].signum() < 0 ? qr[0].subtract(BigInteger.ONE) : qr[0];
+		}
+		int intValueExact() {
+			assert isInteger() : this;
+			if (num.bitLength() > 31)
+				throw new SolverException("solution value "+num+" out of int range");
+			return num.intValue();
+		}
+		@Override
+		public int compareTo(Rational o) {
+			return num.multiply(o.den).compareTo(o.num.multiply(den));
+		}
+		@Override
+		public String toString() {
+			return isInteger() ? num.toString() : num+"/"+den;
+		}
+	}
+}